@@ -0,0 +1,195 @@
+package org.apache.tomcat.maven.common.deployer;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.impl.client.BasicAuthCache;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLEncoder;
+
+/**
+ * Base of the clients of the receiver webapp (<code>tomcat-delta-receiver</code>) installed on the target Tomcat:
+ * authenticates preemptively with the manager credentials and turns the error statuses into
+ * {@link TomcatManagerException}.
+ *
+ * @since 3.0
+ */
+public abstract class AbstractReceiverUploader
+{
+    private final URL receiverUrl;
+
+    private final DefaultHttpClient httpClient;
+
+    private BasicAuthCache authCache;
+
+    private String userAgent;
+
+    /**
+     * @param receiverUrl       the url of the receiver webapp
+     * @param username          the username to authenticate with, <code>null</code> for none
+     * @param password          the password to authenticate with
+     * @param connectionManager the connection manager of the http client
+     */
+    protected AbstractReceiverUploader( URL receiverUrl, String username, String password,
+                                        ClientConnectionManager connectionManager )
+    {
+        this.receiverUrl = receiverUrl;
+        this.httpClient = new DefaultHttpClient( connectionManager );
+        if ( StringUtils.isNotEmpty( username ) )
+        {
+            int port = receiverUrl.getPort() > -1 ? receiverUrl.getPort() : AuthScope.ANY_PORT;
+            httpClient.getCredentialsProvider().setCredentials( new AuthScope( receiverUrl.getHost(), port ),
+                                                                new UsernamePasswordCredentials( username,
+                                                                                                 password ) );
+            authCache = new BasicAuthCache();
+            authCache.put( new HttpHost( receiverUrl.getHost(), receiverUrl.getPort(), receiverUrl.getProtocol() ),
+                           new BasicScheme() );
+        }
+    }
+
+    /**
+     * Executes a request, may be called by several threads.
+     *
+     * @param request the request to the receiver
+     * @return the response body
+     * @throws ReceiverStatusException if the receiver answers an error status
+     * @throws IOException            if an i/o error occurs
+     */
+    protected String execute( HttpRequestBase request )
+        throws TomcatManagerException, IOException
+    {
+        if ( userAgent != null )
+        {
+            request.setHeader( "User-Agent", userAgent );
+        }
+        BasicHttpContext localContext = new BasicHttpContext();
+        if ( authCache != null )
+        {
+            localContext.setAttribute( ClientContext.AUTH_CACHE, authCache );
+        }
+        HttpResponse response = httpClient.execute( request, localContext );
+        String body = response.getEntity() == null ? "" : EntityUtils.toString( response.getEntity(), "UTF-8" );
+        int statusCode = response.getStatusLine().getStatusCode();
+        if ( statusCode >= 300 )
+        {
+            throw new ReceiverStatusException(
+                "receiver " + request.getURI() + " answered " + statusCode + " " + response.getStatusLine()
+                    .getReasonPhrase(), statusCode );
+        }
+        return body;
+    }
+
+    /**
+     * @param command    the receiver command
+     * @param name       the name of the webapp on the receiver
+     * @param parameters more parameter names and values
+     * @return the url of the command
+     * @throws IOException if a parameter cannot be encoded
+     */
+    protected String url( String command, String name, String... parameters )
+        throws IOException
+    {
+        String base = receiverUrl.toString();
+        StringBuilder url = new StringBuilder( base.endsWith( "/" ) ? base : base + "/" );
+        url.append( command ).append( "?name=" ).append( URLEncoder.encode( name, "UTF-8" ) );
+        for ( int i = 0; i + 1 < parameters.length; i += 2 )
+        {
+            url.append( '&' ).append( parameters[i] ).append( '=' );
+            url.append( URLEncoder.encode( parameters[i + 1], "UTF-8" ) );
+        }
+        return url.toString();
+    }
+
+    /**
+     * Gets the receiver name of the webapp deployed at a context path, the Tomcat base file name of the path.
+     *
+     * @param path the context path
+     * @return <code>ROOT</code> for the root context, the path without the leading slash and with <code>#</code>
+     *         instead of the other slashes otherwise
+     */
+    public static String getName( String path )
+    {
+        String name = path.startsWith( "/" ) ? path.substring( 1 ) : path;
+        return name.length() == 0 ? "ROOT" : name.replace( '/', '#' );
+    }
+
+    /**
+     * Gets the <code>file:</code> url of a path of the server, built from the string alone: the rules of the local
+     * file system (for instance a drive letter added on Windows) do not apply to the server.
+     *
+     * @param serverPath the absolute path of a file on the server, as answered by the receiver
+     * @return the url the manager of the server can deploy from
+     * @throws MalformedURLException if the path cannot be turned into an url
+     */
+    public static URL getServerFileUrl( String serverPath )
+        throws MalformedURLException
+    {
+        String path = serverPath;
+        if ( path.matches( "[A-Za-z]:[\\\\/].*" ) )
+        {
+            // a Windows server: file:/C:/...
+            path = '/' + path.replace( '\\', '/' );
+        }
+        try
+        {
+            return new URI( "file", null, path, null ).toURL();
+        }
+        catch ( URISyntaxException e )
+        {
+            MalformedURLException exception = new MalformedURLException( e.getMessage() );
+            exception.initCause( e );
+            throw exception;
+        }
+    }
+
+    public URL getReceiverUrl()
+    {
+        return receiverUrl;
+    }
+
+    public void setUserAgent( String userAgent )
+    {
+        this.userAgent = userAgent;
+    }
+
+    /**
+     * Closes the connections.
+     */
+    public void close()
+    {
+        httpClient.getConnectionManager().shutdown();
+    }
+}
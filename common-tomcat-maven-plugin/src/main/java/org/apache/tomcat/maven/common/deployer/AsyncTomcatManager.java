@@ -0,0 +1,495 @@
+package org.apache.tomcat.maven.common.deployer;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking calls of a {@link TomcatManager}: each call runs on an executor and returns a {@link Future} of the
+ * response at once, the optional {@link Callback} being notified on completion. A call running longer than
+ * {@link #setTimeout(long)}, the time waiting for a thread not included, fails with a {@link TimeoutException},
+ * cancelling the future aborts the http request.
+ * Several instances may share one executor to drive many managers from a few threads.
+ *
+ * @since 3.0
+ */
+public class AsyncTomcatManager
+{
+    /**
+     * Notified right after the future of a call is done, on the thread which ran the call or cancelled it.
+     */
+    public interface Callback
+    {
+        /**
+         * @param response the manager response
+         */
+        void completed( TomcatManagerResponse response );
+
+        /**
+         * @param failure the failure of the call: a {@link TimeoutException} on timeout, a
+         *                {@link CancellationException} if cancelled
+         */
+        void failed( Exception failure );
+    }
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private static final ThreadFactory DAEMON_THREADS = new ThreadFactory()
+    {
+        public Thread newThread( Runnable runnable )
+        {
+            Thread thread = new Thread( runnable, "tomcat-manager-" + THREADS.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    };
+
+    private final TomcatManager manager;
+
+    private final ExecutorService executor;
+
+    private final boolean ownExecutor;
+
+    private final ScheduledExecutorService watchdog;
+
+    private long timeout;
+
+    /**
+     * Runs the calls on its own daemon threads, released by {@link #shutdown()}.
+     *
+     * @param manager the manager to call
+     */
+    public AsyncTomcatManager( TomcatManager manager )
+    {
+        this( manager, Executors.newCachedThreadPool( DAEMON_THREADS ), true, SharedWatchdog.INSTANCE );
+    }
+
+    /**
+     * @param manager  the manager to call
+     * @param executor runs the calls, left running by {@link #shutdown()}
+     */
+    public AsyncTomcatManager( TomcatManager manager, ExecutorService executor )
+    {
+        this( manager, executor, false, SharedWatchdog.INSTANCE );
+    }
+
+    /**
+     * @param manager  the manager to call
+     * @param executor runs the calls, left running by {@link #shutdown()}
+     * @param watchdog times out the calls, left running by {@link #shutdown()}
+     */
+    public AsyncTomcatManager( TomcatManager manager, ExecutorService executor, ScheduledExecutorService watchdog )
+    {
+        this( manager, executor, false, watchdog );
+    }
+
+    private AsyncTomcatManager( TomcatManager manager, ExecutorService executor, boolean ownExecutor,
+                                ScheduledExecutorService watchdog )
+    {
+        this.manager = manager;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.watchdog = watchdog;
+    }
+
+    public Future<TomcatManagerResponse> deploy( final String path, final File war, final boolean update,
+                                                 final String tag, Callback callback )
+    {
+        return submit( new Call()
+        {
+            public TomcatManagerResponse call()
+                throws Exception
+            {
+                return manager.deploy( path, war, update, tag );
+            }
+        }, callback );
+    }
+
+    public Future<TomcatManagerResponse> deploy( final String path, final URL war, final boolean update,
+                                                 final String tag, Callback callback )
+    {
+        return submit( new Call()
+        {
+            public TomcatManagerResponse call()
+                throws Exception
+            {
+                return manager.deploy( path, war, update, tag );
+            }
+        }, callback );
+    }
+
+    public Future<TomcatManagerResponse> undeploy( final String path, Callback callback )
+    {
+        return submit( new Call()
+        {
+            public TomcatManagerResponse call()
+                throws Exception
+            {
+                return manager.undeploy( path );
+            }
+        }, callback );
+    }
+
+    public Future<TomcatManagerResponse> reload( final String path, Callback callback )
+    {
+        return submit( new Call()
+        {
+            public TomcatManagerResponse call()
+                throws Exception
+            {
+                return manager.reload( path );
+            }
+        }, callback );
+    }
+
+    public Future<TomcatManagerResponse> start( final String path, Callback callback )
+    {
+        return submit( new Call()
+        {
+            public TomcatManagerResponse call()
+                throws Exception
+            {
+                return manager.start( path );
+            }
+        }, callback );
+    }
+
+    public Future<TomcatManagerResponse> stop( final String path, Callback callback )
+    {
+        return submit( new Call()
+        {
+            public TomcatManagerResponse call()
+                throws Exception
+            {
+                return manager.stop( path );
+            }
+        }, callback );
+    }
+
+    public Future<TomcatManagerResponse> list( Callback callback )
+    {
+        return submit( new Call()
+        {
+            public TomcatManagerResponse call()
+                throws Exception
+            {
+                return manager.list();
+            }
+        }, callback );
+    }
+
+    public Future<TomcatManagerResponse> getSessions( final String path, Callback callback )
+    {
+        return submit( new Call()
+        {
+            public TomcatManagerResponse call()
+                throws Exception
+            {
+                return manager.getSessions( path );
+            }
+        }, callback );
+    }
+
+    public Future<TomcatManagerResponse> getServerInfo( Callback callback )
+    {
+        return submit( new Call()
+        {
+            public TomcatManagerResponse call()
+                throws Exception
+            {
+                return manager.getServerInfo();
+            }
+        }, callback );
+    }
+
+    /**
+     * Runs any call of the manager.
+     *
+     * @param call     the call, using {@link #getManager()}
+     * @param callback notified on completion, may be <code>null</code>
+     * @return the future response
+     */
+    public Future<TomcatManagerResponse> submit( Callable<TomcatManagerResponse> call, Callback callback )
+    {
+        ManagerTask task = new ManagerTask( call, callback, timeout );
+        executor.execute( task );
+        return task;
+    }
+
+    public TomcatManager getManager()
+    {
+        return manager;
+    }
+
+    public long getTimeout()
+    {
+        return timeout;
+    }
+
+    /**
+     * @param timeout maximum time in milliseconds of each call submitted from now on, from the start of the call, 0
+     *                for none
+     */
+    public AsyncTomcatManager setTimeout( long timeout )
+    {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Stops the threads of the calls if they were created by this instance, the calls in progress complete or time
+     * out.
+     */
+    public void shutdown()
+    {
+        if ( ownExecutor )
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Times out the calls of all the instances not given a watchdog, its daemon thread is created with the first
+     * of them and never stopped.
+     */
+    private static final class SharedWatchdog
+    {
+        static final ScheduledThreadPoolExecutor INSTANCE = create();
+
+        private static ScheduledThreadPoolExecutor create()
+        {
+            ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor( 1, new ThreadFactory()
+            {
+                public Thread newThread( Runnable runnable )
+                {
+                    Thread thread = new Thread( runnable, "tomcat-manager-watchdog" );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+            // the timeouts of the completed calls do not pile up until they expire
+            watchdog.setRemoveOnCancelPolicy( true );
+            return watchdog;
+        }
+    }
+
+    private interface Call
+        extends Callable<TomcatManagerResponse>
+    {
+        // shorter anonymous classes
+    }
+
+    /**
+     * Aborts the http request of its thread when cancelled.
+     */
+    private final class ManagerTask
+        extends FutureTask<TomcatManagerResponse>
+    {
+        private final Callback callback;
+
+        private final long timeout;
+
+        /**
+         * Guards {@link #runner}: the thread is only aborted while it runs this task, not the next one.
+         */
+        private final Object runnerLock = new Object();
+
+        private Thread runner;
+
+        private volatile ScheduledFuture<?> timeoutFuture;
+
+        private volatile boolean timedOut;
+
+        ManagerTask( Callable<TomcatManagerResponse> call, Callback callback, long timeout )
+        {
+            super( call );
+            this.callback = callback;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public void run()
+        {
+            synchronized ( runnerLock )
+            {
+                runner = Thread.currentThread();
+            }
+            try
+            {
+                scheduleTimeout();
+                super.run();
+            }
+            finally
+            {
+                synchronized ( runnerLock )
+                {
+                    runner = null;
+                }
+                // clear an interrupt of a cancel racing the end of the call before the thread is reused
+                Thread.interrupted();
+            }
+        }
+
+        /**
+         * Starts the timeout with the call, the time spent waiting for a thread not counted.
+         */
+        private void scheduleTimeout()
+        {
+            if ( timeout <= 0 || isDone() )
+            {
+                return;
+            }
+            try
+            {
+                timeoutFuture = watchdog.schedule( new Runnable()
+                {
+                    public void run()
+                    {
+                        timeOut();
+                    }
+                }, timeout, TimeUnit.MILLISECONDS );
+                if ( isDone() )
+                {
+                    // cancelled before its timeout was published to done()
+                    timeoutFuture.cancel( false );
+                }
+            }
+            catch ( RejectedExecutionException e )
+            {
+                // a watchdog given and shut down: the call runs without timeout
+            }
+        }
+
+        void timeOut()
+        {
+            if ( !isDone() )
+            {
+                timedOut = true;
+                cancel( true );
+            }
+        }
+
+        @Override
+        public boolean cancel( boolean mayInterruptIfRunning )
+        {
+            boolean cancelled = super.cancel( mayInterruptIfRunning );
+            if ( cancelled && mayInterruptIfRunning )
+            {
+                synchronized ( runnerLock )
+                {
+                    // null once the thread left this task, it may already run another call of the manager
+                    if ( runner != null )
+                    {
+                        manager.abort( runner );
+                    }
+                }
+            }
+            return cancelled;
+        }
+
+        @Override
+        public TomcatManagerResponse get()
+            throws InterruptedException, ExecutionException
+        {
+            try
+            {
+                return super.get();
+            }
+            catch ( CancellationException e )
+            {
+                if ( timedOut )
+                {
+                    throw new ExecutionException( timeoutException() );
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public TomcatManagerResponse get( long waitTimeout, TimeUnit unit )
+            throws InterruptedException, ExecutionException, TimeoutException
+        {
+            try
+            {
+                return super.get( waitTimeout, unit );
+            }
+            catch ( CancellationException e )
+            {
+                if ( timedOut )
+                {
+                    throw new ExecutionException( timeoutException() );
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        protected void done()
+        {
+            ScheduledFuture<?> scheduled = timeoutFuture;
+            if ( scheduled != null )
+            {
+                scheduled.cancel( false );
+            }
+            if ( callback == null )
+            {
+                return;
+            }
+            try
+            {
+                callback.completed( super.get() );
+            }
+            catch ( CancellationException e )
+            {
+                callback.failed( timedOut ? timeoutException() : e );
+            }
+            catch ( ExecutionException e )
+            {
+                callback.failed( e.getCause() instanceof Exception ? (Exception) e.getCause() : e );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                callback.failed( e );
+            }
+        }
+
+        private TimeoutException timeoutException()
+        {
+            return new TimeoutException( manager.getURL() + " did not answer in " + timeout + " ms" );
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package org.apache.tomcat.maven.common.deployer;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Uploads a large war to the receiver webapp (<code>tomcat-delta-receiver</code>) in chunks of
+ * {@link #setChunkSize(long)} bytes sent over several connections at the same time. Each chunk is sent with its
+ * sha256 and checked by the receiver, a chunk lost or corrupted on the way is sent again up to
+ * {@link #setRetries(int)} times. The upload is identified by the sha256 of the war: the chunks already received by
+ * an interrupted upload of the same war are not sent again. The receiver then assembles the war on the server, the
+ * manager can deploy it from the returned path.
+ *
+ * @since 3.0
+ */
+public class ChunkedWarUploader
+    extends AbstractReceiverUploader
+{
+    /**
+     * Default size of the chunks: 8 MB.
+     */
+    public static final long DEFAULT_CHUNK_SIZE = 8L * 1024 * 1024;
+
+    private final int concurrency;
+
+    private long chunkSize = DEFAULT_CHUNK_SIZE;
+
+    private int retries = 3;
+
+    /**
+     * Outcome of a chunked upload.
+     */
+    public static class Result
+    {
+        private String serverWarPath;
+
+        private int chunks;
+
+        private int resumedChunks;
+
+        private final AtomicInteger sentChunks = new AtomicInteger();
+
+        private final AtomicInteger retriedChunks = new AtomicInteger();
+
+        private final AtomicLong sentBytes = new AtomicLong();
+
+        /**
+         * @return the absolute path of the assembled war on the server
+         */
+        public String getServerWarPath()
+        {
+            return serverWarPath;
+        }
+
+        public int getChunks()
+        {
+            return chunks;
+        }
+
+        /**
+         * @return the number of chunks already on the receiver from a previous upload of the same war
+         */
+        public int getResumedChunks()
+        {
+            return resumedChunks;
+        }
+
+        public int getSentChunks()
+        {
+            return sentChunks.get();
+        }
+
+        /**
+         * @return the number of chunk sends that failed and were attempted again
+         */
+        public int getRetriedChunks()
+        {
+            return retriedChunks.get();
+        }
+
+        public long getSentBytes()
+        {
+            return sentBytes.get();
+        }
+    }
+
+    /**
+     * @param receiverUrl the url of the receiver webapp
+     * @param username    the username to authenticate with, <code>null</code> for none
+     * @param password    the password to authenticate with
+     * @param concurrency number of chunks sent at the same time
+     */
+    public ChunkedWarUploader( URL receiverUrl, String username, String password, int concurrency )
+    {
+        super( receiverUrl, username, password, createConnectionManager( concurrency ) );
+        this.concurrency = Math.max( 1, concurrency );
+    }
+
+    private static PoolingClientConnectionManager createConnectionManager( int concurrency )
+    {
+        PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager();
+        connectionManager.setMaxTotal( Math.max( 1, concurrency ) );
+        connectionManager.setDefaultMaxPerRoute( Math.max( 1, concurrency ) );
+        return connectionManager;
+    }
+
+    /**
+     * Uploads the chunks missing on the receiver then assembles the war.
+     *
+     * @param name the name of the webapp on the receiver, see {@link AbstractReceiverUploader#getName(String)}
+     * @param war  the war to upload
+     * @return the outcome of the upload
+     * @throws TomcatManagerException if a chunk is still rejected after the retries or the assembly fails
+     * @throws IOException            if an i/o error occurs
+     * @throws InterruptedException   if interrupted while waiting for the chunks
+     */
+    public Result upload( final String name, final File war )
+        throws TomcatManagerException, IOException, InterruptedException
+    {
+        final Result result = new Result();
+        List<String> chunkHashes = new ArrayList<String>();
+        final String upload = computeHashes( war, chunkSize, chunkHashes );
+        result.chunks = chunkHashes.size();
+
+        Map<Integer, String> received = new HashMap<Integer, String>();
+        for ( String line : execute( new HttpGet( url( "chunks", name, "upload", upload ) ) ).split( "\\r?\\n" ) )
+        {
+            int separator = line.indexOf( ' ' );
+            if ( separator > 0 )
+            {
+                received.put( Integer.valueOf( line.substring( 0, separator ) ), line.substring( separator + 1 ) );
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( concurrency );
+        try
+        {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for ( int i = 0; i < chunkHashes.size(); i++ )
+            {
+                final int index = i;
+                final String hash = chunkHashes.get( i );
+                if ( hash.equals( received.get( index ) ) )
+                {
+                    result.resumedChunks++;
+                    continue;
+                }
+                futures.add( executor.submit( new Callable<Void>()
+                {
+                    public Void call()
+                        throws Exception
+                    {
+                        sendChunk( name, war, upload, index, hash, result );
+                        return null;
+                    }
+                } ) );
+            }
+            for ( Future<Void> future : futures )
+            {
+                try
+                {
+                    future.get();
+                }
+                catch ( ExecutionException e )
+                {
+                    if ( e.getCause() instanceof TomcatManagerException )
+                    {
+                        throw (TomcatManagerException) e.getCause();
+                    }
+                    if ( e.getCause() instanceof IOException )
+                    {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new TomcatManagerException( e.getCause().getMessage(), e.getCause() );
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        String body = execute( new HttpPost(
+            url( "assemble", name, "upload", upload, "chunks", Integer.toString( result.chunks ) ) ) ).trim();
+        if ( !body.startsWith( "OK - " ) )
+        {
+            throw new TomcatManagerException( "unexpected receiver response: " + body );
+        }
+        result.serverWarPath = body.substring( "OK - ".length() ).trim();
+        return result;
+    }
+
+    private void sendChunk( String name, File war, String upload, int index, String hash, Result result )
+        throws TomcatManagerException, IOException
+    {
+        long offset = index * chunkSize;
+        long length = Math.min( chunkSize, war.length() - offset );
+        String url = url( "chunk", name, "upload", upload, "index", Integer.toString( index ), "sha256", hash );
+        for ( int attempt = 0; ; attempt++ )
+        {
+            FileInputStream in = new FileInputStream( war );
+            try
+            {
+                in.getChannel().position( offset );
+                HttpPut put = new HttpPut( url );
+                put.setEntity( new InputStreamEntity( new BoundedInputStream( in, length ), length,
+                                                      ContentType.APPLICATION_OCTET_STREAM ) );
+                execute( put );
+                result.sentChunks.incrementAndGet();
+                result.sentBytes.addAndGet( length );
+                return;
+            }
+            catch ( ReceiverStatusException e )
+            {
+                // only a chunk corrupted on the way, rejected by the receiver, is worth sending again: a wrong url
+                // or missing credentials fail the same way on every attempt
+                if ( e.getStatusCode() != HttpStatus.SC_CONFLICT || attempt >= retries )
+                {
+                    throw e;
+                }
+            }
+            catch ( IOException e )
+            {
+                if ( attempt >= retries )
+                {
+                    throw e;
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+            result.retriedChunks.incrementAndGet();
+        }
+    }
+
+    /**
+     * Computes the sha256 of each chunk and of the whole war in one pass.
+     *
+     * @return the sha256 of the war
+     */
+    static String computeHashes( File war, long chunkSize, List<String> chunkHashes )
+        throws IOException
+    {
+        MessageDigest whole = newDigest();
+        MessageDigest chunk = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        long inChunk = 0;
+        try (InputStream in = new FileInputStream( war ))
+        {
+            int read;
+            while ( ( read = in.read( buffer, 0, (int) Math.min( buffer.length, chunkSize - inChunk ) ) ) >= 0 )
+            {
+                whole.update( buffer, 0, read );
+                chunk.update( buffer, 0, read );
+                inChunk += read;
+                if ( inChunk == chunkSize )
+                {
+                    chunkHashes.add( Hex.encodeHexString( chunk.digest() ) );
+                    inChunk = 0;
+                }
+            }
+        }
+        if ( inChunk > 0 || chunkHashes.isEmpty() )
+        {
+            chunkHashes.add( Hex.encodeHexString( chunk.digest() ) );
+        }
+        return Hex.encodeHexString( whole.digest() );
+    }
+
+    private static MessageDigest newDigest()
+        throws IOException
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-256" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IOException( e.getMessage(), e );
+        }
+    }
+
+    public long getChunkSize()
+    {
+        return chunkSize;
+    }
+
+    /**
+     * @param chunkSize size of the chunks in bytes
+     */
+    public ChunkedWarUploader setChunkSize( long chunkSize )
+    {
+        if ( chunkSize <= 0 )
+        {
+            throw new IllegalArgumentException( "chunk size must be positive: " + chunkSize );
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public int getRetries()
+    {
+        return retries;
+    }
+
+    /**
+     * @param retries number of times a chunk is sent again after an i/o error or a hash mismatch, any other error
+     *                status fails the upload at once
+     */
+    public ChunkedWarUploader setRetries( int retries )
+    {
+        this.retries = retries;
+        return this;
+    }
+}
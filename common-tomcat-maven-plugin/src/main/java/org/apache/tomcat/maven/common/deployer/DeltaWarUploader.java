@@ -0,0 +1,233 @@
+package org.apache.tomcat.maven.common.deployer;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.conn.BasicClientConnectionManager;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Uploads a war to the delta receiver webapp (<code>tomcat-delta-receiver</code>) installed on the target Tomcat:
+ * the manifest of the war entry hashes is sent first, then only the entries the receiver does not have. The
+ * receiver rebuilds the war on the server, the manager can then deploy it from the returned path.
+ *
+ * @since 3.0
+ */
+public class DeltaWarUploader
+    extends AbstractReceiverUploader
+{
+    /**
+     * First entry of the delta zip, must match the receiver.
+     */
+    public static final String MANIFEST_ENTRY = "META-INF/tomcat-delta.manifest";
+
+    /**
+     * Hash of the directory entries, must match the receiver.
+     */
+    public static final String DIRECTORY_HASH = "-";
+
+    /**
+     * Outcome of a delta upload.
+     */
+    public static class Result
+    {
+        private String serverWarPath;
+
+        private int entries;
+
+        private int sentEntries;
+
+        private long sentBytes;
+
+        /**
+         * @return the absolute path of the rebuilt war on the server
+         */
+        public String getServerWarPath()
+        {
+            return serverWarPath;
+        }
+
+        public int getEntries()
+        {
+            return entries;
+        }
+
+        public int getSentEntries()
+        {
+            return sentEntries;
+        }
+
+        /**
+         * @return the size of the delta uploaded, manifest included
+         */
+        public long getSentBytes()
+        {
+            return sentBytes;
+        }
+    }
+
+    /**
+     * @param receiverUrl the url of the receiver webapp
+     * @param username    the username to authenticate with, <code>null</code> for none
+     * @param password    the password to authenticate with
+     */
+    public DeltaWarUploader( URL receiverUrl, String username, String password )
+    {
+        super( receiverUrl, username, password, new BasicClientConnectionManager() );
+    }
+
+    /**
+     * Uploads the war entries missing on the server.
+     *
+     * @param name the name of the webapp on the receiver, see {@link AbstractReceiverUploader#getName(String)}
+     * @param war  the war to upload
+     * @return the outcome of the upload
+     * @throws TomcatManagerException if the receiver rejects the manifest or the delta
+     * @throws IOException            if an i/o error occurs
+     */
+    public Result upload( String name, File war )
+        throws TomcatManagerException, IOException
+    {
+        Result result = new Result();
+        try (ZipFile zip = new ZipFile( war ))
+        {
+            Map<String, String> manifest = computeManifest( zip );
+            result.entries = manifest.size();
+            String manifestText = toText( manifest );
+
+            HttpPost post = new HttpPost( url( "manifest", name ) );
+            post.setEntity( new StringEntity( manifestText, ContentType.create( "text/plain", "UTF-8" ) ) );
+            Set<String> needed = new HashSet<String>();
+            for ( String line : execute( post ).split( "\\r?\\n" ) )
+            {
+                if ( line.length() > 0 )
+                {
+                    needed.add( line );
+                }
+            }
+
+            File delta = File.createTempFile( name, ".delta" );
+            try
+            {
+                result.sentEntries = writeDelta( zip, manifestText, needed, delta );
+                result.sentBytes = delta.length();
+
+                HttpPut put = new HttpPut( url( "delta", name ) );
+                put.setEntity( new FileEntity( delta, ContentType.create( "application/zip" ) ) );
+                String body = execute( put ).trim();
+                if ( !body.startsWith( "OK - " ) )
+                {
+                    throw new TomcatManagerException( "unexpected delta receiver response: " + body );
+                }
+                result.serverWarPath = body.substring( "OK - ".length() ).trim();
+            }
+            finally
+            {
+                FileUtils.deleteQuietly( delta );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the sha256 of each entry, in the war order
+     */
+    static Map<String, String> computeManifest( ZipFile zip )
+        throws IOException
+    {
+        Map<String, String> manifest = new LinkedHashMap<String, String>();
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while ( entries.hasMoreElements() )
+        {
+            ZipEntry entry = entries.nextElement();
+            if ( entry.isDirectory() )
+            {
+                manifest.put( entry.getName(), DIRECTORY_HASH );
+                continue;
+            }
+            try (InputStream in = zip.getInputStream( entry ))
+            {
+                manifest.put( entry.getName(), DigestUtils.sha256Hex( in ) );
+            }
+        }
+        return manifest;
+    }
+
+    private static String toText( Map<String, String> manifest )
+    {
+        StringBuilder text = new StringBuilder();
+        for ( Map.Entry<String, String> entry : manifest.entrySet() )
+        {
+            text.append( entry.getValue() ).append( ' ' ).append( entry.getKey() ).append( '\n' );
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return the number of war entries written
+     */
+    private static int writeDelta( ZipFile zip, String manifestText, Set<String> needed, File delta )
+        throws IOException
+    {
+        int written = 0;
+        try (ZipOutputStream out = new ZipOutputStream( new FileOutputStream( delta ) ))
+        {
+            out.putNextEntry( new ZipEntry( MANIFEST_ENTRY ) );
+            out.write( manifestText.getBytes( "UTF-8" ) );
+            out.closeEntry();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while ( entries.hasMoreElements() )
+            {
+                ZipEntry entry = entries.nextElement();
+                if ( entry.isDirectory() || !needed.contains( entry.getName() ) )
+                {
+                    continue;
+                }
+                out.putNextEntry( new ZipEntry( entry.getName() ) );
+                try (InputStream in = zip.getInputStream( entry ))
+                {
+                    IOUtils.copy( in, out );
+                }
+                out.closeEntry();
+                written++;
+            }
+        }
+        return written;
+    }
+}
@@ -0,0 +1,226 @@
+package org.apache.tomcat.maven.common.deployer;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers the sha256 of the last war deployed to each webapp of each manager, in a properties file shared by the
+ * builds of the machine, so an identical war is not deployed again. The sha256 is also encoded in the deploy tag,
+ * see {@link #toTag(String, String)}, which lets the manager redeploy the exact war later.
+ * <p>
+ * The history only knows the deployments made from this machine: a war deployed since by another machine or by
+ * hand is not seen, so a skip based on the history can leave that other war running. It fits the webapps only
+ * deployed from one machine, a build server for instance.
+ * <p>
+ * A record locks a file named after the history with a <code>.lock</code> suffix, kept once created, so the builds
+ * of the machine running at the same time do not lose each other's records.
+ *
+ * @since 3.0
+ */
+public class DeployHistory
+{
+    /**
+     * Prefix of the sha256 in the deploy tags.
+     */
+    public static final String TAG_PREFIX = "sha256-";
+
+    /**
+     * Monitors of the lock files: a JVM cannot hold two locks on the same file, its threads wait on the monitor.
+     */
+    private static final ConcurrentMap<File, Object> MONITORS = new ConcurrentHashMap<File, Object>();
+
+    private final File file;
+
+    private final File lockFile;
+
+    private final Object monitor;
+
+    /**
+     * @param file the history file, created on the first record
+     */
+    public DeployHistory( File file )
+    {
+        this.file = file;
+        this.lockFile = new File( file.getAbsoluteFile().getParentFile(), file.getName() + ".lock" );
+        Object monitor = new Object();
+        Object previous = MONITORS.putIfAbsent( lockFile, monitor );
+        this.monitor = previous == null ? monitor : previous;
+    }
+
+    /**
+     * Gets the sha256 of the war last deployed to a webapp.
+     *
+     * @param managerUrl the manager url
+     * @param path       the webapp context path
+     * @return the sha256, <code>null</code> if no deployment was recorded
+     * @throws IOException if the history cannot be read
+     */
+    public String getHash( URL managerUrl, String path )
+        throws IOException
+    {
+        String value = getEntry( managerUrl, path );
+        return value == null ? null : value.split( " " )[0];
+    }
+
+    /**
+     * Gets the record of the war last deployed to a webapp, to tell which deployment a decision is based on.
+     *
+     * @param managerUrl the manager url
+     * @param path       the webapp context path
+     * @return <code>sha256 time [tag]</code>, the time in milliseconds, <code>null</code> if no deployment was
+     *         recorded
+     * @throws IOException if the history cannot be read
+     */
+    public String getEntry( URL managerUrl, String path )
+        throws IOException
+    {
+        // the history is replaced by a rename, a read without the lock sees the whole of one version
+        return load().getProperty( key( managerUrl, path ) );
+    }
+
+    /**
+     * Records the deployment of a war.
+     *
+     * @param managerUrl the manager url
+     * @param path       the webapp context path
+     * @param hash       the sha256 of the war
+     * @param tag        the deploy tag, may be <code>null</code>
+     * @throws IOException if the history cannot be written
+     */
+    public void record( URL managerUrl, String path, String hash, String tag )
+        throws IOException
+    {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if ( !parent.isDirectory() && !parent.mkdirs() )
+        {
+            throw new IOException( "cannot create " + parent );
+        }
+        synchronized ( monitor )
+        {
+            try (FileChannel channel = FileChannel.open( lockFile.toPath(), StandardOpenOption.CREATE,
+                                                         StandardOpenOption.WRITE ); FileLock lock = channel.lock())
+            {
+                Properties history = load();
+                history.setProperty( key( managerUrl, path ),
+                                     hash + " " + System.currentTimeMillis() + ( tag == null ? "" : " " + tag ) );
+                store( history, parent );
+            }
+        }
+    }
+
+    /**
+     * Writes then renames so a concurrent build never reads a partial or missing history.
+     */
+    private void store( Properties history, File parent )
+        throws IOException
+    {
+        File written = File.createTempFile( file.getName(), ".tmp", parent );
+        try
+        {
+            try (OutputStream out = new FileOutputStream( written ))
+            {
+                history.store( out, "Tomcat Maven Plugin deployments: sha256 time [tag]" );
+            }
+            try
+            {
+                Files.move( written.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE );
+            }
+            catch ( AtomicMoveNotSupportedException e )
+            {
+                Files.move( written.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            }
+        }
+        finally
+        {
+            if ( written.exists() && !written.delete() )
+            {
+                written.deleteOnExit();
+            }
+        }
+    }
+
+    private Properties load()
+        throws IOException
+    {
+        Properties history = new Properties();
+        if ( file.exists() )
+        {
+            try (InputStream in = new FileInputStream( file ))
+            {
+                history.load( in );
+            }
+        }
+        return history;
+    }
+
+    private static String key( URL managerUrl, String path )
+    {
+        String base = managerUrl.toString();
+        return ( base.endsWith( "/" ) ? base.substring( 0, base.length() - 1 ) : base ) + "|" + (
+            path.startsWith( "/" ) ? path : "/" + path );
+    }
+
+    /**
+     * @param war the war
+     * @return the sha256 of the war
+     * @throws IOException if the war cannot be read
+     */
+    public static String hash( File war )
+        throws IOException
+    {
+        try (InputStream in = new FileInputStream( war ))
+        {
+            return DigestUtils.sha256Hex( in );
+        }
+    }
+
+    /**
+     * Encodes the sha256 of a war in a deploy tag. The manager keeps a copy of the war of every tag deployed and never
+     * removes them: each distinct war adds one to its work directory (<code>work/Catalina/host/manager</code>), to be
+     * cleaned up out of the plugin.
+     *
+     * @param tag  the tag configured, may be <code>null</code>
+     * @param hash the sha256 of the war
+     * @return <code>sha256-hash</code>, after the configured tag and a dash if any
+     */
+    public static String toTag( String tag, String hash )
+    {
+        return ( tag == null || tag.length() == 0 ? "" : tag + "-" ) + TAG_PREFIX + hash;
+    }
+}
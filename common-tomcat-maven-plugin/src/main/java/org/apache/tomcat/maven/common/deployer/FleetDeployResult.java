@@ -0,0 +1,197 @@
+package org.apache.tomcat.maven.common.deployer;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.net.URL;
+
+/**
+ * Outcome of a deployment to one node of a {@link FleetDeployer}.
+ *
+ * @since 3.0
+ */
+public class FleetDeployResult
+{
+    private final URL url;
+
+    private String path;
+
+    private TomcatManagerResponse response;
+
+    private Exception failure;
+
+    private boolean timedOut;
+
+    private long elapsedMillis;
+
+    private long bytes;
+
+    private long healthLatencyMillis = -1;
+
+    private boolean rolledBack;
+
+    public FleetDeployResult( URL url )
+    {
+        this.url = url;
+    }
+
+    /**
+     * @return <code>true</code> if the manager answered with a success status and no <code>FAIL</code> message
+     */
+    public boolean isSuccess()
+    {
+        return failure == null && response != null && response.getStatusCode() < 400 && !timedOut && (
+            response.getHttpResponseBody() == null || !response.getHttpResponseBody().startsWith( "FAIL" ) );
+    }
+
+    /**
+     * @return upload throughput in KB/sec, 0 if not available
+     */
+    public double getThroughput()
+    {
+        return elapsedMillis <= 0 ? 0 : ( bytes / 1024.0 ) / ( elapsedMillis / 1000.0 );
+    }
+
+    /**
+     * @return a short description of the outcome: the first line of the manager response or the failure
+     */
+    public String getMessage()
+    {
+        if ( timedOut )
+        {
+            return "timed out";
+        }
+        if ( failure != null )
+        {
+            return failure.getMessage() == null ? failure.getClass().getName() : failure.getMessage();
+        }
+        if ( response == null )
+        {
+            return "";
+        }
+        String body = response.getHttpResponseBody();
+        if ( body == null || body.trim().length() == 0 )
+        {
+            return response.getStatusCode() + " " + response.getReasonPhrase();
+        }
+        int eol = body.indexOf( '\n' );
+        return ( eol < 0 ? body : body.substring( 0, eol ) ).trim();
+    }
+
+    public URL getUrl()
+    {
+        return url;
+    }
+
+    /**
+     * @return the webapp context path deployed
+     */
+    public String getPath()
+    {
+        return path;
+    }
+
+    public FleetDeployResult setPath( String path )
+    {
+        this.path = path;
+        return this;
+    }
+
+    public TomcatManagerResponse getResponse()
+    {
+        return response;
+    }
+
+    public FleetDeployResult setResponse( TomcatManagerResponse response )
+    {
+        this.response = response;
+        return this;
+    }
+
+    public Exception getFailure()
+    {
+        return failure;
+    }
+
+    public FleetDeployResult setFailure( Exception failure )
+    {
+        this.failure = failure;
+        return this;
+    }
+
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+
+    public FleetDeployResult setTimedOut( boolean timedOut )
+    {
+        this.timedOut = timedOut;
+        return this;
+    }
+
+    public long getElapsedMillis()
+    {
+        return elapsedMillis;
+    }
+
+    public FleetDeployResult setElapsedMillis( long elapsedMillis )
+    {
+        this.elapsedMillis = elapsedMillis;
+        return this;
+    }
+
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    public FleetDeployResult setBytes( long bytes )
+    {
+        this.bytes = bytes;
+        return this;
+    }
+
+    /**
+     * @return the slowest health check of a rolling deployment in milliseconds, -1 if not checked
+     */
+    public long getHealthLatencyMillis()
+    {
+        return healthLatencyMillis;
+    }
+
+    public FleetDeployResult setHealthLatencyMillis( long healthLatencyMillis )
+    {
+        this.healthLatencyMillis = healthLatencyMillis;
+        return this;
+    }
+
+    /**
+     * @return <code>true</code> if a rolling deployment failure reverted this node
+     */
+    public boolean isRolledBack()
+    {
+        return rolledBack;
+    }
+
+    public FleetDeployResult setRolledBack( boolean rolledBack )
+    {
+        this.rolledBack = rolledBack;
+        return this;
+    }
+}
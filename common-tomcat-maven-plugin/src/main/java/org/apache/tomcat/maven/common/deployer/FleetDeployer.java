@@ -0,0 +1,290 @@
+package org.apache.tomcat.maven.common.deployer;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deploys the same war to several Tomcat managers, uploading to at most {@link #setConcurrency(int)} nodes at a
+ * time. A node whose deployment takes longer than {@link #setTimeout(long)} is aborted and reported as timed out,
+ * the other nodes are not affected. Different wars, for instance the war modules of a reactor, are deployed the same
+ * way as a list of {@link Deployment}s.
+ *
+ * @since 3.0
+ */
+public class FleetDeployer
+{
+    private final List<TomcatManager> managers;
+
+    private int concurrency = 4;
+
+    private long timeout = TimeUnit.MINUTES.toMillis( 5 );
+
+    /**
+     * @param managers one manager per node
+     */
+    public FleetDeployer( List<TomcatManager> managers )
+    {
+        this.managers = managers;
+    }
+
+    /**
+     * Creates a deployer of {@link Deployment}s only, for instance of several wars to one or more managers.
+     */
+    public FleetDeployer()
+    {
+        this( Collections.<TomcatManager>emptyList() );
+    }
+
+    /**
+     * Deploys the war to all the nodes and waits for all of them.
+     *
+     * @param path   the webapp context path to deploy to
+     * @param war    the war to upload
+     * @param update whether to first undeploy the webapp if it already exists
+     * @param tag    the tag name to use
+     * @return one result per manager, in the order of the managers
+     * @throws InterruptedException if interrupted while waiting for the nodes
+     */
+    public List<FleetDeployResult> deploy( String path, File war, boolean update, String tag )
+        throws InterruptedException
+    {
+        List<Deployment> deployments = new ArrayList<Deployment>( managers.size() );
+        for ( TomcatManager manager : managers )
+        {
+            deployments.add( new Deployment( manager, path, war, update, tag ) );
+        }
+        return deploy( deployments );
+    }
+
+    /**
+     * Runs the deployments, at most {@link #getConcurrency()} at a time, and waits for all of them. Deployments to
+     * the same manager may run at the same time: a timeout aborts only the request of its own deployment.
+     *
+     * @param deployments the wars to deploy with their manager
+     * @return one result per deployment, in the order of the deployments
+     * @throws InterruptedException if interrupted while waiting for the deployments
+     */
+    public List<FleetDeployResult> deploy( List<Deployment> deployments )
+        throws InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( Math.max( 1, Math.min( concurrency,
+                                                                                          deployments.size() ) ) );
+        final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+        try
+        {
+            List<Future<FleetDeployResult>> futures = new ArrayList<Future<FleetDeployResult>>( deployments.size() );
+            for ( final Deployment deployment : deployments )
+            {
+                futures.add( executor.submit( new Callable<FleetDeployResult>()
+                {
+                    @Override
+                    public FleetDeployResult call()
+                    {
+                        return deploy( deployment, watchdog );
+                    }
+                } ) );
+            }
+            List<FleetDeployResult> results = new ArrayList<FleetDeployResult>( futures.size() );
+            for ( int i = 0; i < futures.size(); i++ )
+            {
+                try
+                {
+                    results.add( futures.get( i ).get() );
+                }
+                catch ( ExecutionException e )
+                {
+                    Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    Deployment deployment = deployments.get( i );
+                    results.add( new FleetDeployResult( deployment.manager.getURL() ).setPath(
+                        deployment.path ).setFailure( cause ) );
+                }
+            }
+            return results;
+        }
+        finally
+        {
+            executor.shutdownNow();
+            watchdog.shutdownNow();
+        }
+    }
+
+    private FleetDeployResult deploy( Deployment deployment, ScheduledExecutorService watchdog )
+    {
+        final TomcatManager manager = deployment.manager;
+        final Thread worker = Thread.currentThread();
+        File war = deployment.war;
+        FleetDeployResult result = new FleetDeployResult( manager.getURL() ).setPath( deployment.path );
+        final boolean[] timedOut = new boolean[1];
+        ScheduledFuture<?> abort = watchdog.schedule( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                synchronized ( timedOut )
+                {
+                    timedOut[0] = true;
+                }
+                manager.abort( worker );
+            }
+        }, timeout, TimeUnit.MILLISECONDS );
+        long start = System.nanoTime();
+        try
+        {
+            result.setResponse(
+                manager.deploy( deployment.path, war, deployment.update, deployment.tag, war.length() ) );
+            result.setBytes( war.length() );
+        }
+        catch ( Exception e )
+        {
+            result.setFailure( e );
+        }
+        finally
+        {
+            abort.cancel( false );
+            result.setElapsedMillis( TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) );
+        }
+        synchronized ( timedOut )
+        {
+            result.setTimedOut( timedOut[0] );
+        }
+        return result;
+    }
+
+    /**
+     * Computes the number of nodes that must succeed.
+     *
+     * @param quorum either a percentage of the nodes (<code>75%</code>) or a number of nodes (<code>3</code>)
+     * @param nodes  the number of nodes
+     * @return the number of successful nodes required, rounded up
+     * @throws IllegalArgumentException if the quorum is not valid
+     */
+    public static int getRequiredSuccesses( String quorum, int nodes )
+    {
+        String value = quorum == null ? "100%" : quorum.trim();
+        try
+        {
+            if ( value.endsWith( "%" ) )
+            {
+                double percent = Double.parseDouble( value.substring( 0, value.length() - 1 ).trim() );
+                if ( percent < 0 || percent > 100 )
+                {
+                    throw new IllegalArgumentException( "quorum must be between 0% and 100%: " + quorum );
+                }
+                return (int) Math.ceil( nodes * percent / 100 );
+            }
+            int count = Integer.parseInt( value );
+            if ( count < 0 )
+            {
+                throw new IllegalArgumentException( "quorum must not be negative: " + quorum );
+            }
+            return Math.min( count, nodes );
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new IllegalArgumentException( "quorum must be a percentage or a number of nodes: " + quorum );
+        }
+    }
+
+    public int getConcurrency()
+    {
+        return concurrency;
+    }
+
+    /**
+     * @param concurrency maximum number of nodes deployed at the same time
+     */
+    public FleetDeployer setConcurrency( int concurrency )
+    {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    public long getTimeout()
+    {
+        return timeout;
+    }
+
+    /**
+     * @param timeout maximum time in milliseconds for the deployment of one node, from the start of its upload
+     */
+    public FleetDeployer setTimeout( long timeout )
+    {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * A war to deploy with a manager.
+     */
+    public static class Deployment
+    {
+        private final TomcatManager manager;
+
+        private final String path;
+
+        private final File war;
+
+        private final boolean update;
+
+        private final String tag;
+
+        /**
+         * @param manager the manager to deploy with
+         * @param path    the webapp context path to deploy to
+         * @param war     the war to upload
+         * @param update  whether to first undeploy the webapp if it already exists
+         * @param tag     the tag name to use
+         */
+        public Deployment( TomcatManager manager, String path, File war, boolean update, String tag )
+        {
+            this.manager = manager;
+            this.path = path;
+            this.war = war;
+            this.update = update;
+            this.tag = tag;
+        }
+
+        public TomcatManager getManager()
+        {
+            return manager;
+        }
+
+        public String getPath()
+        {
+            return path;
+        }
+
+        public File getWar()
+        {
+            return war;
+        }
+    }
+}
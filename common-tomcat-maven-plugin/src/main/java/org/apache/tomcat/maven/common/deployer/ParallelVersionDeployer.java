@@ -0,0 +1,468 @@
+package org.apache.tomcat.maven.common.deployer;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Redeploys a webapp without downtime using the Tomcat parallel deployment: the new war is deployed as
+ * <code>path##version</code> next to the running versions, new sessions go to it once it runs while the existing
+ * sessions stay on the old versions. The old versions beyond {@link #setRetention(int)} are then undeployed once
+ * their sessions are gone or after {@link #setDrainTimeout(long)}, all of them at the same time.
+ * <p>
+ * Tomcat routes new sessions to the greatest version in {@link String#compareTo(String)} order, so versions must
+ * sort accordingly (a timestamp for instance).
+ * </p>
+ *
+ * @since 3.0
+ */
+public class ParallelVersionDeployer
+{
+    public static final String VERSION_SEPARATOR = "##";
+
+    private static final Pattern SESSIONS = Pattern.compile( ":\\s*(\\d+) sessions\\s*$" );
+
+    private final TomcatManager manager;
+
+    private long readyTimeout = TimeUnit.MINUTES.toMillis( 2 );
+
+    private long drainTimeout = TimeUnit.MINUTES.toMillis( 10 );
+
+    private long pollInterval = 1000;
+
+    private int retention;
+
+    /**
+     * A deployed version of a webapp, the empty version being the webapp deployed without version.
+     */
+    public static class WebappVersion
+    {
+        private final String version;
+
+        private final boolean running;
+
+        private final int sessions;
+
+        public WebappVersion( String version, boolean running, int sessions )
+        {
+            this.version = version;
+            this.running = running;
+            this.sessions = sessions;
+        }
+
+        public String getVersion()
+        {
+            return version;
+        }
+
+        public boolean isRunning()
+        {
+            return running;
+        }
+
+        public int getSessions()
+        {
+            return sessions;
+        }
+    }
+
+    /**
+     * Outcome of a parallel version deployment.
+     */
+    public static class Result
+    {
+        private TomcatManagerResponse deployResponse;
+
+        private final List<String> drained = Collections.synchronizedList( new ArrayList<String>() );
+
+        private final List<String> expired = Collections.synchronizedList( new ArrayList<String>() );
+
+        private final List<String> failed = Collections.synchronizedList( new ArrayList<String>() );
+
+        private final List<String> kept = new ArrayList<String>();
+
+        public TomcatManagerResponse getDeployResponse()
+        {
+            return deployResponse;
+        }
+
+        /**
+         * @return the old versions undeployed once their sessions were gone
+         */
+        public List<String> getDrained()
+        {
+            return drained;
+        }
+
+        /**
+         * @return the old versions undeployed with sessions left when the drain timeout expired
+         */
+        public List<String> getExpired()
+        {
+            return expired;
+        }
+
+        /**
+         * @return the old versions which could not be undeployed
+         */
+        public List<String> getFailed()
+        {
+            return failed;
+        }
+
+        /**
+         * @return the old versions left deployed because of the retention
+         */
+        public List<String> getKept()
+        {
+            return kept;
+        }
+    }
+
+    public ParallelVersionDeployer( TomcatManager manager )
+    {
+        this.manager = manager;
+    }
+
+    /**
+     * Deploys the war as a new version, waits for it to run then drains and undeploys the old versions beyond
+     * the retention.
+     *
+     * @param path    the webapp context path
+     * @param version the version of the war, must not be deployed yet
+     * @param war     the war to upload
+     * @param tag     the tag name to use
+     * @return the outcome, the old versions are left untouched if the manager rejected the war
+     * @throws TomcatManagerException if the version is already deployed or does not run in time
+     * @throws IOException            if an i/o error occurs
+     * @throws InterruptedException   if interrupted while waiting
+     */
+    public Result deploy( String path, String version, File war, String tag )
+        throws TomcatManagerException, IOException, InterruptedException
+    {
+        List<String> oldVersions = new ArrayList<String>();
+        for ( WebappVersion webappVersion : listVersions( path ) )
+        {
+            if ( webappVersion.getVersion().equals( version ) )
+            {
+                throw new TomcatManagerException( "version " + version + " of " + path + " is already deployed" );
+            }
+            oldVersions.add( webappVersion.getVersion() );
+        }
+
+        Result result = new Result();
+        result.deployResponse = manager.deploy( versionedPath( path, version ), war, false, tag, war.length() );
+        if ( !isSuccess( result.deployResponse ) )
+        {
+            return result;
+        }
+
+        awaitRunning( path, version );
+
+        // most recent first
+        Collections.sort( oldVersions, Collections.reverseOrder() );
+        List<String> undeployed = new ArrayList<String>();
+        for ( String oldVersion : oldVersions )
+        {
+            if ( result.kept.size() < retention )
+            {
+                result.kept.add( oldVersion );
+            }
+            else
+            {
+                undeployed.add( oldVersion );
+            }
+        }
+        drainAndUndeploy( path, undeployed, result );
+        return result;
+    }
+
+    private void awaitRunning( String path, String version )
+        throws TomcatManagerException, IOException, InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + readyTimeout;
+        while ( true )
+        {
+            for ( WebappVersion webappVersion : listVersions( path ) )
+            {
+                if ( webappVersion.getVersion().equals( version ) && webappVersion.isRunning() )
+                {
+                    return;
+                }
+            }
+            if ( System.currentTimeMillis() >= deadline )
+            {
+                throw new TomcatManagerException(
+                    "version " + version + " of " + path + " not running after " + readyTimeout + " ms" );
+            }
+            Thread.sleep( pollInterval );
+        }
+    }
+
+    private void drainAndUndeploy( final String path, List<String> versions, final Result result )
+        throws InterruptedException
+    {
+        if ( versions.isEmpty() )
+        {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool( versions.size() );
+        try
+        {
+            final long deadline = System.currentTimeMillis() + drainTimeout;
+            List<Future<?>> futures = new ArrayList<Future<?>>( versions.size() );
+            for ( final String version : versions )
+            {
+                futures.add( executor.submit( new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                        throws Exception
+                    {
+                        drainAndUndeploy( path, version, deadline, result );
+                        return null;
+                    }
+                } ) );
+            }
+            for ( int i = 0; i < futures.size(); i++ )
+            {
+                try
+                {
+                    futures.get( i ).get();
+                }
+                catch ( ExecutionException e )
+                {
+                    result.failed.add( versions.get( i ) );
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private void drainAndUndeploy( String path, String version, long deadline, Result result )
+        throws TomcatManagerException, IOException, InterruptedException
+    {
+        String versionedPath = versionedPath( path, version );
+        int sessions;
+        while ( ( sessions = getActiveSessions( versionedPath ) ) > 0 && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( pollInterval );
+        }
+        TomcatManagerResponse response = manager.undeploy( versionedPath );
+        if ( !isSuccess( response ) )
+        {
+            result.failed.add( version );
+        }
+        else if ( sessions > 0 )
+        {
+            result.expired.add( version );
+        }
+        else
+        {
+            result.drained.add( version );
+        }
+    }
+
+    /**
+     * Lists the deployed versions of a webapp, from the docBase column of the manager list.
+     *
+     * @param path the webapp context path
+     * @return the deployed versions
+     * @throws TomcatManagerException if the Tomcat manager request fails
+     * @throws IOException            if an i/o error occurs
+     */
+    public List<WebappVersion> listVersions( String path )
+        throws TomcatManagerException, IOException
+    {
+        final List<WebappVersion> versions = new ArrayList<WebappVersion>();
+        final String prefix = ( path.startsWith( "/" ) ? path : "/" + path ) + ":";
+        TomcatManagerResponse response = manager.list( new TomcatManagerLineHandler()
+        {
+            public void handleLine( String line )
+                throws TomcatManagerException
+            {
+                checkStatusLine( "cannot list webapps: ", line );
+                // one line per webapp: path:state:sessions:docBase
+                if ( !line.startsWith( prefix ) )
+                {
+                    return;
+                }
+                String[] columns = line.substring( prefix.length() ).split( ":", 3 );
+                if ( columns.length < 3 )
+                {
+                    return;
+                }
+                int sessions;
+                try
+                {
+                    sessions = Integer.parseInt( columns[1].trim() );
+                }
+                catch ( NumberFormatException e )
+                {
+                    sessions = 0;
+                }
+                versions.add( new WebappVersion( version( columns[2] ), "running".equals( columns[0] ), sessions ) );
+            }
+        } );
+        if ( !isSuccess( response ) )
+        {
+            throw new TomcatManagerException( "cannot list webapps: " + response.getStatusCode() + " "
+                                                  + response.getReasonPhrase() + " " + response.getHttpResponseBody() );
+        }
+        return versions;
+    }
+
+    /**
+     * Counts the active sessions of a webapp version with {@link TomcatManager#getSessions(String)}.
+     *
+     * @param versionedPath the context path followed by <code>##version</code>
+     * @return the number of active sessions
+     * @throws TomcatManagerException if the Tomcat manager request fails
+     * @throws IOException            if an i/o error occurs
+     */
+    public int getActiveSessions( final String versionedPath )
+        throws TomcatManagerException, IOException
+    {
+        final int[] sessions = new int[1];
+        TomcatManagerResponse response = manager.getSessions( versionedPath, new TomcatManagerLineHandler()
+        {
+            public void handleLine( String line )
+                throws TomcatManagerException
+            {
+                checkStatusLine( "cannot get the sessions of " + versionedPath + ": ", line );
+                // one line per inactivity range: "<1 minutes: 3 sessions"
+                Matcher matcher = SESSIONS.matcher( line );
+                if ( matcher.find() && !line.contains( "expired" ) )
+                {
+                    sessions[0] += Integer.parseInt( matcher.group( 1 ) );
+                }
+            }
+        } );
+        if ( !isSuccess( response ) )
+        {
+            throw new TomcatManagerException( "cannot get the sessions of " + versionedPath + ": "
+                                                  + response.getHttpResponseBody() );
+        }
+        return sessions[0];
+    }
+
+    private static void checkStatusLine( String message, String line )
+        throws TomcatManagerException
+    {
+        if ( line.startsWith( "FAIL" ) )
+        {
+            throw new TomcatManagerException( message + line );
+        }
+    }
+
+    /**
+     * The version is the part of the docBase name after <code>##</code>, the docBase being relative to the
+     * appBase or absolute, a directory or a war.
+     */
+    static String version( String docBase )
+    {
+        String name = docBase.trim().replace( '\\', '/' );
+        name = name.substring( name.lastIndexOf( '/' ) + 1 );
+        if ( name.endsWith( ".war" ) )
+        {
+            name = name.substring( 0, name.length() - 4 );
+        }
+        int separator = name.indexOf( VERSION_SEPARATOR );
+        return separator < 0 ? "" : name.substring( separator + VERSION_SEPARATOR.length() );
+    }
+
+    public static String versionedPath( String path, String version )
+    {
+        return version == null || version.length() == 0 ? path : path + VERSION_SEPARATOR + version;
+    }
+
+    private static boolean isSuccess( TomcatManagerResponse response )
+    {
+        return response.getStatusCode() < 400 && ( response.getHttpResponseBody() == null
+            || !response.getHttpResponseBody().startsWith( "FAIL" ) );
+    }
+
+    public long getReadyTimeout()
+    {
+        return readyTimeout;
+    }
+
+    /**
+     * @param readyTimeout maximum time in milliseconds for the new version to run
+     */
+    public ParallelVersionDeployer setReadyTimeout( long readyTimeout )
+    {
+        this.readyTimeout = readyTimeout;
+        return this;
+    }
+
+    public long getDrainTimeout()
+    {
+        return drainTimeout;
+    }
+
+    /**
+     * @param drainTimeout maximum time in milliseconds to wait for the sessions of the old versions to end
+     */
+    public ParallelVersionDeployer setDrainTimeout( long drainTimeout )
+    {
+        this.drainTimeout = drainTimeout;
+        return this;
+    }
+
+    public long getPollInterval()
+    {
+        return pollInterval;
+    }
+
+    public ParallelVersionDeployer setPollInterval( long pollInterval )
+    {
+        this.pollInterval = pollInterval;
+        return this;
+    }
+
+    public int getRetention()
+    {
+        return retention;
+    }
+
+    /**
+     * @param retention number of old versions left deployed, the most recent ones
+     */
+    public ParallelVersionDeployer setRetention( int retention )
+    {
+        this.retention = retention;
+        return this;
+    }
+}
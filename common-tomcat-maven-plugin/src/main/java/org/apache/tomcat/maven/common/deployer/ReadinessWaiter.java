@@ -0,0 +1,323 @@
+package org.apache.tomcat.maven.common.deployer;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for a webapp deployed by a manager to be ready: the manager first lists it as running, then each warmup url
+ * must answer {@link #setChecks(int)} consecutive 2xx responses faster than {@link #setMaxLatency(long)}, which
+ * also warms up the code paths they hit. The manager answers <code>OK</code> to a deploy before the webapp is ready
+ * to serve, so tests run right after the deployment race its startup.
+ *
+ * @since 3.0
+ */
+public class ReadinessWaiter
+{
+    private final TomcatManager manager;
+
+    private final List<URL> urls = new ArrayList<URL>();
+
+    private long timeout = TimeUnit.MINUTES.toMillis( 2 );
+
+    private long pollInterval = 1000;
+
+    private int checks = 3;
+
+    private long maxLatency = 1000;
+
+    private String version;
+
+    /**
+     * @param manager the manager the webapp was deployed with
+     */
+    public ReadinessWaiter( TomcatManager manager )
+    {
+        this.manager = manager;
+    }
+
+    /**
+     * Waits for the webapp to run then for every warmup url to pass the checks.
+     *
+     * @param path the webapp context path
+     * @return the times to ready
+     * @throws TomcatManagerException if the webapp is not ready before the timeout or the manager request fails
+     * @throws IOException            if an i/o error occurs with the manager
+     * @throws InterruptedException   if interrupted while waiting
+     */
+    public Result await( String path )
+        throws TomcatManagerException, IOException, InterruptedException
+    {
+        Result result = new Result();
+        long start = System.nanoTime();
+        long deadline = System.currentTimeMillis() + timeout;
+        while ( !isRunning( path ) )
+        {
+            if ( System.currentTimeMillis() >= deadline )
+            {
+                throw new TomcatManagerException(
+                    "webapp " + ParallelVersionDeployer.versionedPath( path, version ) + " not running after "
+                        + timeout + " ms" );
+            }
+            Thread.sleep( pollInterval );
+        }
+        result.runningMillis = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+
+        int[] passed = new int[urls.size()];
+        long[] slowest = new long[urls.size()];
+        boolean ready = false;
+        while ( !ready )
+        {
+            ready = true;
+            String problem = null;
+            for ( int i = 0; i < urls.size(); i++ )
+            {
+                if ( passed[i] >= checks )
+                {
+                    continue;
+                }
+                long requestStart = System.nanoTime();
+                int status = check( urls.get( i ) );
+                long latency = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - requestStart );
+                result.requests++;
+                if ( status >= 200 && status < 300 && latency <= maxLatency )
+                {
+                    passed[i]++;
+                    slowest[i] = Math.max( slowest[i], latency );
+                }
+                else
+                {
+                    // checks must pass in a row
+                    passed[i] = 0;
+                    slowest[i] = 0;
+                    problem = "check of " + urls.get( i ) + " failed (" + ( status < 0 ? "no response"
+                        : "status " + status + " in " + latency + " ms" ) + ", max latency " + maxLatency + " ms)";
+                }
+                ready &= passed[i] >= checks;
+            }
+            if ( problem != null )
+            {
+                if ( System.currentTimeMillis() >= deadline )
+                {
+                    throw new TomcatManagerException( problem );
+                }
+                Thread.sleep( pollInterval );
+            }
+        }
+        for ( long latency : slowest )
+        {
+            result.slowestLatencyMillis = Math.max( result.slowestLatencyMillis, latency );
+        }
+        result.readyMillis = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+        return result;
+    }
+
+    private boolean isRunning( String path )
+        throws TomcatManagerException, IOException
+    {
+        if ( version == null )
+        {
+            return manager.isRunning( path );
+        }
+        // the other versions of the path are listed with the same path
+        for ( ParallelVersionDeployer.WebappVersion webappVersion : new ParallelVersionDeployer(
+            manager ).listVersions( path ) )
+        {
+            if ( webappVersion.getVersion().equals( version ) && webappVersion.isRunning() )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the http status of the url, -1 if it could not be requested
+     */
+    private int check( URL url )
+    {
+        HttpURLConnection connection = null;
+        try
+        {
+            connection = (HttpURLConnection) url.openConnection();
+            int connectTimeout = (int) Math.min( Integer.MAX_VALUE, Math.max( maxLatency, 1000 ) * 2 );
+            connection.setConnectTimeout( connectTimeout );
+            connection.setReadTimeout( connectTimeout );
+            connection.setInstanceFollowRedirects( false );
+            int status = connection.getResponseCode();
+            InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if ( body != null )
+            {
+                // read the body so the latency covers the whole response
+                byte[] buffer = new byte[4096];
+                while ( body.read( buffer ) >= 0 )
+                {
+                    // discard
+                }
+                body.close();
+            }
+            return status;
+        }
+        catch ( IOException e )
+        {
+            return -1;
+        }
+        finally
+        {
+            if ( connection != null )
+            {
+                connection.disconnect();
+            }
+        }
+    }
+
+    public List<URL> getUrls()
+    {
+        return urls;
+    }
+
+    /**
+     * @param url a warmup url, requested once the webapp runs
+     */
+    public ReadinessWaiter addUrl( URL url )
+    {
+        urls.add( url );
+        return this;
+    }
+
+    public long getTimeout()
+    {
+        return timeout;
+    }
+
+    /**
+     * @param timeout maximum time in milliseconds for the webapp to run and pass the checks
+     */
+    public ReadinessWaiter setTimeout( long timeout )
+    {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public long getPollInterval()
+    {
+        return pollInterval;
+    }
+
+    public ReadinessWaiter setPollInterval( long pollInterval )
+    {
+        this.pollInterval = pollInterval;
+        return this;
+    }
+
+    public int getChecks()
+    {
+        return checks;
+    }
+
+    /**
+     * @param checks number of consecutive successful responses required from each url
+     */
+    public ReadinessWaiter setChecks( int checks )
+    {
+        this.checks = checks;
+        return this;
+    }
+
+    public long getMaxLatency()
+    {
+        return maxLatency;
+    }
+
+    /**
+     * @param maxLatency maximum latency in milliseconds of a successful response
+     */
+    public ReadinessWaiter setMaxLatency( long maxLatency )
+    {
+        this.maxLatency = maxLatency;
+        return this;
+    }
+
+    public String getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * @param version the parallel version of the webapp to wait for, <code>null</code> if not deployed as a
+     *                parallel version: an older version running at the same path would pass the running check
+     */
+    public ReadinessWaiter setVersion( String version )
+    {
+        this.version = version;
+        return this;
+    }
+
+    /**
+     * Times measured by {@link ReadinessWaiter#await(String)}.
+     */
+    public static class Result
+    {
+        private long runningMillis;
+
+        private long readyMillis;
+
+        private int requests;
+
+        private long slowestLatencyMillis;
+
+        /**
+         * @return the time from the start of the wait until the manager listed the webapp as running
+         */
+        public long getRunningMillis()
+        {
+            return runningMillis;
+        }
+
+        /**
+         * @return the time from the start of the wait until all the urls passed the checks
+         */
+        public long getReadyMillis()
+        {
+            return readyMillis;
+        }
+
+        /**
+         * @return the number of warmup requests sent
+         */
+        public int getRequests()
+        {
+            return requests;
+        }
+
+        /**
+         * @return the slowest of the successful consecutive responses, 0 without urls
+         */
+        public long getSlowestLatencyMillis()
+        {
+            return slowestLatencyMillis;
+        }
+    }
+}
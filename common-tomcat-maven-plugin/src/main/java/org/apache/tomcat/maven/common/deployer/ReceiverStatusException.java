@@ -0,0 +1,47 @@
+package org.apache.tomcat.maven.common.deployer;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Indicates an error status answered by the delta receiver.
+ *
+ * @since 3.0
+ */
+public class ReceiverStatusException
+    extends TomcatManagerException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    /**
+     * @param message    the message for this exception
+     * @param statusCode the http status answered by the receiver
+     */
+    public ReceiverStatusException( String message, int statusCode )
+    {
+        super( message );
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode()
+    {
+        return statusCode;
+    }
+}
@@ -0,0 +1,375 @@
+package org.apache.tomcat.maven.common.deployer;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deploys a war to several Tomcat managers in batches of {@link #setBatchSize(int)} nodes, so the rest of the
+ * cluster keeps serving while a batch restarts. After each batch the webapp must be listed as running by every
+ * node of the batch and, if a health path is configured, answer {@link #setHealthChecks(int)} consecutive health
+ * checks faster than {@link #setMaxHealthLatency(long)} before the next batch starts. The nodes of a batch are
+ * checked concurrently, each within {@link #setReadyTimeout(long)}. On failure the remaining batches are skipped
+ * and, with {@link #ON_FAILURE_ROLLBACK}, the nodes which received the new war are reverted to the war of
+ * {@link #setRollbackTag(String)}.
+ *
+ * @since 3.0
+ */
+public class RollingDeployer
+{
+    /**
+     * Stop at the first failing batch, leaving the deployed nodes with the new war.
+     */
+    public static final String ON_FAILURE_STOP = "stop";
+
+    /**
+     * Stop at the first failing batch and deploy again the war of the rollback tag on the nodes which received the
+     * new war, including the ones of the batches already passed. Requires a rollback tag.
+     */
+    public static final String ON_FAILURE_ROLLBACK = "rollback";
+
+    private final List<TomcatManager> managers;
+
+    private int batchSize = 1;
+
+    private long timeout = TimeUnit.MINUTES.toMillis( 5 );
+
+    private long readyTimeout = TimeUnit.MINUTES.toMillis( 2 );
+
+    private long pollInterval = 1000;
+
+    private String healthPath;
+
+    private int healthChecks = 3;
+
+    private long maxHealthLatency = 1000;
+
+    private String onFailure = ON_FAILURE_STOP;
+
+    private String rollbackTag;
+
+    /**
+     * @param managers one manager per node, deployed in this order
+     */
+    public RollingDeployer( List<TomcatManager> managers )
+    {
+        this.managers = managers;
+    }
+
+    /**
+     * Deploys the war batch after batch.
+     *
+     * @param path   the webapp context path to deploy to
+     * @param war    the war to upload
+     * @param update whether to first undeploy the webapp if it already exists
+     * @param tag    the tag name to use
+     * @return one result per node of the batches started, in the order of the managers: the nodes of the
+     *         batches skipped after a failure have no result
+     * @throws InterruptedException if interrupted while waiting for the nodes
+     */
+    public List<FleetDeployResult> deploy( final String path, File war, boolean update, String tag )
+        throws InterruptedException
+    {
+        List<FleetDeployResult> results = new ArrayList<FleetDeployResult>( managers.size() );
+        // indexes of the nodes which accepted the new war, whatever their health
+        List<Integer> deployed = new ArrayList<Integer>( managers.size() );
+        int size = Math.max( 1, batchSize );
+        // the nodes of a batch are checked at the same time: a batch waits at most one ready timeout
+        ExecutorService executor = Executors.newFixedThreadPool( Math.max( 1, Math.min( size, managers.size() ) ) );
+        try
+        {
+            for ( int start = 0; start < managers.size(); start += size )
+            {
+                List<TomcatManager> batch = managers.subList( start, Math.min( managers.size(), start + size ) );
+                List<FleetDeployResult> batchResults =
+                    new FleetDeployer( batch ).setConcurrency( batch.size() ).setTimeout( timeout ).deploy( path, war,
+                                                                                                         update, tag );
+                results.addAll( batchResults );
+
+                List<FleetDeployResult> checked = new ArrayList<FleetDeployResult>( batch.size() );
+                List<Future<?>> checks = new ArrayList<Future<?>>( batch.size() );
+                for ( int i = 0; i < batch.size(); i++ )
+                {
+                    final FleetDeployResult result = batchResults.get( i );
+                    if ( result.isSuccess() )
+                    {
+                        deployed.add( start + i );
+                        final TomcatManager manager = batch.get( i );
+                        checked.add( result );
+                        checks.add( executor.submit( new Callable<Void>()
+                        {
+                            @Override
+                            public Void call()
+                                throws InterruptedException
+                            {
+                                awaitHealthy( manager, path, result );
+                                return null;
+                            }
+                        } ) );
+                    }
+                }
+                for ( int i = 0; i < checks.size(); i++ )
+                {
+                    try
+                    {
+                        checks.get( i ).get();
+                    }
+                    catch ( ExecutionException e )
+                    {
+                        checked.get( i ).setFailure(
+                            e.getCause() instanceof Exception ? (Exception) e.getCause() : e );
+                    }
+                }
+
+                boolean healthy = true;
+                for ( FleetDeployResult result : batchResults )
+                {
+                    healthy &= result.isSuccess();
+                }
+
+                if ( !healthy )
+                {
+                    if ( ON_FAILURE_ROLLBACK.equalsIgnoreCase( onFailure ) )
+                    {
+                        rollback( path, results, deployed );
+                    }
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Waits for the webapp to be running then for the health checks to pass, sets a failure on the result
+     * otherwise.
+     */
+    private void awaitHealthy( TomcatManager manager, String path, FleetDeployResult result )
+        throws InterruptedException
+    {
+        ReadinessWaiter waiter = new ReadinessWaiter( manager ).setTimeout( readyTimeout ).setPollInterval(
+            pollInterval ).setChecks( healthChecks ).setMaxLatency( maxHealthLatency );
+        try
+        {
+            if ( healthPath != null )
+            {
+                waiter.addUrl( new URL( manager.getURL(), healthPath ) );
+            }
+            ReadinessWaiter.Result ready = waiter.await( path );
+            if ( healthPath != null )
+            {
+                result.setHealthLatencyMillis( ready.getSlowestLatencyMillis() );
+            }
+        }
+        catch ( TomcatManagerException e )
+        {
+            result.setFailure( e );
+        }
+        catch ( IOException e )
+        {
+            result.setFailure( e );
+        }
+    }
+
+    /**
+     * Deploys again the war of the rollback tag on the nodes which received the new war. The nodes whose upload
+     * failed or timed out are left alone: they may still run the previous war.
+     */
+    private void rollback( String path, List<FleetDeployResult> results, List<Integer> deployed )
+    {
+        for ( int i : deployed )
+        {
+            TomcatManager manager = managers.get( i );
+            FleetDeployResult result = results.get( i );
+            try
+            {
+                // the manager replaces the webapp in one request, no window without it
+                result.setRolledBack( isSuccess( manager.redeployTag( path, rollbackTag ) ) );
+            }
+            catch ( TomcatManagerException e )
+            {
+                // the result keeps rolledBack false
+            }
+            catch ( IOException e )
+            {
+                // the result keeps rolledBack false
+            }
+        }
+    }
+
+    private static boolean isSuccess( TomcatManagerResponse response )
+    {
+        return response.getStatusCode() < 400 && ( response.getHttpResponseBody() == null
+            || !response.getHttpResponseBody().startsWith( "FAIL" ) );
+    }
+
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize number of nodes deployed at the same time
+     */
+    public RollingDeployer setBatchSize( int batchSize )
+    {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public long getTimeout()
+    {
+        return timeout;
+    }
+
+    /**
+     * @param timeout maximum time in milliseconds for the upload to one node
+     */
+    public RollingDeployer setTimeout( long timeout )
+    {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public long getReadyTimeout()
+    {
+        return readyTimeout;
+    }
+
+    /**
+     * @param readyTimeout maximum time in milliseconds for a node to run the webapp and pass the health checks
+     */
+    public RollingDeployer setReadyTimeout( long readyTimeout )
+    {
+        this.readyTimeout = readyTimeout;
+        return this;
+    }
+
+    public long getPollInterval()
+    {
+        return pollInterval;
+    }
+
+    public RollingDeployer setPollInterval( long pollInterval )
+    {
+        this.pollInterval = pollInterval;
+        return this;
+    }
+
+    public String getHealthPath()
+    {
+        return healthPath;
+    }
+
+    /**
+     * @param healthPath path of the health url, resolved against the url of each manager (for instance
+     *                   <code>/myapp/health</code>), <code>null</code> to only check the webapp is running
+     */
+    public RollingDeployer setHealthPath( String healthPath )
+    {
+        this.healthPath = healthPath;
+        return this;
+    }
+
+    public int getHealthChecks()
+    {
+        return healthChecks;
+    }
+
+    /**
+     * @param healthChecks number of consecutive successful health checks required
+     */
+    public RollingDeployer setHealthChecks( int healthChecks )
+    {
+        this.healthChecks = healthChecks;
+        return this;
+    }
+
+    public long getMaxHealthLatency()
+    {
+        return maxHealthLatency;
+    }
+
+    /**
+     * @param maxHealthLatency maximum latency in milliseconds of a successful health check
+     */
+    public RollingDeployer setMaxHealthLatency( long maxHealthLatency )
+    {
+        this.maxHealthLatency = maxHealthLatency;
+        return this;
+    }
+
+    public String getOnFailure()
+    {
+        return onFailure;
+    }
+
+    /**
+     * @param onFailure {@link #ON_FAILURE_STOP} or {@link #ON_FAILURE_ROLLBACK}, which requires the rollback tag to
+     *                  be set first
+     */
+    public RollingDeployer setOnFailure( String onFailure )
+    {
+        if ( !ON_FAILURE_STOP.equalsIgnoreCase( onFailure ) && !ON_FAILURE_ROLLBACK.equalsIgnoreCase( onFailure ) )
+        {
+            throw new IllegalArgumentException(
+                "on failure must be " + ON_FAILURE_STOP + " or " + ON_FAILURE_ROLLBACK + ": " + onFailure );
+        }
+        if ( ON_FAILURE_ROLLBACK.equalsIgnoreCase( onFailure ) && rollbackTag == null )
+        {
+            throw new IllegalArgumentException(
+                "on failure " + ON_FAILURE_ROLLBACK + " requires a rollback tag: without the previous war the nodes"
+                    + " could only be left without the webapp" );
+        }
+        this.onFailure = onFailure;
+        return this;
+    }
+
+    public String getRollbackTag()
+    {
+        return rollbackTag;
+    }
+
+    /**
+     * @param rollbackTag tag of the war deployed again on rollback, the previous war kept by the managers
+     */
+    public RollingDeployer setRollbackTag( String rollbackTag )
+    {
+        if ( rollbackTag == null && ON_FAILURE_ROLLBACK.equalsIgnoreCase( onFailure ) )
+        {
+            throw new IllegalArgumentException( "on failure " + ON_FAILURE_ROLLBACK + " requires a rollback tag" );
+        }
+        this.rollbackTag = rollbackTag;
+        return this;
+    }
+}
@@ -26,10 +26,12 @@ import org.apache.http.Header;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.apache.http.auth.AuthScheme;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.AuthCache;
+import org.apache.http.client.params.ClientPNames;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
@@ -37,28 +39,35 @@ import org.apache.http.client.protocol.ClientContext;
 import org.apache.http.conn.params.ConnRoutePNames;
 import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.impl.auth.BasicScheme;
-import org.apache.http.impl.client.BasicAuthCache;
 import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.CoreProtocolPNames;
 import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.util.EntityUtils;
 import org.apache.maven.settings.Proxy;
 import org.apache.maven.wagon.proxy.ProxyInfo;
 import org.apache.maven.wagon.proxy.ProxyUtils;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.net.URI;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * A Tomcat manager webapp invocation wrapper.
+ * A Tomcat manager webapp invocation wrapper. The methods may be called from several threads at the same time, each
+ * call using its own connection of the {@link TomcatManagerConnectionPool}; see {@link AsyncTomcatManager} for
+ * non-blocking calls.
  *
  * @author Mark Hobson (markhobson@gmail.com)
  */
@@ -73,6 +82,26 @@ public class TomcatManager
      */
     private static final String MANAGER_CHARSET = "UTF-8";
 
+    /**
+     * The default size of the chunks read from the war file when uploading.
+     */
+    public static final int DEFAULT_UPLOAD_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The default maximum number of redirects followed for one request.
+     */
+    public static final int DEFAULT_MAX_REDIRECTS = 5;
+
+    /**
+     * Cheap manager command used to resolve the redirects before uploading.
+     */
+    private static final String REDIRECT_PROBE_PATH = "/serverinfo";
+
+    /**
+     * Path of the text interface below the manager webapp, the status and jmxproxy servlets are its siblings.
+     */
+    private static final String TEXT_INTERFACE_PATH = "/text";
+
     // ----------------------------------------------------------------------
     // Fields
     // ----------------------------------------------------------------------
@@ -80,7 +109,7 @@ public class TomcatManager
     /**
      * The full URL of the Tomcat manager instance to use.
      */
-    private URL url;
+    private volatile URL url;
 
     /**
      * The username to use when authenticating with Tomcat manager.
@@ -100,7 +129,7 @@ public class TomcatManager
     /**
      * The user agent name to use when communicating with Tomcat manager.
      */
-    private String userAgent;
+    private volatile String userAgent;
 
     /**
      * @since 2.0
@@ -108,9 +137,16 @@ public class TomcatManager
     private DefaultHttpClient httpClient;
 
     /**
-     * @since 2.0
+     * @since 3.0
+     */
+    private TomcatManagerConnectionPool connectionPool;
+
+    /**
+     * The preemptive authentication schemes by host, shared by the requests.
+     *
+     * @since 3.0
      */
-    private BasicHttpContext localContext;
+    private final AuthCache authCache = new ConcurrentAuthCache();
 
     private Proxy proxy;
 
@@ -119,6 +155,31 @@ public class TomcatManager
      */
     private boolean verbose;
 
+    /**
+     * Size of the chunks read from the war file when uploading.
+     *
+     * @since 3.0
+     */
+    private int uploadBufferSize = DEFAULT_UPLOAD_BUFFER_SIZE;
+
+    /**
+     * Maximum number of redirects followed for one request.
+     *
+     * @since 3.0
+     */
+    private int maxRedirects = DEFAULT_MAX_REDIRECTS;
+
+    /**
+     * Whether the redirects of the manager url were already resolved before an upload.
+     */
+    private volatile boolean redirectsResolved;
+
+    /**
+     * The requests in progress by thread, aborted by {@link #abort()}.
+     */
+    private final ConcurrentMap<Thread, HttpRequestBase> currentRequests =
+        new ConcurrentHashMap<Thread, HttpRequestBase>();
+
     // ----------------------------------------------------------------------
     // Constructors
     // ----------------------------------------------------------------------
@@ -183,32 +244,37 @@ public class TomcatManager
      * @since 2.2
      */
     public TomcatManager( URL url, String username, String password, String charset, boolean verbose )
+    {
+        this( url, username, password, charset, verbose, new TomcatManagerConnectionPool() );
+    }
+
+    /**
+     * Creates a Tomcat manager wrapper for the specified URL, username, password and URL encoding using the given
+     * connection pool, see {@link TomcatManagerConnectionPool#getSharedPool(URL, String, String)}.
+     *
+     * @param url            the full URL of the Tomcat manager instance to use
+     * @param username       the username to use when authenticating with Tomcat manager
+     * @param password       the password to use when authenticating with Tomcat manager
+     * @param charset        the URL encoding charset to use when communicating with Tomcat manager
+     * @param verbose        if the build is in verbose mode (quiet mode otherwise)
+     * @param connectionPool the pool of connections to the Tomcat manager
+     * @since 3.0
+     */
+    public TomcatManager( URL url, String username, String password, String charset, boolean verbose,
+                          TomcatManagerConnectionPool connectionPool )
     {
         this.url = url;
         this.username = username;
         this.password = password;
         this.charset = charset;
         this.verbose = verbose;
+        this.connectionPool = connectionPool;
 
-        PoolingClientConnectionManager poolingClientConnectionManager = new PoolingClientConnectionManager();
-        poolingClientConnectionManager.setMaxTotal( 5 );
-        this.httpClient = new DefaultHttpClient( poolingClientConnectionManager );
+        this.httpClient = new DefaultHttpClient( connectionPool.getConnectionManager() );
 
         if ( StringUtils.isNotEmpty( username ) )
         {
-            Credentials creds = new UsernamePasswordCredentials( username, password );
-
-            String host = url.getHost();
-            int port = url.getPort() > -1 ? url.getPort() : AuthScope.ANY_PORT;
-            httpClient.getCredentialsProvider().setCredentials( new AuthScope( host, port ), creds );
-
-            AuthCache authCache = new BasicAuthCache();
-            BasicScheme basicAuth = new BasicScheme();
-            HttpHost targetHost = new HttpHost( url.getHost(), url.getPort(), url.getProtocol() );
-            authCache.put( targetHost, basicAuth );
-
-            localContext = new BasicHttpContext();
-            localContext.setAttribute( ClientContext.AUTH_CACHE, authCache );
+            addPreemptiveAuth( url );
         }
     }
 
@@ -276,6 +342,91 @@ public class TomcatManager
         this.userAgent = userAgent;
     }
 
+    /**
+     * Gets the size of the chunks read from the war file when uploading.
+     *
+     * @return the upload buffer size in bytes
+     * @since 3.0
+     */
+    public int getUploadBufferSize()
+    {
+        return uploadBufferSize;
+    }
+
+    /**
+     * Sets the size of the chunks read from the war file when uploading.
+     *
+     * @param uploadBufferSize the upload buffer size in bytes
+     * @since 3.0
+     */
+    public void setUploadBufferSize( int uploadBufferSize )
+    {
+        this.uploadBufferSize = uploadBufferSize > 0 ? uploadBufferSize : DEFAULT_UPLOAD_BUFFER_SIZE;
+    }
+
+    /**
+     * Aborts the requests in progress, if any, closing their connections: the threads invoking the manager get an
+     * {@link IOException}.
+     *
+     * @since 3.0
+     */
+    public void abort()
+    {
+        for ( HttpRequestBase request : currentRequests.values() )
+        {
+            request.abort();
+        }
+    }
+
+    /**
+     * Aborts the request in progress in a thread, if any.
+     *
+     * @param thread the thread invoking the manager
+     * @since 3.0
+     */
+    public void abort( Thread thread )
+    {
+        HttpRequestBase request = currentRequests.get( thread );
+        if ( request != null )
+        {
+            request.abort();
+        }
+    }
+
+    /**
+     * Gets the pool of connections to the Tomcat manager.
+     *
+     * @return the connection pool
+     * @since 3.0
+     */
+    public TomcatManagerConnectionPool getConnectionPool()
+    {
+        return connectionPool;
+    }
+
+    /**
+     * Gets the maximum number of redirects followed for one request.
+     *
+     * @return the maximum number of redirects
+     * @since 3.0
+     */
+    public int getMaxRedirects()
+    {
+        return maxRedirects;
+    }
+
+    /**
+     * Sets the maximum number of redirects followed for one request, a {@link TomcatManagerException} is thrown
+     * beyond.
+     *
+     * @param maxRedirects the maximum number of redirects
+     * @since 3.0
+     */
+    public void setMaxRedirects( int maxRedirects )
+    {
+        this.maxRedirects = maxRedirects;
+    }
+
     /**
      * Sets the proxy to use when communicating with Tomcat manager.
      * 
@@ -546,6 +697,23 @@ public class TomcatManager
         return deployImpl( path, config, war, null, update, tag );
     }
 
+    /**
+     * Deploys again the war previously deployed to the specified context path with the specified tag name, the
+     * Tomcat manager keeps a copy of the tagged wars.
+     *
+     * @param path the webapp context path to deploy to
+     * @param tag  the tag name of the war to deploy
+     * @return the Tomcat manager response
+     * @throws TomcatManagerException if the Tomcat manager request fails
+     * @throws IOException            if an i/o error occurs
+     * @since 3.0
+     */
+    public TomcatManagerResponse redeployTag( String path, String tag )
+        throws TomcatManagerException, IOException
+    {
+        return deployImpl( path, null, null, null, true, tag );
+    }
+
     /**
      * Undeploys the webapp at the specified context path.
      *
@@ -615,6 +783,47 @@ public class TomcatManager
         return invoke( "/list" );
     }
 
+    /**
+     * Lists all the currently deployed web applications, one <code>path:state:sessions:docBase</code> line per
+     * application, without keeping the response in memory.
+     *
+     * @param handler receives the lines of the response
+     * @return the response status, without body unless the request failed
+     * @throws TomcatManagerException if the Tomcat manager request fails
+     * @throws IOException            if an i/o error occurs
+     * @since 3.0
+     */
+    public TomcatManagerResponse list( TomcatManagerLineHandler handler )
+        throws TomcatManagerException, IOException
+    {
+        return invoke( "/list", handler );
+    }
+
+    /**
+     * Checks with {@link #list()} whether the webapp at the specified context path is running.
+     *
+     * @param path the webapp context path
+     * @return <code>true</code> if the webapp is listed as <code>running</code>
+     * @throws TomcatManagerException if the Tomcat manager request fails
+     * @throws IOException            if an i/o error occurs
+     * @since 3.0
+     */
+    public boolean isRunning( String path )
+        throws TomcatManagerException, IOException
+    {
+        // one line per webapp: path:state:sessions:name
+        final String prefix = ( path.startsWith( "/" ) ? path : "/" + path ) + ":running:";
+        final boolean[] running = new boolean[1];
+        list( new TomcatManagerLineHandler()
+        {
+            public void handleLine( String line )
+            {
+                running[0] |= line.startsWith( prefix );
+            }
+        } );
+        return running[0];
+    }
+
     /**
      * Lists information about the Tomcat version, OS, and JVM properties.
      *
@@ -628,6 +837,21 @@ public class TomcatManager
         return invoke( "/serverinfo" );
     }
 
+    /**
+     * Lists the webapps whose class loader is still referenced after they were stopped, reloaded or undeployed,
+     * one line per leaked class loader after the status line. Triggers a full garbage collection on the server.
+     *
+     * @return <code>OK - No memory leaks found</code> or the status line followed by the context paths
+     * @throws TomcatManagerException if the Tomcat manager request fails
+     * @throws IOException            if an i/o error occurs
+     * @since 3.0
+     */
+    public TomcatManagerResponse findLeaks()
+        throws TomcatManagerException, IOException
+    {
+        return invoke( "/findleaks?statusLine=true" );
+    }
+
     /**
      * Lists all of the global JNDI resources.
      *
@@ -651,6 +875,29 @@ public class TomcatManager
      */
     public TomcatManagerResponse getResources( String type )
         throws TomcatManagerException, IOException
+    {
+        return invoke( getResourcesPath( type ) );
+    }
+
+    /**
+     * Lists the global JNDI resources of the given type, one line per resource, without keeping the response in
+     * memory.
+     *
+     * @param type    the class name of the resources to list, or <code>null</code> for all
+     * @param handler receives the lines of the response
+     * @return the response status, without body unless the request failed
+     * @throws TomcatManagerException if the Tomcat manager request fails
+     * @throws IOException            if an i/o error occurs
+     * @since 3.0
+     */
+    public TomcatManagerResponse getResources( String type, TomcatManagerLineHandler handler )
+        throws TomcatManagerException, IOException
+    {
+        return invoke( getResourcesPath( type ), handler );
+    }
+
+    private String getResourcesPath( String type )
+        throws IOException
     {
         StringBuffer buffer = new StringBuffer();
         buffer.append( "/resources" );
@@ -659,7 +906,7 @@ public class TomcatManager
         {
             buffer.append( "?type=" + URLEncoder.encode( type, charset ) );
         }
-        return invoke( buffer.toString() );
+        return buffer.toString();
     }
 
     /**
@@ -689,6 +936,116 @@ public class TomcatManager
         return invoke( "/sessions?path=" + URLEncoder.encode( path, charset ) );
     }
 
+    /**
+     * Lists the default session timeout and the number of currently active sessions for the given context path,
+     * without keeping the response in memory.
+     *
+     * @param path    the context path to list session information for
+     * @param handler receives the lines of the response
+     * @return the response status, without body unless the request failed
+     * @throws TomcatManagerException if the Tomcat manager request fails
+     * @throws IOException            if an i/o error occurs
+     * @since 3.0
+     */
+    public TomcatManagerResponse getSessions( String path, TomcatManagerLineHandler handler )
+        throws TomcatManagerException, IOException
+    {
+        return invoke( "/sessions?path=" + URLEncoder.encode( path, charset ), handler );
+    }
+
+    /**
+     * Gets the server status of the manager <code>status</code> servlet in XML: memory, thread pools and request
+     * counters of each connector. Requires the <code>manager-status</code> role.
+     *
+     * @return the server status XML document
+     * @throws TomcatManagerException if the Tomcat manager request fails
+     * @throws IOException            if an i/o error occurs
+     * @since 3.0
+     */
+    public TomcatManagerResponse getStatus()
+        throws TomcatManagerException, IOException
+    {
+        return invoke( getManagerServletPath( "/status?XML=true" ) );
+    }
+
+    /**
+     * Gets an MBean attribute through the manager <code>jmxproxy</code> servlet. Requires the
+     * <code>manager-jmx</code> role.
+     *
+     * @param objectName the MBean name
+     * @param attribute  the attribute name
+     * @return <code>OK - Attribute get 'objectName' - attribute = value</code>
+     * @throws TomcatManagerException if the Tomcat manager request fails
+     * @throws IOException            if an i/o error occurs
+     * @since 3.0
+     */
+    public TomcatManagerResponse getJmxAttribute( String objectName, String attribute )
+        throws TomcatManagerException, IOException
+    {
+        return invoke( getManagerServletPath(
+            "/jmxproxy/?get=" + URLEncoder.encode( objectName, charset ) + "&att=" + URLEncoder.encode( attribute,
+                                                                                                        charset ) ) );
+    }
+
+    /**
+     * Queries MBeans through the manager <code>jmxproxy</code> servlet, one <code>attribute: value</code> line per
+     * attribute after a <code>Name: objectName</code> line per MBean. Requires the <code>manager-jmx</code> role.
+     *
+     * @param query   the MBean name pattern, for instance <code>Catalina:type=Manager,*</code>
+     * @param handler receives the lines of the response
+     * @return the response status, without body unless the request failed
+     * @throws TomcatManagerException if the Tomcat manager request fails
+     * @throws IOException            if an i/o error occurs
+     * @since 3.0
+     */
+    public TomcatManagerResponse queryJmx( String query, TomcatManagerLineHandler handler )
+        throws TomcatManagerException, IOException
+    {
+        return invoke( getManagerServletPath( "/jmxproxy/?qry=" + URLEncoder.encode( query, charset ) ), handler );
+    }
+
+    /**
+     * Invokes an MBean operation through the manager <code>jmxproxy</code> servlet. The response starts with
+     * <code>OK - Operation operation returned:</code> followed by the result, one line per element of an array
+     * result. Requires the <code>manager-jmx</code> role.
+     *
+     * @param objectName the MBean name
+     * @param operation  the operation name
+     * @param handler    receives the lines of the response
+     * @param params     the operation parameters, converted by the servlet to the types of the operation signature
+     * @return the response status, without body unless the request failed
+     * @throws TomcatManagerException if the Tomcat manager request fails
+     * @throws IOException            if an i/o error occurs
+     * @since 3.0
+     */
+    public TomcatManagerResponse invokeJmx( String objectName, String operation, TomcatManagerLineHandler handler,
+                                            String... params )
+        throws TomcatManagerException, IOException
+    {
+        StringBuilder command = new StringBuilder( "/jmxproxy/?invoke=" );
+        command.append( URLEncoder.encode( objectName, charset ) );
+        command.append( "&op=" ).append( URLEncoder.encode( operation, charset ) );
+        if ( params.length > 0 )
+        {
+            command.append( "&ps=" ).append( URLEncoder.encode( StringUtils.join( params, ',' ), charset ) );
+        }
+        return invoke( getManagerServletPath( command.toString() ), handler );
+    }
+
+    /**
+     * Gets the path of a servlet of the manager webapp relative to the manager url, which usually is the text
+     * interface.
+     */
+    private String getManagerServletPath( String command )
+    {
+        String path = url.getPath();
+        if ( path.endsWith( TEXT_INTERFACE_PATH ) )
+        {
+            return "/.." + command;
+        }
+        return path.endsWith( TEXT_INTERFACE_PATH + "/" ) ? "/../.." + command : command;
+    }
+
     // ----------------------------------------------------------------------
     // Protected Methods
     // ----------------------------------------------------------------------
@@ -707,6 +1064,23 @@ public class TomcatManager
         return invoke( path, null, -1 );
     }
 
+    /**
+     * Invokes Tomcat manager with the specified command, passing the lines of a successful response to the handler
+     * as they are read.
+     *
+     * @param path    the Tomcat manager command to invoke
+     * @param handler receives the lines of the response
+     * @return the Tomcat manager response, without body unless the status is an error
+     * @throws TomcatManagerException if the Tomcat manager request fails
+     * @throws IOException            if an i/o error occurs
+     * @since 3.0
+     */
+    protected TomcatManagerResponse invoke( String path, TomcatManagerLineHandler handler )
+        throws TomcatManagerException, IOException
+    {
+        return invoke( path, null, -1, 0, handler );
+    }
+
     // ----------------------------------------------------------------------
     // Private Methods
     // ----------------------------------------------------------------------
@@ -773,17 +1147,35 @@ public class TomcatManager
     protected TomcatManagerResponse invoke( String path, File data, long length )
         throws TomcatManagerException, IOException
     {
+        if ( data != null )
+        {
+            resolveRedirects();
+        }
+        return invoke( path, data, length, 0, null );
+    }
+
+    private TomcatManagerResponse invoke( String path, File data, long length, int redirects,
+                                          TomcatManagerLineHandler handler )
+        throws TomcatManagerException, IOException
+    {
 
+        // the url may be relocated by another thread meanwhile, the request and its redirect use the same base
+        URL base = url;
         HttpRequestBase httpRequestBase = null;
         if ( data == null )
         {
-            httpRequestBase = new HttpGet( url + path );
+            httpRequestBase = new HttpGet( URI.create( base + path ).normalize() );
         }
         else
         {
-            HttpPut httpPut = new HttpPut( url + path );
+            HttpPut httpPut = new HttpPut( URI.create( base + path ).normalize() );
+
+            httpPut.setEntity(
+                new RequestEntityImplementation( data, length, base + path, verbose, uploadBufferSize ) );
 
-            httpPut.setEntity( new RequestEntityImplementation( data, length, url + path, verbose ) );
+            // the body is only sent once the server accepted the headers: an authentication failure, a wrong
+            // manager url or a redirect does not cost the upload
+            httpPut.getParams().setBooleanParameter( CoreProtocolPNames.USE_EXPECT_CONTINUE, true );
 
             httpRequestBase = httpPut;
 
@@ -794,7 +1186,7 @@ public class TomcatManager
             httpRequestBase.setHeader( "User-Agent", userAgent );
         }
 
-        HttpResponse response = httpClient.execute( httpRequestBase, localContext );
+        HttpResponse response = execute( httpRequestBase );
 
         int statusCode = response.getStatusLine().getStatusCode();
 
@@ -809,23 +1201,196 @@ public class TomcatManager
             case HttpStatus.SC_MOVED_PERMANENTLY: // 301
             case HttpStatus.SC_MOVED_TEMPORARILY: // 302
             case HttpStatus.SC_SEE_OTHER: // 303
-                String relocateUrl = calculateRelocatedUrl( response );
-                this.url = new URL( relocateUrl );
-                return invoke( path, data, length );
+                String relocateUrl = calculateRelocatedUrl( base, response );
+                EntityUtils.consume( response.getEntity() );
+                currentRequests.remove( Thread.currentThread() );
+                relocate( base, new URL( relocateUrl ), redirects + 1 );
+                return invoke( path, data, length, redirects + 1, handler );
         }
 
-        return new TomcatManagerResponse().setStatusCode( response.getStatusLine().getStatusCode() ).setReasonPhrase(
-            response.getStatusLine().getReasonPhrase() ).setHttpResponseBody(
-            IOUtils.toString( response.getEntity().getContent() ) );
+        try
+        {
+            TomcatManagerResponse managerResponse =
+                new TomcatManagerResponse().setStatusCode( response.getStatusLine().getStatusCode() ).setReasonPhrase(
+                    response.getStatusLine().getReasonPhrase() );
+            if ( handler == null || statusCode >= 400 )
+            {
+                return managerResponse.setHttpResponseBody( IOUtils.toString( response.getEntity().getContent() ) );
+            }
+            BufferedReader reader =
+                new BufferedReader( new InputStreamReader( response.getEntity().getContent(), MANAGER_CHARSET ) );
+            try
+            {
+                String line;
+                while ( ( line = reader.readLine() ) != null )
+                {
+                    handler.handleLine( line );
+                }
+            }
+            finally
+            {
+                // releases the connection, also when the handler stopped early
+                reader.close();
+            }
+            return managerResponse;
+        }
+        finally
+        {
+            currentRequests.remove( Thread.currentThread() );
+        }
+    }
 
+    /**
+     * Executes a request with its own context, registered for {@link #abort()} until the response is read.
+     */
+    private HttpResponse execute( HttpRequestBase request )
+        throws IOException
+    {
+        BasicHttpContext localContext = new BasicHttpContext();
+        localContext.setAttribute( ClientContext.AUTH_CACHE, authCache );
+        currentRequests.put( Thread.currentThread(), request );
+        if ( Thread.currentThread().isInterrupted() )
+        {
+            // cancelled before the request was registered
+            request.abort();
+        }
+        try
+        {
+            HttpResponse response = httpClient.execute( request, localContext );
+            connectionPool.recordRequest( localContext );
+            return response;
+        }
+        catch ( IOException e )
+        {
+            currentRequests.remove( Thread.currentThread() );
+            throw e;
+        }
+        catch ( RuntimeException e )
+        {
+            currentRequests.remove( Thread.currentThread() );
+            throw e;
+        }
+    }
+
+    /**
+     * Follows the redirects of the manager url with a cheap <code>serverinfo</code> request, once, so uploads
+     * directly go to the final location.
+     */
+    private synchronized void resolveRedirects()
+        throws TomcatManagerException, IOException
+    {
+        if ( redirectsResolved )
+        {
+            return;
+        }
+        for ( int redirects = 0; ; redirects++ )
+        {
+            URL base = url;
+            HttpGet probe = new HttpGet( base + REDIRECT_PROBE_PATH );
+            // each hop is checked here, the client would silently follow them to a login page
+            probe.getParams().setBooleanParameter( ClientPNames.HANDLE_REDIRECTS, false );
+            if ( userAgent != null )
+            {
+                probe.setHeader( "User-Agent", userAgent );
+            }
+            HttpResponse response = execute( probe );
+            int statusCode = response.getStatusLine().getStatusCode();
+            try
+            {
+                if ( statusCode != HttpStatus.SC_MOVED_PERMANENTLY && statusCode != HttpStatus.SC_MOVED_TEMPORARILY
+                    && statusCode != HttpStatus.SC_SEE_OTHER )
+                {
+                    break;
+                }
+                String relocateUrl = calculateRelocatedUrl( base, response );
+                if ( !relocateUrl.endsWith( REDIRECT_PROBE_PATH ) )
+                {
+                    // not a move of the manager (a login page...): the upload follows its own redirect
+                    break;
+                }
+                relocate( base,
+                          new URL( relocateUrl.substring( 0, relocateUrl.length() - REDIRECT_PROBE_PATH.length() ) ),
+                          redirects + 1 );
+            }
+            finally
+            {
+                EntityUtils.consume( response.getEntity() );
+                currentRequests.remove( Thread.currentThread() );
+            }
+        }
+        redirectsResolved = true;
+    }
+
+    /**
+     * Moves the manager url to a redirect location, unless another thread already moved it from the same base: the
+     * caller then goes on with the url the other thread set.
+     *
+     * @param base      the url the redirected request was sent to
+     * @param relocated the redirect location
+     * @param redirects the redirects followed so far by the caller
+     */
+    private synchronized void relocate( URL base, URL relocated, int redirects )
+        throws TomcatManagerException
+    {
+        if ( redirects > maxRedirects )
+        {
+            throw new TomcatManagerException(
+                "Too many redirects (" + maxRedirects + "), last location: " + relocated );
+        }
+        if ( StringUtils.isNotEmpty( username ) && "https".equalsIgnoreCase( base.getProtocol() )
+            && !"https".equalsIgnoreCase( relocated.getProtocol() ) )
+        {
+            throw new TomcatManagerException(
+                "Refusing to follow the redirect from " + base + " to " + relocated + " with credentials: "
+                    + "they would be sent in clear text" );
+        }
+        // the instance read by the caller, URL.equals would resolve the hosts
+        if ( base != url )
+        {
+            return;
+        }
+        // preemptive credentials are only sent to the origin (scheme, host and port) they were configured for
+        if ( StringUtils.isNotEmpty( username ) && relocated.getProtocol().equalsIgnoreCase( base.getProtocol() )
+            && relocated.getHost().equalsIgnoreCase( base.getHost() )
+            && getEffectivePort( relocated ) == getEffectivePort( base ) )
+        {
+            addPreemptiveAuth( relocated );
+        }
+        this.url = relocated;
+    }
+
+    private static int getEffectivePort( URL target )
+    {
+        return target.getPort() > -1 ? target.getPort() : target.getDefaultPort();
+    }
+
+    /**
+     * Registers the credentials for the host of the given url and caches the Basic scheme so the
+     * <code>Authorization</code> header is sent with the first request instead of after a 401.
+     */
+    private void addPreemptiveAuth( URL target )
+    {
+        Credentials creds = new UsernamePasswordCredentials( username, password );
+
+        String host = target.getHost();
+        int port = target.getPort() > -1 ? target.getPort() : AuthScope.ANY_PORT;
+        httpClient.getCredentialsProvider().setCredentials( new AuthScope( host, port ), creds );
+
+        HttpHost targetHost = new HttpHost( target.getHost(), target.getPort(), target.getProtocol() );
+        authCache.put( targetHost, new BasicScheme() );
     }
 
     protected String calculateRelocatedUrl( HttpResponse response )
+    {
+        return calculateRelocatedUrl( url, response );
+    }
+
+    private static String calculateRelocatedUrl( URL base, HttpResponse response )
     {
         Header locationHeader = response.getFirstHeader( "Location" );
         String locationField = locationHeader.getValue();
         // is it a relative Location or a full ?
-        return locationField.startsWith( "http" ) ? locationField : url.toString() + '/' + locationField;
+        return locationField.startsWith( "http" ) ? locationField : base.toString() + '/' + locationField;
     }
 
 
@@ -847,11 +1412,53 @@ public class TomcatManager
         return "Basic " + new String( Base64.encodeBase64( buffer.toString().getBytes() ) );
     }
 
+    /**
+     * An {@link AuthCache} safe for concurrent requests, the httpclient one is backed by a <code>HashMap</code>.
+     */
+    private static final class ConcurrentAuthCache
+        implements AuthCache
+    {
+        private final ConcurrentMap<HttpHost, AuthScheme> schemes = new ConcurrentHashMap<HttpHost, AuthScheme>();
+
+        public void put( HttpHost host, AuthScheme authScheme )
+        {
+            schemes.put( key( host ), authScheme );
+        }
+
+        public AuthScheme get( HttpHost host )
+        {
+            return schemes.get( key( host ) );
+        }
+
+        public void remove( HttpHost host )
+        {
+            schemes.remove( key( host ) );
+        }
+
+        public void clear()
+        {
+            schemes.clear();
+        }
+
+        private static HttpHost key( HttpHost host )
+        {
+            if ( host.getPort() > 0 )
+            {
+                return host;
+            }
+            int port = "https".equalsIgnoreCase( host.getSchemeName() ) ? 443 : 80;
+            return new HttpHost( host.getHostName(), port, host.getSchemeName() );
+        }
+    }
+
     private final class RequestEntityImplementation
         extends AbstractHttpEntity
     {
 
-        private final static int BUFFER_SIZE = 2048;
+        /**
+         * minimum time in milliseconds between two progress outputs
+         */
+        private static final long PROGRESS_INTERVAL = 100;
 
         private File file;
 
@@ -865,14 +1472,20 @@ public class TomcatManager
 
         private long startTime;
 
+        private long lastProgressTime;
+
         private boolean verbose;
 
-        private RequestEntityImplementation( final File file, long length, String url, boolean verbose )
+        private int bufferSize;
+
+        private RequestEntityImplementation( final File file, long length, String url, boolean verbose,
+                                             int bufferSize )
         {
             this.file = file;
             this.length = length;
             this.url = url;
             this.verbose = verbose;
+            this.bufferSize = bufferSize;
         }
 
         public long getContentLength()
@@ -896,47 +1509,34 @@ public class TomcatManager
         public void writeTo( final OutputStream outstream )
             throws IOException
         {
-            long completed = 0;
             if ( outstream == null )
             {
                 throw new IllegalArgumentException( "Output stream may not be null" );
             }
+            long completed = 0;
             FileInputStream stream = new FileInputStream( this.file );
             transferInitiated( this.url );
-            this.startTime = System.currentTimeMillis();
+            this.startTime = System.nanoTime();
             try
             {
-                byte[] buffer = new byte[BUFFER_SIZE];
-
-                int l;
-                if ( this.length < 0 )
+                // no need to consume more than length
+                long size = stream.getChannel().size();
+                long total = this.length < 0 ? size : Math.min( this.length, size );
+                // httpclient hands a plain stream over its session buffer, so the war is copied through one
+                // heap buffer reused for the whole upload
+                byte[] buffer = new byte[(int) Math.max( 1, Math.min( bufferSize, total ) )];
+                while ( completed < total )
                 {
-                    // until EOF
-                    while ( ( l = stream.read( buffer ) ) != -1 )
+                    int l = stream.read( buffer, 0, (int) Math.min( buffer.length, total - completed ) );
+                    if ( l == -1 )
                     {
-                        transferProgressed( completed += buffer.length, -1 );
-                        outstream.write( buffer, 0, l );
-                    }
-                }
-                else
-                {
-                    // no need to consume more than length
-                    long remaining = this.length;
-                    while ( remaining > 0 )
-                    {
-                        int transferSize = (int) Math.min( BUFFER_SIZE, remaining );
-                        completed += transferSize;
-                        l = stream.read( buffer, 0, transferSize );
-                        if ( l == -1 )
-                        {
-                            break;
-                        }
-
-                        outstream.write( buffer, 0, l );
-                        remaining -= l;
-                        transferProgressed( completed, this.length );
+                        break;
                     }
+                    outstream.write( buffer, 0, l );
+                    completed += l;
+                    transferProgressed( completed, total );
                 }
+                outstream.flush();
                 transferSucceeded( completed );
             }
             finally
@@ -966,6 +1566,12 @@ public class TomcatManager
             {
                 return;
             }
+            long now = System.currentTimeMillis();
+            if ( completedSize < totalSize && now - lastProgressTime < PROGRESS_INTERVAL )
+            {
+                return;
+            }
+            lastProgressTime = now;
 
             StringBuilder buffer = new StringBuilder( 64 );
 
@@ -985,12 +1591,13 @@ public class TomcatManager
                 String len = contentLength >= 1024 ? toKB( contentLength ) + " KB" : contentLength + " B";
 
                 String throughput = "";
-                long duration = System.currentTimeMillis() - startTime;
+                long duration = System.nanoTime() - startTime;
                 if ( duration > 0 )
                 {
                     DecimalFormat format = new DecimalFormat( "0.0", new DecimalFormatSymbols( Locale.ENGLISH ) );
-                    double kbPerSec = ( contentLength / 1024.0 ) / ( duration / 1000.0 );
-                    throughput = " at " + format.format( kbPerSec ) + " KB/sec";
+                    double seconds = duration / 1000000000.0;
+                    double kbPerSec = ( contentLength / 1024.0 ) / seconds;
+                    throughput = " in " + format.format( seconds ) + " s at " + format.format( kbPerSec ) + " KB/sec";
                 }
 
                 out.println( type + ": " + url + " (" + len + throughput + ")" );
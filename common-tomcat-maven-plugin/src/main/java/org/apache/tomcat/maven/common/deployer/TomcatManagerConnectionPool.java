@@ -0,0 +1,302 @@
+package org.apache.tomcat.maven.common.deployer;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpConnectionMetrics;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeLayeredSocketFactory;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keep-alive connections to a Tomcat manager shared by the {@link TomcatManager} instances of a build, so the
+ * goals of a multi modules build do not open a new connection (and TLS handshake) per module. Pools are
+ * registered by manager scheme, host, port and credentials with {@link #getSharedPool(URL, String, String)} and
+ * live until the JVM exits.
+ *
+ * @since 3.0
+ */
+public class TomcatManagerConnectionPool
+{
+    /**
+     * Maximum number of connections of a pool.
+     */
+    public static final int MAX_CONNECTIONS = 5;
+
+    /**
+     * Pooled connections idle for longer are closed before being leased again.
+     */
+    private static final long IDLE_TIMEOUT = 30;
+
+    private static final ConcurrentMap<String, TomcatManagerConnectionPool> SHARED_POOLS =
+        new ConcurrentHashMap<String, TomcatManagerConnectionPool>();
+
+    private static final AtomicBoolean SHUTDOWN_HOOK_REGISTERED = new AtomicBoolean();
+
+    private final PoolingClientConnectionManager connectionManager;
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final AtomicLong reusedConnectionCount = new AtomicLong();
+
+    private final boolean shared;
+
+    /**
+     * Creates a pool used by a single {@link TomcatManager}.
+     */
+    public TomcatManagerConnectionPool()
+    {
+        this( false );
+    }
+
+    private TomcatManagerConnectionPool( boolean shared )
+    {
+        this.shared = shared;
+        SchemeRegistry schemeRegistry = new SchemeRegistry();
+        schemeRegistry.register( new Scheme( "http", 80, PlainSocketFactory.getSocketFactory() ) );
+        schemeRegistry.register( new Scheme( "https", 443, new LazySslSocketFactory() ) );
+        this.connectionManager = new PoolingClientConnectionManager( schemeRegistry );
+        connectionManager.setMaxTotal( MAX_CONNECTIONS );
+        // all the connections of a pool go to the same manager
+        connectionManager.setDefaultMaxPerRoute( MAX_CONNECTIONS );
+    }
+
+    /**
+     * Gets the pool shared by all the managers using the same url scheme, host, port and credentials, creating
+     * it on first use.
+     *
+     * @param url      the url of the Tomcat manager
+     * @param username the username used to authenticate, may be <code>null</code>
+     * @param password the password used to authenticate, may be <code>null</code>
+     * @return the shared pool
+     */
+    public static TomcatManagerConnectionPool getSharedPool( URL url, String username, String password )
+    {
+        String key = key( url, username, password );
+        TomcatManagerConnectionPool pool = SHARED_POOLS.get( key );
+        if ( pool == null )
+        {
+            TomcatManagerConnectionPool created = new TomcatManagerConnectionPool( true );
+            pool = SHARED_POOLS.putIfAbsent( key, created );
+            if ( pool == null )
+            {
+                pool = created;
+                registerShutdownHook();
+            }
+            else
+            {
+                created.shutdown();
+            }
+        }
+        pool.connectionManager.closeExpiredConnections();
+        pool.connectionManager.closeIdleConnections( IDLE_TIMEOUT, TimeUnit.SECONDS );
+        return pool;
+    }
+
+    /**
+     * Closes the connections of all the shared pools and forgets them.
+     */
+    public static void shutdownSharedPools()
+    {
+        for ( String key : SHARED_POOLS.keySet() )
+        {
+            TomcatManagerConnectionPool pool = SHARED_POOLS.remove( key );
+            if ( pool != null )
+            {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static void registerShutdownHook()
+    {
+        if ( SHUTDOWN_HOOK_REGISTERED.compareAndSet( false, true ) )
+        {
+            Runtime.getRuntime().addShutdownHook( new Thread( "tomcat-manager-connection-pools-shutdown" )
+            {
+                @Override
+                public void run()
+                {
+                    shutdownSharedPools();
+                }
+            } );
+        }
+    }
+
+    /**
+     * The password is not kept in the key, only a digest of it.
+     */
+    private static String key( URL url, String username, String password )
+    {
+        int port = url.getPort() > -1 ? url.getPort() : url.getDefaultPort();
+        return url.getProtocol().toLowerCase() + "://" + url.getHost().toLowerCase() + ":" + port + "|" + (
+            username == null ? "" : username ) + "|" + digest( password == null ? "" : password );
+    }
+
+    private static String digest( String value )
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance( "SHA-256" ).digest( value.getBytes( "UTF-8" ) );
+            StringBuilder hex = new StringBuilder( digest.length * 2 );
+            for ( byte b : digest )
+            {
+                hex.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) ).append( Character.forDigit( b & 0xf, 16 ) );
+            }
+            return hex.toString();
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e.getMessage(), e );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Counts a request executed with the given context, while the connection is still bound to it.
+     *
+     * @param context the context used to execute the request
+     */
+    void recordRequest( HttpContext context )
+    {
+        requestCount.incrementAndGet();
+        Object connection = context.getAttribute( ExecutionContext.HTTP_CONNECTION );
+        if ( connection instanceof HttpConnection )
+        {
+            try
+            {
+                HttpConnectionMetrics metrics = ( (HttpConnection) connection ).getMetrics();
+                if ( metrics != null && metrics.getRequestCount() > 1 )
+                {
+                    reusedConnectionCount.incrementAndGet();
+                }
+            }
+            catch ( IllegalStateException e )
+            {
+                // connection already released to the pool
+            }
+        }
+    }
+
+    public ClientConnectionManager getConnectionManager()
+    {
+        return connectionManager;
+    }
+
+    /**
+     * @return the number of requests executed with this pool
+     */
+    public long getRequestCount()
+    {
+        return requestCount.get();
+    }
+
+    /**
+     * @return the number of requests sent on a kept alive connection instead of a new one
+     */
+    public long getReusedConnectionCount()
+    {
+        return reusedConnectionCount.get();
+    }
+
+    /**
+     * @return <code>true</code> if the pool is shared by the managers of the build
+     */
+    public boolean isShared()
+    {
+        return shared;
+    }
+
+    /**
+     * Closes the pooled connections.
+     */
+    public void shutdown()
+    {
+        connectionManager.shutdown();
+    }
+
+    /**
+     * Creates the default TLS socket factory on the first https connection: loading the trusted certificates costs
+     * hundreds of milliseconds that plain http managers do not need to pay.
+     */
+    private static class LazySslSocketFactory
+        implements SchemeLayeredSocketFactory
+    {
+        private volatile SSLSocketFactory delegate;
+
+        private SSLSocketFactory getDelegate()
+        {
+            SSLSocketFactory factory = delegate;
+            if ( factory == null )
+            {
+                factory = SSLSocketFactory.getSocketFactory();
+                delegate = factory;
+            }
+            return factory;
+        }
+
+        public Socket createSocket( HttpParams params )
+            throws IOException
+        {
+            return getDelegate().createSocket( params );
+        }
+
+        public Socket connectSocket( Socket socket, InetSocketAddress remoteAddress, InetSocketAddress localAddress,
+                                     HttpParams params )
+            throws IOException, ConnectTimeoutException
+        {
+            return getDelegate().connectSocket( socket, remoteAddress, localAddress, params );
+        }
+
+        public boolean isSecure( Socket socket )
+        {
+            return getDelegate().isSecure( socket );
+        }
+
+        public Socket createLayeredSocket( Socket socket, String target, int port, HttpParams params )
+            throws IOException
+        {
+            return getDelegate().createLayeredSocket( socket, target, port, params );
+        }
+    }
+}
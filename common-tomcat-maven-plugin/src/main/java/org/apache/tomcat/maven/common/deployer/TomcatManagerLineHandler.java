@@ -0,0 +1,37 @@
+package org.apache.tomcat.maven.common.deployer;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+/**
+ * Receives the lines of a manager response as they are read, instead of the whole body in a
+ * {@link TomcatManagerResponse}: the first line is the <code>OK - </code> or <code>FAIL - </code> status message of
+ * the text interface, the records follow.
+ *
+ * @since 3.0
+ */
+public interface TomcatManagerLineHandler
+{
+    /**
+     * @param line a line of the response, without the line terminator
+     * @throws TomcatManagerException to stop reading the response
+     */
+    void handleLine( String line )
+        throws TomcatManagerException;
+}
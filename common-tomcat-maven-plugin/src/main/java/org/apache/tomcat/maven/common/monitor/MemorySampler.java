@@ -0,0 +1,210 @@
+package org.apache.tomcat.maven.common.monitor;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.tomcat.maven.common.deployer.TomcatManager;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerException;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerLineHandler;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerResponse;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Takes {@link MemorySnapshot}s of a Tomcat through its manager: memory pools, class loading and webapp class
+ * loaders from the <code>jmxproxy</code> servlet, which requires the <code>manager-jmx</code> role, and leaked class
+ * loaders from the <code>findleaks</code> command, which triggers a full garbage collection first so the pools are
+ * measured after it.
+ *
+ * @since 3.0
+ */
+public class MemorySampler
+{
+    static final String MEMORY_POOLS = "java.lang:type=MemoryPool,*";
+
+    static final String CLASS_LOADING = "java.lang:type=ClassLoading";
+
+    /**
+     * <code>WebappClassLoader</code> up to Tomcat 8.0, <code>ParallelWebappClassLoader</code> after.
+     */
+    static final String WEBAPP_CLASS_LOADERS = "Catalina:type=*WebappClassLoader,*";
+
+    private static final Pattern NAME = Pattern.compile( "^Name: .*[:,]name=([^,]+)" );
+
+    private static final Pattern CONTEXT = Pattern.compile( "^Name: .*[:,]context=([^,]*)" );
+
+    private static final Pattern USED = Pattern.compile( "[{ ]used=(\\d+)" );
+
+    private static final Pattern COUNT = Pattern.compile( "^(LoadedClassCount|UnloadedClassCount): (\\d+)" );
+
+    private final TomcatManager manager;
+
+    private boolean findLeaks = true;
+
+    public MemorySampler( TomcatManager manager )
+    {
+        this.manager = manager;
+    }
+
+    /**
+     * Takes a snapshot.
+     *
+     * @return the snapshot
+     * @throws TomcatManagerException if a manager request fails
+     * @throws IOException            if an i/o error occurs
+     */
+    public MemorySnapshot snapshot()
+        throws TomcatManagerException, IOException
+    {
+        MemorySnapshot snapshot = new MemorySnapshot();
+        if ( findLeaks )
+        {
+            TomcatManagerResponse response = manager.findLeaks();
+            String body = response.getHttpResponseBody();
+            if ( response.getStatusCode() >= 400 || body == null || !body.startsWith( "OK" ) )
+            {
+                throw new TomcatManagerException( "cannot find the leaks: " + ( body == null
+                    ? response.getStatusCode() + " " + response.getReasonPhrase()
+                    : body.trim() ) );
+            }
+            parseLeaks( body, snapshot.leakedClassLoaders );
+        }
+        snapshot.time = System.currentTimeMillis();
+
+        final MemorySnapshot target = snapshot;
+        queryJmx( MEMORY_POOLS, new TomcatManagerLineHandler()
+        {
+            private String pool;
+
+            public void handleLine( String line )
+            {
+                Matcher name = NAME.matcher( line );
+                if ( name.find() )
+                {
+                    pool = name.group( 1 );
+                    return;
+                }
+                Matcher used = USED.matcher( line );
+                if ( pool != null && line.startsWith( "Usage: " ) && used.find() )
+                {
+                    target.pools.put( pool, Long.parseLong( used.group( 1 ) ) );
+                }
+            }
+        } );
+        queryJmx( CLASS_LOADING, new TomcatManagerLineHandler()
+        {
+            public void handleLine( String line )
+            {
+                Matcher count = COUNT.matcher( line );
+                if ( count.find() )
+                {
+                    long value = Long.parseLong( count.group( 2 ) );
+                    if ( "LoadedClassCount".equals( count.group( 1 ) ) )
+                    {
+                        target.loadedClasses = value;
+                    }
+                    else
+                    {
+                        target.unloadedClasses = value;
+                    }
+                }
+            }
+        } );
+        queryJmx( WEBAPP_CLASS_LOADERS, new TomcatManagerLineHandler()
+        {
+            public void handleLine( String line )
+            {
+                Matcher context = CONTEXT.matcher( line );
+                if ( context.find() )
+                {
+                    increment( target.classLoaders, context.group( 1 ).length() == 0 ? "/" : context.group( 1 ) );
+                }
+            }
+        } );
+        return snapshot;
+    }
+
+    private void queryJmx( String query, final TomcatManagerLineHandler handler )
+        throws TomcatManagerException, IOException
+    {
+        final String[] status = new String[1];
+        TomcatManagerResponse response = manager.queryJmx( query, new TomcatManagerLineHandler()
+        {
+            public void handleLine( String line )
+                throws TomcatManagerException
+            {
+                if ( status[0] == null )
+                {
+                    status[0] = line;
+                    return;
+                }
+                handler.handleLine( line );
+            }
+        } );
+        if ( response.getStatusCode() >= 400 )
+        {
+            throw new TomcatManagerException(
+                "cannot query " + query + ": " + response.getStatusCode() + " " + response.getReasonPhrase() );
+        }
+        if ( status[0] == null || !status[0].startsWith( "OK" ) )
+        {
+            throw new TomcatManagerException( "cannot query " + query + ": " + status[0] );
+        }
+    }
+
+    /**
+     * Counts the context paths listed after the status line of the <code>findleaks</code> response, a context is
+     * listed once per leaked class loader.
+     */
+    static void parseLeaks( String body, Map<String, Integer> leaks )
+    {
+        String[] lines = body.split( "\\r?\\n" );
+        for ( int i = 1; i < lines.length; i++ )
+        {
+            String context = lines[i].trim();
+            if ( context.length() > 0 )
+            {
+                increment( leaks, context );
+            }
+        }
+    }
+
+    private static void increment( Map<String, Integer> counts, String key )
+    {
+        Integer count = counts.get( key );
+        counts.put( key, count == null ? 1 : count + 1 );
+    }
+
+    public boolean isFindLeaks()
+    {
+        return findLeaks;
+    }
+
+    /**
+     * @param findLeaks whether to ask the manager for the leaked class loaders, which triggers a full garbage
+     *                  collection
+     */
+    public MemorySampler setFindLeaks( boolean findLeaks )
+    {
+        this.findLeaks = findLeaks;
+        return this;
+    }
+}
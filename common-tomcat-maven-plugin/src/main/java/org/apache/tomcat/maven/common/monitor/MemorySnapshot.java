@@ -0,0 +1,266 @@
+package org.apache.tomcat.maven.common.monitor;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Memory state of a Tomcat taken by a {@link MemorySampler}: used size of each memory pool, loaded classes, class
+ * loaders of the running webapps and class loaders leaked by the stopped ones. Snapshots are stored in properties
+ * files to be compared after a redeploy or a load phase.
+ *
+ * @since 3.0
+ */
+public class MemorySnapshot
+{
+    private static final String POOL_PREFIX = "pool.";
+
+    private static final String CLASS_LOADERS_PREFIX = "classLoaders.";
+
+    private static final String LEAKS_PREFIX = "leaks.";
+
+    long time;
+
+    long loadedClasses = -1;
+
+    long unloadedClasses = -1;
+
+    final Map<String, Long> pools = new TreeMap<String, Long>();
+
+    final Map<String, Integer> classLoaders = new TreeMap<String, Integer>();
+
+    final Map<String, Integer> leakedClassLoaders = new TreeMap<String, Integer>();
+
+    /**
+     * @return when the snapshot was taken
+     */
+    public long getTime()
+    {
+        return time;
+    }
+
+    /**
+     * @return the classes currently loaded, -1 if not sampled
+     */
+    public long getLoadedClasses()
+    {
+        return loadedClasses;
+    }
+
+    /**
+     * @return the classes unloaded since the start of the server, -1 if not sampled
+     */
+    public long getUnloadedClasses()
+    {
+        return unloadedClasses;
+    }
+
+    /**
+     * @return the used bytes by memory pool name
+     */
+    public Map<String, Long> getPools()
+    {
+        return Collections.unmodifiableMap( pools );
+    }
+
+    /**
+     * @return the class loaders of the running webapps by context path
+     */
+    public Map<String, Integer> getClassLoaders()
+    {
+        return Collections.unmodifiableMap( classLoaders );
+    }
+
+    /**
+     * @return the class loaders still referenced after their webapp stopped, by context path
+     */
+    public Map<String, Integer> getLeakedClassLoaders()
+    {
+        return Collections.unmodifiableMap( leakedClassLoaders );
+    }
+
+    /**
+     * @param baseline an earlier snapshot
+     * @return the growth of the used bytes of each memory pool known by both snapshots, largest first
+     */
+    public List<Map.Entry<String, Long>> getPoolGrowth( MemorySnapshot baseline )
+    {
+        Map<String, Long> growth = new LinkedHashMap<String, Long>();
+        for ( Map.Entry<String, Long> pool : pools.entrySet() )
+        {
+            Long before = baseline.pools.get( pool.getKey() );
+            if ( before != null )
+            {
+                growth.put( pool.getKey(), pool.getValue() - before );
+            }
+        }
+        List<Map.Entry<String, Long>> sorted = new ArrayList<Map.Entry<String, Long>>( growth.entrySet() );
+        Collections.sort( sorted, new Comparator<Map.Entry<String, Long>>()
+        {
+            public int compare( Map.Entry<String, Long> first, Map.Entry<String, Long> second )
+            {
+                return second.getValue().compareTo( first.getValue() );
+            }
+        } );
+        return sorted;
+    }
+
+    /**
+     * @param baseline an earlier snapshot
+     * @return the classes loaded since the baseline, 0 if either snapshot did not sample them
+     */
+    public long getLoadedClassesGrowth( MemorySnapshot baseline )
+    {
+        return loadedClasses < 0 || baseline.loadedClasses < 0 ? 0 : loadedClasses - baseline.loadedClasses;
+    }
+
+    /**
+     * @param baseline an earlier snapshot
+     * @return the number of class loaders leaked since the baseline by context path, only the contexts with new
+     *         leaks
+     */
+    public Map<String, Integer> getNewLeaks( MemorySnapshot baseline )
+    {
+        return growth( leakedClassLoaders, baseline.leakedClassLoaders );
+    }
+
+    /**
+     * @param baseline an earlier snapshot
+     * @return the change of the class loaders of the running webapps by context path, only the contexts changed
+     */
+    public Map<String, Integer> getClassLoaderGrowth( MemorySnapshot baseline )
+    {
+        return growth( classLoaders, baseline.classLoaders );
+    }
+
+    private static Map<String, Integer> growth( Map<String, Integer> after, Map<String, Integer> before )
+    {
+        Map<String, Integer> growth = new TreeMap<String, Integer>();
+        TreeSet<String> contexts = new TreeSet<String>( after.keySet() );
+        contexts.addAll( before.keySet() );
+        for ( String context : contexts )
+        {
+            int delta = count( after, context ) - count( before, context );
+            if ( delta != 0 )
+            {
+                growth.put( context, delta );
+            }
+        }
+        return growth;
+    }
+
+    private static int count( Map<String, Integer> counts, String context )
+    {
+        Integer count = counts.get( context );
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * @param file where to store the snapshot
+     * @throws IOException if the file cannot be written
+     */
+    public void store( File file )
+        throws IOException
+    {
+        Properties properties = new Properties();
+        properties.setProperty( "time", Long.toString( time ) );
+        properties.setProperty( "loadedClasses", Long.toString( loadedClasses ) );
+        properties.setProperty( "unloadedClasses", Long.toString( unloadedClasses ) );
+        for ( Map.Entry<String, Long> pool : pools.entrySet() )
+        {
+            properties.setProperty( POOL_PREFIX + pool.getKey(), pool.getValue().toString() );
+        }
+        for ( Map.Entry<String, Integer> loaders : classLoaders.entrySet() )
+        {
+            properties.setProperty( CLASS_LOADERS_PREFIX + loaders.getKey(), loaders.getValue().toString() );
+        }
+        for ( Map.Entry<String, Integer> leaks : leakedClassLoaders.entrySet() )
+        {
+            properties.setProperty( LEAKS_PREFIX + leaks.getKey(), leaks.getValue().toString() );
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if ( !parent.isDirectory() && !parent.mkdirs() )
+        {
+            throw new IOException( "cannot create " + parent );
+        }
+        try (OutputStream out = new FileOutputStream( file ))
+        {
+            properties.store( out, "Tomcat Maven Plugin memory snapshot" );
+        }
+    }
+
+    /**
+     * @param file a file written by {@link #store(File)}
+     * @return the snapshot
+     * @throws IOException if the file cannot be read
+     */
+    public static MemorySnapshot load( File file )
+        throws IOException
+    {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream( file ))
+        {
+            properties.load( in );
+        }
+        MemorySnapshot snapshot = new MemorySnapshot();
+        try
+        {
+            snapshot.time = Long.parseLong( properties.getProperty( "time", "0" ) );
+            snapshot.loadedClasses = Long.parseLong( properties.getProperty( "loadedClasses", "-1" ) );
+            snapshot.unloadedClasses = Long.parseLong( properties.getProperty( "unloadedClasses", "-1" ) );
+            for ( String key : properties.stringPropertyNames() )
+            {
+                String value = properties.getProperty( key );
+                if ( key.startsWith( POOL_PREFIX ) )
+                {
+                    snapshot.pools.put( key.substring( POOL_PREFIX.length() ), Long.parseLong( value ) );
+                }
+                else if ( key.startsWith( CLASS_LOADERS_PREFIX ) )
+                {
+                    snapshot.classLoaders.put( key.substring( CLASS_LOADERS_PREFIX.length() ),
+                                               Integer.parseInt( value ) );
+                }
+                else if ( key.startsWith( LEAKS_PREFIX ) )
+                {
+                    snapshot.leakedClassLoaders.put( key.substring( LEAKS_PREFIX.length() ),
+                                                     Integer.parseInt( value ) );
+                }
+            }
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new IOException( "invalid memory snapshot " + file + ": " + e.getMessage(), e );
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,145 @@
+package org.apache.tomcat.maven.common.monitor;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stacks sampled from thread dumps, aggregated in the collapsed stack format of flame graphs: one
+ * <code>frame;frame;frame count</code> line per distinct stack, root frame first.
+ *
+ * @since 3.0
+ */
+public class StackProfile
+{
+    private final Map<String, Long> stacks = new HashMap<String, Long>();
+
+    private final Map<String, Long> leaves = new HashMap<String, Long>();
+
+    private int dumps;
+
+    private long threads;
+
+    /**
+     * Adds a sampled thread stack.
+     *
+     * @param frames the frames, top of the stack (innermost call) first as in a thread dump
+     */
+    public void add( List<String> frames )
+    {
+        if ( frames.isEmpty() )
+        {
+            return;
+        }
+        StringBuilder stack = new StringBuilder();
+        for ( int i = frames.size() - 1; i >= 0; i-- )
+        {
+            stack.append( frames.get( i ) );
+            if ( i > 0 )
+            {
+                stack.append( ';' );
+            }
+        }
+        increment( stacks, stack.toString() );
+        increment( leaves, frames.get( 0 ) );
+        threads++;
+    }
+
+    void addDump()
+    {
+        dumps++;
+    }
+
+    private static void increment( Map<String, Long> counts, String key )
+    {
+        Long count = counts.get( key );
+        counts.put( key, count == null ? 1L : count + 1 );
+    }
+
+    /**
+     * @return the number of thread dumps taken
+     */
+    public int getDumps()
+    {
+        return dumps;
+    }
+
+    /**
+     * @return the number of thread stacks sampled
+     */
+    public long getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * @return the sample count of each collapsed stack
+     */
+    public Map<String, Long> getStacks()
+    {
+        return Collections.unmodifiableMap( stacks );
+    }
+
+    /**
+     * @param limit the maximum number of frames returned
+     * @return the frames found most often at the top of the stacks with their sample count, most frequent first
+     */
+    public List<Map.Entry<String, Long>> getHotSpots( int limit )
+    {
+        List<Map.Entry<String, Long>> hotSpots = sort( leaves );
+        return hotSpots.subList( 0, Math.min( limit, hotSpots.size() ) );
+    }
+
+    /**
+     * Writes the collapsed stacks, most frequent first.
+     *
+     * @param writer where to write
+     * @throws IOException if an i/o error occurs
+     */
+    public void writeCollapsed( Writer writer )
+        throws IOException
+    {
+        for ( Map.Entry<String, Long> stack : sort( stacks ) )
+        {
+            writer.write( stack.getKey() + ' ' + stack.getValue() + '\n' );
+        }
+    }
+
+    private static List<Map.Entry<String, Long>> sort( Map<String, Long> counts )
+    {
+        List<Map.Entry<String, Long>> sorted = new ArrayList<Map.Entry<String, Long>>( counts.entrySet() );
+        Collections.sort( sorted, new Comparator<Map.Entry<String, Long>>()
+        {
+            public int compare( Map.Entry<String, Long> first, Map.Entry<String, Long> second )
+            {
+                int result = second.getValue().compareTo( first.getValue() );
+                return result != 0 ? result : first.getKey().compareTo( second.getKey() );
+            }
+        } );
+        return sorted;
+    }
+}
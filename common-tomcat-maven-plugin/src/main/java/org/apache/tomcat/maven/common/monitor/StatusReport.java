@@ -0,0 +1,203 @@
+package org.apache.tomcat.maven.common.monitor;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The time series of {@link StatusSample}s of a sampling period and its summary, written as CSV or JSON.
+ *
+ * @since 3.0
+ */
+public class StatusReport
+{
+    private static final String[] COLUMNS =
+        { "time", "threadsBusy", "threadsCurrent", "threadsMax", "requestCount", "errorCount", "processingTime",
+            "bytesReceived", "bytesSent", "activeSessions", "heapUsed", "heapMax" };
+
+    private final List<StatusSample> samples;
+
+    /**
+     * @param samples the samples, at least one, in time order
+     */
+    public StatusReport( List<StatusSample> samples )
+    {
+        if ( samples.isEmpty() )
+        {
+            throw new IllegalArgumentException( "no sample" );
+        }
+        this.samples = samples;
+    }
+
+    public List<StatusSample> getSamples()
+    {
+        return samples;
+    }
+
+    public int getMaxThreadsBusy()
+    {
+        int max = 0;
+        for ( StatusSample sample : samples )
+        {
+            max = Math.max( max, sample.getThreadsBusy() );
+        }
+        return max;
+    }
+
+    /**
+     * @return the highest heap used in percent of the maximum heap, -1 if unknown
+     */
+    public double getMaxHeapUsage()
+    {
+        double max = -1;
+        for ( StatusSample sample : samples )
+        {
+            if ( sample.getHeapUsed() >= 0 && sample.getHeapMax() > 0 )
+            {
+                max = Math.max( max, 100.0 * sample.getHeapUsed() / sample.getHeapMax() );
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return the requests served during the sampling
+     */
+    public long getRequests()
+    {
+        return last().getRequestCount() - first().getRequestCount();
+    }
+
+    /**
+     * @return the requests in error during the sampling
+     */
+    public long getErrors()
+    {
+        return last().getErrorCount() - first().getErrorCount();
+    }
+
+    /**
+     * @return the average processing time in milliseconds of the requests served during the sampling, 0 without
+     *         requests
+     */
+    public double getAverageProcessingTime()
+    {
+        long requests = getRequests();
+        return requests <= 0 ? 0 : (double) ( last().getProcessingTime() - first().getProcessingTime() ) / requests;
+    }
+
+    /**
+     * @return the requests per second during the sampling
+     */
+    public double getThroughput()
+    {
+        long elapsed = last().getTime() - first().getTime();
+        return elapsed <= 0 ? 0 : getRequests() * 1000.0 / elapsed;
+    }
+
+    /**
+     * @return the highest active sessions, -1 if not sampled
+     */
+    public long getMaxActiveSessions()
+    {
+        long max = -1;
+        for ( StatusSample sample : samples )
+        {
+            max = Math.max( max, sample.getActiveSessions() );
+        }
+        return max;
+    }
+
+    /**
+     * Writes one line per sample after a header line.
+     *
+     * @param writer where to write
+     * @throws IOException if an i/o error occurs
+     */
+    public void writeCsv( Writer writer )
+        throws IOException
+    {
+        for ( int i = 0; i < COLUMNS.length; i++ )
+        {
+            writer.write( ( i == 0 ? "" : "," ) + COLUMNS[i] );
+        }
+        writer.write( '\n' );
+        for ( StatusSample sample : samples )
+        {
+            long[] values = values( sample );
+            for ( int i = 0; i < values.length; i++ )
+            {
+                writer.write( ( i == 0 ? "" : "," ) + values[i] );
+            }
+            writer.write( '\n' );
+        }
+    }
+
+    /**
+     * Writes an object with the <code>summary</code> and the <code>samples</code> array.
+     *
+     * @param writer where to write
+     * @throws IOException if an i/o error occurs
+     */
+    public void writeJson( Writer writer )
+        throws IOException
+    {
+        writer.write( "{\n  \"summary\": {" );
+        writer.write( String.format( Locale.ROOT,
+                                     "\"requests\": %d, \"errors\": %d, \"throughput\": %.2f, "
+                                         + "\"averageProcessingTime\": %.2f, \"maxThreadsBusy\": %d, "
+                                         + "\"maxHeapUsage\": %.1f, \"maxActiveSessions\": %d", getRequests(),
+                                     getErrors(), getThroughput(), getAverageProcessingTime(), getMaxThreadsBusy(),
+                                     getMaxHeapUsage(), getMaxActiveSessions() ) );
+        writer.write( "},\n  \"samples\": [\n" );
+        for ( int s = 0; s < samples.size(); s++ )
+        {
+            long[] values = values( samples.get( s ) );
+            writer.write( "    {" );
+            for ( int i = 0; i < values.length; i++ )
+            {
+                writer.write( ( i == 0 ? "\"" : ", \"" ) + COLUMNS[i] + "\": " + values[i] );
+            }
+            writer.write( s == samples.size() - 1 ? "}\n" : "},\n" );
+        }
+        writer.write( "  ]\n}\n" );
+    }
+
+    private static long[] values( StatusSample sample )
+    {
+        return new long[]{ sample.getTime(), sample.getThreadsBusy(), sample.getThreadsCurrent(),
+            sample.getThreadsMax(), sample.getRequestCount(), sample.getErrorCount(), sample.getProcessingTime(),
+            sample.getBytesReceived(), sample.getBytesSent(), sample.getActiveSessions(), sample.getHeapUsed(),
+            sample.getHeapMax() };
+    }
+
+    private StatusSample first()
+    {
+        return samples.get( 0 );
+    }
+
+    private StatusSample last()
+    {
+        return samples.get( samples.size() - 1 );
+    }
+}
@@ -0,0 +1,128 @@
+package org.apache.tomcat.maven.common.monitor;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+/**
+ * One sample of the server performance counters. The request counters are cumulative since the start of the
+ * connectors, -1 marks a value the manager did not provide.
+ *
+ * @since 3.0
+ */
+public class StatusSample
+{
+    long time;
+
+    int threadsBusy;
+
+    int threadsCurrent;
+
+    int threadsMax;
+
+    long requestCount;
+
+    long errorCount;
+
+    long processingTime;
+
+    long bytesReceived;
+
+    long bytesSent;
+
+    long activeSessions = -1;
+
+    long heapUsed = -1;
+
+    long heapMax = -1;
+
+    /**
+     * @return the time of the sample in milliseconds since the epoch
+     */
+    public long getTime()
+    {
+        return time;
+    }
+
+    /**
+     * @return the busy threads of all the connectors, without the one serving the status request
+     */
+    public int getThreadsBusy()
+    {
+        return threadsBusy;
+    }
+
+    public int getThreadsCurrent()
+    {
+        return threadsCurrent;
+    }
+
+    public int getThreadsMax()
+    {
+        return threadsMax;
+    }
+
+    public long getRequestCount()
+    {
+        return requestCount;
+    }
+
+    public long getErrorCount()
+    {
+        return errorCount;
+    }
+
+    /**
+     * @return the total processing time of the requests in milliseconds
+     */
+    public long getProcessingTime()
+    {
+        return processingTime;
+    }
+
+    public long getBytesReceived()
+    {
+        return bytesReceived;
+    }
+
+    public long getBytesSent()
+    {
+        return bytesSent;
+    }
+
+    /**
+     * @return the active sessions of all the webapps, -1 without <code>jmxproxy</code> access
+     */
+    public long getActiveSessions()
+    {
+        return activeSessions;
+    }
+
+    public long getHeapUsed()
+    {
+        return heapUsed;
+    }
+
+    /**
+     * @return the maximum heap size, -1 if not limited
+     */
+    public long getHeapMax()
+    {
+        return heapMax;
+    }
+}
@@ -0,0 +1,274 @@
+package org.apache.tomcat.maven.common.monitor;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.tomcat.maven.common.deployer.TomcatManager;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerException;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerLineHandler;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerResponse;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Samples the performance counters of a Tomcat through its manager: thread pools, request counters and memory from
+ * the <code>status</code> servlet, active sessions and heap usage from the <code>jmxproxy</code> servlet. Without the
+ * <code>manager-jmx</code> role the sessions are not sampled and the heap comes from the status memory.
+ *
+ * @since 3.0
+ */
+public class StatusSampler
+{
+    /**
+     * Session managers of all the webapps.
+     */
+    static final String SESSION_MANAGERS = "Catalina:type=Manager,*";
+
+    static final String MEMORY_MBEAN = "java.lang:type=Memory";
+
+    private static final Pattern ACTIVE_SESSIONS = Pattern.compile( "^activeSessions: (\\d+)" );
+
+    private static final Pattern HEAP_USED = Pattern.compile( "\\bused=(\\d+)" );
+
+    private static final Pattern HEAP_MAX = Pattern.compile( "\\bmax=(-?\\d+)" );
+
+    private final TomcatManager manager;
+
+    private boolean sessionsAvailable = true;
+
+    private boolean heapAvailable = true;
+
+    public StatusSampler( TomcatManager manager )
+    {
+        this.manager = manager;
+    }
+
+    /**
+     * Takes samples at a fixed rate, the first one at once.
+     *
+     * @param duration the sampling duration in milliseconds
+     * @param interval the time between two samples in milliseconds
+     * @return the samples
+     * @throws TomcatManagerException if the status cannot be read
+     * @throws IOException            if an i/o error occurs
+     * @throws InterruptedException   if interrupted while waiting for the next sample
+     */
+    public List<StatusSample> sample( long duration, long interval )
+        throws TomcatManagerException, IOException, InterruptedException
+    {
+        List<StatusSample> samples = new ArrayList<StatusSample>();
+        long start = System.currentTimeMillis();
+        long step = Math.max( 1, interval );
+        for ( long next = start; next <= start + duration; next += step )
+        {
+            long wait = next - System.currentTimeMillis();
+            if ( wait > 0 )
+            {
+                Thread.sleep( wait );
+            }
+            samples.add( sample() );
+        }
+        return samples;
+    }
+
+    /**
+     * Takes one sample.
+     *
+     * @return the sample
+     * @throws TomcatManagerException if the status cannot be read
+     * @throws IOException            if an i/o error occurs
+     */
+    public StatusSample sample()
+        throws TomcatManagerException, IOException
+    {
+        StatusSample sample = new StatusSample();
+        sample.time = System.currentTimeMillis();
+
+        TomcatManagerResponse status = manager.getStatus();
+        if ( status.getStatusCode() >= 400 )
+        {
+            throw new TomcatManagerException(
+                "cannot get the server status: " + status.getStatusCode() + " " + status.getReasonPhrase() );
+        }
+        parseStatus( status.getHttpResponseBody(), sample );
+        // the status request itself keeps a thread of the manager connector busy
+        sample.threadsBusy = Math.max( 0, sample.threadsBusy - 1 );
+
+        if ( sessionsAvailable )
+        {
+            sessionsAvailable = sampleSessions( sample );
+        }
+        if ( heapAvailable )
+        {
+            heapAvailable = sampleHeap( sample );
+        }
+        return sample;
+    }
+
+    /**
+     * @return <code>false</code> if the jmxproxy cannot be used
+     */
+    private boolean sampleSessions( final StatusSample sample )
+        throws TomcatManagerException, IOException
+    {
+        final long[] sessions = new long[1];
+        final boolean[] failed = new boolean[1];
+        TomcatManagerResponse response = manager.queryJmx( SESSION_MANAGERS, new TomcatManagerLineHandler()
+        {
+            public void handleLine( String line )
+            {
+                failed[0] |= line.startsWith( "FAIL" ) || line.startsWith( "Error" );
+                Matcher matcher = ACTIVE_SESSIONS.matcher( line );
+                if ( matcher.find() )
+                {
+                    sessions[0] += Long.parseLong( matcher.group( 1 ) );
+                }
+            }
+        } );
+        if ( response.getStatusCode() >= 400 || failed[0] )
+        {
+            return false;
+        }
+        sample.activeSessions = sessions[0];
+        return true;
+    }
+
+    private boolean sampleHeap( StatusSample sample )
+        throws TomcatManagerException, IOException
+    {
+        TomcatManagerResponse response = manager.getJmxAttribute( MEMORY_MBEAN, "HeapMemoryUsage" );
+        String body = response.getHttpResponseBody();
+        if ( response.getStatusCode() >= 400 || body == null || !body.startsWith( "OK" ) )
+        {
+            return false;
+        }
+        Matcher used = HEAP_USED.matcher( body );
+        Matcher max = HEAP_MAX.matcher( body );
+        if ( used.find() && max.find() )
+        {
+            sample.heapUsed = Long.parseLong( used.group( 1 ) );
+            sample.heapMax = Long.parseLong( max.group( 1 ) );
+        }
+        return true;
+    }
+
+    /**
+     * Reads the memory and the sums of the connector counters of the status XML.
+     */
+    static void parseStatus( String xml, StatusSample sample )
+        throws TomcatManagerException
+    {
+        Document document;
+        try
+        {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature( "http://apache.org/xml/features/disallow-doctype-decl", true );
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            document = builder.parse( new InputSource( new StringReader( xml ) ) );
+        }
+        catch ( ParserConfigurationException e )
+        {
+            throw new TomcatManagerException( "cannot parse the server status: " + e.getMessage(), e );
+        }
+        catch ( SAXException e )
+        {
+            throw new TomcatManagerException( "cannot parse the server status: " + e.getMessage(), e );
+        }
+        catch ( IOException e )
+        {
+            throw new TomcatManagerException( "cannot parse the server status: " + e.getMessage(), e );
+        }
+
+        NodeList memory = document.getElementsByTagName( "memory" );
+        if ( memory.getLength() > 0 )
+        {
+            Element element = (Element) memory.item( 0 );
+            sample.heapUsed = longAttribute( element, "total" ) - longAttribute( element, "free" );
+            sample.heapMax = longAttribute( element, "max" );
+        }
+
+        NodeList threadInfos = document.getElementsByTagName( "threadInfo" );
+        for ( int i = 0; i < threadInfos.getLength(); i++ )
+        {
+            Element element = (Element) threadInfos.item( i );
+            sample.threadsBusy += attribute( element, "currentThreadsBusy" );
+            sample.threadsCurrent += attribute( element, "currentThreadCount" );
+            sample.threadsMax += attribute( element, "maxThreads" );
+        }
+
+        NodeList requestInfos = document.getElementsByTagName( "requestInfo" );
+        for ( int i = 0; i < requestInfos.getLength(); i++ )
+        {
+            Element element = (Element) requestInfos.item( i );
+            sample.requestCount += longAttribute( element, "requestCount" );
+            sample.errorCount += longAttribute( element, "errorCount" );
+            sample.processingTime += longAttribute( element, "processingTime" );
+            sample.bytesReceived += longAttribute( element, "bytesReceived" );
+            sample.bytesSent += longAttribute( element, "bytesSent" );
+        }
+    }
+
+    private static int attribute( Element element, String name )
+    {
+        return (int) longAttribute( element, name );
+    }
+
+    private static long longAttribute( Element element, String name )
+    {
+        try
+        {
+            return Long.parseLong( element.getAttribute( name ).trim() );
+        }
+        catch ( NumberFormatException e )
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * @return <code>false</code> once a jmxproxy query of the session managers failed, the sessions are then not
+     *         sampled
+     */
+    public boolean isSessionsAvailable()
+    {
+        return sessionsAvailable;
+    }
+
+    /**
+     * @return <code>false</code> once a jmxproxy request of the heap usage failed, the heap then comes from the status
+     *         memory
+     */
+    public boolean isHeapAvailable()
+    {
+        return heapAvailable;
+    }
+}
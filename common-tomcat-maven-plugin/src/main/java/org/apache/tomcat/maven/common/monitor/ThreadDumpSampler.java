@@ -0,0 +1,205 @@
+package org.apache.tomcat.maven.common.monitor;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.tomcat.maven.common.deployer.TomcatManager;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerException;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerLineHandler;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Samples the thread stacks of a Tomcat by invoking <code>ThreadMXBean.dumpAllThreads</code> through the manager
+ * <code>jmxproxy</code> servlet, which requires the <code>manager-jmx</code> role. The servlet prints each
+ * <code>ThreadInfo</code> on one line as the <code>toString()</code> of its open MBean composite data, the frames
+ * are read from the <code>stackTrace</code> item.
+ *
+ * @since 3.0
+ */
+public class ThreadDumpSampler
+{
+    static final String THREADING_MBEAN = "java.lang:type=Threading";
+
+    /**
+     * Name of the request processing threads of the Tomcat connectors, for instance
+     * <code>http-nio-8080-exec-3</code>.
+     */
+    static final Pattern EXEC_THREAD = Pattern.compile( "-exec-\\d+$" );
+
+    // the items of the composite data follow a ", " or the opening brace, the composite types print "itemName=x"
+    private static final Pattern THREAD = Pattern.compile( "[{ ]threadName=(.*?), threadState=(\\w+)" );
+
+    private static final Pattern STACK_TRACE = Pattern.compile( "[{ ]stackTrace=\\[(.*?)\\], suspended=" );
+
+    private static final Pattern CLASS_NAME = Pattern.compile( "[{ ]className=([^,}]*)" );
+
+    private static final Pattern METHOD_NAME = Pattern.compile( "[{ ]methodName=([^,}]*)" );
+
+    private static final String FRAME_SEPARATOR = "CompositeDataSupport(";
+
+    /**
+     * Class of the jmxproxy request taking the dump, whose thread is left out.
+     */
+    private static final String JMX_PROXY_CLASS = "org.apache.catalina.manager.JMXProxyServlet";
+
+    private final TomcatManager manager;
+
+    private boolean execThreadsOnly = true;
+
+    private boolean runnableOnly = true;
+
+    public ThreadDumpSampler( TomcatManager manager )
+    {
+        this.manager = manager;
+    }
+
+    /**
+     * Takes thread dumps at a fixed rate, the first one at once.
+     *
+     * @param duration the sampling duration in milliseconds
+     * @param interval the time between two dumps in milliseconds
+     * @return the stacks sampled
+     * @throws TomcatManagerException if a thread dump fails
+     * @throws IOException            if an i/o error occurs
+     * @throws InterruptedException   if interrupted while waiting for the next dump
+     */
+    public StackProfile sample( long duration, long interval )
+        throws TomcatManagerException, IOException, InterruptedException
+    {
+        StackProfile profile = new StackProfile();
+        long start = System.currentTimeMillis();
+        long step = Math.max( 1, interval );
+        for ( long next = start; next <= start + duration; next += step )
+        {
+            long wait = next - System.currentTimeMillis();
+            if ( wait > 0 )
+            {
+                Thread.sleep( wait );
+            }
+            sample( profile );
+        }
+        return profile;
+    }
+
+    /**
+     * Takes one thread dump.
+     *
+     * @param profile where to add the stacks
+     * @throws TomcatManagerException if the thread dump fails
+     * @throws IOException            if an i/o error occurs
+     */
+    public void sample( final StackProfile profile )
+        throws TomcatManagerException, IOException
+    {
+        final String[] status = new String[1];
+        TomcatManagerResponse response =
+            manager.invokeJmx( THREADING_MBEAN, "dumpAllThreads", new TomcatManagerLineHandler()
+            {
+                public void handleLine( String line )
+                {
+                    if ( status[0] == null )
+                    {
+                        status[0] = line;
+                        return;
+                    }
+                    addThread( line, profile );
+                }
+            }, "false", "false" );
+        if ( response.getStatusCode() >= 400 )
+        {
+            throw new TomcatManagerException(
+                "cannot dump the threads: " + response.getStatusCode() + " " + response.getReasonPhrase() );
+        }
+        if ( status[0] == null || !status[0].startsWith( "OK" ) )
+        {
+            throw new TomcatManagerException( "cannot dump the threads: " + status[0] );
+        }
+        profile.addDump();
+    }
+
+    /**
+     * Adds the stack of a thread line of the dump unless filtered out.
+     */
+    void addThread( String line, StackProfile profile )
+    {
+        Matcher thread = THREAD.matcher( line );
+        Matcher stackTrace = STACK_TRACE.matcher( line );
+        if ( !thread.find() || !stackTrace.find() )
+        {
+            return;
+        }
+        if ( execThreadsOnly && !EXEC_THREAD.matcher( thread.group( 1 ) ).find() )
+        {
+            return;
+        }
+        if ( runnableOnly && !"RUNNABLE".equals( thread.group( 2 ) ) )
+        {
+            return;
+        }
+
+        List<String> frames = new ArrayList<String>();
+        for ( String frame : stackTrace.group( 1 ).split( Pattern.quote( FRAME_SEPARATOR ) ) )
+        {
+            Matcher className = CLASS_NAME.matcher( frame );
+            Matcher methodName = METHOD_NAME.matcher( frame );
+            if ( className.find() && methodName.find() )
+            {
+                if ( JMX_PROXY_CLASS.equals( className.group( 1 ) ) )
+                {
+                    return;
+                }
+                frames.add( className.group( 1 ) + '.' + methodName.group( 1 ) );
+            }
+        }
+        profile.add( frames );
+    }
+
+    public boolean isExecThreadsOnly()
+    {
+        return execThreadsOnly;
+    }
+
+    /**
+     * @param execThreadsOnly whether to only sample the request processing threads of the connectors
+     */
+    public ThreadDumpSampler setExecThreadsOnly( boolean execThreadsOnly )
+    {
+        this.execThreadsOnly = execThreadsOnly;
+        return this;
+    }
+
+    public boolean isRunnableOnly()
+    {
+        return runnableOnly;
+    }
+
+    /**
+     * @param runnableOnly whether to only sample the threads running, to leave out the idle and blocked ones
+     */
+    public ThreadDumpSampler setRunnableOnly( boolean runnableOnly )
+    {
+        this.runnableOnly = runnableOnly;
+        return this;
+    }
+}
@@ -0,0 +1,78 @@
+package org.apache.tomcat.maven.common.run;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Outcome of {@link EmbeddedContainer#drain(long)}.
+ *
+ * @since 3.0
+ */
+public class DrainResult
+{
+    private final String name;
+
+    private final int inFlight;
+
+    private final int remaining;
+
+    private final long elapsedMillis;
+
+    /**
+     * @param name          the name of the container
+     * @param inFlight      the requests in progress when the container stopped accepting requests
+     * @param remaining     the requests still in progress after the wait
+     * @param elapsedMillis the time waited
+     */
+    public DrainResult( String name, int inFlight, int remaining, long elapsedMillis )
+    {
+        this.name = name;
+        this.inFlight = inFlight;
+        this.remaining = remaining;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getInFlight()
+    {
+        return inFlight;
+    }
+
+    public int getRemaining()
+    {
+        return remaining;
+    }
+
+    /**
+     * @return the requests in progress that completed during the wait
+     */
+    public int getDrained()
+    {
+        return Math.max( 0, inFlight - remaining );
+    }
+
+    public long getElapsedMillis()
+    {
+        return elapsedMillis;
+    }
+}
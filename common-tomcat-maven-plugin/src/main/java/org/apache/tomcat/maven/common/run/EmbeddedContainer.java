@@ -0,0 +1,62 @@
+package org.apache.tomcat.maven.common.run;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * An embedded server registered in the {@link EmbeddedRegistry} to be shut down by the <code>shutdown</code> goal or
+ * when the JVM exits.
+ *
+ * @since 3.0
+ */
+public interface EmbeddedContainer
+{
+    /**
+     * @return a short description of the container for the logs, for instance its ports
+     */
+    String getName();
+
+    /**
+     * Stops accepting requests and waits for the requests in progress to complete, before a {@link #stop()} that
+     * would reset their connections.
+     *
+     * @param timeout maximum time in milliseconds to wait
+     * @return the requests drained
+     * @throws Exception if the container could not stop accepting requests
+     */
+    DrainResult drain( long timeout )
+        throws Exception;
+
+    /**
+     * Stops the container and releases its resources, waiting for its webapps to stop.
+     *
+     * @throws Exception if the container could not be stopped
+     */
+    void stop()
+        throws Exception;
+
+    /**
+     * Releases the ports of the container without waiting for its webapps, called from another thread when
+     * {@link #stop()} did not complete in time.
+     *
+     * @throws Exception if the container could not be stopped
+     */
+    void forceStop()
+        throws Exception;
+}
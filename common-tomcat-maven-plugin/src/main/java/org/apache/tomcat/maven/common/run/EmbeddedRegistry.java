@@ -21,25 +21,39 @@ package org.apache.tomcat.maven.common.run;
 
 import org.apache.maven.plugin.logging.Log;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Registry which collects all embedded Tomcat Servers so that they will be shutdown
  * through a shutdown hook when the JVM terminates or you can ask the registry to
- * shutdown all started servers.
+ * shutdown all started servers. The servers are stopped at the same time, each one within a timeout after which
+ * it is forcibly stopped. Servers can be registered and shut down concurrently by the modules of a parallel build.
  *
  * @author Mark Michaelis
  * @since 1.1
  */
 public final class EmbeddedRegistry
 {
-    private static EmbeddedRegistry instance;
+    /**
+     * Default maximum time in milliseconds for a container to stop before it is forcibly stopped.
+     */
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT = TimeUnit.SECONDS.toMillis( 60 );
 
-    private Set<Object> containers = new HashSet<Object>( 1 );
+    private final Set<EmbeddedContainer> containers =
+        Collections.newSetFromMap( new ConcurrentHashMap<EmbeddedContainer, Boolean>() );
 
     /**
      * Don't instantiate - use the instance through {@link #getInstance()}.
@@ -50,15 +64,14 @@ public final class EmbeddedRegistry
     }
 
     /**
-     * Retrieve the lazily initialized instance of the registry.
-     *
-     * @return singleton instance of the registry
+     * Initialized on first use by the class loader, which is thread safe.
      */
-    public static EmbeddedRegistry getInstance()
+    private static class Holder
     {
-        if ( instance == null )
+        static final EmbeddedRegistry INSTANCE = new EmbeddedRegistry();
+
+        static
         {
-            instance = new EmbeddedRegistry();
             Runtime.getRuntime().addShutdownHook( new Thread()
             {
                 @Override
@@ -66,7 +79,7 @@ public final class EmbeddedRegistry
                 {
                     try
                     {
-                        getInstance().shutdownAll( null );
+                        INSTANCE.shutdownAll( null );
                     }
                     catch ( Exception e )
                     {
@@ -75,7 +88,16 @@ public final class EmbeddedRegistry
                 }
             } );
         }
-        return instance;
+    }
+
+    /**
+     * Retrieve the lazily initialized instance of the registry.
+     *
+     * @return singleton instance of the registry
+     */
+    public static EmbeddedRegistry getInstance()
+    {
+        return Holder.INSTANCE;
     }
 
     /**
@@ -85,76 +107,186 @@ public final class EmbeddedRegistry
      * @param container the container to register
      * @return true if it got added; false if not
      */
-    public synchronized boolean register( final Object container )
+    public boolean register( final EmbeddedContainer container )
     {
         return containers.add( container );
     }
 
     /**
-     * Shuts down all registered embedded tomcats. All tomcats which successfully shut down will be
-     * removed from the registry.
+     * Drains all registered embedded tomcats at the same time: they stop accepting requests and the requests in
+     * progress are given the timeout to complete. The tomcats stay registered to be shut down.
      *
-     * @param log the log to write possible shutdown exceptions to
-     * @throws Exception the first exception which occurred will be rethrown
+     * @param log     the log to write possible drain exceptions to
+     * @param timeout maximum time in milliseconds to wait for the requests in progress
+     * @return one result per container drained, the containers failing to drain are logged and skipped
+     * @throws InterruptedException if interrupted while waiting for the containers
+     * @since 3.0
      */
-    public synchronized void shutdownAll( final Log log )
-        throws Exception
+    public List<DrainResult> drainAll( final Log log, final long timeout )
+        throws InterruptedException
     {
-        Exception firstException = null;
-        for ( Iterator<Object> iterator = containers.iterator(); iterator.hasNext(); )
+        List<EmbeddedContainer> draining = new ArrayList<EmbeddedContainer>( containers );
+        List<DrainResult> results = new ArrayList<DrainResult>( draining.size() );
+        if ( draining.isEmpty() )
         {
-            Object embedded = iterator.next();
-            try
+            return results;
+        }
+        ExecutorService executor = newExecutor( draining.size(), "tomcat-drain-" );
+        try
+        {
+            List<Future<DrainResult>> futures = new ArrayList<Future<DrainResult>>( draining.size() );
+            for ( final EmbeddedContainer container : draining )
             {
-                Method method = embedded.getClass().getMethod( "stop", null );
-                method.invoke( embedded, null );
-                embedded.getClass().getMethod( "destroy", null ).invoke( embedded, null );
-                iterator.remove();
+                futures.add( executor.submit( new Callable<DrainResult>()
+                {
+                    public DrainResult call()
+                        throws Exception
+                    {
+                        return container.drain( timeout );
+                    }
+                } ) );
             }
-            catch ( NoSuchMethodException e )
+            for ( int i = 0; i < draining.size(); i++ )
             {
-                if ( firstException == null )
+                try
                 {
-                    firstException = e;
-                    error( log, e, "no stop/destroy method in class " + embedded.getClass().getName() );
+                    results.add( futures.get( i ).get() );
                 }
-                else
+                catch ( ExecutionException e )
                 {
-                    error( log, e, "Error while shutting down embedded Tomcat." );
+                    Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    error( log, cause, "Error while draining embedded " + draining.get( i ).getName() + "." );
                 }
             }
-            catch ( IllegalAccessException e )
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Shuts down all registered embedded tomcats within {@link #DEFAULT_SHUTDOWN_TIMEOUT}.
+     *
+     * @param log the log to write possible shutdown exceptions to
+     * @throws Exception the first exception which occurred will be rethrown
+     * @see #shutdownAll(Log, long)
+     */
+    public void shutdownAll( final Log log )
+        throws Exception
+    {
+        shutdownAll( log, DEFAULT_SHUTDOWN_TIMEOUT );
+    }
+
+    /**
+     * Shuts down all registered embedded tomcats at the same time. A container which does not stop within the
+     * timeout is forcibly stopped and reported as failed. All tomcats which successfully or forcibly shut down will
+     * be removed from the registry, the others are stopped again by the next shutdown.
+     *
+     * @param log     the log to write possible shutdown exceptions to
+     * @param timeout maximum time in milliseconds for each container to stop
+     * @throws Exception the first exception which occurred will be rethrown
+     * @since 3.0
+     */
+    public void shutdownAll( final Log log, long timeout )
+        throws Exception
+    {
+        // a container removed by a concurrent shutdown is stopped by that shutdown
+        List<EmbeddedContainer> stopping = new ArrayList<EmbeddedContainer>( containers.size() );
+        for ( EmbeddedContainer container : containers )
+        {
+            if ( containers.remove( container ) )
             {
-                if ( firstException == null )
+                stopping.add( container );
+            }
+        }
+        if ( stopping.isEmpty() )
+        {
+            return;
+        }
+
+        ExecutorService executor = newExecutor( stopping.size(), "tomcat-shutdown-" );
+        Exception firstException = null;
+        try
+        {
+            List<Future<?>> futures = new ArrayList<Future<?>>( stopping.size() );
+            for ( final EmbeddedContainer container : stopping )
+            {
+                futures.add( executor.submit( new Callable<Void>()
+                {
+                    public Void call()
+                        throws Exception
+                    {
+                        container.stop();
+                        return null;
+                    }
+                } ) );
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( timeout );
+            for ( int i = 0; i < stopping.size(); i++ )
+            {
+                EmbeddedContainer container = stopping.get( i );
+                Exception exception = null;
+                try
                 {
-                    firstException = e;
-                    error( log, e, "IllegalAccessException for stop/destroy method in class " + embedded.getClass().getName() );
+                    futures.get( i ).get( Math.max( 0, deadline - System.nanoTime() ), TimeUnit.NANOSECONDS );
                 }
-                else
+                catch ( ExecutionException e )
                 {
-                    error( log, e, "Error while shutting down embedded Tomcat." );
+                    exception = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    error( log, exception, "Error while shutting down embedded " + container.getName() + "." );
+                    containers.add( container );
                 }
-            }
-            catch ( InvocationTargetException e )
-            {
-
-                if ( firstException == null )
+                catch ( TimeoutException e )
                 {
-                    firstException = e;
-                    error( log, e, "IllegalAccessException for stop/destroy method in class " + embedded.getClass().getName() );
+                    exception = new TimeoutException(
+                        "embedded " + container.getName() + " not stopped after " + timeout + " ms" );
+                    error( log, exception, "Forcing the shutdown of embedded " + container.getName() + "." );
+                    futures.get( i ).cancel( true );
+                    try
+                    {
+                        container.forceStop();
+                    }
+                    catch ( Exception forceException )
+                    {
+                        error( log, forceException, "Error while forcing the shutdown of embedded "
+                            + container.getName() + "." );
+                    }
                 }
-                else
+                if ( firstException == null )
                 {
-                    error( log, e, "Error while shutting down embedded Tomcat." );
+                    firstException = exception;
                 }
             }
         }
+        finally
+        {
+            executor.shutdownNow();
+        }
         if ( firstException != null )
         {
             throw firstException;
         }
     }
 
+    private static ExecutorService newExecutor( int threads, final String prefix )
+    {
+        return Executors.newFixedThreadPool( threads, new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread( Runnable runnable )
+            {
+                // a container stuck in its stop must not prevent the JVM from exiting
+                Thread thread = new Thread( runnable, prefix + count.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+    }
+
     /**
      * Reports the exception. If a log is given (typically when called from within a Mojo) the
      * message will be printed to the log. Otherwise it will be printed to StdErr.
@@ -0,0 +1,164 @@
+package org.apache.tomcat.maven.common.run;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.catalina.Server;
+import org.apache.catalina.Service;
+import org.apache.catalina.connector.Connector;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.Constants;
+import org.apache.coyote.ProtocolHandler;
+import org.apache.tomcat.util.modeler.Registry;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link Server} of an embedded <code>Tomcat</code> or of a <code>Catalina</code> started from a
+ * <code>server.xml</code>.
+ *
+ * @since 3.0
+ */
+public class TomcatServerContainer
+    implements EmbeddedContainer
+{
+    private final Server server;
+
+    /**
+     * @param server the started server
+     */
+    public TomcatServerContainer( Server server )
+    {
+        this.server = server;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getName()
+    {
+        StringBuilder name = new StringBuilder( "Tomcat" );
+        String separator = " on port ";
+        for ( Service service : server.findServices() )
+        {
+            for ( Connector connector : service.findConnectors() )
+            {
+                name.append( separator ).append( connector.getPort() );
+                separator = ", ";
+            }
+        }
+        return name.toString();
+    }
+
+    /**
+     * Pauses the connectors then polls the stage of their request processors, registered in JMX by Tomcat. Idle
+     * keep-alive connections are not waited for: a request they send while paused is answered with a 503.
+     */
+    public DrainResult drain( long timeout )
+        throws Exception
+    {
+        long start = System.nanoTime();
+        List<ObjectName> processors = new ArrayList<ObjectName>();
+        for ( Service service : server.findServices() )
+        {
+            for ( Connector connector : service.findConnectors() )
+            {
+                connector.pause();
+                ProtocolHandler protocolHandler = connector.getProtocolHandler();
+                if ( protocolHandler instanceof AbstractProtocol
+                    && ( (AbstractProtocol<?>) protocolHandler ).getDomain() != null )
+                {
+                    AbstractProtocol<?> protocol = (AbstractProtocol<?>) protocolHandler;
+                    // the name is already quoted
+                    processors.add( new ObjectName(
+                        protocol.getDomain() + ":type=RequestProcessor,worker=" + protocol.getName() + ",*" ) );
+                }
+            }
+        }
+
+        MBeanServer mbeanServer = Registry.getRegistry( null, null ).getMBeanServer();
+        int inFlight = countActiveRequests( mbeanServer, processors );
+        int remaining = inFlight;
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos( timeout );
+        while ( remaining > 0 && System.nanoTime() < deadline )
+        {
+            Thread.sleep( 50 );
+            remaining = countActiveRequests( mbeanServer, processors );
+        }
+        return new DrainResult( getName(), inFlight, remaining,
+                                TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) );
+    }
+
+    private static int countActiveRequests( MBeanServer mbeanServer, List<ObjectName> processors )
+        throws Exception
+    {
+        int active = 0;
+        for ( ObjectName pattern : processors )
+        {
+            for ( ObjectName processor : mbeanServer.queryNames( pattern, null ) )
+            {
+                try
+                {
+                    int stage = (Integer) mbeanServer.getAttribute( processor, "stage" );
+                    // from parsing the request line to writing the end of the response
+                    if ( stage >= Constants.STAGE_PARSE && stage <= Constants.STAGE_ENDOUTPUT )
+                    {
+                        active++;
+                    }
+                }
+                catch ( InstanceNotFoundException e )
+                {
+                    // processor released meanwhile
+                }
+            }
+        }
+        return active;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void stop()
+        throws Exception
+    {
+        server.stop();
+        server.destroy();
+    }
+
+    /**
+     * Destroys the protocol handlers of the connectors, bypassing the lifecycle of the server which is still
+     * stopping: the server sockets are closed and the ports can be bound again.
+     */
+    public void forceStop()
+        throws Exception
+    {
+        for ( Service service : server.findServices() )
+        {
+            for ( Connector connector : service.findConnectors() )
+            {
+                connector.getProtocolHandler().destroy();
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.apache.tomcat.maven.common;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.tomcat.maven.common.deployer.AbstractReceiverUploader;
+
+import java.net.URL;
+
+/**
+ * @since 3.0
+ */
+public class AbstractReceiverUploaderTest
+    extends TestCase
+{
+    public void testServerFileUrl()
+        throws Exception
+    {
+        // built from the server path whatever the local file system
+        assertEquals( new URL( "file:/opt/tomcat/webapps/a%20b.war" ),
+                      AbstractReceiverUploader.getServerFileUrl( "/opt/tomcat/webapps/a b.war" ) );
+        assertEquals( new URL( "file:/C:/tomcat/webapps/foo%23bar.war" ),
+                      AbstractReceiverUploader.getServerFileUrl( "C:\\tomcat\\webapps\\foo#bar.war" ) );
+    }
+}
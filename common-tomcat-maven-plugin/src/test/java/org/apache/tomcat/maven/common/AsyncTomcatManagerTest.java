@@ -0,0 +1,236 @@
+package org.apache.tomcat.maven.common;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.maven.common.deployer.AsyncTomcatManager;
+import org.apache.tomcat.maven.common.deployer.TomcatManager;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerResponse;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * @since 3.0
+ */
+public class AsyncTomcatManagerTest
+    extends TestCase
+{
+    Tomcat tomcat;
+
+    URL managerUrl;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        tomcat = new Tomcat();
+        tomcat.setBaseDir( System.getProperty( "java.io.tmpdir" ) );
+        tomcat.setPort( 0 );
+
+        Context context = tomcat.addContext( "", System.getProperty( "java.io.tmpdir" ) );
+        tomcat.addServlet( context, "list", new HttpServlet()
+        {
+            @Override
+            protected void doGet( HttpServletRequest req, HttpServletResponse resp )
+                throws IOException
+            {
+                resp.getWriter().println( "OK - Listed applications for virtual host localhost" );
+                resp.getWriter().println( "/foo:running:0:foo" );
+            }
+        } );
+        context.addServletMapping( "/*", "list" );
+        tomcat.start();
+        managerUrl = new URL( "http://localhost:" + tomcat.getConnector().getLocalPort() + "/manager" );
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        super.tearDown();
+        tomcat.stop();
+        tomcat.destroy();
+    }
+
+    public void testAsyncManager()
+        throws Exception
+    {
+        AsyncTomcatManager asyncManager = new AsyncTomcatManager( new TomcatManager( managerUrl ) );
+        final CountDownLatch completed = new CountDownLatch( 20 );
+        AsyncTomcatManager.Callback callback = new AsyncTomcatManager.Callback()
+        {
+            public void completed( TomcatManagerResponse response )
+            {
+                completed.countDown();
+            }
+
+            public void failed( Exception failure )
+            {
+                // counted by the test below
+            }
+        };
+        try
+        {
+            List<Future<TomcatManagerResponse>> futures = new ArrayList<Future<TomcatManagerResponse>>();
+            for ( int i = 0; i < 20; i++ )
+            {
+                futures.add( asyncManager.list( callback ) );
+            }
+            for ( Future<TomcatManagerResponse> future : futures )
+            {
+                assertEquals( 200, future.get( 30, TimeUnit.SECONDS ).getStatusCode() );
+            }
+            // the callbacks run once the futures are done
+            assertTrue( completed.await( 30, TimeUnit.SECONDS ) );
+        }
+        finally
+        {
+            asyncManager.shutdown();
+        }
+    }
+
+    public void testTimeout()
+        throws Exception
+    {
+        // a server which accepts the connection and never answers
+        ServerSocket silent = new ServerSocket( 0 );
+        AsyncTomcatManager asyncManager = new AsyncTomcatManager(
+            new TomcatManager( new URL( "http://localhost:" + silent.getLocalPort() + "/manager" ) ) );
+        try
+        {
+            asyncManager.setTimeout( 500 );
+            Future<TomcatManagerResponse> future = asyncManager.list( null );
+            try
+            {
+                future.get( 30, TimeUnit.SECONDS );
+                fail( "the call should time out" );
+            }
+            catch ( ExecutionException e )
+            {
+                assertTrue( e.getCause() instanceof TimeoutException );
+            }
+        }
+        finally
+        {
+            asyncManager.shutdown();
+            silent.close();
+        }
+    }
+
+    public void testTimeoutExcludesQueueTime()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AsyncTomcatManager asyncManager = new AsyncTomcatManager( new TomcatManager( managerUrl ), executor );
+        try
+        {
+            // holds the only thread longer than the timeout of the call queued behind
+            Future<TomcatManagerResponse> blocking =
+                asyncManager.submit( new Callable<TomcatManagerResponse>()
+                {
+                    public TomcatManagerResponse call()
+                        throws Exception
+                    {
+                        Thread.sleep( 1000 );
+                        return new TomcatManagerResponse().setStatusCode( 200 );
+                    }
+                }, null );
+            asyncManager.setTimeout( 500 );
+            Future<TomcatManagerResponse> queued = asyncManager.list( null );
+
+            assertEquals( 200, blocking.get( 30, TimeUnit.SECONDS ).getStatusCode() );
+            assertEquals( 200, queued.get( 30, TimeUnit.SECONDS ).getStatusCode() );
+        }
+        finally
+        {
+            asyncManager.shutdown();
+            executor.shutdownNow();
+        }
+    }
+
+    public void testSharedWatchdog()
+        throws Exception
+    {
+        List<AsyncTomcatManager> asyncManagers = new ArrayList<AsyncTomcatManager>();
+        try
+        {
+            for ( int i = 0; i < 10; i++ )
+            {
+                AsyncTomcatManager asyncManager = new AsyncTomcatManager( new TomcatManager( managerUrl ) );
+                asyncManagers.add( asyncManager );
+                assertEquals( 200, asyncManager.setTimeout( 10000 ).list( null ).get( 30, TimeUnit.SECONDS )
+                    .getStatusCode() );
+            }
+            int watchdogs = 0;
+            for ( Thread thread : Thread.getAllStackTraces().keySet() )
+            {
+                if ( thread.getName().equals( "tomcat-manager-watchdog" ) )
+                {
+                    watchdogs++;
+                }
+            }
+            assertEquals( "one watchdog thread for all the instances", 1, watchdogs );
+        }
+        finally
+        {
+            for ( AsyncTomcatManager asyncManager : asyncManagers )
+            {
+                asyncManager.shutdown();
+            }
+        }
+
+        // a watchdog given to the instance is left running
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            AsyncTomcatManager asyncManager =
+                new AsyncTomcatManager( new TomcatManager( managerUrl ), executor, watchdog );
+            assertEquals( 200, asyncManager.setTimeout( 10000 ).list( null ).get( 30, TimeUnit.SECONDS )
+                .getStatusCode() );
+            asyncManager.shutdown();
+            assertFalse( watchdog.isShutdown() );
+            assertFalse( executor.isShutdown() );
+        }
+        finally
+        {
+            watchdog.shutdownNow();
+            executor.shutdownNow();
+        }
+    }
+}
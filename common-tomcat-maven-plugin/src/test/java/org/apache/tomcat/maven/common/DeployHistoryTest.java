@@ -0,0 +1,126 @@
+package org.apache.tomcat.maven.common;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.tomcat.maven.common.deployer.DeployHistory;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @since 3.0
+ */
+public class DeployHistoryTest
+    extends TestCase
+{
+    public void testDeployHistory()
+        throws Exception
+    {
+        File file = File.createTempFile( "deploy-history", ".properties" );
+        try
+        {
+            // recreated by the first record
+            assertTrue( file.delete() );
+            URL managerUrl = new URL( "http://localhost:8080/manager/text/" );
+            DeployHistory history = new DeployHistory( file );
+            assertNull( history.getHash( managerUrl, "/foo" ) );
+            assertNull( history.getEntry( managerUrl, "/foo" ) );
+
+            String hash =
+                DeployHistory.hash( new File( TomcatManagerTest.getBasedir(), "src/test/resources/test.txt" ) );
+            history.record( managerUrl, "/foo", hash, DeployHistory.toTag( "release", hash ) );
+            history.record( managerUrl, "/bar", "other", null );
+
+            history = new DeployHistory( file );
+            assertEquals( hash, history.getHash( new URL( "http://localhost:8080/manager/text" ), "foo" ) );
+            assertEquals( "other", history.getHash( managerUrl, "/bar" ) );
+            String entry = history.getEntry( managerUrl, "/foo" );
+            assertTrue( entry, entry.startsWith( hash + " " ) );
+            assertTrue( entry, entry.endsWith( " release-sha256-" + hash ) );
+            assertEquals( "release-sha256-" + hash, DeployHistory.toTag( "release", hash ) );
+            assertEquals( "sha256-" + hash, DeployHistory.toTag( null, hash ) );
+        }
+        finally
+        {
+            file.delete();
+            new File( file.getPath() + ".lock" ).delete();
+        }
+    }
+
+    public void testConcurrentRecords()
+        throws Exception
+    {
+        final File file = File.createTempFile( "deploy-history", ".properties" );
+        final URL managerUrl = new URL( "http://localhost:8080/manager/text" );
+        try
+        {
+            // one history per thread like the goals of a parallel build, no record may be lost
+            List<Thread> threads = new ArrayList<Thread>();
+            final List<Exception> failures = Collections.synchronizedList( new ArrayList<Exception>() );
+            for ( int i = 0; i < 8; i++ )
+            {
+                final String path = "/app" + i;
+                Thread thread = new Thread()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            DeployHistory history = new DeployHistory( file );
+                            for ( int j = 0; j < 10; j++ )
+                            {
+                                history.record( managerUrl, path + "-" + j, "hash" + j, null );
+                            }
+                        }
+                        catch ( Exception e )
+                        {
+                            failures.add( e );
+                        }
+                    }
+                };
+                threads.add( thread );
+                thread.start();
+            }
+            for ( Thread thread : threads )
+            {
+                thread.join();
+            }
+            assertEquals( Collections.emptyList(), failures );
+
+            DeployHistory history = new DeployHistory( file );
+            for ( int i = 0; i < 8; i++ )
+            {
+                for ( int j = 0; j < 10; j++ )
+                {
+                    assertEquals( "hash" + j, history.getHash( managerUrl, "/app" + i + "-" + j ) );
+                }
+            }
+        }
+        finally
+        {
+            file.delete();
+            new File( file.getPath() + ".lock" ).delete();
+        }
+    }
+}
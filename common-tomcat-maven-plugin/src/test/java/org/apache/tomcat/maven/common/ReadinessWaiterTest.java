@@ -0,0 +1,70 @@
+package org.apache.tomcat.maven.common;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.tomcat.maven.common.deployer.ReadinessWaiter;
+import org.apache.tomcat.maven.common.deployer.TomcatManager;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerException;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerLineHandler;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerResponse;
+
+import java.net.URL;
+
+/**
+ * @since 3.0
+ */
+public class ReadinessWaiterTest
+    extends TestCase
+{
+    public void testParallelVersion()
+        throws Exception
+    {
+        TomcatManager tomcatManager = new TomcatManager( new URL( "http://localhost:8080/manager/text" ) )
+        {
+            @Override
+            protected TomcatManagerResponse invoke( String path, TomcatManagerLineHandler handler )
+                throws TomcatManagerException
+            {
+                assertEquals( "/list", path );
+                // the new version still starting next to the old one
+                String body = "OK - Listed applications for virtual host localhost\n/foo:running:2:foo##v1\n"
+                    + "/foo:stopped:0:/opt/wars/foo##v2.war\n";
+                for ( String line : body.split( "\n" ) )
+                {
+                    handler.handleLine( line );
+                }
+                return new TomcatManagerResponse().setStatusCode( 200 );
+            }
+        };
+        ReadinessWaiter waiter = new ReadinessWaiter( tomcatManager ).setTimeout( 200 ).setPollInterval( 50 );
+
+        waiter.setVersion( "v1" ).await( "/foo" );
+        waiter.setVersion( "v2" );
+        try
+        {
+            waiter.await( "/foo" );
+            fail( "the old version made the new one ready" );
+        }
+        catch ( TomcatManagerException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "/foo##v2 not running" ) );
+        }
+    }
+}
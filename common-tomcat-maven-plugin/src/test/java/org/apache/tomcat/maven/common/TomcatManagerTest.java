@@ -20,9 +20,21 @@ package org.apache.tomcat.maven.common;
 
 import junit.framework.TestCase;
 import org.apache.catalina.Context;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
 import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.valves.ValveBase;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.tomcat.maven.common.deployer.FleetDeployResult;
+import org.apache.tomcat.maven.common.deployer.FleetDeployer;
+import org.apache.tomcat.maven.common.deployer.ParallelVersionDeployer;
+import org.apache.tomcat.maven.common.deployer.ReadinessWaiter;
+import org.apache.tomcat.maven.common.deployer.RollingDeployer;
 import org.apache.tomcat.maven.common.deployer.TomcatManager;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerConnectionPool;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerException;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerLineHandler;
 import org.apache.tomcat.maven.common.deployer.TomcatManagerResponse;
 
 import javax.servlet.ServletException;
@@ -33,10 +45,18 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.net.ServerSocket;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Olivier Lamy
@@ -45,6 +65,8 @@ public class TomcatManagerTest
     extends TestCase
 {
 
+    static final int LISTED_WEBAPPS = 5000;
+
     Tomcat tomcat;
 
     Tomcat redirectTomcat;
@@ -89,6 +111,9 @@ public class TomcatManagerTest
         redirectServlet = new RedirectServlet();
         redirectTomcat.addServlet( context, "foo", redirectServlet );
         context.addServletMapping( "/*", "foo" );
+        context.getPipeline().addValve( new RedirectValve() );
+        // bounds the wait for the body the client never sends to a redirecting manager
+        redirectTomcat.getConnector().setProperty( "connectionTimeout", "500" );
         redirectTomcat.start();
         redirectPort = redirectTomcat.getConnector().getLocalPort();
 
@@ -101,6 +126,7 @@ public class TomcatManagerTest
     {
         super.tearDown();
         tomcat.stop();
+        redirectTomcat.stop();
     }
 
 
@@ -129,6 +155,31 @@ public class TomcatManagerTest
         }
     }
 
+    public void testStreamingList()
+        throws Exception
+    {
+        TomcatManager tomcatManager = new TomcatManager( new URL( "http://localhost:" + this.port + "/manager" ) );
+        final List<String> lines = new ArrayList<String>();
+        TomcatManagerResponse response = tomcatManager.list( new TomcatManagerLineHandler()
+        {
+            public void handleLine( String line )
+            {
+                lines.add( line );
+            }
+        } );
+        assertEquals( 200, response.getStatusCode() );
+        assertNull( response.getHttpResponseBody() );
+        assertEquals( LISTED_WEBAPPS + 1, lines.size() );
+        assertEquals( "/app4999:stopped:0:app4999", lines.get( LISTED_WEBAPPS ) );
+
+        assertTrue( tomcatManager.isRunning( "/app4998" ) );
+        assertFalse( tomcatManager.isRunning( "/app4999" ) );
+        assertFalse( tomcatManager.isRunning( "/app" ) );
+
+        // the manager keeps answering on the released connection
+        assertEquals( 200, tomcatManager.list().getStatusCode() );
+    }
+
     public void testDeployWarWithRedirect()
         throws Exception
     {
@@ -136,8 +187,8 @@ public class TomcatManagerTest
         TomcatManager tomcatManager =
             new TomcatManager( new URL( "http://localhost:" + this.redirectPort + "/foo/bar" ) );
         redirectServlet.redirectPath = "http://localhost:" + this.port + "/foo/bar/redirected";
-        TomcatManagerResponse response =
-            tomcatManager.deploy( "foo", new File( getBasedir(), "src/test/resources/test.txt" ) );
+        File war = new File( getBasedir(), "src/test/resources/test.txt" );
+        TomcatManagerResponse response = tomcatManager.deploy( "foo", war );
 
         assertEquals( 200, response.getStatusCode() );
 
@@ -146,6 +197,8 @@ public class TomcatManagerTest
         assertEquals( "no  redirected request to upload servlet", 1, uploadServlet.uploadedResources.size() );
 
         assertEquals( "/foo/bar/deploy", redirectServlet.uploadedResources.get( 0 ).requestUri );
+        assertEquals( "war sent to the redirecting manager", 0, redirectServlet.uploadedResources.get( 0 ).bytesRead );
+        assertEquals( war.length(), uploadServlet.uploadedResources.get( 0 ).bytesRead );
 
         FileInputStream fileInputStream = new FileInputStream( uploadServlet.uploadedResources.get( 0 ).uploadedFile );
         try
@@ -167,8 +220,8 @@ public class TomcatManagerTest
         TomcatManager tomcatManager =
             new TomcatManager( new URL( "http://localhost:" + this.redirectPort + "/foo/bar" ) );
         redirectServlet.redirectPath = "redirectrelative/foo";
-        TomcatManagerResponse response =
-            tomcatManager.deploy( "foo", new File( getBasedir(), "src/test/resources/test.txt" ) );
+        File war = new File( getBasedir(), "src/test/resources/test.txt" );
+        TomcatManagerResponse response = tomcatManager.deploy( "foo", war );
 
         assertEquals( 200, response.getStatusCode() );
 
@@ -177,6 +230,8 @@ public class TomcatManagerTest
         assertEquals( "found redirected request to upload servlet", 0, uploadServlet.uploadedResources.size() );
 
         assertEquals( "/foo/bar/deploy", redirectServlet.uploadedResources.get( 0 ).requestUri );
+        assertEquals( "war sent to the redirecting manager", 0, redirectServlet.uploadedResources.get( 0 ).bytesRead );
+        assertEquals( war.length(), redirectServlet.uploadedResources.get( 1 ).bytesRead );
 
         FileInputStream fileInputStream =
             new FileInputStream( redirectServlet.uploadedResources.get( 1 ).uploadedFile );
@@ -192,16 +247,416 @@ public class TomcatManagerTest
         }
     }
 
+    public void testConcurrentCallsThroughRedirect()
+        throws Exception
+    {
+        uploadServlet.uploadedResources.clear();
+        final TomcatManager tomcatManager =
+            new TomcatManager( new URL( "http://localhost:" + this.redirectPort + "/foo/bar" ), "admin", "secret" );
+        redirectServlet.redirectPath = "http://localhost:" + this.port + "/foo/bar/redirected";
+        final File war = new File( getBasedir(), "src/test/resources/test.txt" );
+
+        // the calls are redirected together, each relocation is checked against the url its call was sent to
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final List<Exception> failures = new CopyOnWriteArrayList<Exception>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for ( int i = 0; i < 8; i++ )
+        {
+            final String path = "/app" + i;
+            Thread thread = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        assertEquals( 200, tomcatManager.deploy( path, war ).getStatusCode() );
+                    }
+                    catch ( Exception e )
+                    {
+                        failures.add( e );
+                    }
+                }
+            };
+            threads.add( thread );
+            thread.start();
+        }
+        start.countDown();
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        assertEquals( Collections.emptyList(), failures );
+        assertEquals( 8, uploadServlet.uploadedResources.size() );
+        for ( UploadedResource resource : uploadServlet.uploadedResources )
+        {
+            assertEquals( "/foo/bar/redirected/deploy", resource.requestUri );
+            assertEquals( war.length(), resource.bytesRead );
+            assertNull( "credentials of the first manager sent to another port", resource.authorization );
+        }
+        assertEquals( new URL( "http://localhost:" + this.port + "/foo/bar/redirected" ), tomcatManager.getURL() );
+    }
+
+    public void testDeployWarWithProbeRedirect()
+        throws Exception
+    {
+        uploadServlet.uploadedResources.clear();
+        TomcatManager tomcatManager =
+            new TomcatManager( new URL( "http://localhost:" + this.redirectPort + "/foo/bar" ) );
+        redirectServlet.probeRedirectPath = "http://localhost:" + this.port + "/foo/moved/serverinfo";
+        redirectServlet.redirectPath = "http://localhost:" + this.port + "/foo/bar/redirected";
+        TomcatManagerResponse response =
+            tomcatManager.deploy( "foo", new File( getBasedir(), "src/test/resources/test.txt" ) );
+
+        assertEquals( 200, response.getStatusCode() );
+        assertEquals( Arrays.asList( "/foo/bar/serverinfo" ), redirectServlet.probes );
+        assertEquals( "upload sent directly to the moved manager", 0, redirectServlet.uploadedResources.size() );
+        assertEquals( 1, uploadServlet.uploadedResources.size() );
+        assertEquals( "/foo/moved/deploy", uploadServlet.uploadedResources.get( 0 ).requestUri );
+        assertEquals( new URL( "http://localhost:" + this.port + "/foo/moved" ), tomcatManager.getURL() );
+    }
+
+    public void testDeployWarWithProbeRedirectToLoginPage()
+        throws Exception
+    {
+        uploadServlet.uploadedResources.clear();
+        TomcatManager tomcatManager =
+            new TomcatManager( new URL( "http://localhost:" + this.redirectPort + "/foo/bar" ), "admin", "secret" );
+        redirectServlet.probeRedirectPath = "http://localhost:" + this.port + "/login";
+        redirectServlet.redirectPath = "http://localhost:" + this.port + "/foo/bar/redirected";
+        TomcatManagerResponse response =
+            tomcatManager.deploy( "foo", new File( getBasedir(), "src/test/resources/test.txt" ) );
+
+        assertEquals( 200, response.getStatusCode() );
+        assertEquals( 1, redirectServlet.probes.size() );
+        assertEquals( "the upload followed its own redirect", 1, redirectServlet.uploadedResources.size() );
+        assertEquals( 1, uploadServlet.uploadedResources.size() );
+        assertEquals( "/foo/bar/redirected/deploy", uploadServlet.uploadedResources.get( 0 ).requestUri );
+        assertNull( "no preemptive credentials for another port",
+                    uploadServlet.uploadedResources.get( 0 ).authorization );
+        assertEquals( new URL( "http://localhost:" + this.port + "/foo/bar/redirected" ), tomcatManager.getURL() );
+    }
+
+    public void testSharedConnectionPool()
+        throws Exception
+    {
+        uploadServlet.uploadedResources.clear();
+        URL url = new URL( "http://localhost:" + this.port + "/foo/bar" );
+        TomcatManagerConnectionPool connectionPool = TomcatManagerConnectionPool.getSharedPool( url, "admin", "" );
+        assertSame( connectionPool, TomcatManagerConnectionPool.getSharedPool( url, "admin", "" ) );
+        assertNotSame( connectionPool, TomcatManagerConnectionPool.getSharedPool( url, "admin", "secret" ) );
+        try
+        {
+            File war = new File( getBasedir(), "src/test/resources/test.txt" );
+            for ( int i = 0; i < 3; i++ )
+            {
+                TomcatManager tomcatManager =
+                    new TomcatManager( url, "admin", "", "ISO-8859-1", false, connectionPool );
+                assertEquals( 200, tomcatManager.deploy( "foo", war ).getStatusCode() );
+            }
+            assertEquals( 3, uploadServlet.uploadedResources.size() );
+            assertTrue( connectionPool.getRequestCount() >= 3 );
+            assertTrue( "no keep-alive connection reused", connectionPool.getReusedConnectionCount() >= 2 );
+        }
+        finally
+        {
+            TomcatManagerConnectionPool.shutdownSharedPools();
+        }
+    }
+
+    public void testFleetDeploy()
+        throws Exception
+    {
+        uploadServlet.uploadedResources.clear();
+        List<TomcatManager> managers = new ArrayList<TomcatManager>();
+        managers.add( new TomcatManager( new URL( "http://localhost:" + this.port + "/foo/bar" ) ) );
+        managers.add( new TomcatManager( new URL( "http://localhost:" + this.port + "/foo/baz" ) ) );
+        // nothing listens on port 1
+        managers.add( new TomcatManager( new URL( "http://localhost:1/foo/bar" ) ) );
+
+        List<FleetDeployResult> results = new FleetDeployer( managers ).setConcurrency( 2 ).deploy(
+            "foo", new File( getBasedir(), "src/test/resources/test.txt" ), false, null );
+
+        assertEquals( 3, results.size() );
+        assertTrue( results.get( 0 ).isSuccess() );
+        assertTrue( results.get( 1 ).isSuccess() );
+        assertFalse( results.get( 2 ).isSuccess() );
+        assertNotNull( results.get( 2 ).getFailure() );
+        assertEquals( 2, uploadServlet.uploadedResources.size() );
+
+        assertEquals( 3, FleetDeployer.getRequiredSuccesses( "100%", 3 ) );
+        assertEquals( 2, FleetDeployer.getRequiredSuccesses( "50%", 3 ) );
+        assertEquals( 2, FleetDeployer.getRequiredSuccesses( "2", 3 ) );
+    }
+
+    public void testDeployments()
+        throws Exception
+    {
+        uploadServlet.uploadedResources.clear();
+        File war = new File( getBasedir(), "src/test/resources/test.txt" );
+        TomcatManager manager = new TomcatManager( new URL( "http://localhost:" + this.port + "/foo/bar" ) );
+        List<FleetDeployer.Deployment> deployments = new ArrayList<FleetDeployer.Deployment>();
+        deployments.add( new FleetDeployer.Deployment( manager, "/foo", war, false, null ) );
+        deployments.add( new FleetDeployer.Deployment( manager, "/bar", war, true, null ) );
+        deployments.add(
+            new FleetDeployer.Deployment( new TomcatManager( new URL( "http://localhost:1/foo/bar" ) ), "/baz", war,
+                                          false, null ) );
+
+        List<FleetDeployResult> results = new FleetDeployer().setConcurrency( 3 ).deploy( deployments );
+
+        assertEquals( 3, results.size() );
+        assertEquals( "/foo", results.get( 0 ).getPath() );
+        assertTrue( results.get( 0 ).isSuccess() );
+        assertEquals( "/bar", results.get( 1 ).getPath() );
+        assertTrue( results.get( 1 ).isSuccess() );
+        assertEquals( "/baz", results.get( 2 ).getPath() );
+        assertFalse( results.get( 2 ).isSuccess() );
+        assertEquals( 2, uploadServlet.uploadedResources.size() );
+    }
+
+    public void testRollingDeployStopsAtFailingBatch()
+        throws Exception
+    {
+        uploadServlet.uploadedResources.clear();
+        List<TomcatManager> managers = new ArrayList<TomcatManager>();
+        managers.add( new TomcatManager( new URL( "http://localhost:" + this.port + "/foo/bar" ) ) );
+        managers.add( new TomcatManager( new URL( "http://localhost:" + this.port + "/foo/baz" ) ) );
+
+        // the upload servlet does not answer the list command: the webapp is never running
+        List<FleetDeployResult> results =
+            new RollingDeployer( managers ).setBatchSize( 1 ).setReadyTimeout( 200 ).setPollInterval( 50 ).deploy(
+                "/foo", new File( getBasedir(), "src/test/resources/test.txt" ), false, null );
+
+        assertEquals( "second batch not skipped", 1, results.size() );
+        assertFalse( results.get( 0 ).isSuccess() );
+        assertTrue( results.get( 0 ).getMessage(), results.get( 0 ).getMessage().contains( "not running" ) );
+        assertEquals( 1, uploadServlet.uploadedResources.size() );
+    }
+
+    public void testRollingDeployChecksBatchConcurrently()
+        throws Exception
+    {
+        uploadServlet.uploadedResources.clear();
+        List<TomcatManager> managers = new ArrayList<TomcatManager>();
+        for ( int i = 0; i < 3; i++ )
+        {
+            managers.add( new TomcatManager( new URL( "http://localhost:" + this.port + "/foo/node" + i ) ) );
+        }
+
+        // none of the nodes ever runs the webapp, each one waits for the whole ready timeout
+        long start = System.nanoTime();
+        List<FleetDeployResult> results =
+            new RollingDeployer( managers ).setBatchSize( 3 ).setReadyTimeout( 1000 ).setPollInterval( 50 ).deploy(
+                "/foo", new File( getBasedir(), "src/test/resources/test.txt" ), false, null );
+        long elapsed = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+
+        assertEquals( 3, results.size() );
+        for ( FleetDeployResult result : results )
+        {
+            assertFalse( result.isSuccess() );
+            assertTrue( result.getMessage(), result.getMessage().contains( "not running" ) );
+        }
+        assertTrue( "nodes checked one after the other: " + elapsed + "ms", elapsed < 2500 );
+    }
+
+    public void testRollingDeployRollback()
+        throws Exception
+    {
+        uploadServlet.uploadedResources.clear();
+        ServerSocket closed = new ServerSocket( 0 );
+        int closedPort = closed.getLocalPort();
+        closed.close();
+        List<TomcatManager> managers = new ArrayList<TomcatManager>();
+        managers.add( new TomcatManager( new URL( "http://localhost:" + this.port + "/foo/bar" ) ) );
+        managers.add( new TomcatManager( new URL( "http://localhost:" + closedPort + "/foo/baz" ) ) );
+
+        // one node receives the war but never runs it, the upload to the other one fails
+        List<FleetDeployResult> results =
+            new RollingDeployer( managers ).setBatchSize( 2 ).setReadyTimeout( 200 ).setPollInterval( 50 )
+                .setRollbackTag( "previous" ).setOnFailure( RollingDeployer.ON_FAILURE_ROLLBACK ).deploy(
+                "/foo", new File( getBasedir(), "src/test/resources/test.txt" ), false, null );
+
+        assertEquals( 2, results.size() );
+        assertTrue( results.get( 0 ).isRolledBack() );
+        assertFalse( "the node which did not receive the war is left alone", results.get( 1 ).isRolledBack() );
+        assertEquals( Arrays.asList( "/foo/bar/deploy:previous" ), uploadServlet.redeployedTags );
+
+        try
+        {
+            new RollingDeployer( managers ).setOnFailure( RollingDeployer.ON_FAILURE_ROLLBACK );
+            fail( "rollback without a rollback tag" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "rollback tag" ) );
+        }
+    }
+
+    public void testReadinessWaiter()
+        throws Exception
+    {
+        TomcatManager tomcatManager = new TomcatManager( new URL( "http://localhost:" + this.port + "/manager" ) );
+        // the list command answers 200 to the warmup requests
+        ReadinessWaiter waiter = new ReadinessWaiter( tomcatManager ).setChecks( 3 ).setMaxLatency( 10000 );
+        waiter.addUrl( new URL( "http://localhost:" + this.port + "/manager/list" ) ).setPollInterval( 50 );
+
+        ReadinessWaiter.Result result = waiter.await( "/app0" );
+        assertEquals( 3, result.getRequests() );
+        assertTrue( result.getReadyMillis() >= result.getRunningMillis() );
+
+        waiter.setTimeout( 200 );
+        try
+        {
+            waiter.await( "/app1" );
+            fail( "stopped webapp ready" );
+        }
+        catch ( TomcatManagerException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "not running" ) );
+        }
+
+        waiter.getUrls().clear();
+        waiter.addUrl( new URL( "http://localhost:" + this.port + "/manager/missing" ) );
+        try
+        {
+            waiter.await( "/app0" );
+            fail( "failing warmup url ready" );
+        }
+        catch ( TomcatManagerException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "status 405" ) );
+        }
+    }
+
+    public void testParallelVersionListing()
+        throws Exception
+    {
+        TomcatManager tomcatManager = new TomcatManager( new URL( "http://localhost:" + this.port + "/foo/bar" ) )
+        {
+            @Override
+            protected TomcatManagerResponse invoke( String path, TomcatManagerLineHandler handler )
+                throws TomcatManagerException
+            {
+                String body = path.startsWith( "/list" )
+                    ? "OK - Listed applications for virtual host localhost\n/manager:running:0:manager\n"
+                    + "/foo:running:2:foo##20140101\n/foo:stopped:0:/opt/wars/foo##20140202.war\n"
+                    + "/foobar:running:0:foobar\n"
+                    : "OK - Session information for application at context path /foo##20140101\n"
+                        + "Default maximum session inactive interval 30 minutes\n<1 minutes: 2 sessions\n"
+                        + "1 - <2 minutes: 1 sessions\n30 minutes: 4 sessions were expired\n";
+                for ( String line : body.split( "\n" ) )
+                {
+                    handler.handleLine( line );
+                }
+                return new TomcatManagerResponse().setStatusCode( 200 );
+            }
+        };
+        ParallelVersionDeployer deployer = new ParallelVersionDeployer( tomcatManager );
+
+        List<ParallelVersionDeployer.WebappVersion> versions = deployer.listVersions( "/foo" );
+        assertEquals( 2, versions.size() );
+        assertEquals( "20140101", versions.get( 0 ).getVersion() );
+        assertTrue( versions.get( 0 ).isRunning() );
+        assertEquals( 2, versions.get( 0 ).getSessions() );
+        assertEquals( "20140202", versions.get( 1 ).getVersion() );
+        assertFalse( versions.get( 1 ).isRunning() );
+
+        assertEquals( 3, deployer.getActiveSessions( "/foo##20140101" ) );
+    }
+
+    public void testDeployWarWithRedirectLoop()
+        throws Exception
+    {
+        uploadServlet.uploadedResources.clear();
+        redirectServlet.uploadedResources.clear();
+        TomcatManager tomcatManager =
+            new TomcatManager( new URL( "http://localhost:" + this.redirectPort + "/foo/bar" ) );
+        tomcatManager.setMaxRedirects( 2 );
+        redirectServlet.redirectPath = "http://localhost:" + this.redirectPort + "/foo/bar";
+        try
+        {
+            tomcatManager.deploy( "foo", new File( getBasedir(), "src/test/resources/test.txt" ) );
+            fail( "redirect loop not detected" );
+        }
+        catch ( TomcatManagerException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "Too many redirects" ) );
+        }
+        assertEquals( 3, redirectServlet.uploadedResources.size() );
+        for ( UploadedResource resource : redirectServlet.uploadedResources )
+        {
+            assertEquals( "war sent to a redirecting manager", 0, resource.bytesRead );
+        }
+        assertEquals( 0, uploadServlet.uploadedResources.size() );
+    }
+
+    public void testDeployWarWithSmallUploadBuffer()
+        throws Exception
+    {
+        uploadServlet.uploadedResources.clear();
+        File war = File.createTempFile( "tomcat-unit-test", ".war" );
+        byte[] content = new byte[200 * 1024 + 17];
+        new Random( 42 ).nextBytes( content );
+        FileOutputStream fileOutputStream = new FileOutputStream( war );
+        try
+        {
+            fileOutputStream.write( content );
+        }
+        finally
+        {
+            fileOutputStream.close();
+        }
+
+        TomcatManager tomcatManager = new TomcatManager( new URL( "http://localhost:" + this.port + "/foo/bar" ) );
+        tomcatManager.setUploadBufferSize( 1000 );
+        TomcatManagerResponse response = tomcatManager.deploy( "foo", war );
+
+        assertEquals( 200, response.getStatusCode() );
+        assertEquals( 1, uploadServlet.uploadedResources.size() );
+        FileInputStream fileInputStream = new FileInputStream( uploadServlet.uploadedResources.get( 0 ).uploadedFile );
+        try
+        {
+            assertTrue( Arrays.equals( content, IOUtils.toByteArray( fileInputStream ) ) );
+        }
+        finally
+        {
+            fileInputStream.close();
+        }
+    }
+
     //-----------------------------
     // internal for tests
     //-----------------------------
 
+    static long copy( HttpServletRequest req, File file )
+        throws IOException
+    {
+        FileOutputStream output = new FileOutputStream( file );
+        try
+        {
+            return IOUtils.copyLarge( req.getInputStream(), output );
+        }
+        finally
+        {
+            output.close();
+        }
+    }
+
     public class UploadedResource
     {
         public String requestUri;
 
         public File uploadedFile;
 
+        public String authorization;
+
+        /**
+         * bytes of the request body received
+         */
+        public long bytesRead;
+
         public UploadedResource( String requestUri, File uploadedFile )
         {
             this.requestUri = requestUri;
@@ -213,7 +668,12 @@ public class TomcatManagerTest
         extends HttpServlet
     {
 
-        public List<UploadedResource> uploadedResources = new ArrayList<UploadedResource>();
+        public List<UploadedResource> uploadedResources = new CopyOnWriteArrayList<UploadedResource>();
+
+        /**
+         * the tags deployed again with a <code>GET /deploy</code>
+         */
+        public List<String> redeployedTags = new ArrayList<String>();
 
         @Override
         protected void doPut( HttpServletRequest req, HttpServletResponse resp )
@@ -221,8 +681,34 @@ public class TomcatManagerTest
         {
             System.out.println( "put ok:" + req.getRequestURI() );
             File file = File.createTempFile( "tomcat-unit-test", "tmp" );
-            uploadedResources.add( new UploadedResource( req.getRequestURI(), file ) );
-            IOUtils.copy( req.getInputStream(), new FileOutputStream( file ) );
+            UploadedResource resource = new UploadedResource( req.getRequestURI(), file );
+            resource.authorization = req.getHeader( "Authorization" );
+            uploadedResources.add( resource );
+            resource.bytesRead = copy( req, file );
+        }
+
+        @Override
+        protected void doGet( HttpServletRequest req, HttpServletResponse resp )
+            throws ServletException, IOException
+        {
+            if ( req.getRequestURI().endsWith( "/deploy" ) && req.getParameter( "tag" ) != null )
+            {
+                redeployedTags.add( req.getRequestURI() + ":" + req.getParameter( "tag" ) );
+                resp.getWriter().println( "OK - Deployed application at context path " + req.getParameter( "path" ) );
+                return;
+            }
+            if ( !req.getRequestURI().endsWith( "/list" ) )
+            {
+                super.doGet( req, resp );
+                return;
+            }
+            // a manager with many webapps
+            PrintWriter writer = resp.getWriter();
+            writer.println( "OK - Listed applications for virtual host localhost" );
+            for ( int i = 0; i < LISTED_WEBAPPS; i++ )
+            {
+                writer.println( "/app" + i + ":" + ( i % 2 == 0 ? "running" : "stopped" ) + ":0:app" + i );
+            }
         }
     }
 
@@ -233,7 +719,27 @@ public class TomcatManagerTest
 
         String redirectPath;
 
-        public List<UploadedResource> uploadedResources = new ArrayList<UploadedResource>();
+        /**
+         * where the <code>serverinfo</code> probes are redirected, if not <code>null</code>
+         */
+        String probeRedirectPath;
+
+        public List<String> probes = new ArrayList<String>();
+
+        public List<UploadedResource> uploadedResources = new CopyOnWriteArrayList<UploadedResource>();
+
+        @Override
+        protected void doGet( HttpServletRequest req, HttpServletResponse resp )
+            throws ServletException, IOException
+        {
+            if ( probeRedirectPath == null || !req.getRequestURI().endsWith( "/serverinfo" ) )
+            {
+                super.doGet( req, resp );
+                return;
+            }
+            probes.add( req.getRequestURI() );
+            resp.sendRedirect( probeRedirectPath );
+        }
 
         @Override
         protected void doPut( HttpServletRequest req, HttpServletResponse resp )
@@ -243,14 +749,54 @@ public class TomcatManagerTest
             if ( req.getRequestURI().contains( "redirectrelative" ) )
             {
                 File file = File.createTempFile( "tomcat-unit-test", "tmp" );
-                uploadedResources.add( new UploadedResource( req.getRequestURI(), file ) );
-                IOUtils.copy( req.getInputStream(), new FileOutputStream( file ) );
+                UploadedResource resource = new UploadedResource( req.getRequestURI(), file );
+                uploadedResources.add( resource );
+                resource.bytesRead = copy( req, file );
                 return;
             }
-            uploadedResources.add( new UploadedResource( req.getRequestURI(), null ) );
+            super.doPut( req, resp );
+        }
+
+        /**
+         * Redirects an upload before its body is read.
+         */
+        void redirect( HttpServletRequest req, HttpServletResponse resp )
+            throws IOException
+        {
+            UploadedResource resource = new UploadedResource( req.getRequestURI(), null );
+            uploadedResources.add( resource );
             String redirectUri =
                 redirectPort > 0 ? "http://localhost:" + redirectPort + "/" + redirectPath : redirectPath;
             resp.sendRedirect( redirectUri );
+            resp.flushBuffer();
+            try
+            {
+                resource.bytesRead = IOUtils.copyLarge( req.getInputStream(), new NullOutputStream() );
+            }
+            catch ( IOException e )
+            {
+                // the client did not send the body and the read timed out
+            }
+        }
+    }
+
+    /**
+     * Redirects the uploads ahead of the context valve which sends the <code>100 Continue</code>, like the
+     * authenticator of a manager.
+     */
+    public class RedirectValve
+        extends ValveBase
+    {
+        @Override
+        public void invoke( Request request, Response response )
+            throws IOException, ServletException
+        {
+            if ( "PUT".equals( request.getMethod() ) && !request.getRequestURI().contains( "redirectrelative" ) )
+            {
+                redirectServlet.redirect( request, response );
+                return;
+            }
+            getNext().invoke( request, response );
         }
     }
 }
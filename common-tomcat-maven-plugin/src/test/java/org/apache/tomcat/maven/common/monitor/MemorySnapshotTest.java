@@ -0,0 +1,98 @@
+package org.apache.tomcat.maven.common.monitor;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.tomcat.maven.common.deployer.TomcatManager;
+
+import java.io.File;
+import java.util.Collections;
+
+/**
+ * @since 3.0
+ */
+public class MemorySnapshotTest
+    extends TestCase
+{
+    public void testMemorySnapshot()
+        throws Exception
+    {
+        final int[] redeploys = new int[1];
+        TomcatManager tomcatManager = new StubTomcatManager()
+        {
+            @Override
+            protected String respond( String path )
+            {
+                if ( path.startsWith( "/findleaks" ) )
+                {
+                    assertEquals( "/findleaks?statusLine=true", path );
+                    return redeploys[0] == 0
+                        ? "OK - No memory leaks found\n"
+                        : "OK - Found potential memory leaks in the following applications:\n/foo\n/foo\n";
+                }
+                if ( path.contains( "MemoryPool" ) )
+                {
+                    return "OK - Number of results: 2\n\nName: java.lang:type=MemoryPool,name=Metaspace\n"
+                        + "Usage: javax.management.openmbean.CompositeDataSupport(compositeType=javax.management"
+                        + ".openmbean.CompositeType(name=java.lang.management.MemoryUsage,items=((itemName=used,"
+                        + "itemType=javax.management.openmbean.SimpleType(name=java.lang.Long)))),contents={"
+                        + "committed=" + ( 4096 + redeploys[0] * 2048 ) + ", init=0, max=-1, used="
+                        + ( 2048 + redeploys[0] * 2048 ) + "})\nPeakUsage: contents={used=99999}\n\n"
+                        + "Name: java.lang:type=MemoryPool,name=G1 Old Gen\nUsage: contents={committed=1, "
+                        + "init=0, max=1, used=1024}\n";
+                }
+                if ( path.contains( "ClassLoading" ) )
+                {
+                    return "OK - Number of results: 1\n\nName: java.lang:type=ClassLoading\n"
+                        + "LoadedClassCount: " + ( 5000 + redeploys[0] * 800 ) + "\nUnloadedClassCount: 0\n"
+                        + "TotalLoadedClassCount: 7000\n";
+                }
+                assertTrue( path, path.contains( "WebappClassLoader" ) );
+                return "OK - Number of results: 2\n\n"
+                    + "Name: Catalina:type=WebappClassLoader,host=localhost,context=/foo\n"
+                    + "Name: Catalina:type=WebappClassLoader,host=localhost,context=/\n";
+            }
+        };
+
+        MemorySampler sampler = new MemorySampler( tomcatManager );
+        File file = File.createTempFile( "tomcat-memory", ".properties" );
+        try
+        {
+            sampler.snapshot().store( file );
+            MemorySnapshot baseline = MemorySnapshot.load( file );
+            assertEquals( 5000, baseline.getLoadedClasses() );
+            assertEquals( Long.valueOf( 2048 ), baseline.getPools().get( "Metaspace" ) );
+            assertEquals( Long.valueOf( 1024 ), baseline.getPools().get( "G1 Old Gen" ) );
+            assertEquals( Integer.valueOf( 1 ), baseline.getClassLoaders().get( "/foo" ) );
+            assertTrue( baseline.getLeakedClassLoaders().isEmpty() );
+
+            redeploys[0] = 2;
+            MemorySnapshot snapshot = sampler.snapshot();
+            assertEquals( 1600, snapshot.getLoadedClassesGrowth( baseline ) );
+            assertEquals( "Metaspace", snapshot.getPoolGrowth( baseline ).get( 0 ).getKey() );
+            assertEquals( Long.valueOf( 4096 ), snapshot.getPoolGrowth( baseline ).get( 0 ).getValue() );
+            assertTrue( snapshot.getClassLoaderGrowth( baseline ).isEmpty() );
+            assertEquals( Collections.singletonMap( "/foo", 2 ), snapshot.getNewLeaks( baseline ) );
+        }
+        finally
+        {
+            assertTrue( file.delete() );
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.apache.tomcat.maven.common.monitor;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.tomcat.maven.common.deployer.TomcatManager;
+
+import java.io.StringWriter;
+import java.util.List;
+
+/**
+ * @since 3.0
+ */
+public class StatusSamplerTest
+    extends TestCase
+{
+    public void testStatusSampler()
+        throws Exception
+    {
+        final int[] requests = new int[1];
+        TomcatManager tomcatManager = new StubTomcatManager()
+        {
+            @Override
+            protected String respond( String path )
+            {
+                if ( path.startsWith( "/../status" ) )
+                {
+                    requests[0] += 10;
+                    return "<?xml version=\"1.0\" encoding=\"utf-8\"?><status><jvm>"
+                        + "<memory free='100' total='300' max='1000'/></jvm>"
+                        + "<connector name='http-nio-8080'><threadInfo maxThreads='200' currentThreadCount='10'"
+                        + " currentThreadsBusy='3'/><requestInfo maxTime='50' processingTime='" + requests[0] * 4
+                        + "' requestCount='" + requests[0] + "' errorCount='1' bytesReceived='0'"
+                        + " bytesSent='2048'/></connector>"
+                        + "<connector name='ajp-nio-8009'><threadInfo maxThreads='200' currentThreadCount='5'"
+                        + " currentThreadsBusy='2'/><requestInfo maxTime='0' processingTime='0'"
+                        + " requestCount='0' errorCount='0' bytesReceived='0' bytesSent='0'/></connector>"
+                        + "</status>";
+                }
+                if ( path.startsWith( "/../jmxproxy/?qry=Catalina" ) )
+                {
+                    return "OK - Number of results: 2\n\nName: Catalina:type=Manager,context=/a,host=localhost"
+                        + "\nactiveSessions: 4\n\nName: Catalina:type=Manager,context=/b,host=localhost"
+                        + "\nactiveSessions: 3\n";
+                }
+                assertTrue( path, path.startsWith( "/../jmxproxy/?get=java.lang" ) );
+                return "OK - Attribute get 'java.lang:type=Memory' - HeapMemoryUsage = "
+                    + "contents={committed=500, init=100, max=1000, used=250}";
+            }
+        };
+
+        StatusSampler sampler = new StatusSampler( tomcatManager );
+        List<StatusSample> samples = sampler.sample( 100, 50 );
+        assertEquals( 3, samples.size() );
+        assertTrue( sampler.isSessionsAvailable() );
+        assertTrue( sampler.isHeapAvailable() );
+        StatusSample sample = samples.get( 0 );
+        // the status request is not counted
+        assertEquals( 4, sample.getThreadsBusy() );
+        assertEquals( 15, sample.getThreadsCurrent() );
+        assertEquals( 400, sample.getThreadsMax() );
+        assertEquals( 10, sample.getRequestCount() );
+        assertEquals( 7, sample.getActiveSessions() );
+        assertEquals( 250, sample.getHeapUsed() );
+
+        StatusReport report = new StatusReport( samples );
+        assertEquals( 20, report.getRequests() );
+        assertEquals( 4.0, report.getAverageProcessingTime(), 0.001 );
+        assertEquals( 25.0, report.getMaxHeapUsage(), 0.001 );
+        assertEquals( 7, report.getMaxActiveSessions() );
+
+        StringWriter csv = new StringWriter();
+        report.writeCsv( csv );
+        String[] lines = csv.toString().split( "\n" );
+        assertEquals( 4, lines.length );
+        assertTrue( lines[0], lines[0].startsWith( "time,threadsBusy," ) );
+        assertTrue( lines[3], lines[3].endsWith( ",4,15,400,30,1,120,0,2048,7,250,1000" ) );
+    }
+
+    public void testHeapSampledWithoutSessions()
+        throws Exception
+    {
+        TomcatManager tomcatManager = new StubTomcatManager()
+        {
+            @Override
+            protected String respond( String path )
+            {
+                if ( path.startsWith( "/../status" ) )
+                {
+                    return "<?xml version=\"1.0\" encoding=\"utf-8\"?><status><jvm>"
+                        + "<memory free='100' total='300' max='1000'/></jvm>"
+                        + "<connector name='http-nio-8080'><threadInfo maxThreads='200' currentThreadCount='10'"
+                        + " currentThreadsBusy='1'/></connector></status>";
+                }
+                if ( path.startsWith( "/../jmxproxy/?qry=Catalina" ) )
+                {
+                    return "Error - javax.management.MalformedObjectNameException";
+                }
+                return "OK - Attribute get 'java.lang:type=Memory' - HeapMemoryUsage = "
+                    + "contents={committed=500, init=100, max=1000, used=250}";
+            }
+        };
+
+        StatusSampler sampler = new StatusSampler( tomcatManager );
+        StatusSample sample = sampler.sample();
+        assertFalse( sampler.isSessionsAvailable() );
+        assertTrue( sampler.isHeapAvailable() );
+        assertEquals( 0, sample.getThreadsBusy() );
+        assertEquals( -1, sample.getActiveSessions() );
+        assertEquals( 250, sample.getHeapUsed() );
+    }
+}
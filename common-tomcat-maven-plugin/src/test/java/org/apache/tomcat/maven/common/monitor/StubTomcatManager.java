@@ -0,0 +1,67 @@
+package org.apache.tomcat.maven.common.monitor;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.tomcat.maven.common.deployer.TomcatManager;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerException;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerLineHandler;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerResponse;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * A manager answering every request with a canned body and a 200 status, line by line when a handler is given.
+ *
+ * @since 3.0
+ */
+abstract class StubTomcatManager
+    extends TomcatManager
+{
+    StubTomcatManager()
+        throws MalformedURLException
+    {
+        super( new URL( "http://localhost:8080/manager/text" ) );
+    }
+
+    /**
+     * @param path the manager path of the request
+     * @return the response body
+     */
+    protected abstract String respond( String path )
+        throws TomcatManagerException;
+
+    @Override
+    protected TomcatManagerResponse invoke( String path )
+        throws TomcatManagerException
+    {
+        return new TomcatManagerResponse().setStatusCode( 200 ).setHttpResponseBody( respond( path ) );
+    }
+
+    @Override
+    protected TomcatManagerResponse invoke( String path, TomcatManagerLineHandler handler )
+        throws TomcatManagerException
+    {
+        for ( String line : respond( path ).split( "\n" ) )
+        {
+            handler.handleLine( line );
+        }
+        return new TomcatManagerResponse().setStatusCode( 200 );
+    }
+}
@@ -0,0 +1,116 @@
+package org.apache.tomcat.maven.common.monitor;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.tomcat.maven.common.deployer.TomcatManager;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerException;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @since 3.0
+ */
+public class ThreadDumpSamplerTest
+    extends TestCase
+{
+    public void testThreadDumpSampler()
+        throws Exception
+    {
+        final AtomicBoolean spinning = new AtomicBoolean( true );
+        final AtomicLong spins = new AtomicLong();
+        Thread exec = new Thread( "http-nio-8080-exec-1" )
+        {
+            @Override
+            public void run()
+            {
+                long count = 0;
+                while ( spinning.get() )
+                {
+                    count++;
+                }
+                spins.set( count );
+            }
+        };
+        exec.setDaemon( true );
+        exec.start();
+
+        TomcatManager tomcatManager = new StubTomcatManager()
+        {
+            @Override
+            protected String respond( String path )
+                throws TomcatManagerException
+            {
+                assertEquals( "/../jmxproxy/?invoke=java.lang%3Atype%3DThreading&op=dumpAllThreads"
+                                  + "&ps=false%2Cfalse", path );
+                // prints the dump as the jmxproxy servlet does
+                StringBuilder body = new StringBuilder( "OK - Operation dumpAllThreads returned:\n" );
+                try
+                {
+                    Object[] threads = (Object[]) ManagementFactory.getPlatformMBeanServer().invoke(
+                        new ObjectName( "java.lang:type=Threading" ), "dumpAllThreads",
+                        new Object[]{ false, false }, new String[]{ "boolean", "boolean" } );
+                    for ( Object thread : threads )
+                    {
+                        body.append( "  " ).append( thread ).append( '\n' );
+                    }
+                }
+                catch ( JMException e )
+                {
+                    throw new TomcatManagerException( e.getMessage(), e );
+                }
+                return body.toString();
+            }
+        };
+
+        StackProfile profile;
+        try
+        {
+            profile = new ThreadDumpSampler( tomcatManager ).sample( 100, 50 );
+        }
+        finally
+        {
+            spinning.set( false );
+            exec.join( 10000 );
+        }
+        assertFalse( "spinning thread stopped", exec.isAlive() );
+        assertTrue( spins.get() > 0 );
+        assertEquals( 3, profile.getDumps() );
+        // the exec threads of the test server blocked in a socket read are running too
+        long spinningSamples = 0;
+        for ( Map.Entry<String, Long> stack : profile.getStacks().entrySet() )
+        {
+            if ( stack.getKey().startsWith( ThreadDumpSamplerTest.class.getName() + "$" ) )
+            {
+                spinningSamples += stack.getValue();
+            }
+        }
+        assertEquals( 3, spinningSamples );
+
+        StringWriter collapsed = new StringWriter();
+        profile.writeCollapsed( collapsed );
+        assertTrue( collapsed.toString(), collapsed.toString().matches( "([^ ;]+(;[^ ;]+)* \\d+\n)+" ) );
+    }
+}
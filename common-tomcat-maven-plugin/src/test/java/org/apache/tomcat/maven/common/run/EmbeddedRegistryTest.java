@@ -0,0 +1,203 @@
+package org.apache.tomcat.maven.common.run;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleState;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.commons.io.IOUtils;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Uses the registry of the JVM: each test leaves it empty.
+ *
+ * @since 3.0
+ */
+public class EmbeddedRegistryTest
+    extends TestCase
+{
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        super.tearDown();
+        EmbeddedRegistry.getInstance().shutdownAll( null, 5000 );
+    }
+
+    private static Tomcat startTomcat()
+        throws Exception
+    {
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir( System.getProperty( "java.io.tmpdir" ) );
+        tomcat.setPort( 0 );
+        tomcat.addContext( "", System.getProperty( "java.io.tmpdir" ) );
+        tomcat.start();
+        return tomcat;
+    }
+
+    public void testShutdown()
+        throws Exception
+    {
+        final List<String> stopped = Collections.synchronizedList( new ArrayList<String>() );
+        final CountDownLatch hung = new CountDownLatch( 1 );
+        Tomcat tomcat = startTomcat();
+        EmbeddedRegistry registry = EmbeddedRegistry.getInstance();
+        registry.register( new TomcatServerContainer( tomcat.getServer() ) );
+        for ( final String name : Arrays.asList( "slow1", "slow2", "hung" ) )
+        {
+            registry.register( new EmbeddedContainer()
+            {
+                public String getName()
+                {
+                    return name;
+                }
+
+                public DrainResult drain( long timeout )
+                {
+                    return new DrainResult( name, 0, 0, 0 );
+                }
+
+                public void stop()
+                    throws Exception
+                {
+                    if ( "hung".equals( name ) )
+                    {
+                        hung.await();
+                    }
+                    Thread.sleep( 500 );
+                    stopped.add( name );
+                }
+
+                public void forceStop()
+                {
+                    stopped.add( name + " forced" );
+                }
+            } );
+        }
+
+        try
+        {
+            long start = System.currentTimeMillis();
+            try
+            {
+                registry.shutdownAll( null, 1500 );
+                fail( "hung container stopped" );
+            }
+            catch ( TimeoutException e )
+            {
+                assertTrue( e.getMessage(), e.getMessage().contains( "hung" ) );
+            }
+            long elapsed = System.currentTimeMillis() - start;
+            assertTrue( "containers stopped one after the other: " + elapsed + " ms", elapsed < 2500 );
+            assertEquals( new HashSet<String>( Arrays.asList( "slow1", "slow2", "hung forced" ) ),
+                          new HashSet<String>( stopped ) );
+            assertEquals( LifecycleState.DESTROYED, tomcat.getServer().getState() );
+
+            // the forcibly stopped container is no longer registered
+            registry.shutdownAll( null, 1500 );
+            assertEquals( 3, stopped.size() );
+        }
+        finally
+        {
+            // never leave the stopping thread blocked
+            hung.countDown();
+        }
+    }
+
+    public void testDrain()
+        throws Exception
+    {
+        final CountDownLatch started = new CountDownLatch( 1 );
+        Tomcat slowTomcat = new Tomcat();
+        slowTomcat.setBaseDir( System.getProperty( "java.io.tmpdir" ) );
+        slowTomcat.setPort( 0 );
+        Context context = slowTomcat.addContext( "", System.getProperty( "java.io.tmpdir" ) );
+        slowTomcat.addServlet( context, "slow", new HttpServlet()
+        {
+            @Override
+            protected void doGet( HttpServletRequest req, HttpServletResponse resp )
+                throws IOException
+            {
+                started.countDown();
+                try
+                {
+                    Thread.sleep( 1000 );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                resp.getWriter().print( "done" );
+            }
+        } );
+        context.addServletMapping( "/*", "slow" );
+        slowTomcat.start();
+        final URL url = new URL( "http://localhost:" + slowTomcat.getConnector().getLocalPort() + "/slow" );
+        TomcatServerContainer container = new TomcatServerContainer( slowTomcat.getServer() );
+        EmbeddedRegistry.getInstance().register( container );
+
+        ExecutorService client = Executors.newSingleThreadExecutor();
+        try
+        {
+            Future<String> response = client.submit( new Callable<String>()
+            {
+                public String call()
+                    throws Exception
+                {
+                    return IOUtils.toString( url.openStream() );
+                }
+            } );
+            assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+
+            List<DrainResult> results = EmbeddedRegistry.getInstance().drainAll( null, 5000 );
+            assertEquals( 1, results.size() );
+            DrainResult drained = results.get( 0 );
+            assertEquals( container.getName(), drained.getName() );
+            assertEquals( 1, drained.getInFlight() );
+            assertEquals( 0, drained.getRemaining() );
+            assertEquals( 1, drained.getDrained() );
+            assertEquals( "done", response.get( 5, TimeUnit.SECONDS ) );
+
+            EmbeddedRegistry.getInstance().shutdownAll( null, 5000 );
+            assertEquals( LifecycleState.DESTROYED, slowTomcat.getServer().getState() );
+        }
+        finally
+        {
+            client.shutdownNow();
+        }
+    }
+}
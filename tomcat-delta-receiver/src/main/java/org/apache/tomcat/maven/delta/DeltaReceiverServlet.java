@@ -0,0 +1,655 @@
+package org.apache.tomcat.maven.delta;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Receives delta war deployments from the Tomcat Maven plugin and keeps the last war of each webapp in a storage
+ * directory, the manager then deploys the rebuilt war from there.
+ * <ul>
+ * <li><code>POST /manifest?name=webapp</code> with the manifest of the new war, one <code>sha256 name</code> line
+ * per entry: answers the names of the entries to upload, one per line.</li>
+ * <li><code>PUT /delta?name=webapp</code> with a zip starting with the manifest entry followed by the entries
+ * requested: rebuilds the war from these entries and the previous war, checks all the hashes and answers
+ * <code>OK - </code> followed by the absolute path of the war.</li>
+ * <li><code>PUT /chunk?name=webapp&amp;upload=sha256&amp;index=n&amp;sha256=chunk</code> with a chunk of a war
+ * uploaded in chunks, the upload being identified by the sha256 of the whole war: stores the chunk if its sha256
+ * matches.</li>
+ * <li><code>GET /chunks?name=webapp&amp;upload=sha256</code>: answers the chunks already stored for an upload, one
+ * <code>index sha256</code> line per chunk, so an interrupted upload can resume.</li>
+ * <li><code>POST /assemble?name=webapp&amp;upload=sha256&amp;chunks=n</code>: concatenates the chunks, checks the
+ * sha256 of the war and answers <code>OK - </code> followed by the absolute path of the war.</li>
+ * </ul>
+ * The storage directory is the <code>storageDirectory</code> init parameter, <code>delta-wars</code> below
+ * <code>catalina.base</code> by default. The webapp descriptor restricts the access to the
+ * <code>manager-script</code> role.
+ *
+ * @since 3.0
+ */
+public class DeltaReceiverServlet
+    extends HttpServlet
+{
+    /**
+     * First entry of the delta zip, the same manifest as the one posted.
+     */
+    public static final String MANIFEST_ENTRY = "META-INF/tomcat-delta.manifest";
+
+    /**
+     * Hash of the directory entries.
+     */
+    public static final String DIRECTORY_HASH = "-";
+
+    private static final Pattern NAME = Pattern.compile( "[A-Za-z0-9._#-]+" );
+
+    private static final Pattern UPLOAD = Pattern.compile( "[0-9a-f]{64}" );
+
+    private static final String MANIFEST_SUFFIX = ".manifest";
+
+    private static final String CHUNKS_SUFFIX = ".chunks";
+
+    private File storageDirectory;
+
+    @Override
+    public void init()
+        throws ServletException
+    {
+        String directory = getInitParameter( "storageDirectory" );
+        storageDirectory = directory != null
+            ? new File( directory )
+            : new File( System.getProperty( "catalina.base", System.getProperty( "java.io.tmpdir" ) ), "delta-wars" );
+        if ( !storageDirectory.isDirectory() && !storageDirectory.mkdirs() )
+        {
+            throw new ServletException( "cannot create the delta storage directory " + storageDirectory );
+        }
+    }
+
+    @Override
+    protected void doGet( HttpServletRequest request, HttpServletResponse response )
+        throws ServletException, IOException
+    {
+        if ( !"/chunks".equals( request.getPathInfo() ) )
+        {
+            response.sendError( HttpServletResponse.SC_NOT_FOUND );
+            return;
+        }
+        String name = getName( request, response );
+        String upload = name == null ? null : getUpload( request, response );
+        if ( upload == null )
+        {
+            return;
+        }
+        response.setContentType( "text/plain" );
+        response.setCharacterEncoding( "UTF-8" );
+        PrintWriter writer = response.getWriter();
+        for ( Map.Entry<Integer, File> chunk : listChunks( name, upload ).entrySet() )
+        {
+            writer.println( chunk.getKey() + " " + chunkHash( chunk.getValue() ) );
+        }
+    }
+
+    @Override
+    protected void doPost( HttpServletRequest request, HttpServletResponse response )
+        throws ServletException, IOException
+    {
+        if ( "/assemble".equals( request.getPathInfo() ) )
+        {
+            assemble( request, response );
+            return;
+        }
+        if ( !"/manifest".equals( request.getPathInfo() ) )
+        {
+            response.sendError( HttpServletResponse.SC_NOT_FOUND );
+            return;
+        }
+        String name = getName( request, response );
+        if ( name == null )
+        {
+            return;
+        }
+        Map<String, String> manifest = readManifest( request.getReader() );
+        Map<String, String> previous = readStoredManifest( name );
+
+        response.setContentType( "text/plain" );
+        response.setCharacterEncoding( "UTF-8" );
+        PrintWriter writer = response.getWriter();
+        for ( Map.Entry<String, String> entry : manifest.entrySet() )
+        {
+            if ( !DIRECTORY_HASH.equals( entry.getValue() ) && !entry.getValue().equals(
+                previous.get( entry.getKey() ) ) )
+            {
+                writer.println( entry.getKey() );
+            }
+        }
+    }
+
+    @Override
+    protected void doPut( HttpServletRequest request, HttpServletResponse response )
+        throws ServletException, IOException
+    {
+        if ( "/chunk".equals( request.getPathInfo() ) )
+        {
+            putChunk( request, response );
+            return;
+        }
+        if ( !"/delta".equals( request.getPathInfo() ) )
+        {
+            response.sendError( HttpServletResponse.SC_NOT_FOUND );
+            return;
+        }
+        String name = getName( request, response );
+        if ( name == null )
+        {
+            return;
+        }
+
+        File delta = File.createTempFile( name, ".delta", storageDirectory );
+        try
+        {
+            copy( request.getInputStream(), delta );
+            String problem = rebuild( name, delta );
+            if ( problem != null )
+            {
+                response.sendError( HttpServletResponse.SC_CONFLICT, problem );
+                return;
+            }
+        }
+        finally
+        {
+            delete( delta );
+        }
+
+        response.setContentType( "text/plain" );
+        response.setCharacterEncoding( "UTF-8" );
+        response.getWriter().println( "OK - " + getWar( name ).getAbsolutePath() );
+    }
+
+    private void putChunk( HttpServletRequest request, HttpServletResponse response )
+        throws IOException
+    {
+        String name = getName( request, response );
+        String upload = name == null ? null : getUpload( request, response );
+        if ( upload == null )
+        {
+            return;
+        }
+        String hash = request.getParameter( "sha256" );
+        int index = getIndex( request.getParameter( "index" ) );
+        if ( index < 0 || hash == null || !UPLOAD.matcher( hash ).matches() )
+        {
+            response.sendError( HttpServletResponse.SC_BAD_REQUEST, "invalid chunk index or sha256" );
+            return;
+        }
+
+        File chunks = getChunksDirectory( name, upload );
+        if ( !chunks.isDirectory() && !chunks.mkdirs() )
+        {
+            throw new IOException( "cannot create " + chunks );
+        }
+        File received = File.createTempFile( "chunk", ".tmp", chunks );
+        try
+        {
+            String actual;
+            try (OutputStream out = new FileOutputStream( received ))
+            {
+                actual = copy( request.getInputStream(), out );
+            }
+            if ( !hash.equals( actual ) )
+            {
+                response.sendError( HttpServletResponse.SC_CONFLICT, "hash mismatch for chunk " + index );
+                return;
+            }
+            File chunk = new File( chunks, index + "-" + hash );
+            if ( !chunk.exists() && !received.renameTo( chunk ) )
+            {
+                throw new IOException( "cannot rename " + received + " to " + chunk );
+            }
+        }
+        finally
+        {
+            delete( received );
+        }
+        response.setStatus( HttpServletResponse.SC_NO_CONTENT );
+    }
+
+    private void assemble( HttpServletRequest request, HttpServletResponse response )
+        throws IOException
+    {
+        String name = getName( request, response );
+        String upload = name == null ? null : getUpload( request, response );
+        if ( upload == null )
+        {
+            return;
+        }
+        int count = getIndex( request.getParameter( "chunks" ) );
+        if ( count <= 0 )
+        {
+            response.sendError( HttpServletResponse.SC_BAD_REQUEST, "invalid chunks" );
+            return;
+        }
+        String problem = assemble( name, upload, count );
+        if ( problem != null )
+        {
+            response.sendError( HttpServletResponse.SC_CONFLICT, problem );
+            return;
+        }
+        response.setContentType( "text/plain" );
+        response.setCharacterEncoding( "UTF-8" );
+        response.getWriter().println( "OK - " + getWar( name ).getAbsolutePath() );
+    }
+
+    /**
+     * Concatenates the chunks of an upload into the war and writes its manifest, so a later delta upload only sends
+     * the changed entries.
+     *
+     * @return a description of the problem, <code>null</code> if the war was assembled
+     */
+    private synchronized String assemble( String name, String upload, int count )
+        throws IOException
+    {
+        Map<Integer, File> chunks = listChunks( name, upload );
+        File assembled = File.createTempFile( name, ".war", storageDirectory );
+        boolean done = false;
+        try
+        {
+            MessageDigest digest = newDigest();
+            try (OutputStream out = new DigestOutputStream( new FileOutputStream( assembled ), digest ))
+            {
+                for ( int i = 0; i < count; i++ )
+                {
+                    File chunk = chunks.get( i );
+                    if ( chunk == null )
+                    {
+                        return "missing chunk " + i;
+                    }
+                    try (InputStream in = new FileInputStream( chunk ))
+                    {
+                        copy( in, out );
+                    }
+                }
+            }
+            if ( !upload.equals( toHex( digest.digest() ) ) )
+            {
+                return "hash mismatch for the assembled war";
+            }
+
+            Map<String, String> manifest = new LinkedHashMap<String, String>();
+            try (ZipFile zip = new ZipFile( assembled ))
+            {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while ( entries.hasMoreElements() )
+                {
+                    ZipEntry entry = entries.nextElement();
+                    manifest.put( entry.getName(), entry.isDirectory()
+                        ? DIRECTORY_HASH
+                        : copy( zip.getInputStream( entry ), (OutputStream) null ) );
+                }
+            }
+            catch ( ZipException e )
+            {
+                return "invalid war: " + e.getMessage();
+            }
+            String problem = replace( name, assembled, manifest );
+            done = problem == null;
+            if ( done )
+            {
+                deleteChunks( getChunksDirectory( name, upload ) );
+            }
+            return problem;
+        }
+        finally
+        {
+            if ( !done )
+            {
+                delete( assembled );
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the war from the delta and the previous war.
+     *
+     * @return a description of the problem, <code>null</code> if the war was rebuilt
+     */
+    private synchronized String rebuild( String name, File delta )
+        throws IOException
+    {
+        File war = getWar( name );
+        File rebuilt = File.createTempFile( name, ".war", storageDirectory );
+        boolean done = false;
+        try (ZipFile deltaZip = new ZipFile( delta ))
+        {
+            ZipEntry manifestEntry = deltaZip.getEntry( MANIFEST_ENTRY );
+            if ( manifestEntry == null )
+            {
+                return "delta without " + MANIFEST_ENTRY;
+            }
+            Map<String, String> manifest;
+            try (Reader reader = new InputStreamReader( deltaZip.getInputStream( manifestEntry ), "UTF-8" ))
+            {
+                manifest = readManifest( reader );
+            }
+            Map<String, String> previous = readStoredManifest( name );
+
+            try (ZipFile previousZip = war.exists() ? new ZipFile( war ) : null;
+                 ZipOutputStream out = new ZipOutputStream( new FileOutputStream( rebuilt ) ))
+            {
+                for ( Map.Entry<String, String> entry : manifest.entrySet() )
+                {
+                    String entryName = entry.getKey();
+                    String hash = entry.getValue();
+                    out.putNextEntry( new ZipEntry( entryName ) );
+                    if ( DIRECTORY_HASH.equals( hash ) )
+                    {
+                        out.closeEntry();
+                        continue;
+                    }
+                    ZipEntry source = deltaZip.getEntry( entryName );
+                    ZipFile sourceZip = deltaZip;
+                    if ( source == null && previousZip != null && hash.equals( previous.get( entryName ) ) )
+                    {
+                        source = previousZip.getEntry( entryName );
+                        sourceZip = previousZip;
+                    }
+                    if ( source == null )
+                    {
+                        return "missing entry " + entryName;
+                    }
+                    String actual = copy( sourceZip.getInputStream( source ), out );
+                    out.closeEntry();
+                    if ( !hash.equals( actual ) )
+                    {
+                        return "hash mismatch for entry " + entryName;
+                    }
+                }
+            }
+
+            String problem = replace( name, rebuilt, manifest );
+            done = problem == null;
+            return problem;
+        }
+        finally
+        {
+            if ( !done )
+            {
+                delete( rebuilt );
+            }
+        }
+    }
+
+    /**
+     * Replaces the stored war of a name and its manifest.
+     *
+     * @return a description of the problem, <code>null</code> if the war was replaced
+     */
+    private String replace( String name, File newWar, Map<String, String> manifest )
+        throws IOException
+    {
+        File war = getWar( name );
+        writeManifest( manifest, new File( storageDirectory, name + MANIFEST_SUFFIX ) );
+        if ( war.exists() && !war.delete() )
+        {
+            return "cannot replace " + war;
+        }
+        if ( !newWar.renameTo( war ) )
+        {
+            return "cannot rename " + newWar + " to " + war;
+        }
+        return null;
+    }
+
+    private String getName( HttpServletRequest request, HttpServletResponse response )
+        throws IOException
+    {
+        String name = request.getParameter( "name" );
+        if ( name == null || !NAME.matcher( name ).matches() )
+        {
+            response.sendError( HttpServletResponse.SC_BAD_REQUEST, "invalid name: " + name );
+            return null;
+        }
+        return name;
+    }
+
+    private String getUpload( HttpServletRequest request, HttpServletResponse response )
+        throws IOException
+    {
+        String upload = request.getParameter( "upload" );
+        if ( upload == null || !UPLOAD.matcher( upload ).matches() )
+        {
+            response.sendError( HttpServletResponse.SC_BAD_REQUEST, "invalid upload: " + upload );
+            return null;
+        }
+        return upload;
+    }
+
+    /**
+     * @return the parsed index, -1 if invalid
+     */
+    private static int getIndex( String index )
+    {
+        try
+        {
+            return index == null ? -1 : Math.max( -1, Integer.parseInt( index ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            return -1;
+        }
+    }
+
+    private File getChunksDirectory( String name, String upload )
+    {
+        return new File( storageDirectory, name + CHUNKS_SUFFIX + File.separator + upload );
+    }
+
+    /**
+     * The chunks stored for an upload by index, each chunk file is named <code>index-sha256</code>.
+     */
+    private Map<Integer, File> listChunks( String name, String upload )
+    {
+        Map<Integer, File> chunks = new TreeMap<Integer, File>();
+        File[] files = getChunksDirectory( name, upload ).listFiles();
+        if ( files != null )
+        {
+            for ( File file : files )
+            {
+                int separator = file.getName().indexOf( '-' );
+                int index = separator > 0 ? getIndex( file.getName().substring( 0, separator ) ) : -1;
+                if ( index >= 0 )
+                {
+                    chunks.put( index, file );
+                }
+            }
+        }
+        return chunks;
+    }
+
+    private static String chunkHash( File chunk )
+    {
+        return chunk.getName().substring( chunk.getName().indexOf( '-' ) + 1 );
+    }
+
+    /**
+     * Deletes the chunks of an upload, and of the other uploads of the same name which are stale once a war is
+     * assembled.
+     */
+    private static void deleteChunks( File chunks )
+    {
+        File[] uploads = chunks.getParentFile().listFiles();
+        for ( File upload : uploads == null ? new File[0] : uploads )
+        {
+            File[] files = upload.listFiles();
+            for ( File file : files == null ? new File[0] : files )
+            {
+                delete( file );
+            }
+            delete( upload );
+        }
+        delete( chunks.getParentFile() );
+    }
+
+    private File getWar( String name )
+    {
+        return new File( storageDirectory, name + ".war" );
+    }
+
+    /**
+     * The manifest of the war stored for a name, empty if the war is missing: all the entries are then requested.
+     */
+    private Map<String, String> readStoredManifest( String name )
+        throws IOException
+    {
+        File manifestFile = new File( storageDirectory, name + MANIFEST_SUFFIX );
+        if ( !manifestFile.exists() || !getWar( name ).exists() )
+        {
+            return new HashMap<String, String>();
+        }
+        try (Reader reader = new InputStreamReader( new FileInputStream( manifestFile ), "UTF-8" ))
+        {
+            return readManifest( reader );
+        }
+    }
+
+    static Map<String, String> readManifest( Reader reader )
+        throws IOException
+    {
+        Map<String, String> manifest = new LinkedHashMap<String, String>();
+        BufferedReader lines = new BufferedReader( reader );
+        String line;
+        while ( ( line = lines.readLine() ) != null )
+        {
+            int separator = line.indexOf( ' ' );
+            if ( separator > 0 )
+            {
+                manifest.put( line.substring( separator + 1 ), line.substring( 0, separator ) );
+            }
+        }
+        return manifest;
+    }
+
+    private static void writeManifest( Map<String, String> manifest, File file )
+        throws IOException
+    {
+        try (Writer writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" ) ))
+        {
+            for ( Map.Entry<String, String> entry : manifest.entrySet() )
+            {
+                writer.write( entry.getValue() + " " + entry.getKey() + "\n" );
+            }
+        }
+    }
+
+    private static void copy( InputStream in, File file )
+        throws IOException
+    {
+        try (OutputStream out = new FileOutputStream( file ))
+        {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ( ( read = in.read( buffer ) ) >= 0 )
+            {
+                out.write( buffer, 0, read );
+            }
+        }
+    }
+
+    /**
+     * @param out where to copy, <code>null</code> to only compute the sha256
+     * @return the sha256 of the copied content
+     */
+    private static String copy( InputStream in, OutputStream out )
+        throws IOException
+    {
+        MessageDigest digest = newDigest();
+        try (InputStream digestIn = new DigestInputStream( in, digest ))
+        {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ( ( read = digestIn.read( buffer ) ) >= 0 )
+            {
+                if ( out != null )
+                {
+                    out.write( buffer, 0, read );
+                }
+            }
+        }
+        return toHex( digest.digest() );
+    }
+
+    private static MessageDigest newDigest()
+        throws IOException
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-256" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IOException( e.getMessage(), e );
+        }
+    }
+
+    private static String toHex( byte[] bytes )
+    {
+        StringBuilder hex = new StringBuilder();
+        for ( byte b : bytes )
+        {
+            hex.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) ).append( Character.forDigit( b & 0xf, 16 ) );
+        }
+        return hex.toString();
+    }
+
+    private static void delete( File file )
+    {
+        if ( file.exists() && !file.delete() )
+        {
+            file.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package org.apache.tomcat.maven.delta;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.catalina.Context;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.valves.ValveBase;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.tomcat.maven.common.deployer.ChunkedWarUploader;
+import org.apache.tomcat.maven.common.deployer.DeltaWarUploader;
+import org.apache.tomcat.maven.common.deployer.ReceiverStatusException;
+
+import javax.servlet.ServletException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Uploads wars with the plugin uploaders: only the changed entries of a delta and only the missing chunks of an
+ * interrupted chunked upload are sent.
+ */
+public class DeltaReceiverServletTest
+    extends TestCase
+{
+    Tomcat tomcat;
+
+    File workDirectory;
+
+    int port;
+
+    ChunkValve chunkValve;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        workDirectory = new File( System.getProperty( "java.io.tmpdir" ), "delta-test" );
+        FileUtils.deleteDirectory( workDirectory );
+        assertTrue( new File( workDirectory, "storage" ).mkdirs() );
+
+        tomcat = new Tomcat();
+        tomcat.setBaseDir( workDirectory.getAbsolutePath() );
+        tomcat.setPort( 0 );
+        Context context = tomcat.addContext( "/delta", workDirectory.getAbsolutePath() );
+        Wrapper wrapper = Tomcat.addServlet( context, "receiver", new DeltaReceiverServlet() );
+        wrapper.addInitParameter( "storageDirectory", new File( workDirectory, "storage" ).getAbsolutePath() );
+        context.addServletMapping( "/*", "receiver" );
+        chunkValve = new ChunkValve();
+        context.getPipeline().addValve( chunkValve );
+        tomcat.start();
+        port = tomcat.getConnector().getLocalPort();
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        super.tearDown();
+        tomcat.stop();
+    }
+
+    public void testDeltaUpload()
+        throws Exception
+    {
+        File first = war( "first.war", "version 1" );
+        File second = war( "second.war", "version 2" );
+
+        DeltaWarUploader uploader = new DeltaWarUploader( new URL( "http://localhost:" + port + "/delta" ), null, null );
+        try
+        {
+            DeltaWarUploader.Result result = uploader.upload( "foo", first );
+            assertEquals( 3, result.getSentEntries() );
+            assertEquals( new File( workDirectory, "storage/foo.war" ).getAbsolutePath(),
+                          result.getServerWarPath() );
+
+            result = uploader.upload( "foo", second );
+            assertEquals( 4, result.getEntries() );
+            assertEquals( 1, result.getSentEntries() );
+
+            try (ZipFile rebuilt = new ZipFile( result.getServerWarPath() ))
+            {
+                assertEquals( 4, rebuilt.size() );
+                assertEquals( "version 2", read( rebuilt, "index.html" ) );
+                assertEquals( "unchanged", read( rebuilt, "WEB-INF/web.xml" ) );
+                assertEquals( "library", read( rebuilt, "WEB-INF/lib/foo.jar" ) );
+            }
+        }
+        finally
+        {
+            uploader.close();
+        }
+    }
+
+    public void testChunkedUploadResumes()
+        throws Exception
+    {
+        File war = new File( workDirectory, "large.war" );
+        byte[] library = new byte[300 * 1024];
+        new Random( 1 ).nextBytes( library );
+        try (ZipOutputStream out = new ZipOutputStream( new FileOutputStream( war ) ))
+        {
+            out.putNextEntry( new ZipEntry( "WEB-INF/lib/large.jar" ) );
+            out.write( library );
+            out.closeEntry();
+        }
+        byte[] content = FileUtils.readFileToByteArray( war );
+        String upload = DigestUtils.sha256Hex( content );
+
+        // a previous upload interrupted after the first chunk
+        byte[] first = Arrays.copyOf( content, 64 * 1024 );
+        assertEquals( 204, putChunk( upload, 0, DigestUtils.sha256Hex( first ), first ) );
+        assertEquals( 409, putChunk( upload, 1, DigestUtils.sha256Hex( first ), new byte[10] ) );
+
+        ChunkedWarUploader uploader =
+            new ChunkedWarUploader( new URL( "http://localhost:" + port + "/delta" ), null, null, 3 );
+        try
+        {
+            ChunkedWarUploader.Result result = uploader.setChunkSize( 64 * 1024 ).upload( "large", war );
+            assertEquals( 5, result.getChunks() );
+            assertEquals( 1, result.getResumedChunks() );
+            assertEquals( 4, result.getSentChunks() );
+            assertEquals( 0, result.getRetriedChunks() );
+            assertEquals( content.length - first.length, result.getSentBytes() );
+            assertTrue( Arrays.equals( content, FileUtils.readFileToByteArray( new File(
+                result.getServerWarPath() ) ) ) );
+            assertFalse( new File( workDirectory, "storage/large.chunks" ).exists() );
+        }
+        finally
+        {
+            uploader.close();
+        }
+    }
+
+    public void testChunkedUploadRetriesHashMismatch()
+        throws Exception
+    {
+        // the first attempt is rejected as corrupted on the way
+        chunkValve.rejections.set( 1 );
+        chunkValve.status = 409;
+
+        ChunkedWarUploader uploader =
+            new ChunkedWarUploader( new URL( "http://localhost:" + port + "/delta" ), null, null, 1 );
+        try
+        {
+            ChunkedWarUploader.Result result = uploader.upload( "small", war( "small.war", "version 1" ) );
+            assertEquals( 1, result.getChunks() );
+            assertEquals( 1, result.getSentChunks() );
+            assertEquals( 1, result.getRetriedChunks() );
+            assertEquals( 2, chunkValve.puts.get() );
+        }
+        finally
+        {
+            uploader.close();
+        }
+    }
+
+    public void testChunkedUploadFailsFastOnRejectedChunk()
+        throws Exception
+    {
+        // for instance missing credentials: sending the chunk again would fail the same way
+        chunkValve.rejections.set( Integer.MAX_VALUE );
+        chunkValve.status = 403;
+
+        ChunkedWarUploader uploader =
+            new ChunkedWarUploader( new URL( "http://localhost:" + port + "/delta" ), null, null, 1 );
+        try
+        {
+            uploader.setRetries( 3 ).upload( "small", war( "small.war", "version 1" ) );
+            fail( "rejected chunk not reported" );
+        }
+        catch ( ReceiverStatusException e )
+        {
+            assertEquals( 403, e.getStatusCode() );
+        }
+        finally
+        {
+            uploader.close();
+        }
+        assertEquals( "rejected chunk sent again", 1, chunkValve.puts.get() );
+    }
+
+    private int putChunk( String upload, int index, String hash, byte[] chunk )
+        throws Exception
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL(
+            "http://localhost:" + port + "/delta/chunk?name=large&upload=" + upload + "&index=" + index + "&sha256="
+                + hash ).openConnection();
+        connection.setRequestMethod( "PUT" );
+        connection.setDoOutput( true );
+        try (OutputStream out = connection.getOutputStream())
+        {
+            out.write( chunk );
+        }
+        return connection.getResponseCode();
+    }
+
+    private File war( String name, String index )
+        throws Exception
+    {
+        File war = new File( workDirectory, name );
+        try (ZipOutputStream out = new ZipOutputStream( new FileOutputStream( war ) ))
+        {
+            out.putNextEntry( new ZipEntry( "WEB-INF/" ) );
+            out.closeEntry();
+            entry( out, "WEB-INF/web.xml", "unchanged" );
+            entry( out, "WEB-INF/lib/foo.jar", "library" );
+            entry( out, "index.html", index );
+        }
+        return war;
+    }
+
+    private static void entry( ZipOutputStream out, String name, String content )
+        throws Exception
+    {
+        out.putNextEntry( new ZipEntry( name ) );
+        out.write( content.getBytes( "UTF-8" ) );
+        out.closeEntry();
+    }
+
+    private static String read( ZipFile zip, String name )
+        throws Exception
+    {
+        try (InputStream in = zip.getInputStream( zip.getEntry( name ) ))
+        {
+            return IOUtils.toString( in, "UTF-8" );
+        }
+    }
+
+    /**
+     * Counts the chunk uploads and rejects the first {@link #rejections} of them with {@link #status}.
+     */
+    static class ChunkValve
+        extends ValveBase
+    {
+        final AtomicInteger puts = new AtomicInteger();
+
+        final AtomicInteger rejections = new AtomicInteger();
+
+        volatile int status;
+
+        @Override
+        public void invoke( Request request, Response response )
+            throws IOException, ServletException
+        {
+            if ( "PUT".equals( request.getMethod() ) && request.getRequestURI().endsWith( "/chunk" ) )
+            {
+                puts.incrementAndGet();
+                if ( rejections.getAndDecrement() > 0 )
+                {
+                    response.sendError( status );
+                    return;
+                }
+            }
+            getNext().invoke( request, response );
+        }
+    }
+}
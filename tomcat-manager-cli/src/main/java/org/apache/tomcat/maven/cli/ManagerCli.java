@@ -0,0 +1,315 @@
+package org.apache.tomcat.maven.cli;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.maven.settings.Server;
+import org.apache.tomcat.maven.common.deployer.FleetDeployResult;
+import org.apache.tomcat.maven.common.deployer.FleetDeployer;
+import org.apache.tomcat.maven.common.deployer.TomcatManager;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerException;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls the Tomcat manager with the deployer of the plugin without starting Maven:
+ * <code>java -jar tomcat-manager-cli.jar [options] deploy|undeploy|reload|list [path] [war]</code>. Several
+ * <code>-url</code> deploy to a fleet like the <code>fleetUrls</code> of the deploy goals, and <code>-server</code>
+ * reads the credentials from the Maven settings like the <code>server</code> of the goals.
+ *
+ * @since 3.0
+ */
+@SuppressWarnings( "static-access" )
+public class ManagerCli
+{
+    public static final String DEFAULT_URL = "http://localhost:8080/manager/text";
+
+    static final int EXIT_OK = 0;
+
+    static final int EXIT_FAILED = 1;
+
+    static final int EXIT_USAGE = 2;
+
+    private static final String DEFAULT_USERNAME = "admin";
+
+    private static final String DEFAULT_PASSWORD = "";
+
+    static Option url = OptionBuilder.withArgName( "url" ).hasArg().withDescription(
+        "manager url, several (repeated or comma separated) for a fleet, default " + DEFAULT_URL ).create( "url" );
+
+    static Option server = OptionBuilder.withArgName( "id" ).hasArg().withDescription(
+        "server of the Maven settings holding the credentials" ).create( "server" );
+
+    static Option settings = OptionBuilder.withArgName( "file" ).hasArg().withDescription(
+        "user settings file, default ~/.m2/settings.xml" ).create( "settings" );
+
+    static Option username = OptionBuilder.withArgName( "username" ).hasArg().withDescription(
+        "manager username, overrides the server one" ).create( "username" );
+
+    static Option password = OptionBuilder.withArgName( "password" ).hasArg().withDescription(
+        "manager password, overrides the server one" ).create( "password" );
+
+    static Option charset = OptionBuilder.withArgName( "charset" ).hasArg().withDescription(
+        "url encoding charset, default ISO-8859-1" ).create( "charset" );
+
+    static Option update =
+        OptionBuilder.withDescription( "undeploy the webapp first if it already exists" ).create( "update" );
+
+    static Option tag = OptionBuilder.withArgName( "tag" ).hasArg().withDescription( "deploy tag" ).create( "tag" );
+
+    static Option fleetConcurrency = OptionBuilder.withArgName( "nodes" ).hasArg().withDescription(
+        "fleet nodes deployed at the same time, default 4" ).create( "fleetConcurrency" );
+
+    static Option fleetTimeout = OptionBuilder.withArgName( "seconds" ).hasArg().withDescription(
+        "maximum time of the deployment to one fleet node, default 300" ).create( "fleetTimeout" );
+
+    static Option fleetQuorum = OptionBuilder.withArgName( "quorum" ).hasArg().withDescription(
+        "fleet nodes that must succeed, a percentage or a number, default 100%" ).create( "fleetQuorum" );
+
+    static Option help = OptionBuilder.withLongOpt( "help" ).withDescription( "help" ).create( 'h' );
+
+    static Options options = new Options();
+
+    static
+    {
+        options.addOption( url ).addOption( server ).addOption( settings ).addOption( username ).addOption(
+            password ).addOption( charset ).addOption( update ).addOption( tag ).addOption(
+            fleetConcurrency ).addOption( fleetTimeout ).addOption( fleetQuorum ).addOption( help );
+    }
+
+    private final PrintStream out;
+
+    private final PrintStream err;
+
+    public ManagerCli( PrintStream out, PrintStream err )
+    {
+        this.out = out;
+        this.err = err;
+    }
+
+    public static void main( String[] args )
+    {
+        System.exit( new ManagerCli( System.out, System.err ).run( args ) );
+    }
+
+    /**
+     * @param args the command line
+     * @return the exit code: 0 on success, 1 if the manager failed, 2 on a usage error
+     */
+    public int run( String[] args )
+    {
+        CommandLine line;
+        try
+        {
+            line = new GnuParser().parse( options, args );
+        }
+        catch ( ParseException e )
+        {
+            return usage( e.getMessage() );
+        }
+        if ( line.hasOption( help.getOpt() ) )
+        {
+            return usage( null );
+        }
+
+        String[] arguments = line.getArgs();
+        String command = arguments.length > 0 ? arguments[0] : null;
+        int expected = "deploy".equals( command ) ? 3 : "list".equals( command ) ? 1
+            : "undeploy".equals( command ) || "reload".equals( command ) ? 2 : -1;
+        if ( expected != arguments.length )
+        {
+            return usage( command == null ? "missing command" : "invalid arguments for " + command );
+        }
+
+        try
+        {
+            List<TomcatManager> managers = createManagers( line );
+            if ( "deploy".equals( command ) )
+            {
+                File war = new File( arguments[2] );
+                if ( !war.isFile() )
+                {
+                    return usage( "war not found: " + war );
+                }
+                boolean updateWar = line.hasOption( update.getOpt() );
+                String deployTag = line.getOptionValue( tag.getOpt() );
+                return managers.size() == 1
+                    ? print( managers.get( 0 ).deploy( arguments[1], war, updateWar, deployTag ) )
+                    : deployFleet( line, managers, arguments[1], war, updateWar, deployTag );
+            }
+
+            boolean success = true;
+            for ( TomcatManager manager : managers )
+            {
+                if ( managers.size() > 1 )
+                {
+                    out.println( manager.getURL() + ":" );
+                }
+                TomcatManagerResponse response = "list".equals( command ) ? manager.list()
+                    : "undeploy".equals( command ) ? manager.undeploy( arguments[1] ) : manager.reload( arguments[1] );
+                success &= print( response ) == EXIT_OK;
+            }
+            return success ? EXIT_OK : EXIT_FAILED;
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return usage( e.getMessage() );
+        }
+        catch ( TomcatManagerException e )
+        {
+            err.println( "FAILED - " + e.getMessage() );
+            return EXIT_FAILED;
+        }
+        catch ( IOException e )
+        {
+            err.println( "FAILED - " + e );
+            return EXIT_FAILED;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            err.println( "FAILED - interrupted" );
+            return EXIT_FAILED;
+        }
+    }
+
+    List<TomcatManager> createManagers( CommandLine line )
+        throws IOException
+    {
+        String user = DEFAULT_USERNAME;
+        String pass = DEFAULT_PASSWORD;
+        if ( line.hasOption( server.getOpt() ) )
+        {
+            String serverId = line.getOptionValue( server.getOpt() );
+            String settingsFile = line.getOptionValue( settings.getOpt() );
+            Server credentials = SettingsCredentials.getDefault(
+                settingsFile == null ? null : new File( settingsFile ) ).getServer( serverId );
+            if ( credentials == null )
+            {
+                throw new IllegalArgumentException( "server not found in the settings: " + serverId );
+            }
+            user = credentials.getUsername() == null ? DEFAULT_USERNAME : credentials.getUsername();
+            pass = credentials.getPassword() == null ? DEFAULT_PASSWORD : credentials.getPassword();
+        }
+        user = line.getOptionValue( username.getOpt(), user );
+        pass = line.getOptionValue( password.getOpt(), pass );
+
+        List<String> urls = new ArrayList<String>();
+        if ( line.hasOption( url.getOpt() ) )
+        {
+            for ( String value : line.getOptionValues( url.getOpt() ) )
+            {
+                urls.addAll( Arrays.asList( value.split( "," ) ) );
+            }
+        }
+        else
+        {
+            urls.add( DEFAULT_URL );
+        }
+        List<TomcatManager> managers = new ArrayList<TomcatManager>( urls.size() );
+        for ( String managerUrl : urls )
+        {
+            try
+            {
+                // upload progress only for a single node: it would interleave between nodes
+                managers.add( new TomcatManager( new URL( managerUrl.trim() ), user, pass,
+                                                 line.getOptionValue( charset.getOpt(), "ISO-8859-1" ),
+                                                 urls.size() == 1 ) );
+            }
+            catch ( MalformedURLException e )
+            {
+                throw new IllegalArgumentException( "invalid url " + managerUrl + ": " + e.getMessage() );
+            }
+        }
+        return managers;
+    }
+
+    private int deployFleet( CommandLine line, List<TomcatManager> managers, String path, File war,
+                             boolean updateWar, String deployTag )
+        throws InterruptedException
+    {
+        int required = FleetDeployer.getRequiredSuccesses( line.getOptionValue( fleetQuorum.getOpt(), "100%" ),
+                                                           managers.size() );
+        int timeout = Integer.parseInt( line.getOptionValue( fleetTimeout.getOpt(), "300" ) );
+        List<FleetDeployResult> results = new FleetDeployer( managers ).setConcurrency(
+            Integer.parseInt( line.getOptionValue( fleetConcurrency.getOpt(), "4" ) ) ).setTimeout(
+            TimeUnit.SECONDS.toMillis( timeout ) ).deploy( path, war, updateWar, deployTag );
+        int successes = 0;
+        for ( FleetDeployResult result : results )
+        {
+            ( result.isSuccess() ? out : err ).println(
+                String.format( "%-50s %-6s %8d ms %10.1f KB/sec  %s", result.getUrl(),
+                               result.isSuccess() ? "OK" : "FAILED", result.getElapsedMillis(),
+                               result.getThroughput(), result.getMessage() ) );
+            successes += result.isSuccess() ? 1 : 0;
+        }
+        out.println( successes + "/" + results.size() + " nodes deployed, " + required + " required" );
+        return successes >= required ? EXIT_OK : EXIT_FAILED;
+    }
+
+    private int print( TomcatManagerResponse response )
+    {
+        String body = response.getHttpResponseBody();
+        boolean success = response.getStatusCode() < 400 && ( body == null || !body.startsWith( "FAIL" ) );
+        PrintStream stream = success ? out : err;
+        if ( body == null || body.trim().length() == 0 )
+        {
+            stream.println( response.getStatusCode() + " " + response.getReasonPhrase() );
+        }
+        else
+        {
+            stream.print( body.endsWith( "\n" ) ? body : body + "\n" );
+        }
+        return success ? EXIT_OK : EXIT_FAILED;
+    }
+
+    private int usage( String error )
+    {
+        if ( error != null )
+        {
+            err.println( error );
+        }
+        PrintWriter writer = new PrintWriter( error == null ? out : err );
+        new HelpFormatter().printHelp( writer, HelpFormatter.DEFAULT_WIDTH, getCmdLineSyntax(), null, options,
+                                       HelpFormatter.DEFAULT_LEFT_PAD, HelpFormatter.DEFAULT_DESC_PAD, null );
+        writer.flush();
+        return error == null ? EXIT_OK : EXIT_USAGE;
+    }
+
+    public static String getCmdLineSyntax()
+    {
+        return "java -jar tomcat-manager-cli.jar [options] deploy <path> <war> | undeploy <path> | reload <path> | list";
+    }
+}
@@ -0,0 +1,205 @@
+package org.apache.tomcat.maven.cli;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.settings.Server;
+import org.apache.maven.settings.Settings;
+import org.apache.maven.settings.io.xpp3.SettingsXpp3Reader;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.sonatype.plexus.components.cipher.DefaultPlexusCipher;
+import org.sonatype.plexus.components.cipher.PlexusCipherException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Looks up the credentials of a <code>server</code> of the Maven settings like Maven does for the plugin goals: the
+ * user settings win over the global ones, <code>${env.NAME}</code> and <code>${property}</code> expressions are
+ * interpolated and passwords encrypted with <code>mvn --encrypt-password</code> are decrypted with the master
+ * password of <code>settings-security.xml</code>.
+ *
+ * @since 3.0
+ */
+public class SettingsCredentials
+{
+    /**
+     * Pass phrase of the master password in <code>settings-security.xml</code>.
+     */
+    static final String MASTER_PASS_PHRASE = "settings.security";
+
+    private static final Pattern EXPRESSION = Pattern.compile( "\\$\\{([^}]+)\\}" );
+
+    private final List<File> settingsFiles;
+
+    private final File securityFile;
+
+    /**
+     * @param settingsFiles the settings files, the first one defining the server wins
+     * @param securityFile  the <code>settings-security.xml</code> file
+     */
+    public SettingsCredentials( List<File> settingsFiles, File securityFile )
+    {
+        this.settingsFiles = settingsFiles;
+        this.securityFile = securityFile;
+    }
+
+    /**
+     * @param userSettings the user settings file, <code>null</code> for <code>~/.m2/settings.xml</code>
+     * @return the lookup of the user settings then the global settings of the Maven installation set by
+     *         <code>M2_HOME</code> or <code>MAVEN_HOME</code>, if any
+     */
+    public static SettingsCredentials getDefault( File userSettings )
+    {
+        File m2 = new File( System.getProperty( "user.home" ), ".m2" );
+        List<File> files = new ArrayList<File>();
+        files.add( userSettings != null ? userSettings : new File( m2, "settings.xml" ) );
+        String mavenHome = System.getProperty( "maven.home", System.getenv( "M2_HOME" ) );
+        if ( mavenHome == null )
+        {
+            mavenHome = System.getenv( "MAVEN_HOME" );
+        }
+        if ( mavenHome != null )
+        {
+            files.add( new File( mavenHome, "conf/settings.xml" ) );
+        }
+        String security = System.getProperty( "settings.security" );
+        return new SettingsCredentials( files,
+                                        security != null ? new File( security ) : new File( m2,
+                                                                                            "settings-security.xml" ) );
+    }
+
+    /**
+     * @param id the server id
+     * @return the server with its username and decrypted password, <code>null</code> if no settings file defines it
+     * @throws IOException if a settings file cannot be read or the password cannot be decrypted
+     */
+    public Server getServer( String id )
+        throws IOException
+    {
+        for ( File file : settingsFiles )
+        {
+            if ( !file.isFile() )
+            {
+                continue;
+            }
+            Server server = read( file ).getServer( id );
+            if ( server != null )
+            {
+                server.setUsername( interpolate( server.getUsername() ) );
+                server.setPassword( decrypt( interpolate( server.getPassword() ) ) );
+                server.setPassphrase( decrypt( interpolate( server.getPassphrase() ) ) );
+                return server;
+            }
+        }
+        return null;
+    }
+
+    private static Settings read( File file )
+        throws IOException
+    {
+        try (Reader reader = ReaderFactory.newXmlReader( file ))
+        {
+            return new SettingsXpp3Reader().read( reader, false );
+        }
+        catch ( XmlPullParserException e )
+        {
+            throw new IOException( "cannot read " + file + ": " + e.getMessage(), e );
+        }
+    }
+
+    static String interpolate( String value )
+    {
+        if ( value == null )
+        {
+            return null;
+        }
+        StringBuffer interpolated = new StringBuffer();
+        Matcher matcher = EXPRESSION.matcher( value );
+        while ( matcher.find() )
+        {
+            String expression = matcher.group( 1 );
+            String replacement = expression.startsWith( "env." )
+                ? System.getenv( expression.substring( "env.".length() ) )
+                : System.getProperty( expression );
+            matcher.appendReplacement( interpolated,
+                                       Matcher.quoteReplacement( replacement == null ? matcher.group() : replacement ) );
+        }
+        matcher.appendTail( interpolated );
+        return interpolated.toString();
+    }
+
+    private String decrypt( String value )
+        throws IOException
+    {
+        if ( value == null )
+        {
+            return null;
+        }
+        try
+        {
+            DefaultPlexusCipher cipher = new DefaultPlexusCipher();
+            if ( !cipher.isEncryptedString( value ) )
+            {
+                return value;
+            }
+            return cipher.decryptDecorated( value, getMasterPassword( cipher, securityFile ) );
+        }
+        catch ( PlexusCipherException e )
+        {
+            throw new IOException( "cannot decrypt the password: " + e.getMessage(), e );
+        }
+    }
+
+    private static String getMasterPassword( DefaultPlexusCipher cipher, File file )
+        throws IOException, PlexusCipherException
+    {
+        if ( !file.isFile() )
+        {
+            throw new IOException( "encrypted password without master password: " + file + " not found" );
+        }
+        Xpp3Dom security;
+        try (Reader reader = ReaderFactory.newXmlReader( file ))
+        {
+            security = Xpp3DomBuilder.build( reader );
+        }
+        catch ( XmlPullParserException e )
+        {
+            throw new IOException( "cannot read " + file + ": " + e.getMessage(), e );
+        }
+        Xpp3Dom relocation = security.getChild( "relocation" );
+        if ( relocation != null && relocation.getValue() != null )
+        {
+            return getMasterPassword( cipher, new File( relocation.getValue().trim() ) );
+        }
+        Xpp3Dom master = security.getChild( "master" );
+        if ( master == null || master.getValue() == null )
+        {
+            throw new IOException( "no master password in " + file );
+        }
+        return cipher.decryptDecorated( master.getValue().trim(), MASTER_PASS_PHRASE );
+    }
+}
@@ -0,0 +1,151 @@
+package org.apache.tomcat.maven.cli;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.settings.Server;
+import org.sonatype.plexus.components.cipher.DefaultPlexusCipher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs the CLI against a fake manager with the credentials of settings files.
+ */
+public class ManagerCliTest
+    extends TestCase
+{
+    HttpServer server;
+
+    List<String> requests = Collections.synchronizedList( new ArrayList<String>() );
+
+    File workDirectory;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        workDirectory = new File( System.getProperty( "java.io.tmpdir" ), "cli-test" );
+        FileUtils.deleteDirectory( workDirectory );
+        assertTrue( workDirectory.mkdirs() );
+
+        server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 );
+        server.createContext( "/manager/text", new HttpHandler()
+        {
+            public void handle( HttpExchange exchange )
+                throws IOException
+            {
+                String authorization = exchange.getRequestHeaders().getFirst( "Authorization" );
+                requests.add( exchange.getRequestMethod() + " " + exchange.getRequestURI() + " "
+                                  + new String( Base64.decodeBase64( authorization.substring( "Basic ".length() ) ),
+                                                "UTF-8" ) );
+                byte[] body = exchange.getRequestURI().getPath().endsWith( "/list" )
+                    ? "OK - Listed applications for virtual host localhost\n/foo:running:0:foo\n".getBytes( "UTF-8" )
+                    : "FAIL - No context exists named /bar\n".getBytes( "UTF-8" );
+                exchange.sendResponseHeaders( 200, body.length );
+                OutputStream out = exchange.getResponseBody();
+                out.write( body );
+                out.close();
+            }
+        } );
+        server.start();
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        super.tearDown();
+        server.stop( 0 );
+        FileUtils.deleteDirectory( workDirectory );
+    }
+
+    public void testEncryptedServerPassword()
+        throws Exception
+    {
+        DefaultPlexusCipher cipher = new DefaultPlexusCipher();
+        String master = cipher.encryptAndDecorate( "master", SettingsCredentials.MASTER_PASS_PHRASE );
+        File security = new File( workDirectory, "settings-security.xml" );
+        FileUtils.writeStringToFile( security, "<settingsSecurity><master>" + master + "</master></settingsSecurity>",
+                                     "UTF-8" );
+        File userSettings = new File( workDirectory, "settings.xml" );
+        FileUtils.writeStringToFile( userSettings, "<settings><servers><server><id>tomcat</id>"
+            + "<username>${cli.test.user}</username><password>" + cipher.encryptAndDecorate( "s3cret", "master" )
+            + "</password></server></servers></settings>", "UTF-8" );
+        File globalSettings = new File( workDirectory, "global-settings.xml" );
+        FileUtils.writeStringToFile( globalSettings, "<settings><servers><server><id>tomcat</id>"
+            + "<username>global</username></server><server><id>other</id><username>other</username>"
+            + "<password>plain</password></server></servers></settings>", "UTF-8" );
+
+        System.setProperty( "cli.test.user", "deployer" );
+        try
+        {
+            SettingsCredentials credentials =
+                new SettingsCredentials( Arrays.asList( userSettings, globalSettings ), security );
+            Server tomcat = credentials.getServer( "tomcat" );
+            assertEquals( "deployer", tomcat.getUsername() );
+            assertEquals( "s3cret", tomcat.getPassword() );
+            assertEquals( "plain", credentials.getServer( "other" ).getPassword() );
+            assertNull( credentials.getServer( "missing" ) );
+        }
+        finally
+        {
+            System.clearProperty( "cli.test.user" );
+        }
+    }
+
+    public void testListAndFleetUndeploy()
+        throws Exception
+    {
+        String url = "http://localhost:" + server.getAddress().getPort() + "/manager/text";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        ManagerCli cli = new ManagerCli( new PrintStream( out, true, "UTF-8" ), new PrintStream( err, true, "UTF-8" ) );
+
+        assertEquals( ManagerCli.EXIT_OK,
+                      cli.run( new String[]{ "-url", url, "-username", "tc", "-password", "pw", "list" } ) );
+        assertTrue( out.toString( "UTF-8" ), out.toString( "UTF-8" ).contains( "/foo:running:0:foo" ) );
+        assertEquals( Arrays.asList( "GET /manager/text/list tc:pw" ), requests );
+
+        requests.clear();
+        assertEquals( ManagerCli.EXIT_FAILED,
+                      cli.run( new String[]{ "-url", url + "," + url, "undeploy", "/bar", "-username", "tc" } ) );
+        assertEquals( 2, requests.size() );
+        assertEquals( "GET /manager/text/undeploy?path=%2Fbar tc:", requests.get( 0 ) );
+        assertTrue( err.toString( "UTF-8" ), err.toString( "UTF-8" ).contains( "FAIL - No context exists" ) );
+
+        assertEquals( ManagerCli.EXIT_USAGE, cli.run( new String[]{ "-url", url, "deploy", "/bar" } ) );
+        assertEquals( ManagerCli.EXIT_USAGE, cli.run( new String[]{ "-server", "missing", "-settings",
+            new File( workDirectory, "none.xml" ).getPath(), "list" } ) );
+    }
+}
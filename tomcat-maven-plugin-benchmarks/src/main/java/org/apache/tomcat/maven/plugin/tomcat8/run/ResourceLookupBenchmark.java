@@ -0,0 +1,237 @@
+package org.apache.tomcat.maven.plugin.tomcat8.run;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.WebResource;
+import org.apache.catalina.core.StandardContext;
+import org.apache.commons.lang.StringUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resource lookups of the <code>run</code> goal of the tomcat8 plugin against a {@link SyntheticClassPath}: the
+ * {@link AbstractRunMojo.MyDirContext} resources of the context, the {@link RunMojo.ClassPathResourceSet} serving the
+ * class path as <code>/WEB-INF/lib</code> and <code>/WEB-INF/classes</code>, and the class loader lookups resolved by
+ * {@link RunMojo#urlToWebResource}. Each benchmark measures the throughput and the latency distribution of hits or
+ * misses; add <code>-prof gc</code> to the command line for the allocation rate:
+ * <code>java -jar target/benchmarks.jar ResourceLookupBenchmark -p jars=100 -prof gc</code>.
+ *
+ * @since 3.0
+ */
+@State( Scope.Thread )
+@BenchmarkMode( { Mode.Throughput, Mode.SampleTime } )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class ResourceLookupBenchmark
+{
+    private static final String WEBAPP_PATH = "/benchmark";
+
+    @Param( { "10", "100", "500" } )
+    int jars;
+
+    private SyntheticClassPath classPath;
+
+    private AbstractRunMojo.MyDirContext dirContext;
+
+    private RunMojo.ClassPathResourceSet resourceSet;
+
+    private URLClassLoader classLoader;
+
+    private String[] outputFiles;
+
+    private String[] outputClasses;
+
+    private String[] jarClasses;
+
+    private String[] missing;
+
+    private int next;
+
+    @Setup( Level.Trial )
+    public void setUp()
+        throws IOException
+    {
+        classPath = new SyntheticClassPath( jars );
+
+        // the default log level of a build: the debug messages are built and dropped
+        SystemStreamLog log = new SystemStreamLog()
+        {
+            @Override
+            public void debug( CharSequence content )
+            {
+                // not enabled
+            }
+        };
+        dirContext = new AbstractRunMojo.MyDirContext( classPath.outputDirectory.getAbsolutePath(), WEBAPP_PATH, log );
+        StandardContext context = new StandardContext();
+        context.setPath( WEBAPP_PATH );
+        context.setDocBase( classPath.warSourceDirectory.getAbsolutePath() );
+        dirContext.setContext( context );
+        context.setResources( dirContext );
+        // the resources of the context like the run goal sets them up
+        resourceSet =
+            new RunMojo.ClassPathResourceSet( context, WEBAPP_PATH, classPath.outputDirectory,
+                                              classPath.warSourceDirectory, classPath.jarPaths, log );
+        dirContext.addJarResources( resourceSet );
+        try
+        {
+            dirContext.start();
+        }
+        catch ( LifecycleException e )
+        {
+            throw new IOException( e.getMessage(), e );
+        }
+
+        List<URL> urls = new ArrayList<>();
+        for ( String jarPath : classPath.jarPaths )
+        {
+            urls.add( new File( jarPath ).toURI().toURL() );
+        }
+        classLoader = new URLClassLoader( urls.toArray( new URL[urls.size()] ), null );
+
+        outputClasses = classPath.outputClasses.toArray( new String[classPath.outputClasses.size()] );
+        outputFiles = new String[outputClasses.length];
+        for ( int i = 0; i < outputClasses.length; i++ )
+        {
+            outputFiles[i] = new File( classPath.outputDirectory, outputClasses[i] ).getAbsolutePath();
+        }
+        jarClasses = classPath.jarClasses.toArray( new String[classPath.jarClasses.size()] );
+        missing = classPath.missing.toArray( new String[classPath.missing.size()] );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+        throws IOException
+    {
+        classLoader.close();
+        try
+        {
+            dirContext.stop();
+            dirContext.destroy();
+        }
+        catch ( LifecycleException e )
+        {
+            throw new IOException( e.getMessage(), e );
+        }
+        classPath.delete();
+    }
+
+    private String next( String[] paths )
+    {
+        next = ( next + 1 ) % paths.length;
+        return paths[next];
+    }
+
+    /**
+     * A file of the build output directory, found by {@link AbstractRunMojo.MyDirContext} on the file system.
+     */
+    @Benchmark
+    public WebResource dirContextHit()
+    {
+        return dirContext.getResource( next( outputFiles ) );
+    }
+
+    /**
+     * A resource found neither on the file system nor in the resource sets of the context, the class path one
+     * included, mostly answered by the resource cache of the context.
+     */
+    @Benchmark
+    public WebResource dirContextMiss()
+    {
+        return dirContext.getResource( next( missing ) );
+    }
+
+    @Benchmark
+    public WebResource resourceSetOutputHit()
+    {
+        return resourceSet.getResource( next( outputClasses ) );
+    }
+
+    /**
+     * A class of the first, middle or last jar, found after opening the jars before it.
+     */
+    @Benchmark
+    public WebResource resourceSetJarHit()
+    {
+        return resourceSet.getResource( next( jarClasses ) );
+    }
+
+    /**
+     * A resource missing from the build output directory and from every jar.
+     */
+    @Benchmark
+    public WebResource resourceSetMiss()
+    {
+        return resourceSet.getResource( next( missing ) );
+    }
+
+    @Benchmark
+    public Set<String> listWebAppPathsLib()
+    {
+        return resourceSet.listWebAppPaths( "/WEB-INF/lib/" );
+    }
+
+    @Benchmark
+    public Set<String> listWebAppPathsDirectory()
+    {
+        return resourceSet.listWebAppPaths( "/static/" );
+    }
+
+    /**
+     * A class of a jar found by the class loader then resolved to a jar resource, like
+     * <code>getClassLoaderResource</code> of the context of the <code>run</code> goal.
+     */
+    @Benchmark
+    public WebResource classLoaderJarHit()
+    {
+        String path = next( jarClasses );
+        URL url = classLoader.getResource( StringUtils.removeStart( path, "/" ) );
+        return RunMojo.urlToWebResource( dirContext, WEBAPP_PATH, url, path );
+    }
+
+    @Benchmark
+    public URL classLoaderMiss()
+    {
+        return classLoader.getResource( StringUtils.removeStart( next( missing ), "/" ) );
+    }
+}
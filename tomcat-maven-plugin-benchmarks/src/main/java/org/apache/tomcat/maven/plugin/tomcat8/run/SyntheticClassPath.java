@@ -0,0 +1,165 @@
+package org.apache.tomcat.maven.plugin.tomcat8.run;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Class path of a synthetic project in a temporary directory: dependency jars, a deep build output directory and a
+ * war source directory, with the webapp paths of some of their entries and of missing resources to look up.
+ *
+ * @since 3.0
+ */
+class SyntheticClassPath
+{
+    /**
+     * Classes of each dependency jar.
+     */
+    static final int CLASSES_PER_JAR = 50;
+
+    /**
+     * Package depth of the build output directory, like the packages of a maven project.
+     */
+    static final int OUTPUT_DEPTH = 10;
+
+    /**
+     * Top level packages of the build output directory, each <code>OUTPUT_DEPTH</code> deep.
+     */
+    static final int OUTPUT_BRANCHES = 4;
+
+    /**
+     * Classes of each package of the build output directory.
+     */
+    static final int CLASSES_PER_PACKAGE = 10;
+
+    /**
+     * Static files of the war source directory.
+     */
+    static final int WEBAPP_FILES = 200;
+
+    private static final byte[] CLASS_BYTES = new byte[512];
+
+    final File directory;
+
+    final File outputDirectory;
+
+    final File warSourceDirectory;
+
+    final List<String> jarPaths = new ArrayList<>();
+
+    /**
+     * Webapp paths of classes of the build output directory, the deepest ones included.
+     */
+    final List<String> outputClasses = new ArrayList<>();
+
+    /**
+     * Webapp paths of classes of the first, middle and last jars, in this order.
+     */
+    final List<String> jarClasses = new ArrayList<>();
+
+    /**
+     * Webapp paths found nowhere, looked up through all the jars.
+     */
+    final List<String> missing = new ArrayList<>();
+
+    /**
+     * @param jars the number of dependency jars
+     */
+    SyntheticClassPath( int jars )
+        throws IOException
+    {
+        directory = File.createTempFile( "tomcat-benchmark", "" );
+        if ( !directory.delete() || !directory.mkdirs() )
+        {
+            throw new IOException( "cannot create " + directory );
+        }
+        outputDirectory = new File( directory, "target/classes" );
+        warSourceDirectory = new File( directory, "src/main/webapp" );
+
+        for ( int i = 0; i < jars; i++ )
+        {
+            File jar = new File( directory, "repository/dependency-" + i + ".jar" );
+            writeJar( jar, "org/example/dependency" + i );
+            jarPaths.add( jar.getAbsolutePath() );
+        }
+        for ( int i : new int[]{ 0, jars / 2, jars - 1 } )
+        {
+            jarClasses.add( "/org/example/dependency" + i + "/Class" + ( CLASSES_PER_JAR - 1 ) + ".class" );
+        }
+
+        for ( int branch = 0; branch < OUTPUT_BRANCHES; branch++ )
+        {
+            StringBuilder pkg = new StringBuilder( "com/example/module" + branch );
+            for ( int level = 0; level < OUTPUT_DEPTH; level++ )
+            {
+                pkg.append( "/level" ).append( level );
+                for ( int i = 0; i < CLASSES_PER_PACKAGE; i++ )
+                {
+                    FileUtils.writeByteArrayToFile( new File( outputDirectory, pkg + "/Service" + i + ".class" ),
+                                                    CLASS_BYTES );
+                }
+            }
+            outputClasses.add( "/com/example/module" + branch + "/level0/Service0.class" );
+            outputClasses.add( "/" + pkg + "/Service" + ( CLASSES_PER_PACKAGE - 1 ) + ".class" );
+        }
+
+        FileUtils.writeStringToFile( new File( warSourceDirectory, "WEB-INF/web.xml" ), "<web-app/>", "UTF-8" );
+        for ( int i = 0; i < WEBAPP_FILES; i++ )
+        {
+            FileUtils.writeStringToFile( new File( warSourceDirectory, "static/file" + i + ".css" ), "body{}",
+                                         "UTF-8" );
+        }
+
+        missing.add( "/org/example/Missing.class" );
+        missing.add( "/META-INF/resources/missing.jsp" );
+        missing.add( "/com/example/module0/level0/level1/Missing.class" );
+    }
+
+    private static void writeJar( File jar, String pkg )
+        throws IOException
+    {
+        FileUtils.forceMkdir( jar.getParentFile() );
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().putValue( "Manifest-Version", "1.0" );
+        try (JarOutputStream out = new JarOutputStream( new FileOutputStream( jar ), manifest ))
+        {
+            for ( int i = 0; i < CLASSES_PER_JAR; i++ )
+            {
+                out.putNextEntry( new JarEntry( pkg + "/Class" + i + ".class" ) );
+                out.write( CLASS_BYTES );
+                out.closeEntry();
+            }
+        }
+    }
+
+    void delete()
+        throws IOException
+    {
+        FileUtils.deleteDirectory( directory );
+    }
+}
@@ -27,6 +27,7 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.settings.Proxy;
 import org.apache.maven.wagon.authentication.AuthenticationInfo;
 import org.apache.tomcat.maven.common.deployer.TomcatManager;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerConnectionPool;
 import org.apache.tomcat.maven.common.deployer.TomcatManagerException;
 import org.codehaus.plexus.util.StringUtils;
 
@@ -116,6 +117,22 @@ public abstract class AbstractCatalinaMojo
     @Parameter(defaultValue = "${plugin.version}", required = true, readonly = true)
     private String version;
 
+    /**
+     * Size in bytes of the chunks read from the war file when uploading it to the Tomcat manager.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.uploadBufferSize", defaultValue = "65536" )
+    private int uploadBufferSize;
+
+    /**
+     * Maximum number of redirects followed when invoking the Tomcat manager, the goal fails beyond.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.maxRedirects", defaultValue = "5" )
+    private int maxRedirects;
+
     /**
      * Skip the execution
      *
@@ -163,6 +180,16 @@ public abstract class AbstractCatalinaMojo
             throw new MojoExecutionException( messagesProvider.getMessage( "AbstractCatalinaMojo.managerIOError" ),
                                               exception );
         }
+        finally
+        {
+            if ( manager != null )
+            {
+                TomcatManagerConnectionPool connectionPool = manager.getConnectionPool();
+                getLog().debug( messagesProvider.getMessage( "AbstractCatalinaMojo.connectionStatistics", url,
+                                                             connectionPool.getRequestCount(),
+                                                             connectionPool.getReusedConnectionCount() ) );
+            }
+        }
     }
 
     // ----------------------------------------------------------------------
@@ -235,8 +262,18 @@ public abstract class AbstractCatalinaMojo
                 password = this.password == null ? "" : this.password;
             }
 
-            manager = new TomcatManager( url, userName, password, charset, settings.isInteractiveMode() );
+            TomcatManagerConnectionPool connectionPool =
+                TomcatManagerConnectionPool.getSharedPool( url, userName, password );
+            if ( connectionPool.getRequestCount() > 0 )
+            {
+                getLog().debug( messagesProvider.getMessage( "AbstractCatalinaMojo.connectionPoolReused", url,
+                                                             connectionPool.getRequestCount() ) );
+            }
+            manager =
+                new TomcatManager( url, userName, password, charset, settings.isInteractiveMode(), connectionPool );
             manager.setUserAgent( name + "/" + version );
+            manager.setUploadBufferSize( uploadBufferSize );
+            manager.setMaxRedirects( maxRedirects );
 
             Proxy proxy = session.getSettings().getActiveProxy();
             if ( proxy != null && proxy.isActive() )
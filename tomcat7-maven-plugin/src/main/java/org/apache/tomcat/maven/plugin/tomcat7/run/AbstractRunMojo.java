@@ -57,6 +57,7 @@ import org.apache.tomcat.JarScanner;
 import org.apache.tomcat.maven.common.config.AbstractWebapp;
 import org.apache.tomcat.maven.common.run.EmbeddedRegistry;
 import org.apache.tomcat.maven.common.run.ExternalRepositoriesReloadableWebappLoader;
+import org.apache.tomcat.maven.common.run.TomcatServerContainer;
 import org.apache.tomcat.maven.plugin.tomcat7.AbstractTomcat7Mojo;
 import org.apache.tomcat.util.scan.StandardJarScanner;
 import org.codehaus.plexus.archiver.ArchiverException;
@@ -1069,7 +1070,7 @@ public abstract class AbstractRunMojo
                 container.setUseNaming( this.useNaming );
                 container.setConfig( serverXml.getAbsolutePath() );
                 container.start();
-                EmbeddedRegistry.getInstance().register( container );
+                EmbeddedRegistry.getInstance().register( new TomcatServerContainer( container.getServer() ) );
             }
             else
             {
@@ -1289,7 +1290,7 @@ public abstract class AbstractRunMojo
                     }
                 }
 
-                EmbeddedRegistry.getInstance().register( embeddedTomcat );
+                EmbeddedRegistry.getInstance().register( new TomcatServerContainer( embeddedTomcat.getServer() ) );
 
             }
 
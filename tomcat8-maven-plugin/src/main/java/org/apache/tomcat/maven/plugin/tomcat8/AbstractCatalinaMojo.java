@@ -25,6 +25,7 @@ import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.wagon.authentication.AuthenticationInfo;
 import org.apache.tomcat.maven.common.deployer.TomcatManager;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerConnectionPool;
 import org.apache.tomcat.maven.common.deployer.TomcatManagerException;
 import org.apache.tomcat.maven.plugin.tomcat8.AbstractTomcat8Mojo;
 import org.codehaus.plexus.util.StringUtils;
@@ -109,6 +110,22 @@ public abstract class AbstractCatalinaMojo
     @Parameter( defaultValue = "${plugin.version}", required = true, readonly = true )
     private String version;
 
+    /**
+     * Size in bytes of the chunks read from the war file when uploading it to the Tomcat manager.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.uploadBufferSize", defaultValue = "65536" )
+    private int uploadBufferSize;
+
+    /**
+     * Maximum number of redirects followed when invoking the Tomcat manager, the goal fails beyond.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.maxRedirects", defaultValue = "5" )
+    private int maxRedirects;
+
     // ----------------------------------------------------------------------
     // Fields
     // ----------------------------------------------------------------------
@@ -142,6 +159,16 @@ public abstract class AbstractCatalinaMojo
             throw new MojoExecutionException( messagesProvider.getMessage( "AbstractCatalinaMojo.managerIOError" ),
                                               exception );
         }
+        finally
+        {
+            if ( manager != null )
+            {
+                TomcatManagerConnectionPool connectionPool = manager.getConnectionPool();
+                getLog().debug( messagesProvider.getMessage( "AbstractCatalinaMojo.connectionStatistics", url,
+                                                             connectionPool.getRequestCount(),
+                                                             connectionPool.getReusedConnectionCount() ) );
+            }
+        }
     }
 
     // ----------------------------------------------------------------------
@@ -173,55 +200,83 @@ public abstract class AbstractCatalinaMojo
         // lazily instantiate when config values have been injected
         if ( manager == null )
         {
-            String userName;
-            String password;
+            manager = createManager( url, settings.isInteractiveMode() );
+        }
+
+        return manager;
+    }
 
-            if ( server == null )
+    /**
+     * Creates a Tomcat manager wrapper for the given url, with the credentials and settings of this goal.
+     *
+     * @param managerUrl the full URL of the Tomcat manager instance
+     * @param verbose    if the upload progress is printed
+     * @return the Tomcat manager wrapper object
+     * @throws org.apache.maven.plugin.MojoExecutionException
+     *          if there was a problem obtaining the authentication details
+     * @since 3.0
+     */
+    protected TomcatManager createManager( URL managerUrl, boolean verbose )
+        throws MojoExecutionException
+    {
+        String userName;
+        String password;
+
+        if ( server == null )
+        {
+            // no server set, use defaults
+            getLog().debug( messagesProvider.getMessage( "AbstractCatalinaMojo.defaultAuth" ) );
+            userName = DEFAULT_USERNAME;
+            password = DEFAULT_PASSWORD;
+        }
+        else
+        {
+            // obtain authenication details for specified server from wagon
+            AuthenticationInfo info = wagonManager.getAuthenticationInfo( server );
+            if ( info == null )
             {
-                // no server set, use defaults
-                getLog().debug( messagesProvider.getMessage( "AbstractCatalinaMojo.defaultAuth" ) );
-                userName = DEFAULT_USERNAME;
-                password = DEFAULT_PASSWORD;
+                throw new MojoExecutionException(
+                    messagesProvider.getMessage( "AbstractCatalinaMojo.unknownServer", server ) );
             }
-            else
+
+            // derive username
+            userName = info.getUserName();
+            if ( userName == null )
             {
-                // obtain authenication details for specified server from wagon
-                AuthenticationInfo info = wagonManager.getAuthenticationInfo( server );
-                if ( info == null )
-                {
-                    throw new MojoExecutionException(
-                        messagesProvider.getMessage( "AbstractCatalinaMojo.unknownServer", server ) );
-                }
-
-                // derive username
-                userName = info.getUserName();
-                if ( userName == null )
-                {
-                    getLog().debug( messagesProvider.getMessage( "AbstractCatalinaMojo.defaultUserName" ) );
-                    userName = DEFAULT_USERNAME;
-                }
-
-                // derive password
-                password = info.getPassword();
-                if ( password == null )
-                {
-                    getLog().debug( messagesProvider.getMessage( "AbstractCatalinaMojo.defaultPassword" ) );
-                    password = DEFAULT_PASSWORD;
-                }
+                getLog().debug( messagesProvider.getMessage( "AbstractCatalinaMojo.defaultUserName" ) );
+                userName = DEFAULT_USERNAME;
             }
 
-            // if userName/password are defined in the mojo or the cli they override
-            if ( !StringUtils.isEmpty( this.username ) )
+            // derive password
+            password = info.getPassword();
+            if ( password == null )
             {
-                userName = this.username;
-                password = this.password == null ? "" : this.password;
+                getLog().debug( messagesProvider.getMessage( "AbstractCatalinaMojo.defaultPassword" ) );
+                password = DEFAULT_PASSWORD;
             }
+        }
 
-            manager = new TomcatManager( url, userName, password, charset, settings.isInteractiveMode() );
-            manager.setUserAgent( name + "/" + version );
+        // if userName/password are defined in the mojo or the cli they override
+        if ( !StringUtils.isEmpty( this.username ) )
+        {
+            userName = this.username;
+            password = this.password == null ? "" : this.password;
         }
 
-        return manager;
+        TomcatManagerConnectionPool connectionPool =
+            TomcatManagerConnectionPool.getSharedPool( managerUrl, userName, password );
+        if ( connectionPool.getRequestCount() > 0 )
+        {
+            getLog().debug( messagesProvider.getMessage( "AbstractCatalinaMojo.connectionPoolReused", managerUrl,
+                                                         connectionPool.getRequestCount() ) );
+        }
+        TomcatManager tomcatManager =
+            new TomcatManager( managerUrl, userName, password, charset, verbose, connectionPool );
+        tomcatManager.setUserAgent( name + "/" + version );
+        tomcatManager.setUploadBufferSize( uploadBufferSize );
+        tomcatManager.setMaxRedirects( maxRedirects );
+
+        return tomcatManager;
     }
 
     /**
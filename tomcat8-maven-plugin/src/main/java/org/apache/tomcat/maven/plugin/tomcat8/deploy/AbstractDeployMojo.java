@@ -19,8 +19,19 @@ package org.apache.tomcat.maven.plugin.tomcat8.deploy;
  * under the License.
  */
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.tomcat.maven.common.deployer.AbstractReceiverUploader;
+import org.apache.tomcat.maven.common.deployer.ChunkedWarUploader;
+import org.apache.tomcat.maven.common.deployer.DeltaWarUploader;
+import org.apache.tomcat.maven.common.deployer.FleetDeployResult;
+import org.apache.tomcat.maven.common.deployer.FleetDeployer;
+import org.apache.tomcat.maven.common.deployer.ParallelVersionDeployer;
+import org.apache.tomcat.maven.common.deployer.ReadinessWaiter;
+import org.apache.tomcat.maven.common.deployer.RollingDeployer;
+import org.apache.tomcat.maven.common.deployer.TomcatManager;
 import org.apache.tomcat.maven.common.deployer.TomcatManagerException;
 import org.apache.tomcat.maven.common.deployer.TomcatManagerResponse;
 import org.apache.tomcat.maven.plugin.tomcat8.AbstractWarCatalinaMojo;
@@ -28,6 +39,9 @@ import org.apache.tomcat.maven.plugin.tomcat8.AbstractWarCatalinaMojo;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Deploy a WAR to Tomcat.
@@ -66,6 +80,229 @@ public abstract class AbstractDeployMojo
     @Parameter( property = "maven.tomcat.tag" )
     private String tag;
 
+    /**
+     * Full URLs of the Tomcat manager instances of a fleet. When set the war is uploaded to all these managers
+     * instead of <code>url</code>, using the same credentials.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.fleetUrls" )
+    private List<URL> fleetUrls;
+
+    /**
+     * Maximum number of fleet nodes the war is uploaded to at the same time.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.fleetConcurrency", defaultValue = "4" )
+    private int fleetConcurrency;
+
+    /**
+     * Maximum time in seconds for the deployment to one fleet node, the node is reported as failed beyond.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.fleetTimeout", defaultValue = "300" )
+    private int fleetTimeout;
+
+    /**
+     * Fleet nodes that must be deployed for the build to succeed, either a percentage of the nodes
+     * (<code>75%</code>) or a number of nodes (<code>3</code>).
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.fleetQuorum", defaultValue = "100%" )
+    private String fleetQuorum;
+
+    /**
+     * When greater than 0 the fleet is deployed in batches of this number of nodes: a batch starts once the
+     * previous one runs the webapp and passed the health checks, keeping the rest of the fleet serving.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.rollingBatchSize", defaultValue = "0" )
+    private int rollingBatchSize;
+
+    /**
+     * Maximum time in seconds for the nodes of a rolling batch to run the webapp and pass the health checks.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.rollingReadyTimeout", defaultValue = "120" )
+    private int rollingReadyTimeout;
+
+    /**
+     * Health url checked after each rolling batch, resolved against the url of each manager (for instance
+     * <code>/myapp/health</code>). If not set only the webapp state listed by the manager is checked.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.rollingHealthPath" )
+    private String rollingHealthPath;
+
+    /**
+     * Number of consecutive successful health checks required per node.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.rollingHealthChecks", defaultValue = "3" )
+    private int rollingHealthChecks;
+
+    /**
+     * Maximum latency in milliseconds of a successful health check.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.rollingMaxLatency", defaultValue = "1000" )
+    private long rollingMaxLatency;
+
+    /**
+     * What to do when a rolling batch fails: <code>stop</code> skips the remaining batches, <code>rollback</code>
+     * also deploys again <code>rollingRollbackTag</code>, which is then required, on the nodes which received the
+     * new war.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.rollingOnFailure", defaultValue = "stop" )
+    private String rollingOnFailure;
+
+    /**
+     * Tag of the previously deployed war, deployed again by the manager on rollback.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.rollingRollbackTag" )
+    private String rollingRollbackTag;
+
+    /**
+     * When set the war is deployed with the Tomcat parallel deployment as <code>path##parallelVersion</code> next
+     * to the running versions instead of replacing the webapp. Tomcat sends new sessions to the greatest version in
+     * string order, use for instance a timestamp.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.parallelVersion" )
+    private String parallelVersion;
+
+    /**
+     * Maximum time in seconds for the new parallel version to run.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.parallelReadyTimeout", defaultValue = "120" )
+    private int parallelReadyTimeout;
+
+    /**
+     * Maximum time in seconds to wait for the sessions of the old versions to end before undeploying them.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.parallelDrainTimeout", defaultValue = "600" )
+    private int parallelDrainTimeout;
+
+    /**
+     * Number of old versions left deployed next to the new one, the most recent ones. The others are undeployed
+     * once drained.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.parallelRetention", defaultValue = "0" )
+    private int parallelRetention;
+
+    /**
+     * Url of the <code>tomcat-delta-receiver</code> webapp installed on the target Tomcat. When set only the war
+     * entries changed since the previous deployment are uploaded, the receiver rebuilds the war on the server and the
+     * manager deploys it from there. The manager credentials are used.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.deltaReceiverUrl" )
+    private URL deltaReceiverUrl;
+
+    /**
+     * Size in MB of the chunks of a war uploaded to the <code>deltaReceiverUrl</code> in chunks sent over several
+     * connections. The chunks already received by an interrupted upload of the same war are not sent again. 0 uploads
+     * a delta instead.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.chunkSize", defaultValue = "0" )
+    private int chunkSize;
+
+    /**
+     * Number of chunks sent at the same time.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.chunkConcurrency", defaultValue = "4" )
+    private int chunkConcurrency;
+
+    /**
+     * Number of times a failed chunk is sent again.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.chunkRetries", defaultValue = "3" )
+    private int chunkRetries;
+
+    /**
+     * Whether to wait after the deployment until the webapp is ready: listed as running by the manager then
+     * answering <code>waitReadyChecks</code> consecutive requests to each of the <code>waitReadyUrls</code> faster
+     * than <code>waitReadyMaxLatency</code>. The time to ready is logged and set as the <code>tomcat.timeToReady</code>
+     * project property, in milliseconds. With <code>fleetUrls</code> use <code>rollingHealthPath</code> instead.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.waitReady", defaultValue = "false" )
+    private boolean waitReady;
+
+    /**
+     * Warmup urls requested once the webapp runs, absolute or resolved against the manager url (for instance
+     * <code>/myapp/</code>). If not set only the webapp state listed by the manager is checked.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.waitReadyUrls" )
+    private List<String> waitReadyUrls;
+
+    /**
+     * Number of consecutive successful responses required from each warmup url.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.waitReadyChecks", defaultValue = "3" )
+    private int waitReadyChecks;
+
+    /**
+     * Maximum latency in milliseconds of a successful warmup response.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.waitReadyMaxLatency", defaultValue = "1000" )
+    private long waitReadyMaxLatency;
+
+    /**
+     * Maximum time in seconds for the webapp to be ready, the build fails beyond.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.waitReadyTimeout", defaultValue = "120" )
+    private int waitReadyTimeout;
+
+    /**
+     * Time in milliseconds between two polls of the manager, or two warmup rounds after a failed response.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.waitReadyInterval", defaultValue = "1000" )
+    private long waitReadyInterval;
+
+    /**
+     * The Maven project receiving the <code>tomcat.timeToReady</code> property.
+     */
+    @Parameter( defaultValue = "${project}", readonly = true, required = true )
+    private MavenProject project;
+
     // ----------------------------------------------------------------------
     // Protected Methods
     // ----------------------------------------------------------------------
@@ -93,6 +330,71 @@ public abstract class AbstractDeployMojo
         {
             throw new MojoExecutionException( messagesProvider.getMessage( "AbstractDeployMojo.unknownMode", mode ) );
         }
+
+        if ( waitReady )
+        {
+            waitReady();
+        }
+    }
+
+    /**
+     * Waits for the deployed webapp to run and answer the warmup urls, then records the time to ready.
+     *
+     * @throws org.apache.maven.plugin.MojoExecutionException
+     *                             if the webapp is not ready before the timeout
+     * @throws org.apache.tomcat.maven.common.deployer.TomcatManagerException
+     *                             if the Tomcat manager request fails
+     * @throws java.io.IOException if an i/o error occurs
+     * @since 3.0
+     */
+    protected void waitReady()
+        throws MojoExecutionException, TomcatManagerException, IOException
+    {
+        if ( isFleet() )
+        {
+            getLog().warn( messagesProvider.getMessage( "AbstractDeployMojo.waitReadyFleet" ) );
+            return;
+        }
+
+        TomcatManager manager = getManager();
+        ReadinessWaiter waiter = new ReadinessWaiter( manager ).setTimeout(
+            TimeUnit.SECONDS.toMillis( waitReadyTimeout ) ).setPollInterval( waitReadyInterval ).setChecks(
+            waitReadyChecks ).setMaxLatency( waitReadyMaxLatency );
+        if ( isParallelVersion() )
+        {
+            waiter.setVersion( parallelVersion.trim() );
+        }
+        if ( waitReadyUrls != null )
+        {
+            for ( String waitReadyUrl : waitReadyUrls )
+            {
+                waiter.addUrl( new URL( manager.getURL(), waitReadyUrl.trim() ) );
+            }
+        }
+        getLog().info( messagesProvider.getMessage( "AbstractDeployMojo.waitingReady", getDeployedURL(),
+                                                    waiter.getUrls().size(), waitReadyChecks,
+                                                    waitReadyMaxLatency ) );
+
+        ReadinessWaiter.Result result;
+        try
+        {
+            result = waiter.await( getPath() );
+        }
+        catch ( TomcatManagerException e )
+        {
+            throw new MojoExecutionException(
+                messagesProvider.getMessage( "AbstractDeployMojo.notReady", getDeployedURL(), e.getMessage() ) );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+
+        getLog().info( messagesProvider.getMessage( "AbstractDeployMojo.ready", getDeployedURL(),
+                                                    result.getRunningMillis(), result.getReadyMillis(),
+                                                    result.getRequests(), result.getSlowestLatencyMillis() ) );
+        project.getProperties().setProperty( "tomcat.timeToReady", Long.toString( result.getReadyMillis() ) );
     }
 
     /**
@@ -157,6 +459,336 @@ public abstract class AbstractDeployMojo
         return tag;
     }
 
+    /**
+     * Gets whether the war is deployed to a fleet of managers.
+     *
+     * @return <code>true</code> if fleet URLs are configured
+     * @since 3.0
+     */
+    protected boolean isFleet()
+    {
+        return fleetUrls != null && !fleetUrls.isEmpty();
+    }
+
+    /**
+     * Gets whether the war is deployed as a new parallel version.
+     *
+     * @return <code>true</code> if a parallel version is configured
+     * @since 3.0
+     */
+    protected boolean isParallelVersion()
+    {
+        return parallelVersion != null && parallelVersion.trim().length() > 0;
+    }
+
+    /**
+     * Gets whether the war is uploaded as a delta to the receiver webapp.
+     *
+     * @return <code>true</code> if a delta receiver url is configured
+     * @since 3.0
+     */
+    protected boolean isDelta()
+    {
+        return deltaReceiverUrl != null;
+    }
+
+    /**
+     * Uploads the war entries changed since the previous deployment to the delta receiver, then deploys the war
+     * rebuilt on the server with the manager.
+     *
+     * @param warFile the war to upload
+     * @throws org.apache.maven.plugin.MojoExecutionException
+     *                             if the manager rejected the war
+     * @throws org.apache.tomcat.maven.common.deployer.TomcatManagerException
+     *                             if the receiver rejected the delta
+     * @throws java.io.IOException if an i/o error occurs
+     * @since 3.0
+     */
+    protected void deployWarDelta( File warFile )
+        throws MojoExecutionException, TomcatManagerException, IOException
+    {
+        getLog().info( messagesProvider.getMessage( "AbstractDeployMojo.deployingDelta", getDeployedURL(),
+                                                    deltaReceiverUrl ) );
+
+        TomcatManager manager = getManager();
+        DeltaWarUploader uploader =
+            new DeltaWarUploader( deltaReceiverUrl, manager.getUserName(), manager.getPassword() );
+        uploader.setUserAgent( manager.getUserAgent() );
+        DeltaWarUploader.Result result;
+        try
+        {
+            result = uploader.upload( AbstractReceiverUploader.getName( getPath() ), warFile );
+        }
+        finally
+        {
+            uploader.close();
+        }
+        getLog().info(
+            messagesProvider.getMessage( "AbstractDeployMojo.deltaUploaded", result.getSentEntries(),
+                                         result.getEntries(), result.getSentBytes(), warFile.length() ) );
+
+        deployServerWar( result.getServerWarPath() );
+    }
+
+    /**
+     * Gets whether the war is uploaded in chunks to the receiver webapp.
+     *
+     * @return <code>true</code> if a delta receiver url and a chunk size are configured
+     * @since 3.0
+     */
+    protected boolean isChunked()
+    {
+        return isDelta() && chunkSize > 0;
+    }
+
+    /**
+     * Uploads the war in chunks to the receiver, resuming an interrupted upload of the same war, then deploys the
+     * war assembled on the server with the manager.
+     *
+     * @param warFile the war to upload
+     * @throws org.apache.maven.plugin.MojoExecutionException
+     *                             if the manager rejected the war
+     * @throws org.apache.tomcat.maven.common.deployer.TomcatManagerException
+     *                             if the receiver rejected a chunk after the retries
+     * @throws java.io.IOException if an i/o error occurs
+     * @since 3.0
+     */
+    protected void deployWarChunked( File warFile )
+        throws MojoExecutionException, TomcatManagerException, IOException
+    {
+        getLog().info( messagesProvider.getMessage( "AbstractDeployMojo.deployingChunked", getDeployedURL(),
+                                                    deltaReceiverUrl, chunkSize, chunkConcurrency ) );
+
+        TomcatManager manager = getManager();
+        ChunkedWarUploader uploader =
+            new ChunkedWarUploader( deltaReceiverUrl, manager.getUserName(), manager.getPassword(),
+                                    chunkConcurrency );
+        uploader.setChunkSize( chunkSize * 1024L * 1024L ).setRetries( chunkRetries );
+        uploader.setUserAgent( manager.getUserAgent() );
+        ChunkedWarUploader.Result result;
+        long start = System.currentTimeMillis();
+        try
+        {
+            result = uploader.upload( AbstractReceiverUploader.getName( getPath() ), warFile );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        finally
+        {
+            uploader.close();
+        }
+        long elapsed = Math.max( 1, System.currentTimeMillis() - start );
+        getLog().info( messagesProvider.getMessage( "AbstractDeployMojo.chunksUploaded", result.getSentChunks(),
+                                                    result.getChunks(), result.getResumedChunks(),
+                                                    result.getRetriedChunks(),
+                                                    result.getSentBytes() / 1024 * 1000 / elapsed ) );
+
+        deployServerWar( result.getServerWarPath() );
+    }
+
+    /**
+     * Deploys with the manager a war the receiver stored on the server.
+     */
+    private void deployServerWar( String serverWarPath )
+        throws MojoExecutionException, TomcatManagerException, IOException
+    {
+        TomcatManagerResponse tomcatManagerResponse =
+            getManager().deploy( getPath(), AbstractReceiverUploader.getServerFileUrl( serverWarPath ), true,
+                                 getTag() );
+
+        checkTomcatResponse( tomcatManagerResponse );
+
+        log( tomcatManagerResponse.getHttpResponseBody() );
+    }
+
+    /**
+     * Deploys the war as a new parallel version then drains and undeploys the old versions beyond the retention.
+     *
+     * @param warFile the war to upload
+     * @throws org.apache.maven.plugin.MojoExecutionException
+     *                             if the manager rejected the war
+     * @throws org.apache.tomcat.maven.common.deployer.TomcatManagerException
+     *                             if the new version did not run in time
+     * @throws java.io.IOException if an i/o error occurs
+     * @since 3.0
+     */
+    protected void deployWarAsParallelVersion( File warFile )
+        throws MojoExecutionException, TomcatManagerException, IOException
+    {
+        String version = parallelVersion.trim();
+        getLog().info( messagesProvider.getMessage( "AbstractDeployMojo.deployingParallelVersion", getDeployedURL(),
+                                                    version ) );
+
+        ParallelVersionDeployer deployer = new ParallelVersionDeployer( getManager() );
+        deployer.setReadyTimeout( TimeUnit.SECONDS.toMillis( parallelReadyTimeout ) );
+        deployer.setDrainTimeout( TimeUnit.SECONDS.toMillis( parallelDrainTimeout ) );
+        deployer.setRetention( parallelRetention );
+
+        for ( ParallelVersionDeployer.WebappVersion deployed : deployer.listVersions( getPath() ) )
+        {
+            if ( deployed.getVersion().compareTo( version ) > 0 )
+            {
+                getLog().warn( messagesProvider.getMessage( "AbstractDeployMojo.parallelVersionNotLatest", version,
+                                                            deployed.getVersion() ) );
+            }
+        }
+
+        ParallelVersionDeployer.Result result;
+        try
+        {
+            result = deployer.deploy( getPath(), version, warFile, getTag() );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+
+        checkTomcatResponse( result.getDeployResponse() );
+        log( result.getDeployResponse().getHttpResponseBody() );
+
+        for ( String drained : result.getDrained() )
+        {
+            getLog().info( messagesProvider.getMessage( "AbstractDeployMojo.parallelVersionDrained", drained ) );
+        }
+        for ( String expired : result.getExpired() )
+        {
+            getLog().warn( messagesProvider.getMessage( "AbstractDeployMojo.parallelVersionExpired", expired,
+                                                        parallelDrainTimeout ) );
+        }
+        for ( String kept : result.getKept() )
+        {
+            getLog().info( messagesProvider.getMessage( "AbstractDeployMojo.parallelVersionKept", kept ) );
+        }
+        for ( String failed : result.getFailed() )
+        {
+            getLog().error( messagesProvider.getMessage( "AbstractDeployMojo.parallelVersionUndeployFailed",
+                                                         failed ) );
+        }
+    }
+
+    /**
+     * Uploads the war to all the fleet managers and fails the build if fewer nodes than the quorum succeeded.
+     *
+     * @param warFile the war to upload
+     * @throws org.apache.maven.plugin.MojoExecutionException
+     *          if the quorum is not reached
+     * @since 3.0
+     */
+    protected void deployWarToFleet( File warFile )
+        throws MojoExecutionException
+    {
+        int required;
+        try
+        {
+            required = FleetDeployer.getRequiredSuccesses( fleetQuorum, fleetUrls.size() );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new MojoExecutionException(
+                messagesProvider.getMessage( "AbstractDeployMojo.invalidFleetQuorum", e.getMessage() ) );
+        }
+
+        boolean rolling = rollingBatchSize > 0;
+        if ( rolling && RollingDeployer.ON_FAILURE_ROLLBACK.equalsIgnoreCase( rollingOnFailure )
+            && StringUtils.isEmpty( rollingRollbackTag ) )
+        {
+            // checked before any upload: the failure would only show once a batch failed
+            throw new MojoExecutionException(
+                messagesProvider.getMessage( "AbstractDeployMojo.rollbackTagRequired", rollingOnFailure ) );
+        }
+        if ( rolling )
+        {
+            getLog().info( messagesProvider.getMessage( "AbstractDeployMojo.deployingRolling", getPath(),
+                                                        fleetUrls.size(), rollingBatchSize ) );
+        }
+        else
+        {
+            getLog().info( messagesProvider.getMessage( "AbstractDeployMojo.deployingFleet", getPath(),
+                                                        fleetUrls.size(),
+                                                        Math.min( fleetConcurrency, fleetUrls.size() ) ) );
+        }
+
+        List<TomcatManager> managers = new ArrayList<TomcatManager>( fleetUrls.size() );
+        for ( URL fleetUrl : fleetUrls )
+        {
+            // no upload progress: it would interleave between nodes
+            managers.add( createManager( fleetUrl, false ) );
+        }
+
+        List<FleetDeployResult> results;
+        try
+        {
+            if ( rolling )
+            {
+                RollingDeployer rollingDeployer = new RollingDeployer( managers ).setBatchSize( rollingBatchSize );
+                rollingDeployer.setTimeout( TimeUnit.SECONDS.toMillis( fleetTimeout ) );
+                rollingDeployer.setReadyTimeout( TimeUnit.SECONDS.toMillis( rollingReadyTimeout ) );
+                rollingDeployer.setHealthPath( rollingHealthPath ).setHealthChecks( rollingHealthChecks );
+                rollingDeployer.setMaxHealthLatency( rollingMaxLatency ).setRollbackTag( rollingRollbackTag );
+                rollingDeployer.setOnFailure( rollingOnFailure );
+                results = rollingDeployer.deploy( getPath(), warFile, isUpdate(), getTag() );
+            }
+            else
+            {
+                results = new FleetDeployer( managers ).setConcurrency( fleetConcurrency ).setTimeout(
+                    TimeUnit.SECONDS.toMillis( fleetTimeout ) ).deploy( getPath(), warFile, isUpdate(), getTag() );
+            }
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+
+        int successes = 0;
+        boolean rolledBack = false;
+        for ( FleetDeployResult result : results )
+        {
+            rolledBack |= result.isRolledBack();
+            String line = String.format( "%-50s %-11s %8d ms %10.1f KB/sec %8s  %s", result.getUrl(),
+                                         result.isRolledBack() ? "ROLLED BACK" : result.isSuccess() ? "OK" : "FAILED",
+                                         result.getElapsedMillis(), result.getThroughput(),
+                                         result.getHealthLatencyMillis() < 0 ? ""
+                                             : result.getHealthLatencyMillis() + " ms", result.getMessage() );
+            if ( result.isSuccess() && !result.isRolledBack() )
+            {
+                successes++;
+                getLog().info( line );
+            }
+            else
+            {
+                getLog().error( line );
+                if ( result.getFailure() != null )
+                {
+                    getLog().debug( result.getFailure() );
+                }
+            }
+        }
+
+        if ( rolling && ( results.size() < fleetUrls.size() || rolledBack ) )
+        {
+            // a rolling deployment stops at the first failing batch whatever the quorum
+            throw new MojoExecutionException(
+                messagesProvider.getMessage( "AbstractDeployMojo.rollingFailed", results.size(), fleetUrls.size(),
+                                             rolledBack ? rollingOnFailure : "stop" ) );
+        }
+        if ( successes < required )
+        {
+            throw new MojoExecutionException(
+                messagesProvider.getMessage( "AbstractDeployMojo.fleetQuorumFailed", successes, results.size(),
+                                             required ) );
+        }
+        getLog().info( messagesProvider.getMessage( "AbstractDeployMojo.fleetDeployed", successes, results.size() ) );
+    }
+
     /**
      * Deploys the WAR to Tomcat.
      *
@@ -21,6 +21,7 @@ package org.apache.tomcat.maven.plugin.tomcat8.deploy;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.tomcat.maven.common.deployer.DeployHistory;
 import org.apache.tomcat.maven.common.deployer.TomcatManagerException;
 import org.apache.tomcat.maven.common.deployer.TomcatManagerResponse;
 
@@ -44,6 +45,33 @@ public class AbstractDeployWarMojo
     @Parameter( defaultValue = "${project.build.directory}/${project.build.finalName}.war", required = true )
     private File warFile;
 
+    /**
+     * Whether to skip the deployment when the webapp is running the same war, by sha256, as the last one deployed
+     * from this machine. The sha256 is added to the deploy tag and recorded in the <code>deployHistoryFile</code>.
+     * <p>
+     * The history only knows the deployments made from this machine: enable it only when the webapp is not deployed
+     * from elsewhere, another war deployed since would be left running. The manager also keeps a copy of the war of
+     * every tag, so each distinct war deployed adds one to its work directory, which Tomcat never cleans up.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.skipIdentical", defaultValue = "false" )
+    private boolean skipIdentical;
+
+    /**
+     * The file recording the sha256 of the wars deployed to each webapp.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.deployHistoryFile",
+                defaultValue = "${user.home}/.m2/tomcat-deploy-history.properties" )
+    private File deployHistoryFile;
+
+    /**
+     * The sha256 of the war being deployed, set when <code>skipIdentical</code> is enabled.
+     */
+    private String warHash;
+
     // ----------------------------------------------------------------------
     // Protected Methods
     // ----------------------------------------------------------------------
@@ -71,6 +99,15 @@ public class AbstractDeployWarMojo
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getTag()
+    {
+        return warHash == null ? super.getTag() : DeployHistory.toTag( super.getTag(), warHash );
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -80,6 +117,54 @@ public class AbstractDeployWarMojo
     {
         validateWarFile();
 
+        if ( isFleet() && isParallelVersion() )
+        {
+            throw new MojoExecutionException( messagesProvider.getMessage( "DeployMojo.fleetParallelVersion" ) );
+        }
+
+        // a fleet has no single running webapp to compare with
+        if ( !skipIdentical || isFleet() )
+        {
+            deployWarFile();
+            return;
+        }
+        warHash = DeployHistory.hash( warFile );
+        DeployHistory history = new DeployHistory( deployHistoryFile );
+        if ( warHash.equals( history.getHash( getURL(), getPath() ) ) && getManager().isRunning( getPath() ) )
+        {
+            getLog().info( messagesProvider.getMessage( "DeployMojo.identicalWar", getDeployedURL(), warHash,
+                                                        history.getEntry( getURL(), getPath() ),
+                                                        deployHistoryFile ) );
+            return;
+        }
+        deployWarFile();
+        history.record( getURL(), getPath(), warHash, getTag() );
+    }
+
+    private void deployWarFile()
+        throws MojoExecutionException, TomcatManagerException, IOException
+    {
+        if ( isFleet() )
+        {
+            deployWarToFleet( warFile );
+            return;
+        }
+        if ( isParallelVersion() )
+        {
+            deployWarAsParallelVersion( warFile );
+            return;
+        }
+        if ( isChunked() )
+        {
+            deployWarChunked( warFile );
+            return;
+        }
+        if ( isDelta() )
+        {
+            deployWarDelta( warFile );
+            return;
+        }
+
         getLog().info( messagesProvider.getMessage( "AbstractDeployMojo.deployingWar", getDeployedURL() ) );
 
         TomcatManagerResponse tomcatManagerResponse =
@@ -0,0 +1,240 @@
+package org.apache.tomcat.maven.plugin.tomcat8.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.tomcat.maven.common.deployer.FleetDeployResult;
+import org.apache.tomcat.maven.common.deployer.FleetDeployer;
+import org.apache.tomcat.maven.common.deployer.TomcatManager;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerException;
+import org.apache.tomcat.maven.plugin.tomcat8.AbstractCatalinaMojo;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deploys the wars of all the war modules of the reactor at the same time, instead of one module after the other
+ * with <code>deploy</code>. Run it from the aggregator project once the modules are packaged, for instance
+ * <code>mvn package tomcat8:deploy-reactor</code>. Each module is deployed to the <code>path</code> and
+ * <code>url</code> configured for this plugin in its pom, <code>/artifactId</code> and the <code>url</code> of this
+ * goal otherwise, with the credentials of this goal. The modules deployed to the same manager share its pool of
+ * connections. All the modules are deployed even if some fail, the build fails afterwards with a summary.
+ *
+ * @since 3.0
+ */
+@Mojo( name = "deploy-reactor", aggregator = true, threadSafe = true )
+public class DeployReactorMojo
+    extends AbstractCatalinaMojo
+{
+    /**
+     * The projects of the reactor.
+     */
+    @Parameter( defaultValue = "${reactorProjects}", required = true, readonly = true )
+    private List<MavenProject> reactorProjects;
+
+    /**
+     * The key of this plugin in the poms of the modules.
+     */
+    @Parameter( defaultValue = "${plugin.groupId}:${plugin.artifactId}", required = true, readonly = true )
+    private String pluginKey;
+
+    /**
+     * Whether Tomcat should automatically undeploy webapps that already exist when deploying.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.update", defaultValue = "false", required = true )
+    private boolean update;
+
+    /**
+     * The Tomcat webapp tag name to use for all the modules.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.tag" )
+    private String tag;
+
+    /**
+     * Maximum number of modules uploaded at the same time, to the same or different managers.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.reactorConcurrency", defaultValue = "4" )
+    private int reactorConcurrency;
+
+    /**
+     * Maximum time in seconds for the deployment of one module, the module is reported as failed beyond.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.reactorTimeout", defaultValue = "300" )
+    private int reactorTimeout;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void invokeManager()
+        throws MojoExecutionException, TomcatManagerException, IOException
+    {
+        // one manager per url: the modules deployed to a manager share its requests and connection pool
+        Map<URL, TomcatManager> managers = new HashMap<URL, TomcatManager>();
+        List<FleetDeployer.Deployment> deployments = new ArrayList<FleetDeployer.Deployment>();
+        for ( MavenProject module : reactorProjects )
+        {
+            if ( !"war".equals( module.getPackaging() ) )
+            {
+                continue;
+            }
+            File war = getWarFile( module );
+            if ( !war.isFile() )
+            {
+                throw new MojoExecutionException(
+                    messagesProvider.getMessage( "DeployMojo.missingWar", war.getPath() ) );
+            }
+            String modulePath = getConfiguration( module, "path" );
+            String moduleUrl = getConfiguration( module, "url" );
+            URL managerUrl;
+            try
+            {
+                managerUrl = moduleUrl == null ? getURL() : new URL( moduleUrl );
+            }
+            catch ( MalformedURLException e )
+            {
+                throw new MojoExecutionException(
+                    messagesProvider.getMessage( "DeployReactorMojo.invalidUrl", module.getArtifactId(),
+                                                 moduleUrl ), e );
+            }
+            TomcatManager manager = managers.get( managerUrl );
+            if ( manager == null )
+            {
+                // no upload progress: it would interleave between modules
+                manager = createManager( managerUrl, false );
+                managers.put( managerUrl, manager );
+            }
+            deployments.add( new FleetDeployer.Deployment( manager, modulePath == null ? "/" + module.getArtifactId()
+                : modulePath, war, update, tag ) );
+        }
+        if ( deployments.isEmpty() )
+        {
+            getLog().info( messagesProvider.getMessage( "DeployReactorMojo.noWar" ) );
+            return;
+        }
+
+        getLog().info( messagesProvider.getMessage( "DeployReactorMojo.deploying", deployments.size(),
+                                                    managers.size(),
+                                                    Math.min( reactorConcurrency, deployments.size() ) ) );
+        List<FleetDeployResult> results;
+        try
+        {
+            results = new FleetDeployer().setConcurrency( reactorConcurrency ).setTimeout(
+                TimeUnit.SECONDS.toMillis( reactorTimeout ) ).deploy( deployments );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+
+        List<String> failed = new ArrayList<String>();
+        for ( FleetDeployResult result : results )
+        {
+            String line = String.format( "%-30s %-50s %-6s %8d ms %10.1f KB/sec  %s", result.getPath(),
+                                         result.getUrl(), result.isSuccess() ? "OK" : "FAILED",
+                                         result.getElapsedMillis(), result.getThroughput(), result.getMessage() );
+            if ( result.isSuccess() )
+            {
+                getLog().info( line );
+            }
+            else
+            {
+                failed.add( result.getPath() + " (" + result.getUrl() + "): " + result.getMessage() );
+                getLog().error( line );
+                if ( result.getFailure() != null )
+                {
+                    getLog().debug( result.getFailure() );
+                }
+            }
+        }
+        for ( TomcatManager manager : managers.values() )
+        {
+            getLog().debug( messagesProvider.getMessage( "AbstractCatalinaMojo.connectionStatistics", manager.getURL(),
+                                                         manager.getConnectionPool().getRequestCount(),
+                                                         manager.getConnectionPool().getReusedConnectionCount() ) );
+        }
+        if ( !failed.isEmpty() )
+        {
+            StringBuilder summary = new StringBuilder();
+            for ( String failure : failed )
+            {
+                summary.append( "\n  " ).append( failure );
+            }
+            throw new MojoExecutionException(
+                messagesProvider.getMessage( "DeployReactorMojo.failed", failed.size(), results.size(),
+                                             summary ) );
+        }
+        getLog().info( messagesProvider.getMessage( "DeployReactorMojo.deployed", results.size() ) );
+    }
+
+    /**
+     * The war packaged by the module in this build, the war of its build directory otherwise.
+     */
+    private static File getWarFile( MavenProject module )
+    {
+        File artifact = module.getArtifact() == null ? null : module.getArtifact().getFile();
+        if ( artifact != null && artifact.isFile() )
+        {
+            return artifact;
+        }
+        return new File( module.getBuild().getDirectory(), module.getBuild().getFinalName() + ".war" );
+    }
+
+    /**
+     * A parameter of the configuration of this plugin in the pom of the module, <code>null</code> if not set.
+     */
+    private String getConfiguration( MavenProject module, String name )
+    {
+        for ( Object buildPlugin : module.getBuildPlugins() )
+        {
+            Plugin plugin = (Plugin) buildPlugin;
+            if ( pluginKey.equals( plugin.getKey() ) && plugin.getConfiguration() instanceof Xpp3Dom )
+            {
+                Xpp3Dom parameter = ( (Xpp3Dom) plugin.getConfiguration() ).getChild( name );
+                if ( parameter != null && parameter.getValue() != null && parameter.getValue().trim().length() > 0 )
+                {
+                    return parameter.getValue().trim();
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,141 @@
+package org.apache.tomcat.maven.plugin.tomcat8.monitor;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerException;
+import org.apache.tomcat.maven.common.monitor.StackProfile;
+import org.apache.tomcat.maven.common.monitor.ThreadDumpSampler;
+import org.apache.tomcat.maven.plugin.tomcat8.AbstractCatalinaMojo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the thread stacks of the remote Tomcat with thread dumps taken through the manager <code>jmxproxy</code>
+ * servlet and writes them in the collapsed stack format of flame graphs. The manager user needs the
+ * <code>manager-jmx</code> role.
+ *
+ * @since 3.0
+ */
+@Mojo( name = "hot-spots", threadSafe = true )
+public class HotSpotsMojo
+    extends AbstractCatalinaMojo
+{
+    /**
+     * How long to sample in seconds.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.profileDuration", defaultValue = "30" )
+    private int profileDuration;
+
+    /**
+     * Time between two thread dumps in milliseconds.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.profileInterval", defaultValue = "500" )
+    private long profileInterval;
+
+    /**
+     * The collapsed stacks file, one <code>frame;frame;frame count</code> line per stack.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.profileFile",
+                defaultValue = "${project.build.directory}/tomcat-hot-spots.collapsed" )
+    private File profileFile;
+
+    /**
+     * Whether to only sample the request processing threads of the connectors (<code>*-exec-*</code>).
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.execThreadsOnly", defaultValue = "true" )
+    private boolean execThreadsOnly;
+
+    /**
+     * Whether to only sample the running threads, leaving out the idle and blocked ones.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.runnableOnly", defaultValue = "true" )
+    private boolean runnableOnly;
+
+    /**
+     * Number of hot spots logged: the frames found most often at the top of the stacks.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.hotSpots", defaultValue = "10" )
+    private int hotSpots;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void invokeManager()
+        throws MojoExecutionException, TomcatManagerException, IOException
+    {
+        getLog().info( messagesProvider.getMessage( "HotSpotsMojo.sampling", getURL(), profileDuration,
+                                                    profileInterval ) );
+
+        ThreadDumpSampler sampler =
+            new ThreadDumpSampler( getManager() ).setExecThreadsOnly( execThreadsOnly ).setRunnableOnly(
+                runnableOnly );
+        StackProfile profile;
+        try
+        {
+            profile = sampler.sample( TimeUnit.SECONDS.toMillis( profileDuration ), profileInterval );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+
+        File directory = profileFile.getAbsoluteFile().getParentFile();
+        if ( !directory.isDirectory() && !directory.mkdirs() )
+        {
+            throw new IOException( "cannot create " + directory );
+        }
+        try (Writer writer = new OutputStreamWriter( new FileOutputStream( profileFile ), "UTF-8" ))
+        {
+            profile.writeCollapsed( writer );
+        }
+        getLog().info( messagesProvider.getMessage( "HotSpotsMojo.written", profile.getThreads(), profile.getDumps(),
+                                                    profile.getStacks().size(), profileFile ) );
+
+        for ( Map.Entry<String, Long> hotSpot : profile.getHotSpots( hotSpots ) )
+        {
+            getLog().info( String.format( Locale.ROOT, "  %5.1f%% %s", hotSpot.getValue() * 100.0
+                / profile.getThreads(), hotSpot.getKey() ) );
+        }
+    }
+}
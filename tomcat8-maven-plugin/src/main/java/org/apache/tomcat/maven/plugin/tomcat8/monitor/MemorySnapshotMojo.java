@@ -0,0 +1,124 @@
+package org.apache.tomcat.maven.plugin.tomcat8.monitor;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerException;
+import org.apache.tomcat.maven.common.monitor.MemorySampler;
+import org.apache.tomcat.maven.common.monitor.MemorySnapshot;
+import org.apache.tomcat.maven.plugin.tomcat8.AbstractCatalinaMojo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Takes a memory snapshot of the remote Tomcat through the manager: memory pools, loaded classes, class loaders of
+ * the webapps and class loaders leaked by stopped webapps. Compared with a baseline snapshot, taken by an earlier
+ * execution before a redeploy or a load phase, it reports the memory growth and the new leaks that
+ * <code>update=true</code> redeploys tend to cause. The manager user needs the <code>manager-jmx</code> role.
+ *
+ * @since 3.0
+ */
+@Mojo( name = "memory-snapshot", threadSafe = true )
+public class MemorySnapshotMojo
+    extends AbstractCatalinaMojo
+{
+    /**
+     * Where to store the snapshot.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.memorySnapshotFile",
+                defaultValue = "${project.build.directory}/tomcat-memory.properties" )
+    private File memorySnapshotFile;
+
+    /**
+     * A snapshot stored by an earlier execution to compare with, if it exists.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.memoryBaselineFile" )
+    private File memoryBaselineFile;
+
+    /**
+     * Whether to ask the manager for the leaked class loaders, which triggers a full garbage collection on the
+     * server before the memory is measured.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.findLeaks", defaultValue = "true" )
+    private boolean findLeaks;
+
+    /**
+     * Whether to fail the build if class loaders leaked since the baseline.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.failOnLeaks", defaultValue = "false" )
+    private boolean failOnLeaks;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void invokeManager()
+        throws MojoExecutionException, TomcatManagerException, IOException
+    {
+        getLog().info( messagesProvider.getMessage( "MemorySnapshotMojo.snapshot", getURL() ) );
+        MemorySnapshot snapshot = new MemorySampler( getManager() ).setFindLeaks( findLeaks ).snapshot();
+        snapshot.store( memorySnapshotFile );
+        getLog().info( messagesProvider.getMessage( "MemorySnapshotMojo.written", snapshot.getLoadedClasses(),
+                                                    snapshot.getClassLoaders().size(),
+                                                    snapshot.getLeakedClassLoaders().size(), memorySnapshotFile ) );
+
+        if ( memoryBaselineFile == null || !memoryBaselineFile.isFile() )
+        {
+            return;
+        }
+        MemorySnapshot baseline = MemorySnapshot.load( memoryBaselineFile );
+        getLog().info( messagesProvider.getMessage( "MemorySnapshotMojo.compare", memoryBaselineFile,
+                                                    ( snapshot.getTime() - baseline.getTime() ) / 1000,
+                                                    snapshot.getLoadedClassesGrowth( baseline ) ) );
+        for ( Map.Entry<String, Long> pool : snapshot.getPoolGrowth( baseline ) )
+        {
+            getLog().info( messagesProvider.getMessage( "MemorySnapshotMojo.poolGrowth", pool.getKey(),
+                                                        pool.getValue() / 1024 ) );
+        }
+        for ( Map.Entry<String, Integer> loaders : snapshot.getClassLoaderGrowth( baseline ).entrySet() )
+        {
+            getLog().info( messagesProvider.getMessage( "MemorySnapshotMojo.classLoaderGrowth", loaders.getKey(),
+                                                        loaders.getValue() ) );
+        }
+        Map<String, Integer> newLeaks = snapshot.getNewLeaks( baseline );
+        for ( Map.Entry<String, Integer> leaks : newLeaks.entrySet() )
+        {
+            getLog().warn( messagesProvider.getMessage( "MemorySnapshotMojo.leak", leaks.getKey(),
+                                                        leaks.getValue() ) );
+        }
+        if ( failOnLeaks && !newLeaks.isEmpty() )
+        {
+            throw new MojoExecutionException(
+                messagesProvider.getMessage( "MemorySnapshotMojo.leaksFound", newLeaks.keySet() ) );
+        }
+    }
+}
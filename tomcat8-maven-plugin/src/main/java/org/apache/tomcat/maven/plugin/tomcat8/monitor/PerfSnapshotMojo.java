@@ -0,0 +1,201 @@
+package org.apache.tomcat.maven.plugin.tomcat8.monitor;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.tomcat.maven.common.deployer.TomcatManagerException;
+import org.apache.tomcat.maven.common.monitor.StatusReport;
+import org.apache.tomcat.maven.common.monitor.StatusSample;
+import org.apache.tomcat.maven.common.monitor.StatusSampler;
+import org.apache.tomcat.maven.plugin.tomcat8.AbstractCatalinaMojo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the performance counters of the remote Tomcat through the manager <code>status</code> and
+ * <code>jmxproxy</code> servlets for a while, writes them to a CSV or JSON report and fails the build when a
+ * threshold is exceeded. The manager user needs the <code>manager-status</code> role, and <code>manager-jmx</code>
+ * for the sessions.
+ *
+ * @since 3.0
+ */
+@Mojo( name = "perf-snapshot", threadSafe = true )
+public class PerfSnapshotMojo
+    extends AbstractCatalinaMojo
+{
+    /**
+     * How long to sample in seconds.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.snapshotDuration", defaultValue = "60" )
+    private int snapshotDuration;
+
+    /**
+     * Time between two samples in seconds.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.snapshotInterval", defaultValue = "5" )
+    private int snapshotInterval;
+
+    /**
+     * The report file, written as JSON if its name ends with <code>.json</code>, as CSV otherwise.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.snapshotFile",
+                defaultValue = "${project.build.directory}/tomcat-perf-snapshot.csv" )
+    private File snapshotFile;
+
+    /**
+     * Fails the build if more threads are busy in a sample, 0 for no limit. The thread serving the status request of
+     * the sample is not counted.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.maxThreadsBusy", defaultValue = "0" )
+    private int maxThreadsBusy;
+
+    /**
+     * Fails the build if the heap used exceeds this percentage of the maximum heap in a sample, 0 for no limit.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.maxHeapUsage", defaultValue = "0" )
+    private int maxHeapUsage;
+
+    /**
+     * Fails the build if more requests are in error during the sampling, -1 for no limit.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.maxErrors", defaultValue = "-1" )
+    private long maxErrors;
+
+    /**
+     * Fails the build if the requests served during the sampling took longer on average, in milliseconds, 0 for no
+     * limit.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.maxAverageProcessingTime", defaultValue = "0" )
+    private long maxAverageProcessingTime;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void invokeManager()
+        throws MojoExecutionException, TomcatManagerException, IOException
+    {
+        getLog().info( messagesProvider.getMessage( "PerfSnapshotMojo.sampling", getURL(), snapshotDuration,
+                                                    snapshotInterval ) );
+
+        StatusSampler sampler = new StatusSampler( getManager() );
+        List<StatusSample> samples;
+        try
+        {
+            samples = sampler.sample( TimeUnit.SECONDS.toMillis( snapshotDuration ),
+                                      TimeUnit.SECONDS.toMillis( snapshotInterval ) );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        if ( !sampler.isSessionsAvailable() )
+        {
+            getLog().warn( messagesProvider.getMessage( "PerfSnapshotMojo.noJmxSessions" ) );
+        }
+        if ( !sampler.isHeapAvailable() )
+        {
+            getLog().warn( messagesProvider.getMessage( "PerfSnapshotMojo.noJmxHeap" ) );
+        }
+
+        StatusReport report = new StatusReport( samples );
+        writeReport( report );
+        getLog().info( messagesProvider.getMessage( "PerfSnapshotMojo.summary", report.getRequests(),
+                                                    String.format( Locale.ROOT, "%.1f", report.getThroughput() ),
+                                                    String.format( Locale.ROOT, "%.1f",
+                                                                   report.getAverageProcessingTime() ),
+                                                    report.getErrors(), report.getMaxThreadsBusy(),
+                                                    String.format( Locale.ROOT, "%.0f", report.getMaxHeapUsage() ),
+                                                    report.getMaxActiveSessions() ) );
+
+        List<String> violations = new ArrayList<String>();
+        if ( maxThreadsBusy > 0 && report.getMaxThreadsBusy() > maxThreadsBusy )
+        {
+            violations.add( "maxThreadsBusy " + report.getMaxThreadsBusy() + " > " + maxThreadsBusy );
+        }
+        if ( maxHeapUsage > 0 && report.getMaxHeapUsage() > maxHeapUsage )
+        {
+            violations.add( String.format( Locale.ROOT, "maxHeapUsage %.0f%% > %d%%", report.getMaxHeapUsage(),
+                                           maxHeapUsage ) );
+        }
+        if ( maxErrors >= 0 && report.getErrors() > maxErrors )
+        {
+            violations.add( "maxErrors " + report.getErrors() + " > " + maxErrors );
+        }
+        if ( maxAverageProcessingTime > 0 && report.getAverageProcessingTime() > maxAverageProcessingTime )
+        {
+            violations.add( String.format( Locale.ROOT, "maxAverageProcessingTime %.1f ms > %d ms",
+                                           report.getAverageProcessingTime(), maxAverageProcessingTime ) );
+        }
+        if ( !violations.isEmpty() )
+        {
+            throw new MojoExecutionException(
+                messagesProvider.getMessage( "PerfSnapshotMojo.thresholdExceeded", violations ) );
+        }
+    }
+
+    private void writeReport( StatusReport report )
+        throws IOException
+    {
+        File directory = snapshotFile.getAbsoluteFile().getParentFile();
+        if ( !directory.isDirectory() && !directory.mkdirs() )
+        {
+            throw new IOException( "cannot create " + directory );
+        }
+        try (Writer writer = new OutputStreamWriter( new FileOutputStream( snapshotFile ), "UTF-8" ))
+        {
+            if ( snapshotFile.getName().endsWith( ".json" ) )
+            {
+                report.writeJson( writer );
+            }
+            else
+            {
+                report.writeCsv( writer );
+            }
+        }
+        getLog().info( messagesProvider.getMessage( "PerfSnapshotMojo.written", report.getSamples().size(),
+                                                    snapshotFile ) );
+    }
+}
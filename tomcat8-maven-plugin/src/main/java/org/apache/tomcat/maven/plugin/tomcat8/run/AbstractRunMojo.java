@@ -21,6 +21,7 @@ package org.apache.tomcat.maven.plugin.tomcat8.run;
 import org.apache.catalina.Context;
 import org.apache.catalina.Host;
 import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Valve;
 import org.apache.catalina.WebResource;
 import org.apache.catalina.WebResourceSet;
 import org.apache.catalina.Wrapper;
@@ -32,7 +33,6 @@ import org.apache.catalina.servlets.DefaultServlet;
 import org.apache.catalina.startup.Catalina;
 import org.apache.catalina.startup.CatalinaProperties;
 import org.apache.catalina.startup.Tomcat;
-import org.apache.catalina.valves.AccessLogValve;
 import org.apache.catalina.webresources.FileResource;
 import org.apache.catalina.webresources.StandardRoot;
 import org.apache.commons.io.IOUtils;
@@ -60,7 +60,11 @@ import org.apache.tomcat.JarScanner;
 import org.apache.tomcat.maven.common.config.AbstractWebapp;
 import org.apache.tomcat.maven.common.run.EmbeddedRegistry;
 import org.apache.tomcat.maven.common.run.ExternalRepositoriesReloadableWebappLoader;
+import org.apache.tomcat.maven.common.run.TomcatServerContainer;
 import org.apache.tomcat.maven.plugin.tomcat8.AbstractTomcat8Mojo;
+import org.apache.tomcat.maven.runner.AccessLogValveFactory;
+import org.apache.tomcat.maven.runner.LatencyHistogramValve;
+import org.apache.tomcat.maven.runner.RequestTraceValve;
 import org.apache.tomcat.util.scan.StandardJarScanner;
 import org.codehaus.plexus.archiver.ArchiverException;
 import org.codehaus.plexus.archiver.UnArchiver;
@@ -99,6 +103,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @author Olivier Lamy
@@ -554,6 +562,94 @@ public abstract class AbstractRunMojo
     @Parameter
     protected String truststoreType;
 
+    /**
+     * Record request latencies per context and status class. Percentiles are exposed via JMX on the
+     * <code>LatencyHistogramValve</code> and a report is written to <code>logs/latency-histogram.txt</code>
+     * when the container stops.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.latencyHistogram", defaultValue = "false" )
+    protected boolean latencyHistogram;
+
+    /**
+     * Access log mode: <code>sync</code> (Tomcat AccessLogValve), <code>async</code> (lines written by a
+     * background thread) or <code>off</code>.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.accessLog", defaultValue = "sync" )
+    protected String accessLog;
+
+    /**
+     * Access log pattern.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.accessLogPattern", defaultValue = "%h %l %u %t \"%r\" %s %b %I %D" )
+    protected String accessLogPattern;
+
+    /**
+     * Number of lines the async access log can queue before applying the overflow policy.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.accessLogQueueSize", defaultValue = "8192" )
+    protected int accessLogQueueSize;
+
+    /**
+     * Maximum number of lines the async access log writes between two flushes.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.accessLogBatchSize", defaultValue = "256" )
+    protected int accessLogBatchSize;
+
+    /**
+     * What the async access log does when its queue is full: <code>drop</code> the line or <code>block</code>
+     * the request thread until there is room.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.accessLogOverflow", defaultValue = "block" )
+    protected String accessLogOverflow;
+
+    /**
+     * Size in bytes after which the async access log file is rolled, -1 for daily rotation only.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.accessLogMaxFileSize", defaultValue = "-1" )
+    protected long accessLogMaxFileSize;
+
+    /**
+     * Write a compact binary record per request (context, uri pattern, status, bytes, latency, thread wait time)
+     * in memory-mapped segment files. Use the <code>trace-report</code> goal to analyse them.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.requestTrace", defaultValue = "false" )
+    protected boolean requestTrace;
+
+    /**
+     * Where the request trace segments are written.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.requestTraceDirectory",
+                defaultValue = "${project.build.directory}/tomcat/logs/trace" )
+    protected File requestTraceDirectory;
+
+    /**
+     * Number of threads the host uses to start and stop the webapps (including the additional ones)
+     * concurrently: 1 (the Tomcat default) starts them one after another, 0 uses one thread per available
+     * processor.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.hostStartStopThreads", defaultValue = "1" )
+    protected int hostStartStopThreads;
+
     // ----------------------------------------------------------------------
     // Fields
     // ----------------------------------------------------------------------
@@ -1140,7 +1236,7 @@ public abstract class AbstractRunMojo
                 container.setUseNaming( this.useNaming );
                 container.setConfigFile( serverXml.getAbsolutePath() );
                 container.start();
-                EmbeddedRegistry.getInstance().register( container );
+                EmbeddedRegistry.getInstance().register( new TomcatServerContainer( container.getServer() ) );
             }
             else
             {
@@ -1214,10 +1310,34 @@ public abstract class AbstractRunMojo
 
                 embeddedTomcat.setConnector( connector );
 
-                AccessLogValve alv = new AccessLogValve();
-                alv.setDirectory( new File( configurationDir, "logs" ).getAbsolutePath() );
-                alv.setPattern( "%h %l %u %t \"%r\" %s %b %I %D" );
-                embeddedTomcat.getHost().getPipeline().addValve( alv );
+                Valve accessLogValve =
+                    new AccessLogValveFactory( new File( configurationDir, "logs" ).getAbsolutePath() ) //
+                        .setMode( accessLog ) //
+                        .setPattern( accessLogPattern ) //
+                        .setQueueSize( accessLogQueueSize ) //
+                        .setBatchSize( accessLogBatchSize ) //
+                        .setOverflowPolicy( accessLogOverflow ) //
+                        .setMaxFileSize( accessLogMaxFileSize ) //
+                        .createValve();
+                if ( accessLogValve != null )
+                {
+                    embeddedTomcat.getHost().getPipeline().addValve( accessLogValve );
+                }
+
+                if ( requestTrace )
+                {
+                    RequestTraceValve requestTraceValve = new RequestTraceValve();
+                    requestTraceValve.setDirectory( requestTraceDirectory.getAbsolutePath() );
+                    embeddedTomcat.getHost().getPipeline().addValve( requestTraceValve );
+                }
+
+                if ( latencyHistogram )
+                {
+                    LatencyHistogramValve latencyHistogramValve = new LatencyHistogramValve();
+                    latencyHistogramValve.setReportFile(
+                        new File( configurationDir, "logs/latency-histogram.txt" ).getAbsolutePath() );
+                    embeddedTomcat.getHost().getPipeline().addValve( latencyHistogramValve );
+                }
 
                 // create https connector
                 Connector httpsConnector = null;
@@ -1306,6 +1426,8 @@ public abstract class AbstractRunMojo
                     embeddedTomcat.getEngine().getService().addConnector( ajpConnector );
                 }
 
+                embeddedTomcat.getHost().setStartStopThreads( hostStartStopThreads );
+
                 if ( addContextWarDependencies || !getAdditionalWebapps().isEmpty() )
                 {
                     createDependencyContexts( embeddedTomcat );
@@ -1360,7 +1482,7 @@ public abstract class AbstractRunMojo
                     }
                 }
 
-                EmbeddedRegistry.getInstance().register( embeddedTomcat );
+                EmbeddedRegistry.getInstance().register( new TomcatServerContainer( embeddedTomcat.getServer() ) );
 
             }
 
@@ -1485,7 +1607,7 @@ public abstract class AbstractRunMojo
     {
         getLog().info( "Deploying dependency wars" );
         // Let's add other modules
-        List<Context> contexts = new ArrayList<Context>();
+        List<DependencyWebapp> webapps = new ArrayList<DependencyWebapp>();
 
         ScopeArtifactFilter filter = new ScopeArtifactFilter( "tomcat" );
         @SuppressWarnings( "unchecked" ) Set<Artifact> artifacts = project.getArtifacts();
@@ -1496,7 +1618,7 @@ public abstract class AbstractRunMojo
             // provided scope, not is it optional
             if ( "war".equals( artifact.getType() ) && !artifact.isOptional() && filter.include( artifact ) )
             {
-                addContextFromArtifact( container, contexts, artifact, "/" + artifact.getArtifactId(), null, false );
+                webapps.add( new DependencyWebapp( artifact, "/" + artifact.getArtifactId(), null, false ) );
             }
         }
 
@@ -1507,44 +1629,111 @@ public abstract class AbstractRunMojo
             {
                 contextPath = "/" + contextPath;
             }
-            addContextFromArtifact( container, contexts, getArtifact( additionalWebapp ), contextPath,
-                                    additionalWebapp.getContextFile(), additionalWebapp.isAsWebapp() );
+            webapps.add( new DependencyWebapp( getArtifact( additionalWebapp ), contextPath,
+                                               additionalWebapp.getContextFile(), additionalWebapp.isAsWebapp() ) );
+        }
+
+        extractDependencyWebapps( webapps, new File( configurationDir, "webapps" ), archiverManager, getLog() );
+
+        List<Context> contexts = new ArrayList<Context>();
+        for ( DependencyWebapp webapp : webapps )
+        {
+            if ( webapp.extracted )
+            {
+                addContextFromArtifact( container, contexts, webapp.artifact, webapp.contextPath, webapp.contextXml,
+                                        webapp.asWebApp );
+            }
         }
         return contexts;
     }
 
-
-    private void addContextFromArtifact( Tomcat container, List<Context> contexts, Artifact artifact,
-                                         String contextPath, File contextXml, boolean asWebApp )
-        throws MojoExecutionException, ServletException, IOException
+    /**
+     * Extracts the wars not yet extracted, concurrently. A war failing to extract is logged and not deployed, its
+     * directory is removed so that the next run extracts it again.
+     */
+    static void extractDependencyWebapps( List<DependencyWebapp> webapps, File webappsDir,
+                                          ArchiverManager archiverManager, final Log log )
+        throws MojoExecutionException
     {
-        getLog().info( "Deploy warfile: " + String.valueOf( artifact.getFile() ) + " to contextPath: " + contextPath );
-        File webapps = new File( configurationDir, "webapps" );
-        File artifactWarDir = new File( webapps, artifact.getArtifactId() );
-        if ( !artifactWarDir.exists() )
+        List<Future<?>> extractions = new ArrayList<Future<?>>();
+        ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max( 1, Math.min( webapps.size(), Runtime.getRuntime().availableProcessors() ) ) );
+        try
         {
-            //dont extract if exists
-            artifactWarDir.mkdir();
-            try
+            for ( final DependencyWebapp webapp : webapps )
             {
-                UnArchiver unArchiver = archiverManager.getUnArchiver( "zip" );
-                unArchiver.setSourceFile( artifact.getFile() );
+                final File artifactWarDir = new File( webappsDir, webapp.artifact.getArtifactId() );
+                if ( artifactWarDir.exists() )
+                {
+                    //dont extract if exists
+                    webapp.extracted = true;
+                    continue;
+                }
+                artifactWarDir.mkdirs();
+                final UnArchiver unArchiver;
+                try
+                {
+                    unArchiver = archiverManager.getUnArchiver( "zip" );
+                }
+                catch ( NoSuchArchiverException e )
+                {
+                    log.error( e );
+                    continue;
+                }
+                unArchiver.setSourceFile( webapp.artifact.getFile() );
                 unArchiver.setDestDirectory( artifactWarDir );
-
-                // Extract the module
-                unArchiver.extract();
-            }
-            catch ( NoSuchArchiverException e )
-            {
-                getLog().error( e );
-                return;
+                extractions.add( executor.submit( new Runnable()
+                {
+                    public void run()
+                    {
+                        try
+                        {
+                            // Extract the module
+                            unArchiver.extract();
+                            webapp.extracted = true;
+                        }
+                        catch ( ArchiverException e )
+                        {
+                            log.error( e );
+                            try
+                            {
+                                FileUtils.deleteDirectory( artifactWarDir );
+                            }
+                            catch ( IOException deleteException )
+                            {
+                                log.warn( deleteException );
+                            }
+                        }
+                    }
+                } ) );
             }
-            catch ( ArchiverException e )
+            for ( Future<?> extraction : extractions )
             {
-                getLog().error( e );
-                return;
+                extraction.get();
             }
         }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new MojoExecutionException( e.getCause().getMessage(), e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private void addContextFromArtifact( Tomcat container, List<Context> contexts, Artifact artifact,
+                                         String contextPath, File contextXml, boolean asWebApp )
+        throws MojoExecutionException, ServletException, IOException
+    {
+        getLog().info( "Deploy warfile: " + String.valueOf( artifact.getFile() ) + " to contextPath: " + contextPath );
+        File webapps = new File( configurationDir, "webapps" );
+        File artifactWarDir = new File( webapps, artifact.getArtifactId() );
         // TODO make that configurable ?
         //WebappLoader webappLoader = new WebappLoader( Thread.currentThread().getContextClassLoader() );
         WebappLoader webappLoader = createWebappLoader();
@@ -1569,6 +1758,35 @@ public abstract class AbstractRunMojo
 //        container.getHost().addChild(context);
     }
 
+    /**
+     * A war to deploy next to the project webapp.
+     */
+    static class DependencyWebapp
+    {
+        private final Artifact artifact;
+
+        private final String contextPath;
+
+        private final File contextXml;
+
+        private final boolean asWebApp;
+
+        private volatile boolean extracted;
+
+        DependencyWebapp( Artifact artifact, String contextPath, File contextXml, boolean asWebApp )
+        {
+            this.artifact = artifact;
+            this.contextPath = contextPath;
+            this.contextXml = contextXml;
+            this.asWebApp = asWebApp;
+        }
+
+        boolean isExtracted()
+        {
+            return extracted;
+        }
+    }
+
     private void createStaticContext( final Tomcat container, Context context, Host host )
     {
         if ( staticContextDocbase != null )
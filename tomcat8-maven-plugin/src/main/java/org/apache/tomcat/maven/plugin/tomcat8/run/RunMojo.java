@@ -33,6 +33,7 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Execute;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
@@ -380,7 +381,7 @@ public class RunMojo
                             return new EmptyResource( this, getPath() );
                         }
 
-                        return urlToWebResource( url, path );
+                        return urlToWebResource( this, webAppPath, url, path );
                     }
 
                     @Override
@@ -417,7 +418,7 @@ public class RunMojo
                             {
                                 URL url = enumeration.nextElement();
                                 urlsFound.add( url );
-                                webResources.add( urlToWebResource( url, path ) );
+                                webResources.add( urlToWebResource( this, webAppPath, url, path ) );
                             }
                             log.debug(
                                 "RunMojo#getClassLoaderResources: " + path + " found : " + urlsFound.toString() );
@@ -447,7 +448,8 @@ public class RunMojo
                                 File file = new File( directory, path );
                                 if ( file.exists() )
                                 {
-                                    webResources.add( urlToWebResource( file.toURI().toURL(), path ) );
+                                    webResources.add(
+                                        urlToWebResource( this, webAppPath, file.toURI().toURL(), path ) );
                                 }
 
                             }
@@ -461,50 +463,6 @@ public class RunMojo
                     }
 
 
-                    private WebResource urlToWebResource( URL url, String path )
-                    {
-                        JarFile jarFile = null;
-
-                        try
-                        {
-                            // url.getFile is
-                            // file:/Users/olamy/mvn-repo/org/springframework/spring-web/4.0.0.RELEASE/spring-web-4.0.0.RELEASE.jar!/org/springframework/web/context/ContextLoaderListener.class
-
-                            int idx = url.getFile().indexOf( '!' );
-
-                            if ( idx >= 0 )
-                            {
-                                String filePath = StringUtils.removeStart( url.getFile().substring( 0, idx ), "file:" );
-
-                                jarFile = new JarFile( filePath );
-
-                                JarEntry jarEntry = jarFile.getJarEntry( StringUtils.removeStart( path, "/" ) );
-
-                                return new JarResource( this, //
-                                                        getPath(), //
-                                                        filePath, //
-                                                        url.getPath().substring( 0, idx ), //
-                                                        jarEntry, //
-                                                        "", //
-                                                        null );
-                            }
-                            else
-                            {
-                                return new FileResource( this, webAppPath, new File( url.getFile() ), true );
-                            }
-
-                        }
-                        catch ( IOException e )
-                        {
-                            throw new RuntimeException( e.getMessage(), e );
-                        }
-                        finally
-                        {
-                            IOUtils.closeQuietly( jarFile );
-                        }
-                    }
-
-
                 } );
 
             Runtime.getRuntime().addShutdownHook( new Thread()
@@ -528,137 +486,9 @@ public class RunMojo
 
             if ( classLoaderEntries != null )
             {
-                WebResourceSet webResourceSet = new FileResourceSet()
-                {
-                    @Override
-                    public WebResource getResource( String path )
-                    {
-
-                        if ( StringUtils.startsWithIgnoreCase( path, "/WEB-INF/LIB" ) )
-                        {
-                            File file = new File( StringUtils.removeStartIgnoreCase( path, "/WEB-INF/LIB" ) );
-                            return new FileResource( context.getResources(), getPath(), file, true );
-                        }
-                        if ( StringUtils.equalsIgnoreCase( path, "/WEB-INF/classes" ) )
-                        {
-                            return new FileResource( context.getResources(), getPath(),
-                                                     new File( project.getBuild().getOutputDirectory() ), true );
-                        }
-
-                        File file = new File( project.getBuild().getOutputDirectory(), path );
-                        if ( file.exists() )
-                        {
-                            return new FileResource( context.getResources(), getPath(), file, true );
-                        }
-
-                        //if ( StringUtils.endsWith( path, ".class" ) )
-                        {
-                            // so we search the class file in the jars
-                            for ( String jarPath : jarPaths )
-                            {
-                                File jar = new File( jarPath );
-                                if ( !jar.exists() )
-                                {
-                                    continue;
-                                }
-
-                                try
-                                {
-                                    JarFile jarFile = new JarFile( jar );
-                                    JarEntry jarEntry =
-                                        (JarEntry) jarFile.getEntry( StringUtils.removeStart( path, "/" ) );
-                                    if ( jarEntry != null )
-                                    {
-                                        return new JarResource( context.getResources(), //
-                                                                getPath(),  //
-                                                                jarFile.getName(), //
-                                                                jar.toURI().toString(), //
-                                                                jarEntry, //
-                                                                path, //
-                                                                jarFile.getManifest() );
-                                    }
-                                }
-                                catch ( IOException e )
-                                {
-                                    getLog().debug( "skip error building jar file: " + e.getMessage(), e );
-                                }
-
-                            }
-                        }
-
-                        return new EmptyResource( null, path );
-                    }
-
-                    @Override
-                    public String[] list( String path )
-                    {
-                        if ( StringUtils.startsWithIgnoreCase( path, "/WEB-INF/LIB" ) )
-                        {
-                            return jarPaths.toArray( new String[jarPaths.size()] );
-                        }
-                        if ( StringUtils.equalsIgnoreCase( path, "/WEB-INF/classes" ) )
-                        {
-                            return new String[]{ new File( project.getBuild().getOutputDirectory() ).getPath() };
-                        }
-                        return super.list( path );
-                    }
-
-                    @Override
-                    public Set<String> listWebAppPaths( String path )
-                    {
-
-                        if ( StringUtils.equalsIgnoreCase( "/WEB-INF/lib/", path ) )
-                        {
-                            // adding outputDirectory as well?
-                            return new HashSet<>( jarPaths );
-                        }
-
-                        File filePath = new File( getWarSourceDirectory(), path );
-
-                        if ( filePath.isDirectory() )
-                        {
-                            Set<String> paths = new HashSet<>();
-
-                            String[] files = filePath.list();
-                            if ( files == null )
-                            {
-                                return paths;
-                            }
-
-                            for ( String file : files )
-                            {
-                                paths.add( path + file );
-                            }
-
-                            return paths;
-
-                        }
-                        else
-                        {
-                            return Collections.emptySet();
-                        }
-                    }
-
-                    @Override
-                    public boolean mkdir( String path )
-                    {
-                        return super.mkdir( path );
-                    }
-
-                    @Override
-                    public boolean write( String path, InputStream is, boolean overwrite )
-                    {
-                        return super.write( path, is, overwrite );
-                    }
-
-                    @Override
-                    protected void checkType( File file )
-                    {
-                        //super.checkType( file );
-                    }
-
-
-                };
+                WebResourceSet webResourceSet =
+                    new ClassPathResourceSet( context, getPath(), new File( project.getBuild().getOutputDirectory() ),
+                                              getWarSourceDirectory(), jarPaths, getLog() );
 
                 context.getResources().addJarResources( webResourceSet );
             }
@@ -704,4 +534,212 @@ public class RunMojo
         return jarPaths;
 
     }
+
+    /**
+     * Resolves a class loader resource found by the run class loader or in a reactor build directory.
+     *
+     * @param root       the resources of the webapp
+     * @param webAppPath the context path
+     * @param url        the url of the resource, a <code>jar:</code> url for an entry of a jar
+     * @param path       the path of the resource in the webapp
+     * @return the resource
+     */
+    static WebResource urlToWebResource( WebResourceRoot root, String webAppPath, URL url, String path )
+    {
+        JarFile jarFile = null;
+
+        try
+        {
+            // url.getFile is
+            // file:/Users/olamy/mvn-repo/org/springframework/spring-web/4.0.0.RELEASE/spring-web-4.0.0.RELEASE.jar!/org/springframework/web/context/ContextLoaderListener.class
+
+            int idx = url.getFile().indexOf( '!' );
+
+            if ( idx >= 0 )
+            {
+                String filePath = StringUtils.removeStart( url.getFile().substring( 0, idx ), "file:" );
+
+                jarFile = new JarFile( filePath );
+
+                JarEntry jarEntry = jarFile.getJarEntry( StringUtils.removeStart( path, "/" ) );
+
+                return new JarResource( root, //
+                                        webAppPath, //
+                                        filePath, //
+                                        url.getPath().substring( 0, idx ), //
+                                        jarEntry, //
+                                        "", //
+                                        null );
+            }
+            else
+            {
+                return new FileResource( root, webAppPath, new File( url.getFile() ), true );
+            }
+
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( e.getMessage(), e );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( jarFile );
+        }
+    }
+
+    /**
+     * Serves the jars of the run class path as <code>/WEB-INF/lib</code>, the build output directory as
+     * <code>/WEB-INF/classes</code> and their entries as webapp resources.
+     */
+    static class ClassPathResourceSet
+        extends FileResourceSet
+    {
+        private final Context context;
+
+        private final String webAppPath;
+
+        private final File outputDirectory;
+
+        private final File warSourceDirectory;
+
+        private final List<String> jarPaths;
+
+        private final Log log;
+
+        ClassPathResourceSet( Context context, String webAppPath, File outputDirectory, File warSourceDirectory,
+                              List<String> jarPaths, Log log )
+        {
+            this.context = context;
+            this.webAppPath = webAppPath;
+            this.outputDirectory = outputDirectory;
+            this.warSourceDirectory = warSourceDirectory;
+            this.jarPaths = jarPaths;
+            this.log = log;
+        }
+
+        @Override
+        public WebResource getResource( String path )
+        {
+
+            if ( StringUtils.startsWithIgnoreCase( path, "/WEB-INF/LIB" ) )
+            {
+                File file = new File( StringUtils.removeStartIgnoreCase( path, "/WEB-INF/LIB" ) );
+                return new FileResource( context.getResources(), webAppPath, file, true );
+            }
+            if ( StringUtils.equalsIgnoreCase( path, "/WEB-INF/classes" ) )
+            {
+                return new FileResource( context.getResources(), webAppPath, outputDirectory, true );
+            }
+
+            File file = new File( outputDirectory, path );
+            if ( file.exists() )
+            {
+                return new FileResource( context.getResources(), webAppPath, file, true );
+            }
+
+            //if ( StringUtils.endsWith( path, ".class" ) )
+            {
+                // so we search the class file in the jars
+                for ( String jarPath : jarPaths )
+                {
+                    File jar = new File( jarPath );
+                    if ( !jar.exists() )
+                    {
+                        continue;
+                    }
+
+                    try
+                    {
+                        JarFile jarFile = new JarFile( jar );
+                        JarEntry jarEntry = (JarEntry) jarFile.getEntry( StringUtils.removeStart( path, "/" ) );
+                        if ( jarEntry != null )
+                        {
+                            return new JarResource( context.getResources(), //
+                                                    webAppPath,  //
+                                                    jarFile.getName(), //
+                                                    jar.toURI().toString(), //
+                                                    jarEntry, //
+                                                    path, //
+                                                    jarFile.getManifest() );
+                        }
+                    }
+                    catch ( IOException e )
+                    {
+                        log.debug( "skip error building jar file: " + e.getMessage(), e );
+                    }
+
+                }
+            }
+
+            return new EmptyResource( null, path );
+        }
+
+        @Override
+        public String[] list( String path )
+        {
+            if ( StringUtils.startsWithIgnoreCase( path, "/WEB-INF/LIB" ) )
+            {
+                return jarPaths.toArray( new String[jarPaths.size()] );
+            }
+            if ( StringUtils.equalsIgnoreCase( path, "/WEB-INF/classes" ) )
+            {
+                return new String[]{ outputDirectory.getPath() };
+            }
+            return super.list( path );
+        }
+
+        @Override
+        public Set<String> listWebAppPaths( String path )
+        {
+
+            if ( StringUtils.equalsIgnoreCase( "/WEB-INF/lib/", path ) )
+            {
+                // adding outputDirectory as well?
+                return new HashSet<>( jarPaths );
+            }
+
+            File filePath = new File( warSourceDirectory, path );
+
+            if ( filePath.isDirectory() )
+            {
+                Set<String> paths = new HashSet<>();
+
+                String[] files = filePath.list();
+                if ( files == null )
+                {
+                    return paths;
+                }
+
+                for ( String file : files )
+                {
+                    paths.add( path + file );
+                }
+
+                return paths;
+
+            }
+            else
+            {
+                return Collections.emptySet();
+            }
+        }
+
+        @Override
+        public boolean mkdir( String path )
+        {
+            return super.mkdir( path );
+        }
+
+        @Override
+        public boolean write( String path, InputStream is, boolean overwrite )
+        {
+            return super.write( path, is, overwrite );
+        }
+
+        @Override
+        protected void checkType( File file )
+        {
+            //super.checkType( file );
+        }
+    }
 }
@@ -23,9 +23,12 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.tomcat.maven.common.run.DrainResult;
 import org.apache.tomcat.maven.common.run.EmbeddedRegistry;
 import org.apache.tomcat.maven.plugin.tomcat8.AbstractTomcat8Mojo;
 
+import java.util.concurrent.TimeUnit;
+
 
 /**
  * <p>
@@ -61,6 +64,26 @@ public class ShutdownMojo
     @Parameter( property = "maven.tomcat.skipShutdown", defaultValue = "false" )
     protected boolean skip;
 
+    /**
+     * Maximum time in seconds for each server to stop, the servers being stopped at the same time. A server still
+     * stopping after the timeout is forcibly stopped: its ports are released and the goal fails unless
+     * <code>skipErrorOnShutdown</code> is set.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.shutdownTimeout", defaultValue = "60" )
+    protected int shutdownTimeout;
+
+    /**
+     * Maximum time in seconds to wait for the requests in progress before stopping the servers. The connectors are
+     * paused first so that integration test or load clients still running get their responses instead of connection
+     * resets. 0, the default, stops the servers at once.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.drainTimeout", defaultValue = "0" )
+    protected int drainTimeout;
+
     /**
      * Shuts down all embedded tomcats which got started up to now.
      *
@@ -77,7 +100,19 @@ public class ShutdownMojo
         }
         try
         {
-            EmbeddedRegistry.getInstance().shutdownAll( getLog() );
+            if ( drainTimeout > 0 )
+            {
+                drain();
+            }
+            EmbeddedRegistry.getInstance().shutdownAll( getLog(), TimeUnit.SECONDS.toMillis( shutdownTimeout ) );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            if ( !skipErrorOnShutdown )
+            {
+                throw new MojoExecutionException( messagesProvider.getMessage( "ShutdownMojo.shutdownError" ), e );
+            }
         }
         catch ( Exception e )
         {
@@ -87,4 +122,24 @@ public class ShutdownMojo
             }
         }
     }
+
+    private void drain()
+        throws InterruptedException
+    {
+        for ( DrainResult result : EmbeddedRegistry.getInstance().drainAll( getLog(), TimeUnit.SECONDS.toMillis(
+            drainTimeout ) ) )
+        {
+            if ( result.getRemaining() > 0 )
+            {
+                getLog().warn( messagesProvider.getMessage( "ShutdownMojo.notDrained", result.getName(),
+                                                            result.getRemaining(), result.getInFlight(),
+                                                            drainTimeout ) );
+            }
+            else
+            {
+                getLog().info( messagesProvider.getMessage( "ShutdownMojo.drained", result.getName(),
+                                                            result.getDrained(), result.getElapsedMillis() ) );
+            }
+        }
+    }
 }
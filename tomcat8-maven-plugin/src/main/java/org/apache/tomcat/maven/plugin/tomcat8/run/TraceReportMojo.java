@@ -0,0 +1,204 @@
+package org.apache.tomcat.maven.plugin.tomcat8.run;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.tomcat.maven.plugin.tomcat8.AbstractTomcat8Mojo;
+import org.apache.tomcat.maven.runner.LatencyHistogram;
+import org.apache.tomcat.maven.runner.RequestTraceReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads the request trace segments written when <code>requestTrace</code> is enabled (run goals or exec war
+ * <code>-requestTrace</code>) and prints, per context and uri pattern, the throughput and latency percentiles.
+ * The throughput only covers the time each run was serving requests, not the time between runs.
+ *
+ * @since 3.0
+ */
+@Mojo( name = "trace-report", requiresProject = false, threadSafe = true )
+public class TraceReportMojo
+    extends AbstractTomcat8Mojo
+{
+    /**
+     * Directory containing the request trace segments.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.requestTraceDirectory",
+                defaultValue = "${project.build.directory}/tomcat/logs/trace" )
+    protected File requestTraceDirectory;
+
+    /**
+     * If set the report is also written to this file.
+     *
+     * @since 3.0
+     */
+    @Parameter( property = "maven.tomcat.traceReportFile" )
+    protected File traceReportFile;
+
+    public void execute()
+        throws MojoExecutionException
+    {
+        if ( !requestTraceDirectory.isDirectory() )
+        {
+            throw new MojoExecutionException(
+                messagesProvider.getMessage( "TraceReportMojo.noTraceDirectory", requestTraceDirectory ) );
+        }
+        final Map<String, TraceStatistics> statistics = new TreeMap<>();
+        long count;
+        try
+        {
+            count = new RequestTraceReader( requestTraceDirectory ).read( new RequestTraceReader.TraceRecordHandler()
+            {
+                @Override
+                public void handle( RequestTraceReader.TraceRecord record )
+                {
+                    String key = ( record.context.length() == 0 ? "/" : record.context ) + " " + record.uriPattern;
+                    TraceStatistics traceStatistics = statistics.get( key );
+                    if ( traceStatistics == null )
+                    {
+                        traceStatistics = new TraceStatistics();
+                        statistics.put( key, traceStatistics );
+                    }
+                    traceStatistics.add( record );
+                }
+            } );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+
+        getLog().info( messagesProvider.getMessage( "TraceReportMojo.records", count, requestTraceDirectory ) );
+
+        StringBuilder report = new StringBuilder();
+        report.append( String.format( "%-60s %9s %9s %9s %9s %9s %9s %9s %9s %7s %10s\n", "context uri", "count",
+                                      "req/s", "p50(ms)", "p90(ms)", "p99(ms)", "p999(ms)", "max(ms)", "wait99", "5xx",
+                                      "avg bytes" ) );
+        for ( Map.Entry<String, TraceStatistics> entry : statistics.entrySet() )
+        {
+            TraceStatistics s = entry.getValue();
+            long[] latencies = s.latencies.snapshot();
+            report.append( String.format( "%-60s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f %7d %10d\n",
+                                          entry.getKey(), s.count, s.throughput(),
+                                          millis( LatencyHistogram.getValueAtPercentile( latencies, 50 ) ),
+                                          millis( LatencyHistogram.getValueAtPercentile( latencies, 90 ) ),
+                                          millis( LatencyHistogram.getValueAtPercentile( latencies, 99 ) ),
+                                          millis( LatencyHistogram.getValueAtPercentile( latencies, 99.9 ) ),
+                                          millis( s.latencies.getMax() ),
+                                          millis( s.threadWaits.getValueAtPercentile( 99 ) ), s.serverErrors,
+                                          s.count == 0 ? 0 : s.bytes / s.count ) );
+        }
+
+        for ( String line : report.toString().split( "\n" ) )
+        {
+            getLog().info( line );
+        }
+
+        if ( traceReportFile != null )
+        {
+            try
+            {
+                FileUtils.writeStringToFile( traceReportFile, report.toString(), "UTF-8" );
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( e.getMessage(), e );
+            }
+        }
+    }
+
+    private static double millis( long micros )
+    {
+        return micros / 1000.0;
+    }
+
+    /**
+     * Statistics for one context and uri pattern.
+     */
+    private static class TraceStatistics
+    {
+        private final LatencyHistogram latencies = new LatencyHistogram( 1 );
+
+        private final LatencyHistogram threadWaits = new LatencyHistogram( 1 );
+
+        private long count;
+
+        private long serverErrors;
+
+        private long bytes;
+
+        /**
+         * milliseconds covered by the runs already read
+         */
+        private long activeMillis;
+
+        private String run;
+
+        private long firstTimestamp;
+
+        private long lastTimestamp;
+
+        void add( RequestTraceReader.TraceRecord record )
+        {
+            latencies.record( record.latency );
+            threadWaits.record( record.threadWait );
+            count++;
+            if ( record.status >= 500 )
+            {
+                serverErrors++;
+            }
+            bytes += record.bytes;
+            if ( !record.run.equals( run ) )
+            {
+                // runs are read one after the other, the idle time between them is not part of the throughput
+                activeMillis += span();
+                run = record.run;
+                firstTimestamp = record.timestamp;
+                lastTimestamp = record.timestamp;
+            }
+            firstTimestamp = Math.min( firstTimestamp, record.timestamp );
+            lastTimestamp = Math.max( lastTimestamp, record.timestamp );
+        }
+
+        /**
+         * @return milliseconds between the first and the last request of the current run, at least one second
+         */
+        private long span()
+        {
+            return run == null ? 0 : Math.max( lastTimestamp - firstTimestamp, 1000 );
+        }
+
+        /**
+         * @return requests per second over the time between the first and the last request of each run, a run
+         *         whose requests arrived within the same second counting for one second
+         */
+        double throughput()
+        {
+            return count * 1000.0 / ( activeMillis + span() );
+        }
+    }
+}
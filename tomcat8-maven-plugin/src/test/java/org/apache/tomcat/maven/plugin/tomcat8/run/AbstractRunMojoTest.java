@@ -0,0 +1,215 @@
+package org.apache.tomcat.maven.plugin.tomcat8.run;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.archiver.Archiver;
+import org.codehaus.plexus.archiver.UnArchiver;
+import org.codehaus.plexus.archiver.manager.ArchiverManager;
+import org.codehaus.plexus.archiver.zip.ZipUnArchiver;
+import org.codehaus.plexus.components.io.resources.PlexusIoResourceCollection;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Checks the concurrent extraction of the dependency wars of the run goals.
+ */
+public class AbstractRunMojoTest
+    extends TestCase
+{
+    private static final int WARS = 6;
+
+    private static final int FILES = 20;
+
+    private File directory;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        directory = new File( System.getProperty( "java.io.tmpdir" ), "dependency-webapps-" + System.nanoTime() );
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        FileUtils.deleteDirectory( directory );
+        super.tearDown();
+    }
+
+    public void testExtractDependencyWebapps()
+        throws Exception
+    {
+        List<AbstractRunMojo.DependencyWebapp> webapps = new ArrayList<AbstractRunMojo.DependencyWebapp>();
+        for ( int i = 0; i < WARS; i++ )
+        {
+            webapps.add( createWebapp( "app" + i, true ) );
+        }
+        File webappsDir = new File( directory, "webapps" );
+
+        AbstractRunMojo.extractDependencyWebapps( webapps, webappsDir, new ZipArchiverManager(),
+                                                  new SystemStreamLog() );
+
+        for ( int i = 0; i < WARS; i++ )
+        {
+            assertTrue( webapps.get( i ).isExtracted() );
+            assertExtracted( new File( webappsDir, "app" + i ), "app" + i );
+        }
+    }
+
+    public void testExtractDependencyWebappsWithCorruptWar()
+        throws Exception
+    {
+        List<AbstractRunMojo.DependencyWebapp> webapps = new ArrayList<AbstractRunMojo.DependencyWebapp>();
+        for ( int i = 0; i < WARS; i++ )
+        {
+            webapps.add( createWebapp( "app" + i, i != 2 ) );
+        }
+        File webappsDir = new File( directory, "webapps" );
+
+        AbstractRunMojo.extractDependencyWebapps( webapps, webappsDir, new ZipArchiverManager(),
+                                                  new SystemStreamLog() );
+
+        for ( int i = 0; i < WARS; i++ )
+        {
+            if ( i == 2 )
+            {
+                // not deployed and extracted again by the next run
+                assertFalse( webapps.get( i ).isExtracted() );
+                assertFalse( new File( webappsDir, "app" + i ).exists() );
+            }
+            else
+            {
+                assertTrue( webapps.get( i ).isExtracted() );
+                assertExtracted( new File( webappsDir, "app" + i ), "app" + i );
+            }
+        }
+    }
+
+    private AbstractRunMojo.DependencyWebapp createWebapp( String artifactId, boolean valid )
+        throws Exception
+    {
+        File war = new File( directory, artifactId + ".war" );
+        war.getParentFile().mkdirs();
+        FileOutputStream output = new FileOutputStream( war );
+        try
+        {
+            if ( valid )
+            {
+                ZipOutputStream zip = new ZipOutputStream( output );
+                for ( int i = 0; i < FILES; i++ )
+                {
+                    zip.putNextEntry( new ZipEntry( "WEB-INF/classes/file" + i + ".txt" ) );
+                    zip.write( content( artifactId, i ).getBytes( "UTF-8" ) );
+                    zip.closeEntry();
+                }
+                zip.finish();
+            }
+            else
+            {
+                output.write( "not a war".getBytes( "UTF-8" ) );
+            }
+        }
+        finally
+        {
+            output.close();
+        }
+        Artifact artifact = new DefaultArtifact( "org.apache.tomcat.maven.test", artifactId,
+                                                 VersionRange.createFromVersion( "1.0" ), "tomcat", "war", null,
+                                                 new DefaultArtifactHandler( "war" ) );
+        artifact.setFile( war );
+        return new AbstractRunMojo.DependencyWebapp( artifact, "/" + artifactId, null, false );
+    }
+
+    private static void assertExtracted( File webappDir, String artifactId )
+        throws Exception
+    {
+        for ( int i = 0; i < FILES; i++ )
+        {
+            File file = new File( webappDir, "WEB-INF/classes/file" + i + ".txt" );
+            assertTrue( file.getPath(), file.isFile() );
+            assertEquals( content( artifactId, i ), FileUtils.fileRead( file, "UTF-8" ) );
+        }
+    }
+
+    private static String content( String artifactId, int i )
+    {
+        StringBuilder content = new StringBuilder();
+        for ( int line = 0; line < 100; line++ )
+        {
+            content.append( artifactId ).append( " file " ).append( i ).append( " line " ).append( line ).append(
+                '\n' );
+        }
+        return content.toString();
+    }
+
+    /**
+     * Returns a new zip unarchiver for each war, like the plexus archiver manager.
+     */
+    private static class ZipArchiverManager
+        implements ArchiverManager
+    {
+        public UnArchiver getUnArchiver( String archiverName )
+        {
+            ZipUnArchiver unArchiver = new ZipUnArchiver();
+            unArchiver.enableLogging( new ConsoleLogger( Logger.LEVEL_WARN, "test" ) );
+            return unArchiver;
+        }
+
+        public UnArchiver getUnArchiver( File file )
+        {
+            return getUnArchiver( "zip" );
+        }
+
+        public Archiver getArchiver( String archiverName )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public Archiver getArchiver( File file )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public PlexusIoResourceCollection getResourceCollection( File file )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public PlexusIoResourceCollection getResourceCollection( String resourceCollectionName )
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
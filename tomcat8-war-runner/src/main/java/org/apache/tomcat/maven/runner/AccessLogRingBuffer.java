@@ -0,0 +1,122 @@
+package org.apache.tomcat.maven.runner;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producers (request threads) and a single consumer (the access log writer).
+ * Each slot carries a sequence number telling whether it is free for the producer claiming the position or
+ * filled for the consumer, so neither side ever takes a lock.
+ *
+ * @since 3.0
+ */
+class AccessLogRingBuffer<E>
+{
+    private final int mask;
+
+    private final AtomicReferenceArray<E> slots;
+
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * only read and written by the consumer thread
+     */
+    private long head;
+
+    AccessLogRingBuffer( int capacity )
+    {
+        int size = Integer.highestOneBit( Math.max( 2, capacity ) - 1 ) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>( size );
+        this.sequences = new AtomicLongArray( size );
+        for ( int i = 0; i < size; i++ )
+        {
+            sequences.set( i, i );
+        }
+    }
+
+    /**
+     * @param element the element to add
+     * @return <code>false</code> if the buffer is full
+     */
+    boolean offer( E element )
+    {
+        while ( true )
+        {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long available = sequences.get( index ) - position;
+            if ( available == 0 )
+            {
+                if ( tail.compareAndSet( position, position + 1 ) )
+                {
+                    slots.lazySet( index, element );
+                    sequences.lazySet( index, position + 1 );
+                    return true;
+                }
+            }
+            else if ( available < 0 )
+            {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Must only be called by the consumer thread.
+     *
+     * @param batch    where to add the polled elements
+     * @param maxCount maximum number of elements to poll
+     * @return the number of polled elements
+     */
+    int drainTo( List<E> batch, int maxCount )
+    {
+        int count = 0;
+        while ( count < maxCount )
+        {
+            int index = (int) head & mask;
+            if ( sequences.get( index ) != head + 1 )
+            {
+                break;
+            }
+            batch.add( slots.get( index ) );
+            slots.lazySet( index, null );
+            sequences.lazySet( index, head + mask + 1 );
+            head++;
+            count++;
+        }
+        return count;
+    }
+
+    boolean isEmpty()
+    {
+        return sequences.get( (int) head & mask ) != head + 1;
+    }
+
+    int capacity()
+    {
+        return mask + 1;
+    }
+}
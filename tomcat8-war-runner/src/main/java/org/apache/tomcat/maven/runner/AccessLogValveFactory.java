@@ -0,0 +1,135 @@
+package org.apache.tomcat.maven.runner;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.catalina.Valve;
+import org.apache.catalina.valves.AccessLogValve;
+
+/**
+ * Creates the access log valve added to the host pipeline by the runner and the run mojos.
+ * Modes are <code>sync</code> (the Tomcat {@link AccessLogValve}), <code>async</code>
+ * ({@link AsyncAccessLogValve}) and <code>off</code>.
+ *
+ * @since 3.0
+ */
+public class AccessLogValveFactory
+{
+    public static final String MODE_SYNC = "sync";
+
+    public static final String MODE_ASYNC = "async";
+
+    public static final String MODE_OFF = "off";
+
+    public static final String DEFAULT_PATTERN = "%h %l %u %t \"%r\" %s %b %I %D";
+
+    private String mode = MODE_SYNC;
+
+    private String directory;
+
+    private String pattern = DEFAULT_PATTERN;
+
+    private int queueSize = 8192;
+
+    private int batchSize = 256;
+
+    private String overflowPolicy = AsyncAccessLogValve.OVERFLOW_BLOCK;
+
+    private long maxFileSize = -1;
+
+    public AccessLogValveFactory( String directory )
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the valve to add to the pipeline, <code>null</code> if access logging is off
+     */
+    public Valve createValve()
+    {
+        if ( MODE_OFF.equalsIgnoreCase( mode ) )
+        {
+            return null;
+        }
+        if ( MODE_ASYNC.equalsIgnoreCase( mode ) )
+        {
+            AsyncAccessLogValve valve = new AsyncAccessLogValve();
+            valve.setDirectory( directory );
+            valve.setPattern( pattern );
+            valve.setQueueSize( queueSize );
+            valve.setBatchSize( batchSize );
+            valve.setOverflowPolicy( overflowPolicy );
+            valve.setMaxFileSize( maxFileSize );
+            return valve;
+        }
+        if ( MODE_SYNC.equalsIgnoreCase( mode ) )
+        {
+            AccessLogValve valve = new AccessLogValve();
+            valve.setDirectory( directory );
+            valve.setPattern( pattern );
+            return valve;
+        }
+        throw new IllegalArgumentException(
+            "access log mode must be " + MODE_SYNC + ", " + MODE_ASYNC + " or " + MODE_OFF + ": " + mode );
+    }
+
+    public AccessLogValveFactory setMode( String mode )
+    {
+        if ( mode != null )
+        {
+            this.mode = mode.trim();
+        }
+        return this;
+    }
+
+    public AccessLogValveFactory setPattern( String pattern )
+    {
+        if ( pattern != null && pattern.trim().length() > 0 )
+        {
+            this.pattern = pattern;
+        }
+        return this;
+    }
+
+    public AccessLogValveFactory setQueueSize( int queueSize )
+    {
+        this.queueSize = queueSize;
+        return this;
+    }
+
+    public AccessLogValveFactory setBatchSize( int batchSize )
+    {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public AccessLogValveFactory setOverflowPolicy( String overflowPolicy )
+    {
+        if ( overflowPolicy != null )
+        {
+            this.overflowPolicy = overflowPolicy.trim();
+        }
+        return this;
+    }
+
+    public AccessLogValveFactory setMaxFileSize( long maxFileSize )
+    {
+        this.maxFileSize = maxFileSize;
+        return this;
+    }
+}
@@ -0,0 +1,183 @@
+package org.apache.tomcat.maven.runner;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.valves.ValveBase;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the requests in flight and answers the readiness probe, so a shutdown can first report "not ready" to
+ * the load balancers then wait for the in-flight requests to complete with {@link #awaitIdle(long)}.
+ *
+ * @since 3.0
+ */
+public class ActiveRequestValve
+    extends ValveBase
+{
+    private final AtomicInteger activeRequests = new AtomicInteger();
+
+    private final AtomicLong completedRequests = new AtomicLong();
+
+    private final Object idleLock = new Object();
+
+    private volatile boolean ready = true;
+
+    /**
+     * if not <code>null</code> requests to this uri get 200 when ready and 503 when not, without reaching
+     * any webapp. Tomcat only runs the host pipeline for mapped requests so a context must exist for this path,
+     * see {@link #addReadinessContext(Tomcat, String)}.
+     */
+    private String readinessPath;
+
+    public ActiveRequestValve()
+    {
+        super( true );
+    }
+
+    @Override
+    public void invoke( Request request, Response response )
+        throws IOException, ServletException
+    {
+        if ( isReadinessRequest( request.getDecodedRequestURI() ) )
+        {
+            response.setStatus( ready ? HttpServletResponse.SC_OK : HttpServletResponse.SC_SERVICE_UNAVAILABLE );
+            response.setContentType( "text/plain" );
+            response.getWriter().print( ready ? "ready" : "not ready" );
+            return;
+        }
+        activeRequests.incrementAndGet();
+        try
+        {
+            getNext().invoke( request, response );
+        }
+        finally
+        {
+            completedRequests.incrementAndGet();
+            if ( activeRequests.decrementAndGet() == 0 && !ready )
+            {
+                synchronized ( idleLock )
+                {
+                    idleLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    private boolean isReadinessRequest( String uri )
+    {
+        if ( readinessPath == null || uri == null || !uri.startsWith( readinessPath ) )
+        {
+            return false;
+        }
+        // accept a trailing slash as well
+        return uri.length() == readinessPath.length() || ( uri.length() == readinessPath.length() + 1
+            && uri.charAt( readinessPath.length() ) == '/' );
+    }
+
+    /**
+     * Waits for the requests in flight to complete. Call {@link #setReady(boolean)} with <code>false</code> before
+     * so the waiting thread is woken up as soon as the last request completes.
+     *
+     * @param timeoutMillis maximum time to wait
+     * @return <code>true</code> if no request is in flight anymore
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitIdle( long timeoutMillis )
+        throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized ( idleLock )
+        {
+            while ( activeRequests.get() > 0 )
+            {
+                long remaining = deadline - System.currentTimeMillis();
+                if ( remaining <= 0 )
+                {
+                    return false;
+                }
+                // bounded wait as a request may complete before ready is switched off
+                idleLock.wait( Math.min( remaining, 100 ) );
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds an empty context for the readiness path when no webapp covers it, so the probe requests reach the
+     * valve.
+     *
+     * @param tomcat  the embedded Tomcat
+     * @param docBase an existing directory to use as document base
+     */
+    public void addReadinessContext( Tomcat tomcat, String docBase )
+    {
+        if ( readinessPath == null || tomcat.getHost().findChild( readinessPath ) != null )
+        {
+            return;
+        }
+        Context context = tomcat.addContext( readinessPath, docBase );
+        // mapping the context root avoids the redirect of the readiness path to the path followed by a slash
+        Tomcat.addServlet( context, "readiness", DefaultServlet.class.getName() );
+        context.addServletMapping( "", "readiness" );
+    }
+
+    // ----------------------------------------------------------------------
+    // JMX exposed
+    // ----------------------------------------------------------------------
+
+    public int getActiveRequests()
+    {
+        return activeRequests.get();
+    }
+
+    public long getCompletedRequests()
+    {
+        return completedRequests.get();
+    }
+
+    public boolean isReady()
+    {
+        return ready;
+    }
+
+    public void setReady( boolean ready )
+    {
+        this.ready = ready;
+    }
+
+    public String getReadinessPath()
+    {
+        return readinessPath;
+    }
+
+    public void setReadinessPath( String readinessPath )
+    {
+        this.readinessPath = readinessPath;
+    }
+}
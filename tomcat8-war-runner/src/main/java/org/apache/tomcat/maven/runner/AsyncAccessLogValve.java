@@ -0,0 +1,478 @@
+package org.apache.tomcat.maven.runner;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.valves.AbstractAccessLogValve;
+
+import java.io.BufferedWriter;
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Access log valve handing the formatted lines to a background writer through a bounded
+ * {@link AccessLogRingBuffer}, so request threads never wait on the file. The writer drains the buffer by batches,
+ * flushes once per batch and rotates the file daily and when it grows over {@link #setMaxFileSize(long)}.
+ * When the buffer is full the line is dropped (and counted) or the request thread waits for room depending on
+ * the overflow policy.
+ *
+ * @since 3.0
+ */
+public class AsyncAccessLogValve
+    extends AbstractAccessLogValve
+{
+    public static final String OVERFLOW_DROP = "drop";
+
+    public static final String OVERFLOW_BLOCK = "block";
+
+    private String directory = "logs";
+
+    private String prefix = "access_log";
+
+    private String suffix = ".txt";
+
+    private String fileDateFormat = "yyyy-MM-dd";
+
+    private String encoding = "UTF-8";
+
+    private int queueSize = 8192;
+
+    private int batchSize = 256;
+
+    private long maxBatchDelay = 200;
+
+    private long maxFileSize = -1;
+
+    private String overflowPolicy = OVERFLOW_BLOCK;
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final AtomicLong writtenCount = new AtomicLong();
+
+    private volatile AccessLogRingBuffer<char[]> buffer;
+
+    private volatile boolean running;
+
+    private volatile Thread writerThread;
+
+    private volatile boolean writerParked;
+
+    public AsyncAccessLogValve()
+    {
+        super();
+    }
+
+    @Override
+    protected void log( CharArrayWriter message )
+    {
+        AccessLogRingBuffer<char[]> current = buffer;
+        if ( current == null )
+        {
+            // stopped
+            droppedCount.incrementAndGet();
+            return;
+        }
+        char[] line = message.toCharArray();
+        if ( !current.offer( line ) )
+        {
+            if ( OVERFLOW_DROP.equals( overflowPolicy ) )
+            {
+                droppedCount.incrementAndGet();
+                return;
+            }
+            boolean offered = false;
+            while ( running && !( offered = current.offer( line ) ) )
+            {
+                wakeUpWriter();
+                LockSupport.parkNanos( TimeUnit.MICROSECONDS.toNanos( 100 ) );
+            }
+            if ( !offered )
+            {
+                // stopped while waiting for room
+                droppedCount.incrementAndGet();
+                return;
+            }
+        }
+        if ( writerParked )
+        {
+            wakeUpWriter();
+        }
+    }
+
+    private void wakeUpWriter()
+    {
+        Thread thread = writerThread;
+        if ( thread != null )
+        {
+            LockSupport.unpark( thread );
+        }
+    }
+
+    @Override
+    protected synchronized void startInternal()
+        throws LifecycleException
+    {
+        buffer = new AccessLogRingBuffer<>( queueSize );
+        running = true;
+        Thread thread = new Thread( new LogWriter(), "AsyncAccessLogWriter[" + prefix + "]" );
+        thread.setDaemon( true );
+        writerThread = thread;
+        thread.start();
+        super.startInternal();
+    }
+
+    @Override
+    protected synchronized void stopInternal()
+        throws LifecycleException
+    {
+        super.stopInternal();
+        running = false;
+        Thread thread = writerThread;
+        if ( thread != null )
+        {
+            LockSupport.unpark( thread );
+            try
+            {
+                thread.join( TimeUnit.SECONDS.toMillis( 10 ) );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            if ( !thread.isAlive() )
+            {
+                // lines offered after the last drain of the writer, this thread is the consumer now
+                droppedCount.addAndGet( buffer.drainTo( new ArrayList<char[]>(), Integer.MAX_VALUE ) );
+            }
+        }
+        writerThread = null;
+        buffer = null;
+        if ( droppedCount.get() > 0 )
+        {
+            containerLog.warn( droppedCount.get() + " access log lines dropped as the queue was full" );
+        }
+    }
+
+    /**
+     * Background writer, the only consumer of the ring buffer.
+     */
+    private class LogWriter
+        implements Runnable
+    {
+        private Writer out;
+
+        private CountingOutputStream counter;
+
+        private File currentFile;
+
+        private String currentDate;
+
+        private final String lineSeparator = System.lineSeparator();
+
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat( fileDateFormat );
+
+        @Override
+        public void run()
+        {
+            AccessLogRingBuffer<char[]> current = buffer;
+            List<char[]> batch = new ArrayList<>( batchSize );
+            try
+            {
+                while ( running || !current.isEmpty() )
+                {
+                    batch.clear();
+                    if ( current.drainTo( batch, batchSize ) == 0 )
+                    {
+                        writerParked = true;
+                        if ( current.isEmpty() && running )
+                        {
+                            LockSupport.parkNanos( TimeUnit.MILLISECONDS.toNanos( maxBatchDelay ) );
+                        }
+                        writerParked = false;
+                        continue;
+                    }
+                    write( batch );
+                }
+            }
+            finally
+            {
+                close();
+            }
+        }
+
+        private void write( List<char[]> batch )
+        {
+            try
+            {
+                rotateIfNeeded();
+                for ( char[] line : batch )
+                {
+                    out.write( line );
+                    out.write( lineSeparator );
+                }
+                out.flush();
+                writtenCount.addAndGet( batch.size() );
+            }
+            catch ( IOException e )
+            {
+                droppedCount.addAndGet( batch.size() );
+                containerLog.error( "fail to write access log to " + currentFile, e );
+                close();
+            }
+        }
+
+        private void rotateIfNeeded()
+            throws IOException
+        {
+            String date = dateFormat.format( new Date() );
+            // the writer is flushed after each batch so the counted bytes are the size of the file
+            if ( out != null && date.equals( currentDate )
+                && ( maxFileSize <= 0 || counter.getCount() < maxFileSize ) )
+            {
+                return;
+            }
+            close();
+            File dir = new File( directory );
+            if ( !dir.isAbsolute() )
+            {
+                dir = new File( System.getProperty( "catalina.base", "." ), directory );
+            }
+            if ( !dir.exists() )
+            {
+                dir.mkdirs();
+            }
+            File file = new File( dir, prefix + "." + date + suffix );
+            if ( maxFileSize > 0 && file.length() >= maxFileSize )
+            {
+                int index = 1;
+                File rolled = new File( dir, file.getName() + "." + index );
+                while ( rolled.exists() )
+                {
+                    rolled = new File( dir, file.getName() + "." + ( ++index ) );
+                }
+                if ( !file.renameTo( rolled ) )
+                {
+                    containerLog.warn( "fail to rotate access log " + file + " to " + rolled );
+                }
+            }
+            counter = new CountingOutputStream( new FileOutputStream( file, true ), file.length() );
+            out = new BufferedWriter( new OutputStreamWriter( counter, encoding ), 16384 );
+            currentFile = file;
+            currentDate = date;
+        }
+
+        private void close()
+        {
+            if ( out == null )
+            {
+                return;
+            }
+            try
+            {
+                out.close();
+            }
+            catch ( IOException e )
+            {
+                // ignore exception here
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * Counts the encoded bytes written to the file, from its size when opened.
+     */
+    private static class CountingOutputStream
+        extends FilterOutputStream
+    {
+        private long count;
+
+        CountingOutputStream( OutputStream out, long count )
+        {
+            super( out );
+            this.count = count;
+        }
+
+        @Override
+        public void write( int b )
+            throws IOException
+        {
+            out.write( b );
+            count++;
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len )
+            throws IOException
+        {
+            out.write( b, off, len );
+            count += len;
+        }
+
+        long getCount()
+        {
+            return count;
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // JMX exposed
+    // ----------------------------------------------------------------------
+
+    public long getDroppedCount()
+    {
+        return droppedCount.get();
+    }
+
+    public long getWrittenCount()
+    {
+        return writtenCount.get();
+    }
+
+    // ----------------------------------------------------------------------
+    // Configuration
+    // ----------------------------------------------------------------------
+
+    public String getDirectory()
+    {
+        return directory;
+    }
+
+    public void setDirectory( String directory )
+    {
+        this.directory = directory;
+    }
+
+    public String getPrefix()
+    {
+        return prefix;
+    }
+
+    public void setPrefix( String prefix )
+    {
+        this.prefix = prefix;
+    }
+
+    public String getSuffix()
+    {
+        return suffix;
+    }
+
+    public void setSuffix( String suffix )
+    {
+        this.suffix = suffix;
+    }
+
+    public String getFileDateFormat()
+    {
+        return fileDateFormat;
+    }
+
+    public void setFileDateFormat( String fileDateFormat )
+    {
+        this.fileDateFormat = fileDateFormat;
+    }
+
+    public String getEncoding()
+    {
+        return encoding;
+    }
+
+    public void setEncoding( String encoding )
+    {
+        this.encoding = encoding;
+    }
+
+    public int getQueueSize()
+    {
+        return queueSize;
+    }
+
+    public void setQueueSize( int queueSize )
+    {
+        this.queueSize = queueSize;
+    }
+
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    public void setBatchSize( int batchSize )
+    {
+        this.batchSize = Math.max( 1, batchSize );
+    }
+
+    public long getMaxBatchDelay()
+    {
+        return maxBatchDelay;
+    }
+
+    /**
+     * @param maxBatchDelay maximum time in milliseconds the writer sleeps when the queue is empty
+     */
+    public void setMaxBatchDelay( long maxBatchDelay )
+    {
+        this.maxBatchDelay = Math.max( 1, maxBatchDelay );
+    }
+
+    public long getMaxFileSize()
+    {
+        return maxFileSize;
+    }
+
+    /**
+     * @param maxFileSize size in bytes after which the file is rolled, -1 for daily rotation only
+     */
+    public void setMaxFileSize( long maxFileSize )
+    {
+        this.maxFileSize = maxFileSize;
+    }
+
+    public String getOverflowPolicy()
+    {
+        return overflowPolicy;
+    }
+
+    /**
+     * @param overflowPolicy {@link #OVERFLOW_DROP} or {@link #OVERFLOW_BLOCK}
+     */
+    public void setOverflowPolicy( String overflowPolicy )
+    {
+        if ( !OVERFLOW_DROP.equals( overflowPolicy ) && !OVERFLOW_BLOCK.equals( overflowPolicy ) )
+        {
+            throw new IllegalArgumentException(
+                "overflowPolicy must be " + OVERFLOW_DROP + " or " + OVERFLOW_BLOCK + ": " + overflowPolicy );
+        }
+        this.overflowPolicy = overflowPolicy;
+    }
+}
@@ -0,0 +1,197 @@
+package org.apache.tomcat.maven.runner;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-bucketed latency histogram. Each power of two is split in {@link #SUB_BUCKETS} linear buckets so the
+ * reported value is within 12.5% of the recorded one. Counters are striped per thread so concurrent request
+ * threads rarely hit the same cache line, and recording never allocates.
+ *
+ * @since 3.0
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * largest tracked exponent, values above 2^40 microseconds (~12 days) go to the last bucket
+     */
+    private static final int MAX_EXPONENT = 40;
+
+    static final int BUCKETS = ( MAX_EXPONENT - SUB_BUCKET_BITS + 2 ) * SUB_BUCKETS;
+
+    private final int stripeMask;
+
+    /**
+     * bucket counts, stripe after stripe
+     */
+    private final AtomicLongArray counts;
+
+    /**
+     * max recorded value per stripe
+     */
+    private final AtomicLongArray maxValues;
+
+    public LatencyHistogram()
+    {
+        this( Runtime.getRuntime().availableProcessors() );
+    }
+
+    public LatencyHistogram( int concurrency )
+    {
+        int stripes = Integer.highestOneBit( Math.max( 1, concurrency ) - 1 ) << 1;
+        this.stripeMask = Math.max( 1, stripes ) - 1;
+        this.counts = new AtomicLongArray( ( stripeMask + 1 ) * BUCKETS );
+        this.maxValues = new AtomicLongArray( stripeMask + 1 );
+    }
+
+    /**
+     * Records a value (usually microseconds). Negative values are recorded as 0.
+     *
+     * @param value the value to record
+     */
+    public void record( long value )
+    {
+        long v = value < 0 ? 0 : value;
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        counts.incrementAndGet( stripe * BUCKETS + bucketIndex( v ) );
+        long max = maxValues.get( stripe );
+        while ( v > max && !maxValues.compareAndSet( stripe, max, v ) )
+        {
+            max = maxValues.get( stripe );
+        }
+    }
+
+    /**
+     * @return the merged bucket counts of all the stripes
+     */
+    public long[] snapshot()
+    {
+        long[] merged = new long[BUCKETS];
+        int length = counts.length();
+        for ( int i = 0; i < length; i++ )
+        {
+            merged[i % BUCKETS] += counts.get( i );
+        }
+        return merged;
+    }
+
+    public long getCount()
+    {
+        long count = 0;
+        int length = counts.length();
+        for ( int i = 0; i < length; i++ )
+        {
+            count += counts.get( i );
+        }
+        return count;
+    }
+
+    public long getMax()
+    {
+        long max = 0;
+        for ( int i = 0; i < maxValues.length(); i++ )
+        {
+            max = Math.max( max, maxValues.get( i ) );
+        }
+        return max;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket holding the given percentile, 0 if nothing recorded
+     */
+    public long getValueAtPercentile( double percentile )
+    {
+        return getValueAtPercentile( snapshot(), percentile );
+    }
+
+    /**
+     * Same as {@link #getValueAtPercentile(double)} but on a previous {@link #snapshot()} so several percentiles
+     * can be computed on a consistent view.
+     */
+    public static long getValueAtPercentile( long[] snapshot, double percentile )
+    {
+        long total = 0;
+        for ( long count : snapshot )
+        {
+            total += count;
+        }
+        if ( total == 0 )
+        {
+            return 0;
+        }
+        long rank = (long) Math.ceil( ( Math.min( 100.0, Math.max( 0.0, percentile ) ) / 100.0 ) * total );
+        rank = Math.max( 1, rank );
+        long seen = 0;
+        for ( int i = 0; i < snapshot.length; i++ )
+        {
+            seen += snapshot[i];
+            if ( seen >= rank )
+            {
+                return bucketUpperBound( i );
+            }
+        }
+        return bucketUpperBound( snapshot.length - 1 );
+    }
+
+    public void reset()
+    {
+        for ( int i = 0; i < counts.length(); i++ )
+        {
+            counts.set( i, 0 );
+        }
+        for ( int i = 0; i < maxValues.length(); i++ )
+        {
+            maxValues.set( i, 0 );
+        }
+    }
+
+    static int bucketIndex( long value )
+    {
+        if ( value < SUB_BUCKETS )
+        {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros( value );
+        if ( exponent > MAX_EXPONENT )
+        {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) ( value >>> ( exponent - SUB_BUCKET_BITS ) ) & ( SUB_BUCKETS - 1 );
+        return ( exponent - SUB_BUCKET_BITS + 1 ) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperBound( int index )
+    {
+        if ( index < SUB_BUCKETS )
+        {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        long lowerBound = ( (long) ( SUB_BUCKETS + subBucket ) ) << shift;
+        return lowerBound + ( 1L << shift ) - 1;
+    }
+}
@@ -0,0 +1,259 @@
+package org.apache.tomcat.maven.runner;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+
+import javax.servlet.ServletException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Valve recording request latencies (in microseconds) per context and per status class (1xx to 5xx) in
+ * {@link LatencyHistogram}s. Percentiles are available through JMX (the valve is registered as any other valve
+ * of the pipeline) and with {@link #writeReport(PrintWriter)}.
+ *
+ * @since 3.0
+ */
+public class LatencyHistogramValve
+    extends ValveBase
+{
+    private static final double[] REPORTED_PERCENTILES = { 50, 90, 99, 99.9 };
+
+    /**
+     * key: context name ("" for requests not mapped to any context), value: histograms indexed by status class,
+     * 0 being used for unexpected status codes
+     */
+    private final ConcurrentMap<String, LatencyHistogram[]> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * if not <code>null</code> the report is written to this file when the valve is stopped
+     */
+    private String reportFile;
+
+    public LatencyHistogramValve()
+    {
+        super( true );
+    }
+
+    @Override
+    public void invoke( Request request, Response response )
+        throws IOException, ServletException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            getNext().invoke( request, response );
+        }
+        finally
+        {
+            long micros = TimeUnit.NANOSECONDS.toMicros( System.nanoTime() - start );
+            Context context = request.getContext();
+            int statusClass = response.getStatus() / 100;
+            if ( statusClass < 1 || statusClass > 5 )
+            {
+                statusClass = 0;
+            }
+            getHistograms( context == null ? "" : context.getName() )[statusClass].record( micros );
+        }
+    }
+
+    private LatencyHistogram[] getHistograms( String contextName )
+    {
+        LatencyHistogram[] contextHistograms = histograms.get( contextName );
+        if ( contextHistograms == null )
+        {
+            LatencyHistogram[] created = new LatencyHistogram[6];
+            for ( int i = 0; i < created.length; i++ )
+            {
+                created[i] = new LatencyHistogram();
+            }
+            contextHistograms = histograms.putIfAbsent( contextName, created );
+            if ( contextHistograms == null )
+            {
+                contextHistograms = created;
+            }
+        }
+        return contextHistograms;
+    }
+
+    // ----------------------------------------------------------------------
+    // JMX exposed
+    // ----------------------------------------------------------------------
+
+    /**
+     * @param contextName the context name as seen in the report ("" for the ROOT context)
+     * @param statusClass 1 to 5, or 0 for all the status classes
+     * @param percentile  percentile between 0 and 100
+     * @return latency in microseconds, -1 if the context is unknown
+     */
+    public long getPercentile( String contextName, int statusClass, double percentile )
+    {
+        LatencyHistogram[] contextHistograms = histograms.get( contextName == null ? "" : contextName );
+        if ( contextHistograms == null )
+        {
+            return -1;
+        }
+        if ( statusClass >= 1 && statusClass <= 5 )
+        {
+            return contextHistograms[statusClass].getValueAtPercentile( percentile );
+        }
+        return LatencyHistogram.getValueAtPercentile( merge( contextHistograms ), percentile );
+    }
+
+    public String getReport()
+    {
+        StringWriter stringWriter = new StringWriter();
+        writeReport( new PrintWriter( stringWriter ) );
+        return stringWriter.toString();
+    }
+
+    public void resetHistograms()
+    {
+        for ( LatencyHistogram[] contextHistograms : histograms.values() )
+        {
+            for ( LatencyHistogram histogram : contextHistograms )
+            {
+                histogram.reset();
+            }
+        }
+    }
+
+    public String getReportFile()
+    {
+        return reportFile;
+    }
+
+    public void setReportFile( String reportFile )
+    {
+        this.reportFile = reportFile;
+    }
+
+    // ----------------------------------------------------------------------
+    // Report
+    // ----------------------------------------------------------------------
+
+    /**
+     * Writes one line per context and status class with count, p50, p90, p99, p99.9 and max (microseconds).
+     *
+     * @param writer where to write the report
+     */
+    public void writeReport( PrintWriter writer )
+    {
+        writer.println( "# context status count p50 p90 p99 p999 max (latencies in us)" );
+        Map<String, LatencyHistogram[]> sorted = new TreeMap<>( histograms );
+        for ( Map.Entry<String, LatencyHistogram[]> entry : sorted.entrySet() )
+        {
+            String contextName = entry.getKey().length() == 0 ? "/" : entry.getKey();
+            LatencyHistogram[] contextHistograms = entry.getValue();
+            for ( int statusClass = 0; statusClass < contextHistograms.length; statusClass++ )
+            {
+                LatencyHistogram histogram = contextHistograms[statusClass];
+                long[] snapshot = histogram.snapshot();
+                long count = 0;
+                for ( long bucket : snapshot )
+                {
+                    count += bucket;
+                }
+                if ( count == 0 )
+                {
+                    continue;
+                }
+                writer.print( contextName );
+                writer.print( ' ' );
+                writer.print( statusClass == 0 ? "other" : statusClass + "xx" );
+                writer.print( ' ' );
+                writer.print( count );
+                for ( double percentile : REPORTED_PERCENTILES )
+                {
+                    writer.print( ' ' );
+                    writer.print( LatencyHistogram.getValueAtPercentile( snapshot, percentile ) );
+                }
+                writer.print( ' ' );
+                writer.println( histogram.getMax() );
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes the report to the given file, parent directories are created if needed.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writeReport( File file )
+        throws IOException
+    {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if ( !parent.exists() )
+        {
+            parent.mkdirs();
+        }
+        try (PrintWriter writer = new PrintWriter( new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" ) ))
+        {
+            writeReport( writer );
+        }
+    }
+
+    @Override
+    protected synchronized void stopInternal()
+        throws LifecycleException
+    {
+        super.stopInternal();
+        if ( reportFile != null )
+        {
+            try
+            {
+                writeReport( new File( reportFile ) );
+            }
+            catch ( IOException e )
+            {
+                containerLog.warn( "fail to write latency report to " + reportFile, e );
+            }
+        }
+    }
+
+    private static long[] merge( LatencyHistogram[] contextHistograms )
+    {
+        long[] merged = new long[LatencyHistogram.BUCKETS];
+        for ( LatencyHistogram histogram : contextHistograms )
+        {
+            long[] snapshot = histogram.snapshot();
+            for ( int i = 0; i < merged.length; i++ )
+            {
+                merged[i] += snapshot[i];
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,200 @@
+package org.apache.tomcat.maven.runner;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the segments written by {@link RequestTraceValve}.
+ *
+ * @since 3.0
+ */
+public class RequestTraceReader
+{
+    /**
+     * A decoded record, the same instance is reused for all the records of a read.
+     */
+    public static class TraceRecord
+    {
+        /**
+         * name of the run (valve start) which wrote the record, runs are read in the order they were started
+         */
+        public String run;
+
+        public long timestamp;
+
+        public String context;
+
+        public String uriPattern;
+
+        public int status;
+
+        /**
+         * microseconds
+         */
+        public long latency;
+
+        /**
+         * microseconds between the request being received by the connector and handled by the valve
+         */
+        public long threadWait;
+
+        public long bytes;
+    }
+
+    public interface TraceRecordHandler
+    {
+        void handle( TraceRecord record );
+    }
+
+    private final File directory;
+
+    public RequestTraceReader( File directory )
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the number of records read
+     */
+    public long read( TraceRecordHandler handler )
+        throws IOException
+    {
+        File[] segments = listSegments( directory );
+        Arrays.sort( segments );
+        Map<String, Map<Integer, String>> dictionaries = new HashMap<>();
+        TraceRecord record = new TraceRecord();
+        long count = 0;
+        for ( File segment : segments )
+        {
+            String runName = runName( segment );
+            Map<Integer, String> dictionary = dictionaries.get( runName );
+            if ( dictionary == null )
+            {
+                dictionary = readDictionary( new File( directory, runName + RequestTraceValve.DICTIONARY_SUFFIX ) );
+                dictionaries.put( runName, dictionary );
+            }
+            record.run = runName;
+            count += readSegment( segment, dictionary, record, handler );
+        }
+        return count;
+    }
+
+    private long readSegment( File segment, Map<Integer, String> dictionary, TraceRecord record,
+                              TraceRecordHandler handler )
+        throws IOException
+    {
+        try (RandomAccessFile file = new RandomAccessFile( segment, "r" ))
+        {
+            if ( file.length() < RequestTraceValve.HEADER_SIZE )
+            {
+                return 0;
+            }
+            MappedByteBuffer buffer = file.getChannel().map( FileChannel.MapMode.READ_ONLY, 0, file.length() );
+            if ( buffer.getInt( 0 ) != RequestTraceValve.MAGIC )
+            {
+                throw new IOException( segment + " is not a request trace segment" );
+            }
+            int recordSize = buffer.getInt( 8 );
+            long count = 0;
+            for ( long offset = RequestTraceValve.HEADER_SIZE; offset + recordSize <= file.length();
+                  offset += recordSize )
+            {
+                int position = (int) offset;
+                long timestamp = buffer.getLong( position );
+                if ( timestamp == 0 )
+                {
+                    // slot claimed but not written yet or end of the segment
+                    continue;
+                }
+                record.timestamp = timestamp;
+                record.context = lookup( dictionary, buffer.getInt( position + 8 ) );
+                record.uriPattern = lookup( dictionary, buffer.getInt( position + 12 ) );
+                record.status = buffer.getInt( position + 16 );
+                record.latency = buffer.getInt( position + 20 );
+                record.threadWait = buffer.getInt( position + 24 );
+                record.bytes = buffer.getLong( position + 28 );
+                handler.handle( record );
+                count++;
+            }
+            return count;
+        }
+    }
+
+    private static String lookup( Map<Integer, String> dictionary, int id )
+    {
+        String value = dictionary.get( id );
+        return value == null ? "<other>" : value;
+    }
+
+    private static Map<Integer, String> readDictionary( File file )
+        throws IOException
+    {
+        Map<Integer, String> dictionary = new HashMap<>();
+        if ( !file.exists() )
+        {
+            return dictionary;
+        }
+        try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader( new FileInputStream( file ), "UTF-8" ) ))
+        {
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                int tab = line.indexOf( '\t' );
+                if ( tab > 0 )
+                {
+                    dictionary.put( Integer.valueOf( line.substring( 0, tab ) ), line.substring( tab + 1 ) );
+                }
+            }
+        }
+        return dictionary;
+    }
+
+    static String runName( File segment )
+    {
+        String name = segment.getName();
+        return name.substring( 0, name.lastIndexOf( '-' ) );
+    }
+
+    static File[] listSegments( File directory )
+    {
+        File[] segments = directory.listFiles( new FileFilter()
+        {
+            @Override
+            public boolean accept( File file )
+            {
+                return file.isFile() && file.getName().startsWith( "trace-" ) && file.getName().endsWith(
+                    RequestTraceValve.SEGMENT_SUFFIX );
+            }
+        } );
+        return segments == null ? new File[0] : segments;
+    }
+}
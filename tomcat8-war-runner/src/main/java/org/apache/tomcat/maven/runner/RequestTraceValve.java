@@ -0,0 +1,504 @@
+package org.apache.tomcat.maven.runner;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+
+import javax.servlet.ServletException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Valve writing one fixed-width binary record per request into memory-mapped segment files. Request threads
+ * claim a slot with a single atomic increment and write it in place, the operating system takes care of
+ * flushing the pages. Contexts and URI patterns are stored as ids, the id to value mapping being appended to
+ * a text dictionary file next to the segments. {@link RequestTraceReader} reads them back.
+ * <p>
+ * Record layout (big endian, {@link #RECORD_SIZE} bytes): timestamp (ms, long), context id (int), uri
+ * pattern id (int), status (int), latency (&micro;s, int), thread wait time (&micro;s, int), bytes sent (long),
+ * reserved (int).
+ * </p>
+ *
+ * @since 3.0
+ */
+public class RequestTraceValve
+    extends ValveBase
+{
+    public static final int MAGIC = 0x54524331;
+
+    public static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = 16;
+
+    public static final int RECORD_SIZE = 40;
+
+    public static final String SEGMENT_SUFFIX = ".bin";
+
+    public static final String DICTIONARY_SUFFIX = ".dict";
+
+    /**
+     * id used once the dictionary is full
+     */
+    public static final int OTHER_ID = 0;
+
+    private String directory = "logs/trace";
+
+    private long segmentSize = 64L * 1024 * 1024;
+
+    private int maxSegments = 20;
+
+    private int maxDictionarySize = 10000;
+
+    private final ConcurrentMap<String, Integer> dictionary = new ConcurrentHashMap<>();
+
+    /**
+     * key: method, value: uri pattern ids by raw uri, so the pattern is only computed the first time a uri is seen
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, Integer>> uriIds = new ConcurrentHashMap<>();
+
+    private final AtomicInteger cachedUris = new AtomicInteger();
+
+    private final AtomicInteger nextId = new AtomicInteger( OTHER_ID + 1 );
+
+    private File traceDirectory;
+
+    private String runName;
+
+    private int segmentSequence;
+
+    private Writer dictionaryWriter;
+
+    private volatile Segment current;
+
+    public RequestTraceValve()
+    {
+        super( true );
+    }
+
+    @Override
+    public void invoke( Request request, Response response )
+        throws IOException, ServletException
+    {
+        long entryMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        try
+        {
+            getNext().invoke( request, response );
+        }
+        finally
+        {
+            long latency = TimeUnit.NANOSECONDS.toMicros( System.nanoTime() - start );
+            long received = request.getCoyoteRequest().getStartTime();
+            long wait = received > 0 ? TimeUnit.MILLISECONDS.toMicros( Math.max( 0, entryMillis - received ) ) : 0;
+            Context context = request.getContext();
+            String uri = request.getDecodedRequestURI();
+            record( entryMillis, id( context == null ? "" : context.getName() ),
+                    uriId( request.getMethod(), uri == null ? "" : uri ), response.getStatus(), latency, wait,
+                    response.getContentWritten() );
+        }
+    }
+
+    private void record( long timestamp, int contextId, int uriId, int status, long latency, long wait, long bytes )
+    {
+        while ( true )
+        {
+            Segment segment = current;
+            if ( segment == null )
+            {
+                return;
+            }
+            int slot = segment.next.getAndIncrement();
+            if ( slot < segment.capacity )
+            {
+                int offset = HEADER_SIZE + slot * RECORD_SIZE;
+                MappedByteBuffer buffer = segment.buffer;
+                buffer.putInt( offset + 8, contextId );
+                buffer.putInt( offset + 12, uriId );
+                buffer.putInt( offset + 16, status );
+                buffer.putInt( offset + 20, (int) Math.min( Integer.MAX_VALUE, latency ) );
+                buffer.putInt( offset + 24, (int) Math.min( Integer.MAX_VALUE, wait ) );
+                buffer.putLong( offset + 28, bytes );
+                // written last: a record with a timestamp is complete
+                buffer.putLong( offset, timestamp );
+                return;
+            }
+            roll( segment );
+        }
+    }
+
+    /**
+     * @return the id of the pattern of the uri, cached by raw uri for up to <code>maxDictionarySize</code> uris
+     */
+    private int uriId( String method, String uri )
+    {
+        ConcurrentMap<String, Integer> methodUris = uriIds.get( method );
+        if ( methodUris == null )
+        {
+            ConcurrentMap<String, Integer> created = new ConcurrentHashMap<>();
+            methodUris = uriIds.putIfAbsent( method, created );
+            if ( methodUris == null )
+            {
+                methodUris = created;
+            }
+        }
+        Integer cached = methodUris.get( uri );
+        if ( cached != null )
+        {
+            return cached;
+        }
+        int id = id( method + " " + uriPattern( uri ) );
+        if ( cachedUris.get() < maxDictionarySize && methodUris.putIfAbsent( uri, id ) == null )
+        {
+            cachedUris.incrementAndGet();
+        }
+        return id;
+    }
+
+    /**
+     * Replaces path segments which are numbers or long hexadecimal ids (uuids, hashes) by <code>{n}</code> so the
+     * number of patterns stays bounded for REST like urls, while segments merely containing digits such as
+     * <code>v1</code> or <code>jquery-3.js</code> are kept.
+     */
+    static String uriPattern( String uri )
+    {
+        StringBuilder pattern = new StringBuilder( uri.length() );
+        int start = 0;
+        while ( start <= uri.length() )
+        {
+            int end = uri.indexOf( '/', start );
+            if ( end < 0 )
+            {
+                end = uri.length();
+            }
+            if ( isId( uri, start, end ) )
+            {
+                pattern.append( "{n}" );
+            }
+            else
+            {
+                pattern.append( uri, start, end );
+            }
+            if ( end < uri.length() )
+            {
+                pattern.append( '/' );
+            }
+            start = end + 1;
+        }
+        return pattern.toString();
+    }
+
+    private static boolean isId( String uri, int start, int end )
+    {
+        if ( start == end )
+        {
+            return false;
+        }
+        boolean digits = true;
+        boolean hex = end - start >= 16;
+        boolean digit = false;
+        for ( int i = start; i < end && ( digits || hex ); i++ )
+        {
+            char c = uri.charAt( i );
+            boolean isDigit = c >= '0' && c <= '9';
+            digit |= isDigit;
+            digits &= isDigit;
+            hex &= isDigit || ( c >= 'a' && c <= 'f' ) || ( c >= 'A' && c <= 'F' ) || c == '-';
+        }
+        return digits || ( hex && digit );
+    }
+
+    private int id( String value )
+    {
+        Integer id = dictionary.get( value );
+        if ( id != null )
+        {
+            return id;
+        }
+        return register( value );
+    }
+
+    private synchronized int register( String value )
+    {
+        Integer id = dictionary.get( value );
+        if ( id != null )
+        {
+            return id;
+        }
+        if ( dictionary.size() >= maxDictionarySize || dictionaryWriter == null )
+        {
+            return OTHER_ID;
+        }
+        id = nextId.getAndIncrement();
+        try
+        {
+            dictionaryWriter.write( id + "\t" + value.replace( '\n', ' ' ).replace( '\t', ' ' ) + "\n" );
+            dictionaryWriter.flush();
+        }
+        catch ( IOException e )
+        {
+            containerLog.warn( "fail to write request trace dictionary: " + e.getMessage() );
+            return OTHER_ID;
+        }
+        dictionary.put( value, id );
+        return id;
+    }
+
+    private synchronized void roll( Segment full )
+    {
+        if ( current != full )
+        {
+            return;
+        }
+        try
+        {
+            current = openSegment();
+        }
+        catch ( IOException e )
+        {
+            containerLog.error( "fail to create request trace segment, tracing disabled", e );
+            current = null;
+        }
+        full.close();
+        deleteOldSegments();
+    }
+
+    private Segment openSegment()
+        throws IOException
+    {
+        File file = new File( traceDirectory, runName + "-" + String.format( "%05d", segmentSequence++ )
+            + SEGMENT_SUFFIX );
+        return new Segment( file, (int) ( ( segmentSize - HEADER_SIZE ) / RECORD_SIZE ) );
+    }
+
+    private void deleteOldSegments()
+    {
+        File[] segments = RequestTraceReader.listSegments( traceDirectory );
+        if ( maxSegments <= 0 || segments.length <= maxSegments )
+        {
+            return;
+        }
+        Arrays.sort( segments );
+        for ( int i = 0; i < segments.length - maxSegments; i++ )
+        {
+            if ( !segments[i].delete() )
+            {
+                containerLog.warn( "fail to delete request trace segment " + segments[i] );
+            }
+        }
+        deleteUnusedDictionaries();
+    }
+
+    /**
+     * Deletes the dictionaries of the previous runs whose segments are all deleted.
+     */
+    private void deleteUnusedDictionaries()
+    {
+        Set<String> runNames = new HashSet<>();
+        for ( File segment : RequestTraceReader.listSegments( traceDirectory ) )
+        {
+            runNames.add( RequestTraceReader.runName( segment ) );
+        }
+        File[] files = traceDirectory.listFiles();
+        for ( File file : files == null ? new File[0] : files )
+        {
+            String name = file.getName();
+            if ( name.startsWith( "trace-" ) && name.endsWith( DICTIONARY_SUFFIX ) )
+            {
+                String dictionaryRun = name.substring( 0, name.length() - DICTIONARY_SUFFIX.length() );
+                if ( !dictionaryRun.equals( runName ) && !runNames.contains( dictionaryRun ) && !file.delete() )
+                {
+                    containerLog.warn( "fail to delete request trace dictionary " + file );
+                }
+            }
+        }
+    }
+
+    @Override
+    protected synchronized void startInternal()
+        throws LifecycleException
+    {
+        traceDirectory = new File( directory );
+        if ( !traceDirectory.isAbsolute() )
+        {
+            traceDirectory = new File( System.getProperty( "catalina.base", "." ), directory );
+        }
+        if ( !traceDirectory.exists() )
+        {
+            traceDirectory.mkdirs();
+        }
+        String startTime = "trace-" + new SimpleDateFormat( "yyyyMMdd-HHmmss" ).format( new Date() );
+        segmentSequence = 0;
+        try
+        {
+            // the dictionary is created first so that runs started in the same second get different names
+            runName = startTime;
+            File dictionaryFile = new File( traceDirectory, runName + DICTIONARY_SUFFIX );
+            for ( int run = 1; !dictionaryFile.createNewFile(); run++ )
+            {
+                runName = startTime + "_" + run;
+                dictionaryFile = new File( traceDirectory, runName + DICTIONARY_SUFFIX );
+            }
+            dictionaryWriter = new OutputStreamWriter( new FileOutputStream( dictionaryFile ), "UTF-8" );
+            current = openSegment();
+        }
+        catch ( IOException e )
+        {
+            throw new LifecycleException( "fail to create request trace files in " + traceDirectory, e );
+        }
+        super.startInternal();
+    }
+
+    @Override
+    protected synchronized void stopInternal()
+        throws LifecycleException
+    {
+        super.stopInternal();
+        Segment segment = current;
+        current = null;
+        if ( segment != null )
+        {
+            segment.close();
+        }
+        if ( dictionaryWriter != null )
+        {
+            try
+            {
+                dictionaryWriter.close();
+            }
+            catch ( IOException e )
+            {
+                // ignore exception here
+            }
+            dictionaryWriter = null;
+        }
+        dictionary.clear();
+        uriIds.clear();
+        cachedUris.set( 0 );
+        nextId.set( OTHER_ID + 1 );
+    }
+
+    /**
+     * A mapped segment file, records are appended through {@link #next}.
+     */
+    private static class Segment
+    {
+        private final AtomicInteger next = new AtomicInteger();
+
+        private final int capacity;
+
+        private final RandomAccessFile file;
+
+        private final MappedByteBuffer buffer;
+
+        Segment( File path, int capacity )
+            throws IOException
+        {
+            this.capacity = capacity;
+            this.file = new RandomAccessFile( path, "rw" );
+            this.buffer =
+                file.getChannel().map( FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE );
+            buffer.putInt( 0, MAGIC );
+            buffer.putInt( 4, VERSION );
+            buffer.putInt( 8, RECORD_SIZE );
+            buffer.putInt( 12, capacity );
+        }
+
+        void close()
+        {
+            buffer.force();
+            try
+            {
+                file.close();
+            }
+            catch ( IOException e )
+            {
+                // ignore exception here
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Configuration
+    // ----------------------------------------------------------------------
+
+    public String getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * @param directory where segments are written, relative to <code>catalina.base</code> if not absolute
+     */
+    public void setDirectory( String directory )
+    {
+        this.directory = directory;
+    }
+
+    public long getSegmentSize()
+    {
+        return segmentSize;
+    }
+
+    public void setSegmentSize( long segmentSize )
+    {
+        this.segmentSize = Math.max( HEADER_SIZE + RECORD_SIZE, Math.min( Integer.MAX_VALUE, segmentSize ) );
+    }
+
+    public int getMaxSegments()
+    {
+        return maxSegments;
+    }
+
+    /**
+     * @param maxSegments number of segment files kept in the directory, oldest are deleted, 0 to keep everything
+     */
+    public void setMaxSegments( int maxSegments )
+    {
+        this.maxSegments = maxSegments;
+    }
+
+    public int getMaxDictionarySize()
+    {
+        return maxDictionarySize;
+    }
+
+    public void setMaxDictionarySize( int maxDictionarySize )
+    {
+        this.maxDictionarySize = maxDictionarySize;
+    }
+}
@@ -20,12 +20,12 @@ package org.apache.tomcat.maven.runner;
 
 import org.apache.catalina.Context;
 import org.apache.catalina.Host;
+import org.apache.catalina.Valve;
 import org.apache.catalina.connector.Connector;
 import org.apache.catalina.core.StandardContext;
 import org.apache.catalina.startup.Catalina;
 import org.apache.catalina.startup.ContextConfig;
 import org.apache.catalina.startup.Tomcat;
-import org.apache.catalina.valves.AccessLogValve;
 import org.apache.juli.ClassLoaderLogManager;
 import org.apache.tomcat.util.ExceptionUtils;
 import org.apache.tomcat.util.http.fileupload.FileUtils;
@@ -43,10 +43,18 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.LogManager;
 
 /**
@@ -115,8 +123,69 @@ public class Tomcat8Runner
 
     public String loggerName;
 
+    /**
+     * record request latencies per context and status class, the report is dumped on shutdown
+     */
+    public boolean latencyHistogram;
+
+    /**
+     * access log mode: sync, async or off
+     */
+    public String accessLog = AccessLogValveFactory.MODE_SYNC;
+
+    /**
+     * access log pattern, override the one stored in the archive properties
+     */
+    public String accessLogPattern;
+
+    public int accessLogQueueSize = 8192;
+
+    public int accessLogBatchSize = 256;
+
+    /**
+     * async access log behaviour when the queue is full: drop or block
+     */
+    public String accessLogOverflow = AsyncAccessLogValve.OVERFLOW_BLOCK;
+
+    public long accessLogMaxFileSize = -1;
+
+    /**
+     * write binary request trace segments
+     */
+    public boolean requestTrace;
+
+    /**
+     * where to write the request trace segments, default logs/trace in the extract directory
+     */
+    public String requestTraceDirectory;
+
+    /**
+     * seconds to wait for in-flight requests to complete on shutdown once connectors are paused
+     */
+    public int drainTimeout = 30;
+
+    /**
+     * seconds between reporting "not ready" and pausing the connectors, to let load balancers notice
+     */
+    public int readinessDelay = 0;
+
+    /**
+     * uri answering 200 when ready and 503 when draining, disabled if <code>null</code>
+     */
+    public String readinessPath;
+
+    /**
+     * threads used by the host to start and stop the webapps, 1 (the Tomcat default) to start them one after
+     * another, 0 for one per available processor
+     */
+    public int hostStartStopThreads = 1;
+
     Catalina container;
 
+    LatencyHistogramValve latencyHistogramValve;
+
+    ActiveRequestValve activeRequestValve;
+
     Tomcat tomcat;
 
     String uriEncoding = "ISO-8859-1";
@@ -284,6 +353,7 @@ public class Tomcat8Runner
             }
 
             tomcat.getHost().setAppBase( new File( extractDirectory, "webapps" ).getAbsolutePath() );
+            tomcat.getHost().setStartStopThreads( hostStartStopThreads );
 
             String connectorHttpProtocol = runtimeProperties.getProperty( HTTP_PROTOCOL_KEY );
 
@@ -311,11 +381,42 @@ public class Tomcat8Runner
                 tomcat.setConnector( connector );
             }
 
+            activeRequestValve = new ActiveRequestValve();
+            activeRequestValve.setReadinessPath( readinessPath );
+            tomcat.getHost().getPipeline().addValve( activeRequestValve );
+
             // add a default acces log valve
-            AccessLogValve alv = new AccessLogValve();
-            alv.setDirectory( new File( extractDirectory, "logs" ).getAbsolutePath() );
-            alv.setPattern( runtimeProperties.getProperty( Tomcat8Runner.ACCESS_LOG_VALVE_FORMAT_KEY ) );
-            tomcat.getHost().getPipeline().addValve( alv );
+            String pattern = accessLogPattern != null
+                ? accessLogPattern
+                : runtimeProperties.getProperty( Tomcat8Runner.ACCESS_LOG_VALVE_FORMAT_KEY );
+            Valve accessLogValve =
+                new AccessLogValveFactory( new File( extractDirectory, "logs" ).getAbsolutePath() ) //
+                    .setMode( accessLog ) //
+                    .setPattern( pattern ) //
+                    .setQueueSize( accessLogQueueSize ) //
+                    .setBatchSize( accessLogBatchSize ) //
+                    .setOverflowPolicy( accessLogOverflow ) //
+                    .setMaxFileSize( accessLogMaxFileSize ) //
+                    .createValve();
+            if ( accessLogValve != null )
+            {
+                tomcat.getHost().getPipeline().addValve( accessLogValve );
+            }
+
+            if ( requestTrace )
+            {
+                RequestTraceValve requestTraceValve = new RequestTraceValve();
+                requestTraceValve.setDirectory( requestTraceDirectory != null
+                                                    ? new File( requestTraceDirectory ).getAbsolutePath()
+                                                    : new File( extractDirectory, "logs/trace" ).getAbsolutePath() );
+                tomcat.getHost().getPipeline().addValve( requestTraceValve );
+            }
+
+            if ( latencyHistogram )
+            {
+                latencyHistogramValve = new LatencyHistogramValve();
+                tomcat.getHost().getPipeline().addValve( latencyHistogramValve );
+            }
 
             // create https connector
             if ( httpsPort > 0 )
@@ -409,6 +510,8 @@ public class Tomcat8Runner
                 }
             }
 
+            activeRequestValve.addReadinessContext( tomcat, new File( extractDirectory, "temp" ).getAbsolutePath() );
+
             tomcat.start();
 
             Runtime.getRuntime().addShutdownHook( new TomcatShutdownHook() );
@@ -433,6 +536,7 @@ public class Tomcat8Runner
         {
             try
             {
+                Tomcat8Runner.this.drain();
                 Tomcat8Runner.this.stop();
             }
             catch ( Throwable ex )
@@ -442,6 +546,7 @@ public class Tomcat8Runner
             }
             finally
             {
+                dumpLatencyHistogram();
                 // If JULI is used, shut JULI down *after* the server shuts down
                 // so log messages aren't lost
                 LogManager logManager = LogManager.getLogManager();
@@ -453,6 +558,29 @@ public class Tomcat8Runner
         }
     }
 
+    /**
+     * write the latency report to stdout and to logs/latency-histogram.txt
+     */
+    protected void dumpLatencyHistogram()
+    {
+        if ( latencyHistogramValve == null )
+        {
+            return;
+        }
+        String report = latencyHistogramValve.getReport();
+        System.out.println( "request latencies:" );
+        System.out.print( report );
+        File reportFile = new File( extractDirectory, "logs/latency-histogram.txt" );
+        try
+        {
+            latencyHistogramValve.writeReport( reportFile );
+        }
+        catch ( IOException e )
+        {
+            System.out.println( "fail to write latency report to " + reportFile + ":" + e.getMessage() );
+        }
+    }
+
     private URL getContextXml( String warPath )
         throws IOException
     {
@@ -513,6 +641,41 @@ public class Tomcat8Runner
         }
     }
 
+    /**
+     * Reports "not ready", waits {@link #readinessDelay}, pauses the connectors so no new request is accepted then
+     * waits up to {@link #drainTimeout} for the in-flight requests to complete.
+     */
+    public void drain()
+        throws InterruptedException
+    {
+        if ( activeRequestValve == null || drainTimeout <= 0 )
+        {
+            return;
+        }
+        activeRequestValve.setReady( false );
+        if ( readinessDelay > 0 )
+        {
+            System.out.println( "not ready, waiting " + readinessDelay + "s before pausing connectors" );
+            Thread.sleep( TimeUnit.SECONDS.toMillis( readinessDelay ) );
+        }
+        for ( Connector connector : tomcat.getService().findConnectors() )
+        {
+            connector.pause();
+        }
+        int active = activeRequestValve.getActiveRequests();
+        long start = System.currentTimeMillis();
+        if ( activeRequestValve.awaitIdle( TimeUnit.SECONDS.toMillis( drainTimeout ) ) )
+        {
+            System.out.println(
+                "drained " + active + " in-flight request(s) in " + ( System.currentTimeMillis() - start ) + " ms" );
+        }
+        else
+        {
+            System.out.println( "drain timeout after " + drainTimeout + "s, " + activeRequestValve.getActiveRequests()
+                                    + " request(s) still in flight" );
+        }
+    }
+
     public void stop()
         throws Exception
     {
@@ -557,14 +720,17 @@ public class Tomcat8Runner
         String wars = runtimeProperties.getProperty( WARS_KEY );
         populateWebAppWarPerContext( wars );
 
-        for ( Map.Entry<String, String> entry : webappWarPerContext.entrySet() )
+        // wars are copied concurrently, Tomcat unpacks them when starting the contexts
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max( 1, Math.min( webappWarPerContext.size() + 1, Runtime.getRuntime().availableProcessors() ) ) );
+        try
         {
-            debugMessage( "webappWarPerContext entry key/value: " + entry.getKey() + "/" + entry.getValue() );
-            InputStream inputStream = null;
-            try
+            List<Future<Void>> expands = new ArrayList<>();
+            for ( Map.Entry<String, String> entry : webappWarPerContext.entrySet() )
             {
+                debugMessage( "webappWarPerContext entry key/value: " + entry.getKey() + "/" + entry.getValue() );
                 File expandFile = null;
-                inputStream = Thread.currentThread().getContextClassLoader().getResourceAsStream( entry.getValue() );
                 if ( !useServerXml() )
                 {
                     if ( entry.getKey().equals( "/" ) )
@@ -590,37 +756,73 @@ public class Tomcat8Runner
                     throw new Exception( "FATAL: impossible to create directories:" + parentFile );
                 }
 
-                expand( inputStream, expandFile );
-
-            }
-            finally
-            {
-                if ( inputStream != null )
+                final String resource = entry.getValue();
+                final File target = expandFile;
+                expands.add( executor.submit( new Callable<Void>()
                 {
-                    inputStream.close();
-                }
+                    @Override
+                    public Void call()
+                        throws Exception
+                    {
+                        InputStream inputStream = classLoader.getResourceAsStream( resource );
+                        if ( inputStream == null )
+                        {
+                            throw new Exception( "FATAL: impossible to find war:" + resource );
+                        }
+                        try
+                        {
+                            expand( inputStream, target );
+                        }
+                        finally
+                        {
+                            closeQuietly( inputStream );
+                        }
+                        return null;
+                    }
+                } ) );
             }
-        }
 
-        //Copy code source to webapps folder
-        if ( codeSourceWar != null )
-        {
-            FileInputStream inputStream = null;
-            try
+            //Copy code source to webapps folder
+            if ( codeSourceWar != null )
             {
-                File expandFile = new File( extractDirectory, "webapps/" + codeSourceContextPath + ".war" );
-                inputStream = new FileInputStream( codeSourceWar );
+                final File expandFile = new File( extractDirectory, "webapps/" + codeSourceContextPath + ".war" );
                 debugMessage( "move code source to file:" + expandFile.getPath() );
-                expand( inputStream, expandFile );
+                expands.add( executor.submit( new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                        throws Exception
+                    {
+                        FileInputStream inputStream = new FileInputStream( codeSourceWar );
+                        try
+                        {
+                            expand( inputStream, expandFile );
+                        }
+                        finally
+                        {
+                            closeQuietly( inputStream );
+                        }
+                        return null;
+                    }
+                } ) );
             }
-            finally
+
+            for ( Future<Void> expand : expands )
             {
-                if ( inputStream != null )
+                try
+                {
+                    expand.get();
+                }
+                catch ( ExecutionException e )
                 {
-                    inputStream.close();
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
                 }
             }
         }
+        finally
+        {
+            executor.shutdownNow();
+        }
 
         // expand tomcat configuration files if there
         expandConfigurationFile( "catalina.properties", extractDirectoryFile );
@@ -94,6 +94,53 @@ public class Tomcat8RunnerCli
     static Option uriEncoding = OptionBuilder.withArgName( "uriEncoding" ).hasArg().withDescription(
         "connector uriEncoding default ISO-8859-1" ).create( "uriEncoding" );
 
+    static Option latencyHistogram = OptionBuilder.withArgName( "latencyHistogram" ).withDescription(
+        "record request latencies per context, percentiles are exposed via JMX and dumped on shutdown" ).create(
+        "latencyHistogram" );
+
+    static Option accessLog = OptionBuilder.withArgName( "accessLog" ).hasArg().withDescription(
+        "access log mode: sync, async or off, default sync" ).create( "accessLog" );
+
+    static Option accessLogPattern = OptionBuilder.withArgName( "accessLogPattern" ).hasArg().withDescription(
+        "access log pattern, default the one configured when building the archive" ).create( "accessLogPattern" );
+
+    static Option accessLogQueueSize = OptionBuilder.withArgName( "accessLogQueueSize" ).hasArg().withDescription(
+        "async access log queue size, default 8192" ).create( "accessLogQueueSize" );
+
+    static Option accessLogBatchSize = OptionBuilder.withArgName( "accessLogBatchSize" ).hasArg().withDescription(
+        "async access log maximum lines written per batch, default 256" ).create( "accessLogBatchSize" );
+
+    static Option accessLogOverflow = OptionBuilder.withArgName( "accessLogOverflow" ).hasArg().withDescription(
+        "async access log behaviour when the queue is full: drop or block, default block" ).create(
+        "accessLogOverflow" );
+
+    static Option accessLogMaxFileSize = OptionBuilder.withArgName( "accessLogMaxFileSize" ).hasArg().withDescription(
+        "async access log size in bytes after which the file is rolled, default only daily rotation" ).create(
+        "accessLogMaxFileSize" );
+
+    static Option requestTrace = OptionBuilder.withArgName( "requestTrace" ).withDescription(
+        "write binary request trace records, read them with the tomcat8:trace-report goal" ).create(
+        "requestTrace" );
+
+    static Option requestTraceDirectory =
+        OptionBuilder.withArgName( "requestTraceDirectory" ).hasArg().withDescription(
+            "where to write request trace segments, default .extract/logs/trace" ).create( "requestTraceDirectory" );
+
+    static Option drainTimeout = OptionBuilder.withArgName( "drainTimeout" ).hasArg().withDescription(
+        "seconds to wait on shutdown for in-flight requests once connectors are paused, 0 to disable, default 30" )
+        .create( "drainTimeout" );
+
+    static Option readinessDelay = OptionBuilder.withArgName( "readinessDelay" ).hasArg().withDescription(
+        "seconds between reporting not ready and pausing connectors on shutdown, default 0" ).create(
+        "readinessDelay" );
+
+    static Option readinessPath = OptionBuilder.withArgName( "readinessPath" ).hasArg().withDescription(
+        "uri answering 200 when ready and 503 when shutting down, e.g. /ready" ).create( "readinessPath" );
+
+    static Option hostStartStopThreads = OptionBuilder.withArgName( "hostStartStopThreads" ).hasArg().withDescription(
+        "threads used to start and stop the webapps, 0 for one per available processor, default 1" ).create(
+        "hostStartStopThreads" );
+
     static Options options = new Options();
 
     static
@@ -113,6 +160,19 @@ public class Tomcat8RunnerCli
             .addOption( extractDirectory ) //
             .addOption( loggerName ) //
             .addOption( uriEncoding ) //
+            .addOption( latencyHistogram ) //
+            .addOption( accessLog ) //
+            .addOption( accessLogPattern ) //
+            .addOption( accessLogQueueSize ) //
+            .addOption( accessLogBatchSize ) //
+            .addOption( accessLogOverflow ) //
+            .addOption( accessLogMaxFileSize ) //
+            .addOption( requestTrace ) //
+            .addOption( requestTraceDirectory ) //
+            .addOption( drainTimeout ) //
+            .addOption( readinessDelay ) //
+            .addOption( readinessPath ) //
+            .addOption( hostStartStopThreads ) //
             .addOption( maxPostSize );
     }
 
@@ -229,6 +289,72 @@ public class Tomcat8RunnerCli
             tomcat8Runner.uriEncoding = line.getOptionValue( uriEncoding.getOpt() );
         }
 
+        if ( line.hasOption( latencyHistogram.getOpt() ) )
+        {
+            tomcat8Runner.latencyHistogram = true;
+        }
+
+        if ( line.hasOption( accessLog.getOpt() ) )
+        {
+            tomcat8Runner.accessLog = line.getOptionValue( accessLog.getOpt() );
+        }
+
+        if ( line.hasOption( accessLogPattern.getOpt() ) )
+        {
+            tomcat8Runner.accessLogPattern = line.getOptionValue( accessLogPattern.getOpt() );
+        }
+
+        if ( line.hasOption( accessLogQueueSize.getOpt() ) )
+        {
+            tomcat8Runner.accessLogQueueSize = Integer.parseInt( line.getOptionValue( accessLogQueueSize.getOpt() ) );
+        }
+
+        if ( line.hasOption( accessLogBatchSize.getOpt() ) )
+        {
+            tomcat8Runner.accessLogBatchSize = Integer.parseInt( line.getOptionValue( accessLogBatchSize.getOpt() ) );
+        }
+
+        if ( line.hasOption( accessLogOverflow.getOpt() ) )
+        {
+            tomcat8Runner.accessLogOverflow = line.getOptionValue( accessLogOverflow.getOpt() );
+        }
+
+        if ( line.hasOption( accessLogMaxFileSize.getOpt() ) )
+        {
+            tomcat8Runner.accessLogMaxFileSize = Long.parseLong( line.getOptionValue( accessLogMaxFileSize.getOpt() ) );
+        }
+
+        if ( line.hasOption( requestTrace.getOpt() ) )
+        {
+            tomcat8Runner.requestTrace = true;
+        }
+
+        if ( line.hasOption( requestTraceDirectory.getOpt() ) )
+        {
+            tomcat8Runner.requestTraceDirectory = line.getOptionValue( requestTraceDirectory.getOpt() );
+        }
+
+        if ( line.hasOption( drainTimeout.getOpt() ) )
+        {
+            tomcat8Runner.drainTimeout = Integer.parseInt( line.getOptionValue( drainTimeout.getOpt() ) );
+        }
+
+        if ( line.hasOption( readinessDelay.getOpt() ) )
+        {
+            tomcat8Runner.readinessDelay = Integer.parseInt( line.getOptionValue( readinessDelay.getOpt() ) );
+        }
+
+        if ( line.hasOption( readinessPath.getOpt() ) )
+        {
+            tomcat8Runner.readinessPath = line.getOptionValue( readinessPath.getOpt() );
+        }
+
+        if ( line.hasOption( hostStartStopThreads.getOpt() ) )
+        {
+            tomcat8Runner.hostStartStopThreads =
+                Integer.parseInt( line.getOptionValue( hostStartStopThreads.getOpt() ) );
+        }
+
         // here we go
         tomcat8Runner.run();
     }
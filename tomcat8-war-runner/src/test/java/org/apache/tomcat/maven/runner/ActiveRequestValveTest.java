@@ -0,0 +1,155 @@
+package org.apache.tomcat.maven.runner;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the readiness probe and the drain of the in-flight requests of {@link ActiveRequestValve}.
+ */
+public class ActiveRequestValveTest
+    extends TestCase
+{
+    public void testDrain()
+        throws Exception
+    {
+        final ActiveRequestValve valve = new ActiveRequestValve();
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        valve.setNext( new ValveBase()
+        {
+            @Override
+            public void invoke( Request request, Response response )
+                throws IOException, ServletException
+            {
+                started.countDown();
+                try
+                {
+                    release.await( 10, TimeUnit.SECONDS );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } );
+        Thread request = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    valve.invoke( newRequest( "/app/slow" ), new TestResponse() );
+                }
+                catch ( Exception e )
+                {
+                    throw new RuntimeException( e );
+                }
+            }
+        };
+        request.start();
+        try
+        {
+            assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+            assertEquals( 1, valve.getActiveRequests() );
+
+            valve.setReady( false );
+            assertFalse( "request in flight", valve.awaitIdle( 200 ) );
+        }
+        finally
+        {
+            release.countDown();
+        }
+        assertTrue( valve.awaitIdle( 10000 ) );
+        request.join( 10000 );
+        assertEquals( 0, valve.getActiveRequests() );
+        assertEquals( 1, valve.getCompletedRequests() );
+    }
+
+    public void testReadiness()
+        throws Exception
+    {
+        ActiveRequestValve valve = new ActiveRequestValve();
+        valve.setReadinessPath( "/ready" );
+
+        TestResponse response = new TestResponse();
+        valve.invoke( newRequest( "/ready/" ), response );
+        assertEquals( 200, response.getStatus() );
+        assertEquals( "ready", response.body.toString() );
+
+        valve.setReady( false );
+        response = new TestResponse();
+        valve.invoke( newRequest( "/ready" ), response );
+        assertEquals( 503, response.getStatus() );
+        assertEquals( "not ready", response.body.toString() );
+        assertEquals( "probes are not counted", 0, valve.getCompletedRequests() );
+    }
+
+    static Request newRequest( String uri )
+    {
+        Request request = new Request();
+        org.apache.coyote.Request coyoteRequest = new org.apache.coyote.Request();
+        coyoteRequest.decodedURI().setString( uri );
+        request.setCoyoteRequest( coyoteRequest );
+        return request;
+    }
+
+    static class TestResponse
+        extends Response
+    {
+        private int status = 200;
+
+        final StringWriter body = new StringWriter();
+
+        @Override
+        public void setStatus( int status )
+        {
+            this.status = status;
+        }
+
+        @Override
+        public int getStatus()
+        {
+            return status;
+        }
+
+        @Override
+        public void setContentType( String type )
+        {
+            // not needed
+        }
+
+        @Override
+        public PrintWriter getWriter()
+        {
+            return new PrintWriter( body, true );
+        }
+    }
+}
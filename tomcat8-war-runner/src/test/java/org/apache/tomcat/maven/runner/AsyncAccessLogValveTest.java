@@ -0,0 +1,185 @@
+package org.apache.tomcat.maven.runner;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.catalina.core.StandardHost;
+
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks the overflow of {@link AccessLogRingBuffer}, the size rotation and the dropped lines of
+ * {@link AsyncAccessLogValve}.
+ */
+public class AsyncAccessLogValveTest
+    extends TestCase
+{
+    File directory;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        directory = new File( System.getProperty( "java.io.tmpdir" ), "access-log-test" );
+        delete( directory );
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        super.tearDown();
+        delete( directory );
+    }
+
+    private static void delete( File directory )
+    {
+        File[] files = directory.listFiles();
+        if ( files != null )
+        {
+            for ( File file : files )
+            {
+                assertTrue( file.delete() );
+            }
+        }
+        directory.delete();
+    }
+
+    public void testRingBufferOverflow()
+    {
+        AccessLogRingBuffer<String> buffer = new AccessLogRingBuffer<>( 3 );
+        assertEquals( 4, buffer.capacity() );
+        assertTrue( buffer.isEmpty() );
+        for ( int i = 0; i < 4; i++ )
+        {
+            assertTrue( buffer.offer( "line" + i ) );
+        }
+        assertFalse( "full", buffer.offer( "line4" ) );
+
+        List<String> batch = new ArrayList<>();
+        assertEquals( 2, buffer.drainTo( batch, 2 ) );
+        assertTrue( buffer.offer( "line5" ) );
+        assertEquals( 3, buffer.drainTo( batch, 10 ) );
+        assertEquals( Arrays.asList( "line0", "line1", "line2", "line3", "line5" ), batch );
+        assertTrue( buffer.isEmpty() );
+        assertEquals( 0, buffer.drainTo( batch, 10 ) );
+    }
+
+    public void testRingBufferProducers()
+        throws Exception
+    {
+        final AccessLogRingBuffer<Integer> buffer = new AccessLogRingBuffer<>( 64 );
+        final int perThread = 10000;
+        Thread[] producers = new Thread[4];
+        for ( int t = 0; t < producers.length; t++ )
+        {
+            final int offset = t * perThread;
+            producers[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for ( int i = 0; i < perThread; i++ )
+                    {
+                        while ( !buffer.offer( offset + i ) )
+                        {
+                            Thread.yield();
+                        }
+                    }
+                }
+            };
+            producers[t].start();
+        }
+        List<Integer> consumed = new ArrayList<>();
+        while ( consumed.size() < producers.length * perThread )
+        {
+            if ( buffer.drainTo( consumed, 32 ) == 0 )
+            {
+                Thread.yield();
+            }
+        }
+        for ( Thread producer : producers )
+        {
+            producer.join();
+        }
+        Collections.sort( consumed );
+        for ( int i = 0; i < consumed.size(); i++ )
+        {
+            assertEquals( i, consumed.get( i ).intValue() );
+        }
+    }
+
+    public void testRotationBySizeAndDroppedLines()
+        throws Exception
+    {
+        AsyncAccessLogValve valve = new AsyncAccessLogValve();
+        StandardHost host = new StandardHost();
+        host.setName( "localhost" );
+        valve.setContainer( host );
+        valve.setDirectory( directory.getAbsolutePath() );
+        valve.setPrefix( "access" );
+        valve.setMaxFileSize( 50 );
+        valve.setMaxBatchDelay( 10 );
+        valve.start();
+
+        // 30 chars, 60 bytes in UTF-8
+        StringBuilder line = new StringBuilder();
+        for ( int i = 0; i < 30; i++ )
+        {
+            line.append( '\u00e9' );
+        }
+        for ( int i = 1; i <= 2; i++ )
+        {
+            log( valve, line.toString() );
+            long deadline = System.currentTimeMillis() + 10000;
+            while ( valve.getWrittenCount() < i && System.currentTimeMillis() < deadline )
+            {
+                Thread.sleep( 10 );
+            }
+            assertEquals( i, valve.getWrittenCount() );
+        }
+        valve.stop();
+
+        log( valve, line.toString() );
+        assertEquals( "line logged after the stop", 1, valve.getDroppedCount() );
+
+        File[] files = directory.listFiles();
+        assertNotNull( files );
+        assertEquals( "the first line is over the size limit in bytes", 2, files.length );
+        int separator = System.lineSeparator().getBytes( "UTF-8" ).length;
+        for ( File file : files )
+        {
+            assertEquals( file.getName(), 60 + separator, file.length() );
+        }
+        valve.destroy();
+    }
+
+    private static void log( AsyncAccessLogValve valve, String line )
+    {
+        CharArrayWriter message = new CharArrayWriter();
+        message.append( line );
+        valve.log( message );
+    }
+}
@@ -0,0 +1,155 @@
+package org.apache.tomcat.maven.runner;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+
+/**
+ * Checks the bucket math and the percentiles of {@link LatencyHistogram} and the recording of
+ * {@link LatencyHistogramValve}.
+ */
+public class LatencyHistogramTest
+    extends TestCase
+{
+    public void testBuckets()
+    {
+        for ( long value = 0; value < 8; value++ )
+        {
+            assertEquals( value, LatencyHistogram.bucketUpperBound( LatencyHistogram.bucketIndex( value ) ) );
+        }
+        long previous = -1;
+        for ( long value = 1; value < ( 1L << 41 ); value = value * 3 / 2 + 1 )
+        {
+            int index = LatencyHistogram.bucketIndex( value );
+            long upperBound = LatencyHistogram.bucketUpperBound( index );
+            assertTrue( value + " <= " + upperBound, value <= upperBound );
+            assertTrue( value + " within 12.5% of " + upperBound, upperBound - value <= value / 8 );
+            assertTrue( index >= previous );
+            previous = index;
+        }
+        assertEquals( LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketIndex( Long.MAX_VALUE ) );
+        // bucket bounds are contiguous
+        for ( int index = 1; index < LatencyHistogram.BUCKETS - 1; index++ )
+        {
+            long upperBound = LatencyHistogram.bucketUpperBound( index );
+            assertEquals( index, LatencyHistogram.bucketIndex( upperBound ) );
+            assertEquals( index + 1, LatencyHistogram.bucketIndex( upperBound + 1 ) );
+        }
+    }
+
+    public void testPercentiles()
+        throws Exception
+    {
+        final LatencyHistogram histogram = new LatencyHistogram( 4 );
+        assertEquals( 0, histogram.getValueAtPercentile( 50 ) );
+
+        Thread[] threads = new Thread[4];
+        for ( int t = 0; t < threads.length; t++ )
+        {
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    // 1 to 1000 from every thread
+                    for ( int i = 1; i <= 1000; i++ )
+                    {
+                        histogram.record( i );
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+        histogram.record( -5 );
+
+        assertEquals( 4001, histogram.getCount() );
+        assertEquals( 1000, histogram.getMax() );
+        assertEquals( 0, histogram.getValueAtPercentile( 0 ) );
+        assertBetween( 500, histogram.getValueAtPercentile( 50 ) );
+        assertBetween( 900, histogram.getValueAtPercentile( 90 ) );
+        assertBetween( 990, histogram.getValueAtPercentile( 99 ) );
+        assertBetween( 1000, histogram.getValueAtPercentile( 100 ) );
+
+        histogram.reset();
+        assertEquals( 0, histogram.getCount() );
+        assertEquals( 0, histogram.getMax() );
+    }
+
+    private static void assertBetween( long expected, long actual )
+    {
+        assertTrue( actual + " for " + expected, actual >= expected && actual - expected <= expected / 8 );
+    }
+
+    public void testValve()
+        throws Exception
+    {
+        LatencyHistogramValve valve = new LatencyHistogramValve();
+        final int[] statuses = { 200, 200, 404, 500, 200 };
+        valve.setNext( new ValveBase()
+        {
+            private int call;
+
+            @Override
+            public void invoke( Request request, Response response )
+                throws IOException, ServletException
+            {
+                response.setStatus( statuses[call++] );
+            }
+        } );
+        for ( int i = 0; i < statuses.length; i++ )
+        {
+            valve.invoke( new Request(), new Response()
+            {
+                private int status;
+
+                @Override
+                public void setStatus( int status )
+                {
+                    this.status = status;
+                }
+
+                @Override
+                public int getStatus()
+                {
+                    return status;
+                }
+            } );
+        }
+
+        assertEquals( -1, valve.getPercentile( "/missing", 0, 50 ) );
+        assertTrue( valve.getPercentile( "", 0, 100 ) >= 0 );
+        String report = valve.getReport();
+        assertTrue( report, report.contains( "/ 2xx 3 " ) );
+        assertTrue( report, report.contains( "/ 4xx 1 " ) );
+        assertTrue( report, report.contains( "/ 5xx 1 " ) );
+
+        valve.resetHistograms();
+        assertFalse( valve.getReport().contains( "/ 2xx" ) );
+    }
+}
@@ -0,0 +1,197 @@
+package org.apache.tomcat.maven.runner;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.core.StandardHost;
+import org.apache.catalina.valves.ValveBase;
+
+import javax.servlet.ServletException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes requests with {@link RequestTraceValve} and reads them back with {@link RequestTraceReader}.
+ */
+public class RequestTraceTest
+    extends TestCase
+{
+    File directory;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        directory = new File( System.getProperty( "java.io.tmpdir" ), "request-trace-test" );
+        delete( directory );
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        super.tearDown();
+        delete( directory );
+    }
+
+    private static void delete( File directory )
+    {
+        File[] files = directory.listFiles();
+        if ( files != null )
+        {
+            for ( File file : files )
+            {
+                assertTrue( file.delete() );
+            }
+        }
+        directory.delete();
+    }
+
+    public void testUriPattern()
+    {
+        assertEquals( "/users/{n}/orders/{n}", RequestTraceValve.uriPattern( "/users/42/orders/7" ) );
+        assertEquals( "/api/v1/js/jquery-3.js", RequestTraceValve.uriPattern( "/api/v1/js/jquery-3.js" ) );
+        assertEquals( "/session/{n}/",
+                      RequestTraceValve.uriPattern( "/session/123e4567-e89b-12d3-a456-426614174000/" ) );
+        assertEquals( "/decade/deadbeefdeadbeef", RequestTraceValve.uriPattern( "/decade/deadbeefdeadbeef" ) );
+        assertEquals( "", RequestTraceValve.uriPattern( "" ) );
+    }
+
+    public void testWriteAndRead()
+        throws Exception
+    {
+        // two runs started in the same second keep their own dictionary
+        trace( "GET", "/users/1", 200 );
+        trace( "POST", "/users/2/v1", 500 );
+
+        final List<String> records = new ArrayList<>();
+        final Set<String> runs = new HashSet<>();
+        long count = new RequestTraceReader( directory ).read( new RequestTraceReader.TraceRecordHandler()
+        {
+            @Override
+            public void handle( RequestTraceReader.TraceRecord record )
+            {
+                assertTrue( record.timestamp > 0 );
+                assertTrue( record.latency >= 0 );
+                records.add( record.uriPattern + " " + record.status + " " + record.bytes );
+                runs.add( record.run );
+            }
+        } );
+        assertEquals( 6, count );
+        assertEquals( 2, runs.size() );
+        List<String> expected = new ArrayList<>();
+        for ( int i = 0; i < 3; i++ )
+        {
+            expected.add( "GET /users/{n} 200 " + ( 10 + i ) );
+        }
+        for ( int i = 0; i < 3; i++ )
+        {
+            expected.add( "POST /users/{n}/v1 500 " + ( 10 + i ) );
+        }
+        assertEquals( expected, records );
+    }
+
+    public void testOldSegmentsAndDictionariesDeleted()
+        throws Exception
+    {
+        RequestTraceValve valve = createValve();
+        valve.start();
+        valve.stop();
+        // 2 records per segment, 3 segments kept
+        valve.setSegmentSize( RequestTraceValve.HEADER_SIZE + 2 * RequestTraceValve.RECORD_SIZE );
+        valve.setMaxSegments( 3 );
+        valve.start();
+        for ( int i = 0; i < 20; i++ )
+        {
+            invoke( valve, "GET", "/page" + i, 200, i );
+        }
+        valve.stop();
+        valve.destroy();
+
+        File[] files = directory.listFiles();
+        assertNotNull( files );
+        assertEquals( 3, RequestTraceReader.listSegments( directory ).length );
+        assertEquals( "segments and the dictionary of the last run only", 4, files.length );
+    }
+
+    private void trace( String method, String uri, int status )
+        throws Exception
+    {
+        RequestTraceValve valve = createValve();
+        valve.start();
+        for ( int i = 0; i < 3; i++ )
+        {
+            invoke( valve, method, uri, status, 10 + i );
+        }
+        valve.stop();
+        valve.destroy();
+    }
+
+    private RequestTraceValve createValve()
+    {
+        RequestTraceValve valve = new RequestTraceValve();
+        StandardHost host = new StandardHost();
+        host.setName( "localhost" );
+        valve.setContainer( host );
+        valve.setDirectory( directory.getAbsolutePath() );
+        valve.setSegmentSize( 64 * 1024 );
+        valve.setNext( new ValveBase()
+        {
+            @Override
+            public void invoke( Request request, Response response )
+                throws IOException, ServletException
+            {
+                // nothing to do
+            }
+        } );
+        return valve;
+    }
+
+    private static void invoke( RequestTraceValve valve, String method, String uri, final int status,
+                                final long bytes )
+        throws Exception
+    {
+        Request request = new Request();
+        org.apache.coyote.Request coyoteRequest = new org.apache.coyote.Request();
+        coyoteRequest.method().setString( method );
+        coyoteRequest.decodedURI().setString( uri );
+        request.setCoyoteRequest( coyoteRequest );
+        valve.invoke( request, new Response()
+        {
+            @Override
+            public int getStatus()
+            {
+                return status;
+            }
+
+            @Override
+            public long getContentWritten()
+            {
+                return bytes;
+            }
+        } );
+    }
+}
@@ -0,0 +1,158 @@
+package org.apache.tomcat.maven.runner;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.tomcat.util.http.fileupload.FileUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Checks the concurrent copy of the wars bundled in the executable archive.
+ */
+public class Tomcat8RunnerTest
+    extends TestCase
+{
+    private static final int WARS = 6;
+
+    private File archiveDirectory;
+
+    private File extractDirectory;
+
+    private ClassLoader contextClassLoader;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        File directory = new File( System.getProperty( "java.io.tmpdir" ), "runner-test-" + System.nanoTime() );
+        archiveDirectory = new File( directory, "archive" );
+        extractDirectory = new File( directory, "extract" );
+        archiveDirectory.mkdirs();
+        contextClassLoader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(
+            new URLClassLoader( new URL[]{ archiveDirectory.toURI().toURL() }, null ) );
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        Thread.currentThread().setContextClassLoader( contextClassLoader );
+        FileUtils.deleteDirectory( archiveDirectory.getParentFile() );
+        super.tearDown();
+    }
+
+    public void testExtractWars()
+        throws Exception
+    {
+        StringBuilder wars = new StringBuilder();
+        for ( int i = 0; i < WARS; i++ )
+        {
+            createWar( "app" + i + ".war", 100000 + i );
+            wars.append( "app" ).append( i ).append( ".war|/app" ).append( i ).append( ';' );
+        }
+        File codeSourceWar = createWar( "code-source.war", 50000 );
+
+        Tomcat8Runner runner = createRunner( wars.toString() );
+        runner.codeSourceWar = codeSourceWar;
+        runner.codeSourceContextPath = "code-source";
+        runner.extract();
+
+        for ( int i = 0; i < WARS; i++ )
+        {
+            assertCopied( new File( archiveDirectory, "app" + i + ".war" ),
+                          new File( extractDirectory, "webapps/app" + i + ".war" ) );
+        }
+        assertCopied( codeSourceWar, new File( extractDirectory, "webapps/code-source.war" ) );
+    }
+
+    public void testExtractMissingWar()
+        throws Exception
+    {
+        createWar( "app0.war", 100000 );
+        createWar( "app2.war", 100000 );
+
+        Tomcat8Runner runner = createRunner( "app0.war|/app0;app1.war|/app1;app2.war|/app2" );
+        try
+        {
+            runner.extract();
+            fail( "the missing war must fail the extraction" );
+        }
+        catch ( Exception e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "app1.war" ) );
+        }
+    }
+
+    private Tomcat8Runner createRunner( String wars )
+    {
+        Tomcat8Runner runner = new Tomcat8Runner();
+        runner.runtimeProperties = new Properties();
+        runner.runtimeProperties.setProperty( Tomcat8Runner.WARS_KEY, wars );
+        runner.extractDirectory = extractDirectory.getAbsolutePath();
+        runner.extractDirectoryFile = extractDirectory;
+        return runner;
+    }
+
+    private File createWar( String name, int size )
+        throws IOException
+    {
+        byte[] content = new byte[size];
+        new Random( size ).nextBytes( content );
+        File war = new File( archiveDirectory, name );
+        FileOutputStream output = new FileOutputStream( war );
+        try
+        {
+            output.write( content );
+        }
+        finally
+        {
+            output.close();
+        }
+        return war;
+    }
+
+    private static void assertCopied( File expected, File actual )
+        throws IOException
+    {
+        assertTrue( actual.getPath(), actual.isFile() );
+        assertTrue( actual.getPath(), Arrays.equals( read( expected ), read( actual ) ) );
+    }
+
+    private static byte[] read( File file )
+        throws IOException
+    {
+        try (RandomAccessFile input = new RandomAccessFile( file, "r" ))
+        {
+            byte[] content = new byte[(int) input.length()];
+            input.readFully( content );
+            return content;
+        }
+    }
+}